@@ -16,13 +16,8 @@
 package com.qaprosoft.appcenter;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.ReadableByteChannel;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -32,6 +27,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
@@ -47,6 +43,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.qaprosoft.appcenter.http.resttemplate.RestTemplateBuilder;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.artifact.ArtifactCache;
 
 /**
  * Created by boyle on 8/16/17.
@@ -124,13 +121,9 @@ public class AppCenterManager {
         if (fileToLocate == null) {
             try {
                 LOGGER.debug("Beginning Transfer of AppCenter Build");
-                URL downloadLink = new URL(buildToDownload);
-                int retryCount = 0;
-                boolean retry = true;
-                while (retry && retryCount <= 5) {
-                    retry = downloadBuild(fileName, downloadLink);
-                    retryCount = retryCount + 1;
-                }
+                // the same build requested by several runs of the agent is downloaded once
+                File cached = ArtifactCache.getInstance().get(new URL(buildToDownload), createFileName(appName, buildType, platformName));
+                FileUtils.copyFile(cached, new File(fileName));
                 LOGGER.debug(String.format("AppCenter Build (%s) was retrieved", fileName));
             } catch (Exception ex) {
                 LOGGER.error(String.format("Error Thrown When Attempting to Transfer AppCenter Build (%s)", ex.getMessage()), ex);
@@ -142,30 +135,6 @@ public class AppCenterManager {
         return new File(fileName);
     }
 
-    /**
-     *
-     * @param fileName will be the name of the downloaded file.
-     * @param downloadLink will be the URL to retrieve the build from.
-     * @return brings back a true/false on whether or not the build was successfully downloaded.
-     * @throws IOException throws a non Interruption Exception up.
-     */
-    private boolean downloadBuild(String fileName, URL downloadLink) throws IOException {
-        try (ReadableByteChannel readableByteChannel = Channels.newChannel(downloadLink.openStream());
-                FileOutputStream fos = new FileOutputStream(fileName)) {
-            if (Thread.currentThread().isInterrupted()) {
-                LOGGER.debug(String.format("Current Thread (%s) is interrupted, clearing interruption.", Thread.currentThread().getId()));
-                Thread.interrupted();
-            }
-            fos.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-            LOGGER.info("Successfully Transferred...");
-            return false;
-        } catch (ClosedByInterruptException ie1) {
-            LOGGER.info("Retrying....");
-            LOGGER.error("Getting Error: " + ie1.getMessage(), ie1);
-            return true;
-        }
-    }
-
     /**
      *
      * @param appName takes in the AppCenter Name to look for.
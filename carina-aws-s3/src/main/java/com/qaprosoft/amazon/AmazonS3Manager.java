@@ -16,41 +16,39 @@
 package com.qaprosoft.amazon;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.HttpMethod;
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.auth.SystemPropertiesCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
-import com.amazonaws.services.s3.transfer.Download;
-import com.amazonaws.services.s3.transfer.TransferManager;
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.crypto.CryptoTool;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
-import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.utils.artifact.ArtifactCache;
 
 public class AmazonS3Manager {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private static volatile AmazonS3Manager instance = null;
     private static AmazonS3 s3client = null;
+    private S3ArtifactResolver resolver = null;
 
     private AmazonS3Manager() {
     }
@@ -289,32 +287,7 @@ public class AmazonS3Manager {
             throw new RuntimeException("pattern is null!");
         }
 
-        S3ObjectSummary latestBuild = null;
-
-        ObjectListing objBuilds = s3client.listObjects(bucket, key);
-
-        int i = 0;
-        int limit = 100;
-        // by default S3 return only 1000 objects summary so need while cycle here
-        do {
-            LOGGER.info("looking for s3 artifact using iteration #" + i);
-
-            for (S3ObjectSummary obj : objBuilds.getObjectSummaries()) {
-                LOGGER.debug("Existing S3 artifact: " + obj.getKey());
-                Matcher matcher = pattern.matcher(obj.getKey());
-                if (matcher.find()) {
-                    if (latestBuild == null) {
-                        latestBuild = obj;
-                    }
-
-                    if (obj.getLastModified().after(latestBuild.getLastModified())) {
-                        latestBuild = obj;
-                    }
-                }
-            }
-            objBuilds = s3client.listNextBatchOfObjects(objBuilds);
-        } while (objBuilds.isTruncated() && ++i < limit);
-
+        S3ObjectSummary latestBuild = getResolver().getLatest(bucket, key, pattern);
         if (latestBuild == null) {
             LOGGER.error("Unable to find S3 build artifact by pattern: " + pattern);
         } else {
@@ -323,6 +296,14 @@ public class AmazonS3Manager {
         return latestBuild;
     }
 
+    private synchronized S3ArtifactResolver getResolver() {
+        if (resolver == null) {
+            resolver = new S3ArtifactResolver(s3client, Configuration.getInt(Parameter.S3_LIST_THREADS),
+                    Configuration.getLong(Parameter.S3_LATEST_ARTIFACT_CACHE_TTL) * 1000);
+        }
+        return resolver;
+    }
+
     /**
      * Method to download file from s3 to local file system
      * 
@@ -335,35 +316,27 @@ public class AmazonS3Manager {
     }
 
     /**
-     * Method to download file from s3 to local file system
+     * Method to download file from s3 to local file system. Object is downloaded once into {@link ArtifactCache} by
+     * its ETag and copied to the file.
      * 
      * @param bucketName AWS S3 bucket name
      * @param key (example: android/apkFolder/ApkName.apk)
      * @param file (local file name)
-     * @param pollingInterval (polling interval in sec for S3 download status determination)
+     * @param pollingInterval not used anymore, download progress is logged by the cache
      */
     public void download(final String bucketName, final String key, final File file, long pollingInterval) {
         LOGGER.info("App will be downloaded from s3.");
         LOGGER.info(String.format("[Bucket name: %s] [Key: %s] [File: %s]", bucketName, key, file.getAbsolutePath()));
-        DefaultAWSCredentialsProviderChain credentialProviderChain = new DefaultAWSCredentialsProviderChain();
-        TransferManager tx = new TransferManager(
-                credentialProviderChain.getCredentials());
-        Download appDownload = tx.download(bucketName, key, file);
         try {
-            LOGGER.info("Transfer: " + appDownload.getDescription());
-            LOGGER.info("	State: " + appDownload.getState());
-            LOGGER.info("	Progress: ");
-            // You can poll your transfer's status to check its progress
-            while (!appDownload.isDone()) {
-                LOGGER.info("		transferred: " + (int) (appDownload.getProgress().getPercentTransferred() + 0.5) + "%");
-                CommonUtils.pause(pollingInterval);
+            String etag = s3client.getObjectMetadata(bucketName, key).getETag();
+            URL url = generatePreSignUrl(bucketName, key, 60 * 60 * 1000);
+            File cached = ArtifactCache.getInstance().get(url, file.getName(), etag);
+            if (!cached.getCanonicalFile().equals(file.getCanonicalFile())) {
+                FileUtils.copyFile(cached, file);
             }
-            LOGGER.info("	State: " + appDownload.getState());
-            // appDownload.waitForCompletion();
-        } catch (AmazonClientException e) {
+        } catch (AmazonClientException | IOException e) {
             throw new RuntimeException("File wasn't downloaded from s3. See log: ".concat(e.getMessage()));
         }
-        // tx.shutdownNow();
     }
 
     /**
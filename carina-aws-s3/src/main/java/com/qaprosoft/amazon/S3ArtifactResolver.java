@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * S3ArtifactResolver - finds the latest S3 object matching the pattern.
+ *
+ * Patterns are matched anywhere in the key as before. Only patterns anchored by "^" are matched from the beginning of
+ * the key, so their literal beginning (e.g. "android/develop/build-" for "^android/develop/build-[0-9]+/app.apk") is
+ * passed to S3 as listing prefix. Keys are listed flat by pages of 1000. When there is more than one page and the keys
+ * are split into a few "folders" only, the folders are listed in parallel, otherwise per folder requests would cost
+ * more than flat pages. Resolved keys are cached for TTL to avoid listing of the same bucket by every test class.
+ */
+public class S3ArtifactResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String DELIMITER = "/";
+    private static final String META_CHARS = ".[]{}()*+?^$|";
+    private static final String QUANTIFIERS = "*?{";
+
+    private final AmazonS3 client;
+    private final int threads;
+    private final long ttl;
+
+    private final Map<String, CachedArtifact> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * @param client AmazonS3
+     * @param threads int number of parallel listing requests
+     * @param ttl long time in milliseconds to keep resolved artifact, 0 to disable cache
+     */
+    public S3ArtifactResolver(AmazonS3 client, int threads, long ttl) {
+        this.client = client;
+        this.threads = Math.max(1, threads);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Get the latest (by last modified date) object matching the pattern.
+     *
+     * @param bucket String S3 bucket name
+     * @param prefix String S3 storage path to search in, e.g. android/MyProject
+     * @param pattern Pattern of the key
+     * @return S3ObjectSummary or null if nothing matches
+     */
+    public S3ObjectSummary getLatest(String bucket, String prefix, Pattern pattern) {
+        String cacheKey = bucket + "|" + prefix + "|" + pattern.pattern() + "|" + pattern.flags();
+        CachedArtifact cached = cache.get(cacheKey);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            LOGGER.debug("Resolved S3 artifact is taken from cache: " + cached.summary.getKey());
+            return cached.summary;
+        }
+
+        long start = System.currentTimeMillis();
+        int before = requests.get();
+        S3ObjectSummary latest = resolve(bucket, prefix == null ? "" : prefix, pattern);
+        LOGGER.info(String.format("S3 artifact resolved by %d listing requests in %d ms", requests.get() - before,
+                System.currentTimeMillis() - start));
+
+        if (latest != null && ttl > 0) {
+            cache.put(cacheKey, new CachedArtifact(latest, System.currentTimeMillis() + ttl));
+        }
+        return latest;
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @return int total number of listing requests sent to S3
+     */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    private S3ObjectSummary resolve(String bucket, String prefix, Pattern pattern) {
+        if (!isAnchored(pattern)) {
+            // pattern could match anywhere in the key, nothing to push down
+            return list(bucket, prefix, key -> pattern.matcher(key).find(), folder -> true);
+        }
+        String literal = getLiteralPrefix(pattern);
+        if (!literal.startsWith(prefix) && !prefix.startsWith(literal)) {
+            LOGGER.debug(String.format("Pattern '%s' can't match keys with prefix '%s'", pattern, prefix));
+            return null;
+        }
+        String listingPrefix = literal.length() > prefix.length() ? literal : prefix;
+        return list(bucket, listingPrefix, key -> pattern.matcher(key).lookingAt(), folder -> canMatch(pattern, folder));
+    }
+
+    /**
+     * List prefix flat by pages. Folders are listed in parallel only if there are more than one page of keys and no more
+     * folders than listing threads, so the extra requests are bounded by number of threads.
+     */
+    private S3ObjectSummary list(String bucket, String prefix, KeyFilter filter, KeyFilter folderFilter) {
+        Listing flat = new Listing(bucket, prefix, null, filter, 1);
+        flat.call();
+        if (!flat.truncated) {
+            return flat.latest;
+        }
+
+        Listing folders = new Listing(bucket, prefix, DELIMITER, filter, 1);
+        folders.call();
+        List<String> matched = new ArrayList<>();
+        for (String folder : folders.folders) {
+            if (folderFilter.accept(folder)) {
+                matched.add(folder);
+            }
+        }
+        if (folders.truncated || folders.folders.size() < 2 || matched.size() > threads) {
+            LOGGER.debug("S3 keys under '" + prefix + "' are listed flat");
+            flat.pages = Integer.MAX_VALUE;
+            return flat.call().latest;
+        }
+
+        // keys directly under the prefix are returned by folders listing
+        S3ObjectSummary latest = later(flat.latest, folders.latest);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Listing>> listings = new ArrayList<>();
+            for (String folder : matched) {
+                listings.add(executor.submit(new Listing(bucket, folder, null, filter, Integer.MAX_VALUE)));
+            }
+            for (Future<Listing> listing : listings) {
+                latest = later(latest, listing.get().latest);
+            }
+            return latest;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("S3 listing is interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return boolean true if pattern is matched from the beginning of the key only
+     */
+    static boolean isAnchored(Pattern pattern) {
+        // alternatives could be not anchored
+        return pattern.pattern().startsWith("^") && pattern.pattern().indexOf('|') < 0;
+    }
+
+    /**
+     * @return boolean false if no key starting with the prefix could be matched from the beginning
+     */
+    static boolean canMatch(Pattern pattern, String prefix) {
+        Matcher matcher = pattern.matcher(prefix);
+        // matcher reached the end of prefix so longer key could match
+        return matcher.lookingAt() || matcher.hitEnd();
+    }
+
+    /**
+     * @return String beginning of the pattern matching itself only
+     */
+    static String getLiteralPrefix(Pattern pattern) {
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL)) != 0) {
+            return "";
+        }
+        String regex = pattern.pattern();
+        StringBuilder literal = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // character class, back reference or quotation
+                    break;
+                }
+                c = regex.charAt(i + 1);
+                i++;
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                if (QUANTIFIERS.indexOf(c) >= 0 && literal.length() > 0) {
+                    // previous character is optional
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            }
+            literal.append(c);
+            i++;
+        }
+        return literal.toString();
+    }
+
+    private static S3ObjectSummary later(S3ObjectSummary current, S3ObjectSummary candidate) {
+        if (current == null) {
+            return candidate;
+        }
+        if (candidate != null && candidate.getLastModified().after(current.getLastModified())) {
+            return candidate;
+        }
+        return current;
+    }
+
+    @FunctionalInterface
+    private interface KeyFilter {
+        boolean accept(String key);
+    }
+
+    /**
+     * Pages of single prefix listing, continued from the last page on the next call.
+     */
+    private class Listing implements Callable<Listing> {
+        private final ListObjectsV2Request request;
+        private final KeyFilter filter;
+        private int pages;
+
+        private S3ObjectSummary latest;
+        private boolean truncated = true;
+        private final List<String> folders = new ArrayList<>();
+
+        Listing(String bucket, String prefix, String delimiter, KeyFilter filter, int pages) {
+            this.request = new ListObjectsV2Request()
+                    .withBucketName(bucket)
+                    .withPrefix(prefix)
+                    .withDelimiter(delimiter);
+            this.filter = filter;
+            this.pages = pages;
+        }
+
+        @Override
+        public Listing call() {
+            for (int page = 0; page < pages && truncated; page++) {
+                requests.incrementAndGet();
+                ListObjectsV2Result result = client.listObjectsV2(request);
+                for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                    if (filter.accept(summary.getKey())) {
+                        latest = later(latest, summary);
+                    }
+                }
+                folders.addAll(result.getCommonPrefixes());
+                request.setContinuationToken(result.getNextContinuationToken());
+                truncated = result.isTruncated();
+            }
+            return this;
+        }
+    }
+
+    private static class CachedArtifact {
+        private final S3ObjectSummary summary;
+        private final long expiresAt;
+
+        CachedArtifact(S3ObjectSummary summary, long expiresAt) {
+            this.summary = summary;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
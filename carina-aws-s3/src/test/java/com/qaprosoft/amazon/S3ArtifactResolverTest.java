@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.amazon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests are executed against local stand-in of S3 ListObjectsV2 API returning 3 keys per page.
+ */
+public class S3ArtifactResolverTest {
+
+    private static final String BUCKET = "builds";
+    private static final int PAGE_SIZE = 3;
+    private static final int BUILDS = 20;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    // key to last modified time
+    private final TreeMap<String, Instant> objects = new TreeMap<>();
+    private final ConcurrentLinkedQueue<String> listedPrefixes = new ConcurrentLinkedQueue<>();
+
+    private HttpServer server;
+    private AmazonS3 client;
+
+    @BeforeClass
+    public void startStub() throws IOException {
+        Instant time = Instant.parse("2020-01-01T00:00:00Z");
+        for (int i = 0; i < BUILDS; i++) {
+            objects.put(String.format("android/develop/build-%02d/app.apk", i), time.plusSeconds(i * 60));
+            objects.put(String.format("android/develop/build-%02d/app.log", i), time.plusSeconds(i * 60 + 1));
+            objects.put(String.format("android/release/build-%02d/app.apk", i), time.plusSeconds(i * 60 + 2));
+            objects.put(String.format("ios/develop/build-%02d/app.ipa", i), time.plusSeconds(i * 60 + 3));
+        }
+        // older build with higher number to be sure that date is compared
+        objects.put("android/develop/build-99/app.apk", time.minusSeconds(60));
+        objects.put("builds/x/build-12.apk", time);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/" + BUCKET, this::list);
+        server.start();
+
+        client = AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new EndpointConfiguration("http://127.0.0.1:" + server.getAddress().getPort(), "us-east-1"))
+                .withPathStyleAccessEnabled(true)
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("access", "secret")))
+                .build();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopStub() {
+        server.stop(0);
+    }
+
+    @BeforeMethod
+    public void reset() {
+        listedPrefixes.clear();
+    }
+
+    @Test()
+    public void testLiteralPrefix() {
+        Assert.assertEquals(S3ArtifactResolver.getLiteralPrefix(Pattern.compile("android/develop/build-.*/app.apk")), "android/develop/build-");
+        Assert.assertEquals(S3ArtifactResolver.getLiteralPrefix(Pattern.compile("^android/dev\\.x[0-9]")), "android/dev.x");
+        Assert.assertEquals(S3ArtifactResolver.getLiteralPrefix(Pattern.compile("android/builds?/")), "android/build");
+        Assert.assertEquals(S3ArtifactResolver.getLiteralPrefix(Pattern.compile(".*prod-google-release.*")), "");
+        Assert.assertEquals(S3ArtifactResolver.getLiteralPrefix(Pattern.compile("android", Pattern.CASE_INSENSITIVE)), "");
+    }
+
+    @Test()
+    public void testCanMatch() {
+        Pattern pattern = Pattern.compile("android/develop/build-.*/app.apk");
+        Assert.assertTrue(S3ArtifactResolver.canMatch(pattern, "android/develop/build-01/"));
+        Assert.assertFalse(S3ArtifactResolver.canMatch(pattern, "android/release/"));
+    }
+
+    @Test()
+    public void testLatestByPrefixPushdown() {
+        S3ArtifactResolver resolver = new S3ArtifactResolver(client, 4, 0);
+        S3ObjectSummary latest = resolver.getLatest(BUCKET, "android", Pattern.compile("^android/develop/build-.*/app.apk"));
+        Assert.assertEquals(latest.getKey(), String.format("android/develop/build-%02d/app.apk", BUILDS - 1));
+
+        // release and ios builds aren't listed at all
+        for (String prefix : listedPrefixes) {
+            Assert.assertEquals(prefix, "android/develop/build-", "Unexpected listing of " + prefix);
+        }
+        // flat pages and single folders listing, build folders are too many to be listed one by one
+        int keys = objects.subMap("android/develop/build-", "android/develop/build.").size();
+        Assert.assertEquals(resolver.getRequestCount(), (keys + PAGE_SIZE - 1) / PAGE_SIZE + 1);
+    }
+
+    @Test()
+    public void testLatestByParallelFolders() {
+        S3ArtifactResolver resolver = new S3ArtifactResolver(client, 4, 0);
+        S3ObjectSummary latest = resolver.getLatest(BUCKET, "android", Pattern.compile("^android/.*\\.apk"));
+        Assert.assertEquals(latest.getKey(), String.format("android/release/build-%02d/app.apk", BUILDS - 1));
+        // only two folders under literal prefix so they are listed in parallel
+        Assert.assertEquals(new HashSet<>(listedPrefixes), new HashSet<>(Arrays.asList("android/", "android/develop/", "android/release/")));
+    }
+
+    @Test()
+    public void testLatestByUnanchoredPattern() {
+        S3ArtifactResolver resolver = new S3ArtifactResolver(client, 4, 0);
+        S3ObjectSummary latest = resolver.getLatest(BUCKET, "android", Pattern.compile(".*release.*apk"));
+        Assert.assertEquals(latest.getKey(), String.format("android/release/build-%02d/app.apk", BUILDS - 1));
+        // flat listing by pages and single folders listing
+        int keys = objects.subMap("android", "androie").size();
+        Assert.assertEquals(resolver.getRequestCount(), (keys + PAGE_SIZE - 1) / PAGE_SIZE + 1);
+    }
+
+    @Test()
+    public void testUnanchoredPatternInTheMiddleOfKey() {
+        S3ArtifactResolver resolver = new S3ArtifactResolver(client, 4, 0);
+        Pattern pattern = Pattern.compile("build-[0-9]+\\.apk");
+        Assert.assertEquals(resolver.getLatest(BUCKET, "", pattern).getKey(), "builds/x/build-12.apk");
+        Assert.assertEquals(resolver.getLatest(BUCKET, "build", pattern).getKey(), "builds/x/build-12.apk");
+    }
+
+    @Test()
+    public void testNotFound() {
+        S3ArtifactResolver resolver = new S3ArtifactResolver(client, 4, 0);
+        Assert.assertNull(resolver.getLatest(BUCKET, "android/develop", Pattern.compile("android/develop/nightly-.*/app.apk")));
+        Assert.assertNull(resolver.getLatest(BUCKET, "ios", Pattern.compile("^android/develop/build-.*")));
+    }
+
+    @Test()
+    public void testCache() {
+        S3ArtifactResolver resolver = new S3ArtifactResolver(client, 4, 60000);
+        Pattern pattern = Pattern.compile("ios/develop/build-.*/app.ipa");
+        S3ObjectSummary latest = resolver.getLatest(BUCKET, "ios", pattern);
+        int requests = resolver.getRequestCount();
+        Assert.assertTrue(requests > 0);
+
+        Assert.assertSame(resolver.getLatest(BUCKET, "ios", pattern), latest);
+        Assert.assertEquals(resolver.getRequestCount(), requests);
+
+        resolver.clearCache();
+        Assert.assertEquals(resolver.getLatest(BUCKET, "ios", pattern).getKey(), latest.getKey());
+        Assert.assertEquals(resolver.getRequestCount(), requests * 2);
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String prefix = params.getOrDefault("prefix", "");
+        String delimiter = params.get("delimiter");
+        int offset = Integer.parseInt(params.getOrDefault("continuation-token", "0"));
+        boolean encode = "url".equals(params.get("encoding-type"));
+        listedPrefixes.add(prefix);
+
+        // keys and common prefixes in lexicographical order as S3 does
+        List<String> entries = new ArrayList<>(new TreeSet<>(collect(prefix, delimiter)));
+        int end = Math.min(offset + PAGE_SIZE, entries.size());
+        boolean truncated = end < entries.size();
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        xml.append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">");
+        xml.append("<Name>").append(BUCKET).append("</Name>");
+        xml.append("<Prefix>").append(encode(prefix, encode)).append("</Prefix>");
+        xml.append("<KeyCount>").append(end - offset).append("</KeyCount>");
+        xml.append("<MaxKeys>1000</MaxKeys>");
+        if (delimiter != null) {
+            xml.append("<Delimiter>").append(encode(delimiter, encode)).append("</Delimiter>");
+        }
+        if (encode) {
+            xml.append("<EncodingType>url</EncodingType>");
+        }
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(end).append("</NextContinuationToken>");
+        }
+        for (String entry : entries.subList(offset, end)) {
+            if (objects.containsKey(entry)) {
+                xml.append("<Contents><Key>").append(encode(entry, encode)).append("</Key>")
+                        .append("<LastModified>").append(DATE_FORMAT.format(objects.get(entry))).append("</LastModified>")
+                        .append("<ETag>&quot;00000000000000000000000000000000&quot;</ETag>")
+                        .append("<Size>1</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            } else {
+                xml.append("<CommonPrefixes><Prefix>").append(encode(entry, encode)).append("</Prefix></CommonPrefixes>");
+            }
+        }
+        xml.append("</ListBucketResult>");
+
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private List<String> collect(String prefix, String delimiter) {
+        List<String> entries = new ArrayList<>();
+        for (String key : objects.keySet()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            int position = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            entries.add(position < 0 ? key : key.substring(0, position + delimiter.length()));
+        }
+        return entries;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            String[] pair = param.split("=", 2);
+            params.put(URLDecoder.decode(pair[0], "UTF-8"), pair.length > 1 ? URLDecoder.decode(pair[1], "UTF-8") : "");
+        }
+        return params;
+    }
+
+    private static String encode(String value, boolean encode) throws IOException {
+        return encode ? URLEncoder.encode(value, "UTF-8") : value;
+    }
+
+}
@@ -31,6 +31,7 @@ import org.testng.internal.annotations.DisabledRetryAnalyzer;
 
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.dataprovider.parser.DSBean;
+import com.qaprosoft.carina.core.foundation.performance.ActionMetrics;
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.report.TestResultItem;
 import com.qaprosoft.carina.core.foundation.report.TestResultType;
@@ -93,6 +94,7 @@ public class AbstractTestListener extends TestListenerAdapter implements IDriver
         //Artifacts.add("Logs", ReportContext.getTestLogLink(test));
         //Artifacts.add("Demo", ReportContext.getTestScreenshotsLink(test));
         
+        ActionMetrics.onTestFinish(ReportContext.getTestDir());
         ReportContext.generateTestReport();
         ReportContext.emptyTestDirData();
     }
@@ -216,7 +218,8 @@ public class AbstractTestListener extends TestListenerAdapter implements IDriver
     @Override
     public void onTestSkipped(ITestResult result) {
         LOGGER.debug("AbstractTestListener->onTestSkipped");
-        
+        // do not export report for skipped test but keep collected data in suite metrics
+        ActionMetrics.onTestFinish(null);
         super.onTestSkipped(result);
     }
 
@@ -67,6 +67,7 @@ import com.qaprosoft.appcenter.AppCenterManager;
 import com.qaprosoft.azure.AzureManager;
 import com.qaprosoft.carina.browsermobproxy.ProxyPool;
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.performance.ActionMetrics;
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.report.TestResultItem;
 import com.qaprosoft.carina.core.foundation.report.TestResultType;
@@ -78,25 +79,28 @@ import com.qaprosoft.carina.core.foundation.skip.ExpectedSkipManager;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.DateUtils;
-import com.qaprosoft.carina.core.foundation.utils.FileManager;
 import com.qaprosoft.carina.core.foundation.utils.Messager;
 import com.qaprosoft.carina.core.foundation.utils.R;
 import com.qaprosoft.carina.core.foundation.utils.ZebrunnerNameResolver;
-import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.utils.android.AndroidService;
+import com.qaprosoft.carina.core.foundation.utils.artifact.ArtifactCache;
 import com.qaprosoft.carina.core.foundation.utils.ftp.FtpUtils;
 import com.qaprosoft.carina.core.foundation.utils.ownership.Ownership;
 import com.qaprosoft.carina.core.foundation.utils.resources.L10N;
 import com.qaprosoft.carina.core.foundation.utils.tag.PriorityManager;
 import com.qaprosoft.carina.core.foundation.utils.tag.TagManager;
 import com.qaprosoft.carina.core.foundation.webdriver.CarinaDriver;
+import com.qaprosoft.carina.core.foundation.webdriver.DriverWarmPool;
 import com.qaprosoft.carina.core.foundation.webdriver.IDriverPool;
 import com.qaprosoft.carina.core.foundation.webdriver.Screenshot;
 import com.qaprosoft.carina.core.foundation.webdriver.TestPhase;
 import com.qaprosoft.carina.core.foundation.webdriver.TestPhase.Phase;
 import com.qaprosoft.carina.core.foundation.webdriver.core.capability.CapabilitiesLoader;
 import com.qaprosoft.carina.core.foundation.webdriver.device.Device;
+import com.qaprosoft.carina.core.foundation.webdriver.listener.DriverListener;
 import com.qaprosoft.carina.core.foundation.webdriver.screenshot.AutoScreenshotRule;
 import com.qaprosoft.carina.core.foundation.webdriver.screenshot.IScreenshotRule;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.ScreenshotPolicy;
 import com.zebrunner.agent.core.registrar.Artifact;
 import com.zebrunner.agent.core.registrar.CurrentTest;
 import com.zebrunner.agent.core.registrar.Label;
@@ -195,6 +199,17 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
         setThreadCount(suite);
         onHealthCheck(suite);
 
+        // pools could be shut down by the previous suite
+        DriverWarmPool.resume();
+        // start reusable BrowserMob proxies in background if browsermob_pool_size is declared
+        ProxyPool.prestartProxies();
+
+        if (Configuration.getBoolean(Parameter.DEFAULT_DEVICE_SETTINGS_ON_START)) {
+            // all devices are configured in parallel before the first driver session
+            AndroidService androidService = AndroidService.getInstance();
+            androidService.setDefaultTimeZone(androidService.getConnectedDevices());
+        }
+
         String mobileApp = Configuration.getMobileApp();
         if (!mobileApp.isEmpty()) {
             // [VD] do not move into the static block as Zebrunner reporting need registered test run!
@@ -283,6 +298,8 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
     public void onTestFailure(ITestResult result) {
         LOGGER.debug("CarinaListener->onTestFailure");
         String errorMessage = getFailureReason(result);
+        // report in-memory frames captured before failure
+        ScreenshotPolicy.flush();
         takeScreenshot(result, "TEST FAILED - " + errorMessage);
         onTestFinish(result);
         super.onTestFailure(result);
@@ -324,6 +341,8 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
             R.REPORT.clearTestProperties();
             R.ZAFIRA.clearTestProperties();
 
+            ScreenshotPolicy.clear();
+
             LOGGER.debug("Test result is : " + result.getStatus());
             // result status == 2 means failure, status == 3 means skip. We need to quit driver anyway for failure and skip
             if ((automaticDriversCleanup && !hasDependencies(result)) || result.getStatus() == 2 || result.getStatus() == 3) {
@@ -361,6 +380,7 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
     public void onFinish(ISuite suite) {
         LOGGER.debug("CarinaListener->onFinish(ISuite suite)");
         attachTestRunLabels(suite);
+        logExceptionStatistics();
         try {
             // TODO: quitAllDivers forcibly
             ReportContext.removeTempDir(); // clean temp artifacts directory
@@ -371,7 +391,7 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
             // String suiteName = getSuiteName(context);
             String title = getTitle(suite.getXmlSuite());
 
-            TestResultType testResult = EmailReportGenerator.getSuiteResult(EmailReportItemCollector.getTestResults());
+            TestResultType testResult = EmailReportGenerator.getSuiteResult();
             String status = testResult.getName();
 
             title = status + ": " + title;
@@ -388,23 +408,23 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
 
             ReportContext.getTempDir().delete();
 
-            // EmailReportItemCollector.getTestResults());
+            List<TestResultItem> testResults = EmailReportItemCollector.getTestResults();
 
             LOGGER.debug("Generating email report...");
 
             // Generate emailable html report using regular method
             EmailReportGenerator report = new EmailReportGenerator(title, env, Configuration.get(Parameter.APP_VERSION),
-                    deviceName, browser, DateUtils.now(), EmailReportItemCollector.getTestResults(),
+                    deviceName, browser, DateUtils.now(), testResults,
                     EmailReportItemCollector.getCreatedItems());
 
-            String emailContent = report.getEmailBody();
             // Store emailable report under emailable-report.html
-            ReportContext.generateHtmlReport(emailContent);
+            ReportContext.generateHtmlReport(report::writeEmailBody);
 
-            printExecutionSummary(EmailReportItemCollector.getTestResults());
+            printExecutionSummary(testResults);
+            ActionMetrics.onSuiteFinish(ReportContext.getBaseDir());
             ReportContext.setCustomTestDirName("run_summary");
 
-            TestResultType suiteResult = EmailReportGenerator.getSuiteResult(EmailReportItemCollector.getTestResults());
+            TestResultType suiteResult = EmailReportGenerator.getSuiteResult();
             switch (suiteResult) {
             case SKIP_ALL:
                 Assert.fail("All tests were skipped! Analyze logs to determine possible configuration issues.");
@@ -421,11 +441,14 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
         } catch (Exception e) {
             LOGGER.error("Exception in CarinaListener->onFinish(ISuite suite)", e);
         } finally {
-            int counter = 0;
-            while (FtpUtils.isUploading() && ++counter < 30) {
-                LOGGER.info("waiting to finish FTP uploading... " + counter + " sec.");
-                CommonUtils.pause(1);
+            // quit idle pre-started sessions
+            DriverWarmPool.shutdown();
+            ProxyPool.shutdown();
+
+            if (FtpUtils.isUploading()) {
+                LOGGER.info("waiting to finish FTP uploading...");
             }
+            FtpUtils.shutdown(30);
         }
     }
 
@@ -662,22 +685,20 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
 
             BlobProperties blobProperties = AzureManager.getInstance().get(containerName, remoteFilePath);
             String azureLocalStorage = Configuration.get(Parameter.AZURE_LOCAL_STORAGE);
-            String localFilePath = azureLocalStorage + "/" + StringUtils.substringAfterLast(remoteFilePath, "/");
+            String fileName = StringUtils.substringAfterLast(remoteFilePath, "/");
 
-            File file = new File(localFilePath);
+            File file = new File(azureLocalStorage, fileName);
 
             try {
-                // verify requested artifact by checking the checksum
-                if (file.exists() && FileManager.getFileChecksum(FileManager.Checksum.MD5, file).equals(Base64.encodeBase64String(blobProperties.getContentMd5()))) {
-                    LOGGER.info("build artifact with the same checksum already downloaded: " + file.getAbsolutePath());
-                } else {
-                    LOGGER.info(
-                            String.format("Following data was extracted: container: %s, remotePath: %s, local file: %s",
-                            containerName, remoteFilePath, file.getAbsolutePath())
-                    );
-                    AzureManager.getInstance().download(containerName, remoteFilePath, file);
-                }
-
+                // requested artifact is identified by its checksum so the same build is downloaded once
+                String checksum = blobProperties.getContentMd5() != null ? Base64.encodeBase64String(blobProperties.getContentMd5())
+                        : blobProperties.getETag();
+                LOGGER.info(String.format("Following data was extracted: container: %s, remotePath: %s, checksum: %s",
+                        containerName, remoteFilePath, checksum));
+                ArtifactCache cache = new ArtifactCache(new File(azureLocalStorage), Configuration.getInt(Parameter.ARTIFACT_DOWNLOAD_THREADS),
+                        ArtifactCache.DEFAULT_CHUNK_SIZE, Configuration.getLong(Parameter.ARTIFACT_CACHE_MAX_SIZE) * 1024 * 1024);
+                file = cache.get(fileName, checksum,
+                        target -> AzureManager.getInstance().download(containerName, remoteFilePath, target));
             } catch (Exception exception) {
                 LOGGER.error("Azure app path update exception detected!", exception);
             }
@@ -942,7 +963,19 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
             Label.attachToTestRun(SpecialKeywords.QTEST_PROJECT_ID, qtestProject);
         }
     }
-    
+
+    private void logExceptionStatistics() {
+        // the most frequent driver failures which were neither reported by listener nor captured
+        Map<String, Long> ignored = DriverListener.getIgnoredExceptions().getHits();
+        if (!ignored.isEmpty()) {
+            LOGGER.info("Exceptions ignored by driver listener: " + ignored);
+        }
+        Map<String, Long> excluded = Screenshot.getExclusions().getHits();
+        if (!excluded.isEmpty()) {
+            LOGGER.info("Exceptions excluded from screenshots: " + excluded);
+        }
+    }
+
     private String takeScreenshot(ITestResult result, String msg) {
         String screenId = "";
 
@@ -996,6 +1029,8 @@ public class CarinaListener extends AbstractTestListener implements ISuiteListen
             LOGGER.debug("Running shutdown hook");
             if (!Configuration.getBoolean(Parameter.FORCIBLY_DISABLE_DRIVER_QUIT)) {
                 quitAllDriversOnHook();
+                DriverWarmPool.shutdown();
+                ProxyPool.shutdown();
             }
         }
 
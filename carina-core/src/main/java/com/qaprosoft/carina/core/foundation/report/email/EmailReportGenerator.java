@@ -16,7 +16,12 @@
 package com.qaprosoft.carina.core.foundation.report.email;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -86,8 +91,14 @@ public class EmailReportGenerator {
     private static boolean INCLUDE_FAIL = R.EMAIL.getBoolean("include_fail");
     private static boolean INCLUDE_SKIP = R.EMAIL.getBoolean("include_skip");
 
-    private String emailBody = CONTAINER;
-    private StringBuilder testResults = null;
+    private final String title;
+    private final String url;
+    private final String version;
+    private final String device;
+    private final String browser;
+    private final String finishDate;
+    private final List<TestResultItem> testResultItems;
+    private final List<String> createdItems;
 
     private int passCount = 0;
     private int failCount = 0;
@@ -95,49 +106,117 @@ public class EmailReportGenerator {
 
     public EmailReportGenerator(String title, String url, String version, String device, String browser, String finishDate,
             List<TestResultItem> testResultItems, List<String> createdItems) {
+        this.title = title;
+        this.url = url;
+        this.version = version;
+        this.device = device;
+        this.browser = browser;
+        this.finishDate = finishDate;
+        this.testResultItems = testResultItems;
+        this.createdItems = createdItems;
+
+        for (TestResultItem testResultItem : testResultItems) {
+            count(testResultItem);
+        }
+    }
+
+    public String getEmailBody() {
+        StringWriter emailBody = new StringWriter();
+        try {
+            writeEmailBody(emailBody);
+        } catch (IOException e) {
+            // not possible for StringWriter
+            throw new UncheckedIOException(e);
+        }
+        return emailBody.toString();
+    }
+
+    /**
+     * Writes email body row by row so the whole report is never kept in memory.
+     * 
+     * @param writer Writer
+     * @throws IOException if report can't be written
+     */
+    public void writeEmailBody(Writer writer) throws IOException {
+        int rows = CONTAINER.indexOf(RESULTS_PLACEHOLDER);
+        if (rows < 0) {
+            writer.write(fillPlaceholders(CONTAINER));
+            return;
+        }
+        writer.write(fillPlaceholders(CONTAINER.substring(0, rows)));
+        writeTestResultsList(writer);
+        writer.write(fillPlaceholders(CONTAINER.substring(rows + RESULTS_PLACEHOLDER.length())));
+    }
+
+    private String fillPlaceholders(String template) {
+        String emailBody = template;
         emailBody = emailBody.replace(TITLE_PLACEHOLDER, title);
         emailBody = emailBody.replace(ENV_PLACEHOLDER, url);
         emailBody = emailBody.replace(DEVICE_PLACEHOLDER, device);
         emailBody = emailBody.replace(VERSION_PLACEHOLDER, version);
         emailBody = emailBody.replace(BROWSER_PLACEHOLDER, browser);
         emailBody = emailBody.replace(FINISH_DATE_PLACEHOLDER, finishDate);
-        emailBody = emailBody.replace(RESULTS_PLACEHOLDER, getTestResultsList(testResultItems));
         emailBody = emailBody.replace(PASS_COUNT_PLACEHOLDER, String.valueOf(passCount));
         emailBody = emailBody.replace(FAIL_COUNT_PLACEHOLDER, String.valueOf(failCount));
         emailBody = emailBody.replace(SKIP_COUNT_PLACEHOLDER, String.valueOf(skipCount));
         emailBody = emailBody.replace(PASS_RATE_PLACEHOLDER, String.valueOf(getSuccessRate()));
-        emailBody = emailBody.replace(CREATED_ITEMS_LIST_PLACEHOLDER, getCreatedItemsList(createdItems));
-        
+        if (emailBody.contains(CREATED_ITEMS_LIST_PLACEHOLDER)) {
+            emailBody = emailBody.replace(CREATED_ITEMS_LIST_PLACEHOLDER, getCreatedItemsList(createdItems));
+        }
+
         // Cucumber section
-        emailBody = emailBody.replace(CUCUMBER_RESULTS_PLACEHOLDER, getCucumberResultsHTML());
+        if (emailBody.contains(CUCUMBER_RESULTS_PLACEHOLDER)) {
+            emailBody = emailBody.replace(CUCUMBER_RESULTS_PLACEHOLDER, getCucumberResultsHTML());
+        }
 
         // Artifacts section
-        emailBody = emailBody.replace(ARTIFACTS_RESULTS_PLACEHOLDER, getArtifactsLinkHTML());
-    }
-
-    public String getEmailBody() {
+        if (emailBody.contains(ARTIFACTS_RESULTS_PLACEHOLDER)) {
+            emailBody = emailBody.replace(ARTIFACTS_RESULTS_PLACEHOLDER, getArtifactsLinkHTML());
+        }
         return emailBody;
     }
 
-    private String getTestResultsList(List<TestResultItem> testResultItems) {
+    private void writeTestResultsList(Writer writer) throws IOException {
+        List<TestResultItem> testResultItems = this.testResultItems;
         if (testResultItems.size() > 0) {
             if (Configuration.getBoolean(Parameter.RESULT_SORTING)) {
 
                 // TODO: identify way to synch config failure with testNG method
+                // collected results are shared read-only snapshot so sort a copy
+                testResultItems = new ArrayList<TestResultItem>(testResultItems);
                 Collections.sort(testResultItems, new EmailReportItemComparator());
             }
 
             String packageName = "";
-            testResults = new StringBuilder();
             for (TestResultItem testResultItem : testResultItems) {
                 if (!testResultItem.isConfig() && !packageName.equals(testResultItem.getPack())) {
                     packageName = testResultItem.getPack();
-                    testResults.append(PACKAGE_TR.replace(PACKAGE_NAME_PLACEHOLDER, packageName));
+                    writer.write(PACKAGE_TR.replace(PACKAGE_NAME_PLACEHOLDER, packageName));
                 }
-                testResults.append(getTestRow(testResultItem));
+                writer.write(getTestRow(testResultItem));
             }
         }
-        return testResults != null ? testResults.toString() : "";
+    }
+
+    private void count(TestResultItem testResultItem) {
+        switch (testResultItem.getResult()) {
+        case FAIL:
+            failCount++;
+            break;
+        case SKIP:
+            if (!testResultItem.isConfig()) {
+                skipCount++;
+            }
+            break;
+        case PASS:
+            if (!testResultItem.isConfig()) {
+                passCount++;
+            }
+            break;
+        default:
+            // do nothing
+            break;
+        }
     }
 
     private String getTestRow(TestResultItem testResultItem) {
@@ -177,7 +256,6 @@ public class EmailReportGenerator {
                     result = result.replace(SCREENSHOTS_URL_PLACEHOLDER, testResultItem.getLinkToScreenshots());
                 }
             }
-            failCount++;
         }
 
         if (testResultItem.getResult().name().equalsIgnoreCase("SKIP")) {
@@ -204,12 +282,10 @@ public class EmailReportGenerator {
                         result = result.replace(SCREENSHOTS_URL_PLACEHOLDER, testResultItem.getLinkToScreenshots());
                     }
                 }
-                skipCount++;
             }
         }
         if (testResultItem.getResult().name().equalsIgnoreCase("PASS")) {
             if (!testResultItem.isConfig()) {
-                passCount++;
                 if (INCLUDE_PASS) {
                     result = testResultItem.getLinkToScreenshots() != null && !"".equals(testResultItem.getLinkToScreenshots()) ? PASS_TEST_LOG_DEMO_TR : PASS_TEST_LOG_TR;
                     result = result.replace(TEST_NAME_PLACEHOLDER, testResultItem.getTest());
@@ -258,6 +334,20 @@ public class EmailReportGenerator {
                 break;
             }
         }
+        return getSuiteResult(passed, failed, failedKnownIssue, skipped, skipped_already_passed);
+    }
+
+    /**
+     * Returns suite result using number of results per status updated by {@link EmailReportItemCollector} during the run.
+     * 
+     * @return TestResultType
+     */
+    public static TestResultType getSuiteResult() {
+        return getSuiteResult(EmailReportItemCollector.getCount(TestResultType.PASS), EmailReportItemCollector.getCount(TestResultType.FAIL), 0,
+                EmailReportItemCollector.getCount(TestResultType.SKIP), 0);
+    }
+
+    private static TestResultType getSuiteResult(int passed, int failed, int failedKnownIssue, int skipped, int skipped_already_passed) {
         TestResultType result;
         if (passed == 0 && failed == 0 && skipped == 0 && skipped_already_passed > 0) {
             result = TestResultType.SKIP_ALL_ALREADY_PASSED; // it was re-run of the suite where all tests passed during previous run
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report.email;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.report.ReportContext;
+import com.qaprosoft.carina.core.foundation.report.TestResultItem;
+import com.qaprosoft.carina.core.foundation.report.TestResultType;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+public class EmailReportGeneratorTest {
+
+    private static final String REPORT_DIRECTORY = "target/email-report-test";
+
+    private List<TestResultItem> items;
+
+    @BeforeMethod
+    public void setUp() {
+        R.CONFIG.put("project_report_directory", REPORT_DIRECTORY, true);
+        R.CONFIG.put("max_screen_history", "0", true);
+        R.CONFIG.put("html_report_gzip", "false", true);
+        R.CONFIG.put("result_sorting", "false", true);
+
+        items = new ArrayList<>();
+        items.add(new TestResultItem("com.demo.web", "testLogin", "", TestResultType.PASS, null, "login.log", null));
+        items.add(new TestResultItem("com.demo.api", "testOrder", "", TestResultType.FAIL, null, "order.log", "expected <1> but was <2>"));
+        items.add(new TestResultItem("com.demo.api", "testRefund", "", TestResultType.SKIP, null, "refund.log", "depends on testOrder"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test()
+    public void testWriteEmailBody() throws IOException {
+        StringWriter writer = new StringWriter();
+        newGenerator(items).writeEmailBody(writer);
+        String body = writer.toString();
+
+        Assert.assertTrue(body.contains("Demo suite"), "Title is absent");
+        Assert.assertFalse(body.contains("${"), "Not all placeholders are filled: " + body);
+        Assert.assertTrue(body.contains("expected &lt;1&gt; but was &lt;2&gt;"), "Fail reason isn't escaped");
+        Assert.assertTrue(body.contains("login.log") && body.contains("order.log") && body.contains("refund.log"), "Log links are absent");
+
+        // rows are written in the collected order, package row precedes each group
+        int web = body.indexOf("com.demo.web");
+        int login = body.indexOf("testLogin");
+        int api = body.indexOf("com.demo.api");
+        int order = body.indexOf("testOrder");
+        int refund = body.indexOf("testRefund");
+        Assert.assertTrue(web >= 0 && web < login && login < api && api < order && order < refund, "Wrong rows order");
+        Assert.assertEquals(body.indexOf("com.demo.api"), body.lastIndexOf("com.demo.api"), "Package row is duplicated");
+    }
+
+    @Test()
+    public void testEmailBodyIsStreamed() throws IOException {
+        AtomicInteger writes = new AtomicInteger();
+        StringWriter writer = new StringWriter() {
+            @Override
+            public void write(String str) {
+                writes.incrementAndGet();
+                super.write(str);
+            }
+        };
+        EmailReportGenerator generator = newGenerator(items);
+        generator.writeEmailBody(writer);
+
+        // header, package and test rows, footer
+        Assert.assertEquals(writes.get(), 2 + 2 + items.size());
+        Assert.assertEquals(writer.toString(), generator.getEmailBody());
+    }
+
+    @Test()
+    public void testSortingKeepsCollectedResults() throws IOException {
+        R.CONFIG.put("result_sorting", "true", true);
+        List<TestResultItem> collected = new ArrayList<>(items);
+
+        newGenerator(collected).writeEmailBody(new StringWriter());
+
+        Assert.assertEquals(collected, items, "Collected results are modified by sorting");
+    }
+
+    @Test()
+    public void testGenerateHtmlReport() throws IOException {
+        EmailReportGenerator generator = newGenerator(items);
+        ReportContext.generateHtmlReport(generator::writeEmailBody);
+
+        File report = new File(ReportContext.getBaseDir(), SpecialKeywords.HTML_REPORT);
+        Assert.assertTrue(report.exists(), "Report isn't shared with the run folder");
+        Assert.assertEquals(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8), generator.getEmailBody());
+    }
+
+    private static EmailReportGenerator newGenerator(List<TestResultItem> items) {
+        return new EmailReportGenerator("Demo suite", "http://demo", "1.0", "", "chrome", "10:00:00 2020-01-01", items,
+                Arrays.asList("item-1"));
+    }
+
+}
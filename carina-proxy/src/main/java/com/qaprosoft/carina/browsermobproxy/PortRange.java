@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * PortRange - lock-free leasing of ports from the range declared as 'port_from:port_to'.
+ *
+ * Every port is a bit in array of words updated by compare-and-set, so threads taking and returning ports never
+ * block each other and lease doesn't scan map entries.
+ */
+public final class PortRange {
+
+    private final int from;
+    private final int size;
+    private final AtomicLongArray words;
+
+    public PortRange(int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid ports range: " + from + ":" + to);
+        }
+        this.from = from;
+        this.size = to - from + 1;
+        this.words = new AtomicLongArray((size + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * @param range
+     *            String in format 'port_from:port_to'
+     * @return PortRange
+     */
+    public static PortRange parse(String range) {
+        try {
+            String[] ports = range.split(":");
+            return new PortRange(Integer.parseInt(ports[0].trim()), Integer.parseInt(ports[1].trim()));
+        } catch (Exception e) {
+            throw new RuntimeException("Please specify BROWSERMOB_PORTS_RANGE in format 'port_from:port_to'");
+        }
+    }
+
+    /**
+     * Take the first available port.
+     *
+     * @return int port or -1 if all ports are busy
+     */
+    public int lease() {
+        for (int i = 0; i < words.length(); i++) {
+            long mask = getMask(i);
+            while (true) {
+                long word = words.get(i);
+                long free = ~word & mask;
+                if (free == 0) {
+                    break;
+                }
+                long bit = Long.lowestOneBit(free);
+                if (words.compareAndSet(i, word, word | bit)) {
+                    return from + i * Long.SIZE + Long.numberOfTrailingZeros(bit);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Take exact port.
+     *
+     * @param port
+     *            int
+     * @return boolean true if port belongs to the range and was available
+     */
+    public boolean lease(int port) {
+        if (!contains(port)) {
+            return false;
+        }
+        int i = (port - from) / Long.SIZE;
+        long bit = 1L << ((port - from) % Long.SIZE);
+        while (true) {
+            long word = words.get(i);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(i, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Make port available again.
+     *
+     * @param port
+     *            int
+     * @return boolean true if port belongs to the range and was busy
+     */
+    public boolean release(int port) {
+        if (!contains(port)) {
+            return false;
+        }
+        int i = (port - from) / Long.SIZE;
+        long bit = 1L << ((port - from) % Long.SIZE);
+        while (true) {
+            long word = words.get(i);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(i, word, word & ~bit)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean contains(int port) {
+        return port >= from && port < from + size;
+    }
+
+    public boolean isLeased(int port) {
+        return contains(port) && (words.get((port - from) / Long.SIZE) & (1L << ((port - from) % Long.SIZE))) != 0;
+    }
+
+    /**
+     * @return int number of available ports
+     */
+    public int getAvailable() {
+        int busy = 0;
+        for (int i = 0; i < words.length(); i++) {
+            busy += Long.bitCount(words.get(i));
+        }
+        return size - busy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private long getMask(int word) {
+        int bits = Math.min(Long.SIZE, size - word * Long.SIZE);
+        return bits == Long.SIZE ? -1L : (1L << bits) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return from + ":" + (from + size - 1);
+    }
+
+}
@@ -0,0 +1,514 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
+import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+
+import net.lightbody.bmp.BrowserMobProxy;
+import net.lightbody.bmp.proxy.CaptureType;
+
+/**
+ * ProxyManager - lifecycle of BrowserMob proxies started by {@link ProxyPool}.
+ *
+ * Proxies are started without global lock, ports are leased from lock-free {@link PortRange}. When browsermob_pool_size
+ * is declared, that number of proxies is pre-started and reused by the next tests: HAR, headers, black/white lists,
+ * rewrite rules, latency, bandwidth limits, host remappings and auto authorizations are reset in between. Proxy with
+ * filters or host name resolver added by test, or with changed chained proxy, is stopped instead of reuse as BrowserMob
+ * can't revert them. Other proxies are stopped in background and their ports become available only after stop is
+ * finished. Every started proxy has its own {@link ProxyHealth} metrics.
+ */
+public final class ProxyManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int HEALTH_CHECK_TIMEOUT = 1000;
+
+    private static volatile PortRange ports;
+
+    private static final Deque<PooledProxy> idleProxies = new ConcurrentLinkedDeque<>();
+    private static final ConcurrentHashMap<BrowserMobProxy, PooledProxy> startedProxies = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, Future<?>> stoppingPorts = new ConcurrentHashMap<>();
+    private static final AtomicInteger startingProxies = new AtomicInteger();
+
+    private static ExecutorService executor;
+    private static volatile boolean stopped = false;
+
+    private ProxyManager() {
+    }
+
+    public static boolean isEnabled() {
+        return getSize() > 0 && !stopped;
+    }
+
+    /**
+     * Enable reuse again after {@link #shutdown()} of the previous suite.
+     */
+    static void resume() {
+        stopped = false;
+    }
+
+    private static int getSize() {
+        return Configuration.getInt(Parameter.BROWSERMOB_POOL_SIZE);
+    }
+
+    static PortRange getPorts() {
+        return ports;
+    }
+
+    static void setPorts(PortRange range) {
+        ports = range;
+    }
+
+    /**
+     * Take healthy idle proxy started for one of the ports.
+     *
+     * @param port
+     *            IntPredicate for the port requested on proxy start, 0 for dynamic port
+     * @return BrowserMobProxy or null if nothing suitable is in the pool
+     */
+    static BrowserMobProxy acquire(IntPredicate port) {
+        for (PooledProxy pooled : idleProxies) {
+            if (!port.test(pooled.health.port) || !idleProxies.removeFirstOccurrence(pooled)) {
+                continue;
+            }
+            if (isHealthy(pooled)) {
+                pooled.health.leases.incrementAndGet();
+                LOGGER.info("BrowserMob proxy was taken from the pool: " + pooled.health);
+                return pooled.proxy;
+            }
+            LOGGER.debug("Pooled proxy is not healthy and will be stopped: " + pooled.health);
+            stopAsync(pooled.proxy, pooled.health.port);
+        }
+        return null;
+    }
+
+    /**
+     * Start proxy on port. Previous proxy which is stopping on the same port is awaited.
+     *
+     * @param proxy
+     *            BrowserMobProxy
+     * @param port
+     *            int, 0 for dynamic port
+     * @param reusable
+     *            boolean true if proxy could be returned into the pool, false for custom registered proxies
+     */
+    static void start(BrowserMobProxy proxy, int port, boolean reusable) {
+        free(port);
+        LOGGER.info("Starting BrowserMob proxy...");
+        // TODO: [VD] confirmed with MB that restart was added just in case. Maybe comment/remove?
+        killProcessByPort(port);
+        long start = System.currentTimeMillis();
+        proxy.start(port);
+        ProxyHealth health = new ProxyHealth(port, proxy.getPort(), System.currentTimeMillis() - start);
+        health.leases.incrementAndGet();
+        startedProxies.put(proxy, new PooledProxy(proxy, health, reusable));
+        LOGGER.debug("BrowserMob proxy started: " + health);
+    }
+
+    /**
+     * Start reusable proxies in background until there are browsermob_pool_size of them either idle or used by tests.
+     *
+     * @param factory
+     *            ProxyFactory creating not started proxy and leasing port for it
+     */
+    static void prestart(ProxyFactory factory) {
+        while (isEnabled() && startingProxies.get() + getReusableCount() < getSize()) {
+            startingProxies.incrementAndGet();
+            getExecutor().submit(() -> {
+                int port = -1;
+                try {
+                    port = factory.getPort();
+                    BrowserMobProxy proxy = factory.create();
+                    start(proxy, port, true);
+                    PooledProxy pooled = startedProxies.get(proxy);
+                    // pre-started proxy is not leased yet
+                    pooled.health.leases.decrementAndGet();
+                    if (isEnabled()) {
+                        idleProxies.addLast(pooled);
+                    } else {
+                        stopAsync(proxy, port);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Unable to pre-start BrowserMob proxy" + (port < 0 ? "" : " on port " + port) + ": " + e.getMessage());
+                    LOGGER.debug(e.getMessage(), e);
+                    if (port > 0) {
+                        releasePort(port);
+                    }
+                } finally {
+                    startingProxies.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * Return proxy into the pool or stop it in background.
+     *
+     * @param proxy
+     *            BrowserMobProxy
+     * @param port
+     *            int port leased for proxy, it is released after stop
+     */
+    static void release(BrowserMobProxy proxy, int port) {
+        PooledProxy pooled = startedProxies.get(proxy);
+        if (pooled == null) {
+            // proxy wasn't started by manager, for example custom registered one
+            stopAsync(proxy, port);
+            return;
+        }
+        // reset is done in place so the port is never reused by the same test thread before proxy is back in pool
+        if (pooled.reusable && isEnabled() && idleProxies.size() < getSize() && !isCustomized(pooled) && reset(pooled)) {
+            idleProxies.addLast(pooled);
+            LOGGER.debug("BrowserMob proxy returned into the pool: " + pooled.health);
+            return;
+        }
+        stopAsync(proxy, pooled.health.port);
+    }
+
+    /**
+     * Stop idle proxies, pending stops are awaited.
+     */
+    static void stopIdle() {
+        PooledProxy pooled;
+        while ((pooled = idleProxies.pollFirst()) != null) {
+            stopAsync(pooled.proxy, pooled.health.port);
+        }
+        awaitStops();
+    }
+
+    /**
+     * Disable reuse, stop idle proxies and wait for all background stops. Proxies used by tests at the moment are
+     * stopped on release.
+     */
+    public static void shutdown() {
+        stopped = true;
+        for (ProxyHealth health : getHealth()) {
+            LOGGER.info("BrowserMob proxy statistics: " + health);
+        }
+        stopIdle();
+    }
+
+    /**
+     * @return List of health metrics of the started and not stopped yet proxies
+     */
+    public static List<ProxyHealth> getHealth() {
+        List<ProxyHealth> health = new ArrayList<>();
+        for (PooledProxy pooled : startedProxies.values()) {
+            health.add(pooled.health);
+        }
+        return health;
+    }
+
+    /**
+     * @return int number of idle proxies ready for reuse
+     */
+    public static int getIdleCount() {
+        return idleProxies.size();
+    }
+
+    private static int getReusableCount() {
+        int count = 0;
+        for (PooledProxy pooled : startedProxies.values()) {
+            if (pooled.reusable) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void free(int port) {
+        if (port == 0) {
+            return;
+        }
+        // idle proxy keeps exact port bound, custom proxy could be started on it
+        for (PooledProxy pooled : idleProxies) {
+            if (pooled.health.actualPort == port && idleProxies.removeFirstOccurrence(pooled)) {
+                stopAsync(pooled.proxy, pooled.health.port);
+            }
+        }
+        await(stoppingPorts.get(port), port);
+    }
+
+    private static boolean isHealthy(PooledProxy pooled) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), pooled.proxy.getPort()), HEALTH_CHECK_TIMEOUT);
+            return true;
+        } catch (IOException e) {
+            pooled.health.failedChecks.incrementAndGet();
+            pooled.health.lastError = e.getMessage();
+            return false;
+        }
+    }
+
+    private static boolean isCustomized(PooledProxy pooled) {
+        BrowserMobProxy proxy = pooled.proxy;
+        if ((proxy instanceof ReusableProxyServer && ((ReusableProxyServer) proxy).isCustomized())
+                || !Objects.equals(proxy.getChainedProxy(), pooled.chainedProxy)) {
+            LOGGER.debug("BrowserMob proxy was customized by test and won't be reused: " + pooled.health);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean reset(PooledProxy pooled) {
+        try {
+            BrowserMobProxy proxy = pooled.proxy;
+            proxy.endHar();
+            proxy.setHarCaptureTypes(EnumSet.noneOf(CaptureType.class));
+            proxy.removeAllHeaders();
+            proxy.clearBlacklist();
+            proxy.disableWhitelist();
+            proxy.clearRewriteRules();
+            proxy.setLatency(0, TimeUnit.MILLISECONDS);
+            // 0 means unlimited bandwidth
+            proxy.setReadBandwidthLimit(0);
+            proxy.setWriteBandwidthLimit(0);
+            proxy.getHostNameResolver().clearHostRemappings();
+            if (proxy instanceof ReusableProxyServer) {
+                ((ReusableProxyServer) proxy).stopAutoAuthorizations();
+            }
+            pooled.health.resets.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            LOGGER.debug("Unable to reset pooled BrowserMob proxy: " + e.getMessage());
+            pooled.health.failedResets.incrementAndGet();
+            pooled.health.lastError = e.getMessage();
+            return false;
+        }
+    }
+
+    private static void stopAsync(BrowserMobProxy proxy, int port) {
+        PooledProxy pooled = startedProxies.remove(proxy);
+        int actualPort = pooled != null ? pooled.health.actualPort : proxy.getPort();
+        Future<?> future = getExecutor().submit(() -> {
+            stop(proxy);
+            releasePort(port);
+        });
+        if (actualPort > 0) {
+            // the previous completed stop for the port is just replaced
+            stoppingPorts.put(actualPort, future);
+        }
+    }
+
+    private static void stop(BrowserMobProxy proxy) {
+        // isStarted returns true even if proxy was already stopped
+        if (proxy.isStarted()) {
+            try {
+                LOGGER.debug("stopProxy starting...");
+                proxy.stop();
+            } catch (IllegalStateException e) {
+                LOGGER.info("Seems like proxy was already stopped.");
+                LOGGER.info(e.getMessage());
+            } catch (Exception e) {
+                LOGGER.debug("Error message detected during proxy stop: " + e.getMessage(), e);
+            } finally {
+                LOGGER.debug("stopProxy finished...");
+            }
+        }
+    }
+
+    private static void releasePort(int port) {
+        PortRange range = ports;
+        if (range != null && range.release(port)) {
+            LOGGER.info("Setting BrowserMob proxy port " + port + " to available state");
+        }
+    }
+
+    private static void awaitStops() {
+        for (Integer port : new ArrayList<>(stoppingPorts.keySet())) {
+            await(stoppingPorts.remove(port), port);
+        }
+    }
+
+    private static void await(Future<?> future, int port) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(Configuration.getInt(Parameter.EXPLICIT_TIMEOUT), TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.warn("Unable to wait for BrowserMob proxy stop on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "browsermob-proxy-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Method to kill process by port. It is used before start of new proxy instance
+     * 
+     * @param port int
+     */
+    private static void killProcessByPort(int port) {
+        if (port == 0) {
+            //do nothing as it is default dynamic browsermob proxy
+            return;
+        }
+        LOGGER.info(String.format("Process on port %d will be closed.", port));
+
+        //TODO: make OS independent or remove completely
+        try {
+            List<?> output = new AdbExecutor().execute(String.format("lsof -ti :%d", port).split(" "));
+            LOGGER.debug("proxy process before kill: " + StringUtils.join(output, ""));
+            
+            output = new AdbExecutor().execute(String.format("lsof -ti :%d | xargs kill -9", port).split(" "));
+            LOGGER.debug("proxy process kill output: " + StringUtils.join(output, ""));
+            
+            output = new AdbExecutor().execute(String.format("lsof -ti :%d", port).split(" "));
+            LOGGER.debug("proxy process after kill: " + StringUtils.join(output, ""));
+            
+            CommonUtils.pause(1);
+            
+            output = new AdbExecutor().execute(String.format("lsof -ti :%d", port).split(" "));
+            LOGGER.debug("proxy process after kill and 2 sec pause: " + StringUtils.join(output, ""));
+            
+        } catch (Exception e) {
+            LOGGER.error("Unable to kill process by lsof utility: " + e.getMessage());
+            LOGGER.debug(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Source of pre-started proxies.
+     */
+    interface ProxyFactory {
+        /**
+         * @return int leased port for the next proxy, 0 for dynamic port
+         */
+        int getPort();
+
+        BrowserMobProxy create();
+    }
+
+    /**
+     * ProxyHealth - metrics of single started proxy.
+     */
+    public static final class ProxyHealth {
+        private final int port;
+        private final int actualPort;
+        private final long startTime;
+        private final AtomicInteger leases = new AtomicInteger();
+        private final AtomicInteger resets = new AtomicInteger();
+        private final AtomicInteger failedResets = new AtomicInteger();
+        private final AtomicInteger failedChecks = new AtomicInteger();
+        private volatile String lastError;
+
+        private ProxyHealth(int port, int actualPort, long startTime) {
+            this.port = port;
+            this.actualPort = actualPort;
+            this.startTime = startTime;
+        }
+
+        /**
+         * @return int port requested on start, 0 for dynamic port
+         */
+        public int getPort() {
+            return port;
+        }
+
+        public int getActualPort() {
+            return actualPort;
+        }
+
+        /**
+         * @return long proxy start duration in ms
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return int number of tests which used proxy
+         */
+        public int getLeases() {
+            return leases.get();
+        }
+
+        public int getResets() {
+            return resets.get();
+        }
+
+        public int getFailedResets() {
+            return failedResets.get();
+        }
+
+        public int getFailedChecks() {
+            return failedChecks.get();
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        @Override
+        public String toString() {
+            return "ProxyHealth [port=" + actualPort + ", startTime=" + startTime + "ms, leases=" + leases + ", resets=" + resets
+                    + ", failedResets=" + failedResets + ", failedChecks=" + failedChecks
+                    + (lastError == null ? "" : ", lastError=" + lastError) + "]";
+        }
+    }
+
+    private static class PooledProxy {
+        private final BrowserMobProxy proxy;
+        private final ProxyHealth health;
+        private final boolean reusable;
+        // chained proxy can't be reset after start
+        private final InetSocketAddress chainedProxy;
+
+        private PooledProxy(BrowserMobProxy proxy, ProxyHealth health, boolean reusable) {
+            this.proxy = proxy;
+            this.health = health;
+            this.reusable = reusable;
+            this.chainedProxy = proxy.getChainedProxy();
+        }
+    }
+
+}
@@ -17,11 +17,8 @@ package com.qaprosoft.carina.browsermobproxy;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Collections;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -30,8 +27,6 @@ import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.NetworkUtil;
 import com.qaprosoft.carina.core.foundation.utils.R;
-import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
-import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
 
 import net.lightbody.bmp.BrowserMobProxy;
 import net.lightbody.bmp.BrowserMobProxyServer;
@@ -40,26 +35,16 @@ public final class ProxyPool {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private static ConcurrentHashMap<Long, Integer> proxyPortsByThread = new ConcurrentHashMap<Long, Integer>();
     
-    /**
-     * map for storing of available ports range and their availability
-     */
-    private static ConcurrentHashMap<Integer, Boolean> proxyPortsFromRange = new ConcurrentHashMap<Integer, Boolean>();
-
-    
 	static {
 		initProxyPortsRange();
 	}
 	
 	public static void initProxyPortsRange() {
 		if (!Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE).isEmpty()) {
-			try {
-				String[] ports = Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE).split(":");
-				for (int i = Integer.valueOf(ports[0]); i <= Integer.valueOf(ports[1]); i++) {
-					proxyPortsFromRange.put(i, true);
-				}
-			} catch (Exception e) {
-				throw new RuntimeException("Please specify BROWSERMOB_PORTS_RANGE in format 'port_from:port_to'");
-			}
+			// available ports are tracked by lock-free bitset
+			ProxyManager.setPorts(PortRange.parse(Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE)));
+		} else {
+			ProxyManager.setPorts(null);
 		}
 	}
     
@@ -71,7 +56,7 @@ public final class ProxyPool {
      * 
      */
     public static BrowserMobProxy createProxy() {
-        BrowserMobProxyServer proxy = new BrowserMobProxyServer();
+        BrowserMobProxyServer proxy = new ReusableProxyServer();
         proxy.setTrustAllServers(true);
         //System.setProperty("jsse.enableSNIExtension", "false");
         
@@ -154,13 +139,16 @@ public final class ProxyPool {
 	public static int getProxyPortFromConfig() {
 		if (!Configuration.get(Parameter.BROWSERMOB_PORT).isEmpty())
 			return Configuration.getInt(Parameter.BROWSERMOB_PORT);
-		else if (!Configuration.get(Parameter.BROWSERMOB_PORTS_RANGE).isEmpty()) {
-			for (Map.Entry<Integer, Boolean> pair : proxyPortsFromRange.entrySet()) {
-				if (pair.getValue()) {
-					LOGGER.info("Making BrowserMob proxy port busy: " + pair.getKey());
-					pair.setValue(false);
-					return pair.getKey().intValue();
-				}
+		else if (ProxyManager.getPorts() != null) {
+			int port = ProxyManager.getPorts().lease();
+			if (port < 0 && ProxyManager.getIdleCount() > 0) {
+				// ports could be kept by idle pooled proxies
+				ProxyManager.stopIdle();
+				port = ProxyManager.getPorts().lease();
+			}
+			if (port >= 0) {
+				LOGGER.info("Making BrowserMob proxy port busy: " + port);
+				return port;
 			}
 			throw new RuntimeException(
 					"All ports from Parameter.BROWSERMOB_PORTS_RANGE are currently busy. Please change execution thread count");
@@ -171,16 +159,29 @@ public final class ProxyPool {
 
     // TODO: investigate possibility to return interface to support JettyProxy
     /**
-     * start BrowserMobProxy Server
+     * start BrowserMobProxy Server or take idle one from the pool
      * 
      * @return BrowserMobProxy
      * 
      */
-    public static synchronized BrowserMobProxy startProxy() {
+    public static BrowserMobProxy startProxy() {
+        long threadId = Thread.currentThread().getId();
+        if (proxyPortsByThread.containsKey(threadId)) {
+            return startProxy(proxyPortsByThread.get(threadId));
+        }
+        if (Configuration.getBoolean(Parameter.BROWSERMOB_PROXY) && !proxies.containsKey(threadId)) {
+            BrowserMobProxy proxy = ProxyManager.acquire(ProxyPool::isConfiguredPort);
+            // start replacement proxies ahead of the next demand
+            prestartProxies();
+            if (proxy != null) {
+                proxies.put(threadId, proxy);
+                return proxy;
+            }
+        }
         return startProxy(getProxyPortFromConfig());
     }
     
-    public static synchronized BrowserMobProxy startProxy(int proxyPort) {
+    public static BrowserMobProxy startProxy(int proxyPort) {
         if (!Configuration.getBoolean(Parameter.BROWSERMOB_PROXY)) {
             LOGGER.debug("Proxy is disabled.");
             return null;
@@ -197,16 +198,20 @@ public final class ProxyPool {
         }
 
         // case when proxy was already instantiated but port doesn't correspond to current device
+        boolean created = false;
         if (null == proxy || proxy.getPort() != proxyPort) {
-            proxy = ProxyPool.createProxy();
+            final int port = proxyPort;
+            proxy = ProxyManager.acquire(p -> p == port);
+            if (proxy == null) {
+                proxy = ProxyPool.createProxy();
+                created = true;
+            }
             proxies.put(Thread.currentThread().getId(), proxy);
         }
         
         if (!proxy.isStarted()) {
-            LOGGER.info("Starting BrowserMob proxy...");
-        	// TODO: [VD] confirmed with MB that restart was added just in case. Maybe comment/remove?
-            killProcessByPort(proxyPort);
-            proxy.start(proxyPort);
+            // custom registered proxies are never reused by other tests
+            ProxyManager.start(proxy, proxyPort, created);
         } else {
             LOGGER.info("BrowserMob proxy is already started on port " + proxy.getPort());
         }
@@ -214,14 +219,45 @@ public final class ProxyPool {
         return proxy;
     }
     
-    private static void setProxyPortToAvailable(long threadId) {
-		if (proxyPortsByThread.get(threadId) != null) {
-			if (proxyPortsFromRange.get(proxyPortsByThread.get(threadId)) != null) {
-				LOGGER.info("Setting BrowserMob proxy port " + proxyPortsByThread.get(threadId) + " to available state");
-				proxyPortsFromRange.put(proxyPortsByThread.get(threadId), true);
-				proxyPortsByThread.remove(threadId);
-			}
-		}
+    /**
+     * Start idle proxies in background when browsermob_pool_size is declared so tests get started proxy immediately.
+     * Reuse disabled by {@link #shutdown()} of the previous suite is enabled again.
+     */
+    public static void prestartProxies() {
+        ProxyManager.resume();
+        if (!Configuration.getBoolean(Parameter.BROWSERMOB_PROXY) || !ProxyManager.isEnabled()) {
+            return;
+        }
+        if (!Configuration.get(Parameter.BROWSERMOB_PORT).isEmpty() && Configuration.getInt(Parameter.BROWSERMOB_PORT) != 0) {
+            LOGGER.debug("BrowserMob proxies aren't pre-started for static port: " + Configuration.get(Parameter.BROWSERMOB_PORT));
+            return;
+        }
+        ProxyManager.prestart(new ProxyManager.ProxyFactory() {
+            @Override
+            public int getPort() {
+                return getProxyPortFromConfig();
+            }
+
+            @Override
+            public BrowserMobProxy create() {
+                return createProxy();
+            }
+        });
+    }
+
+    /**
+     * Stop all proxies including idle pooled ones and disable reuse until the next {@link #prestartProxies()}.
+     */
+    public static void shutdown() {
+        stopAllProxies();
+        ProxyManager.shutdown();
+    }
+
+    private static boolean isConfiguredPort(int port) {
+        if (!Configuration.get(Parameter.BROWSERMOB_PORT).isEmpty()) {
+            return port == Configuration.getInt(Parameter.BROWSERMOB_PORT);
+        }
+        return ProxyManager.getPorts() != null && ProxyManager.getPorts().contains(port);
     }
 
     // https://github.com/lightbody/browsermob-proxy/issues/264 'started' flag is not set to false after stopping BrowserMobProxyServer
@@ -243,6 +279,7 @@ public final class ProxyPool {
         for (Long threadId : Collections.list(proxies.keys())) {
             stopProxyByThread(threadId);
         }
+        ProxyManager.stopIdle();
     }
     
     /**
@@ -250,26 +287,12 @@ public final class ProxyPool {
      * @param threadId long
      */
     private static void stopProxyByThread(long threadId) {
-        if (proxies.containsKey(threadId)) {
-            setProxyPortToAvailable(threadId);
-            BrowserMobProxy proxy = proxies.get(threadId);
-            if (proxy != null) {
-                LOGGER.debug("Found registered proxy by thread: " + threadId);
-
-                // isStarted returns true even if proxy was already stopped
-                if (proxy.isStarted()) {
-                    try {
-                        LOGGER.debug("stopProxy starting...");                        
-                        proxy.stop();
-                    } catch (IllegalStateException e) {
-                        LOGGER.info("Seems like proxy was already stopped.");
-                        LOGGER.info(e.getMessage());
-                    } finally {
-                        LOGGER.debug("stopProxy finished...");
-                    }
-                }
-            }
-            proxies.remove(threadId);
+        BrowserMobProxy proxy = proxies.remove(threadId);
+        Integer port = proxyPortsByThread.remove(threadId);
+        if (proxy != null) {
+            LOGGER.debug("Found registered proxy by thread: " + threadId);
+            // proxy is returned into the pool or stopped in background so driver quit isn't blocked
+            ProxyManager.release(proxy, port != null ? port : 0);
         }
     }
 
@@ -334,38 +357,4 @@ public final class ProxyPool {
         LOGGER.info("Register custom proxy with thread: " + threadId);
         proxies.put(threadId, proxy);
     }
-    
-    /**
-     * Method to kill process by port. It is used before start of new proxy instance
-     * 
-     * @param port int
-     */
-    private static void killProcessByPort(int port) {
-        if (port == 0) {
-            //do nothing as it is default dynamic browsermob proxy
-            return;
-        }
-        LOGGER.info(String.format("Process on port %d will be closed.", port));
-
-        //TODO: make OS independent or remove completely
-        try {
-            List<?> output = new AdbExecutor().execute(String.format("lsof -ti :%d", port).split(" "));
-            LOGGER.debug("proxy process before kill: " + StringUtils.join(output, ""));
-            
-            output = new AdbExecutor().execute(String.format("lsof -ti :%d | xargs kill -9", port).split(" "));
-            LOGGER.debug("proxy process kill output: " + StringUtils.join(output, ""));
-            
-            output = new AdbExecutor().execute(String.format("lsof -ti :%d", port).split(" "));
-            LOGGER.debug("proxy process after kill: " + StringUtils.join(output, ""));
-            
-            CommonUtils.pause(1);
-            
-            output = new AdbExecutor().execute(String.format("lsof -ti :%d", port).split(" "));
-            LOGGER.debug("proxy process after kill and 2 sec pause: " + StringUtils.join(output, ""));
-            
-        } catch (Exception e) {
-            LOGGER.error("Unable to kill process by lsof utility: " + e.getMessage());
-            LOGGER.debug(e.getMessage(), e);
-        }
-    }
 }
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.net.InetAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.littleshoot.proxy.HttpFiltersSource;
+
+import net.lightbody.bmp.BrowserMobProxyServer;
+import net.lightbody.bmp.filters.RequestFilter;
+import net.lightbody.bmp.filters.ResponseFilter;
+import net.lightbody.bmp.proxy.auth.AuthType;
+import net.lightbody.bmp.proxy.dns.AdvancedHostResolver;
+
+/**
+ * ReusableProxyServer - BrowserMob proxy which tracks test customizations that can't be reverted through BrowserMob
+ * API. Filters and host name resolvers can't be removed, so a proxy customized this way after start is stopped instead
+ * of being returned into {@link ProxyManager} pool. Auto authorizations are remembered to be stopped on reset.
+ */
+final class ReusableProxyServer extends BrowserMobProxyServer {
+
+    private volatile boolean started = false;
+    private volatile boolean customized = false;
+    private final Set<String> authorizedDomains = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void start(int port, InetAddress clientBindAddress, InetAddress serverBindAddress) {
+        super.start(port, clientBindAddress, serverBindAddress);
+        // filters registered by BrowserMob itself during start aren't customizations
+        started = true;
+    }
+
+    @Override
+    public void addFirstHttpFilterFactory(HttpFiltersSource filterFactory) {
+        customize();
+        super.addFirstHttpFilterFactory(filterFactory);
+    }
+
+    @Override
+    public void addLastHttpFilterFactory(HttpFiltersSource filterFactory) {
+        customize();
+        super.addLastHttpFilterFactory(filterFactory);
+    }
+
+    @Override
+    public void addRequestFilter(RequestFilter filter) {
+        customize();
+        super.addRequestFilter(filter);
+    }
+
+    @Override
+    public void addResponseFilter(ResponseFilter filter) {
+        customize();
+        super.addResponseFilter(filter);
+    }
+
+    @Override
+    public void setHostNameResolver(AdvancedHostResolver resolver) {
+        customize();
+        super.setHostNameResolver(resolver);
+    }
+
+    @Override
+    public void autoAuthorization(String domain, String username, String password, AuthType authType) {
+        authorizedDomains.add(domain);
+        super.autoAuthorization(domain, username, password, authType);
+    }
+
+    @Override
+    public void stopAutoAuthorization(String domain) {
+        authorizedDomains.remove(domain);
+        super.stopAutoAuthorization(domain);
+    }
+
+    /**
+     * @return true if filters or host name resolver were changed after start
+     */
+    boolean isCustomized() {
+        return customized;
+    }
+
+    /**
+     * Stop all auto authorizations added after start.
+     */
+    void stopAutoAuthorizations() {
+        for (String domain : authorizedDomains) {
+            stopAutoAuthorization(domain);
+        }
+    }
+
+    Set<String> getAuthorizedDomains() {
+        return authorizedDomains;
+    }
+
+    private void customize() {
+        if (started) {
+            customized = true;
+        }
+    }
+}
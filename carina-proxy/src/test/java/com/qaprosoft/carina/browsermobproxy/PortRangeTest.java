@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PortRangeTest {
+
+    @Test
+    public void testLeaseAndRelease() {
+        PortRange range = new PortRange(9000, 9002);
+        Assert.assertEquals(range.size(), 3);
+        Assert.assertEquals(range.lease(), 9000);
+        Assert.assertEquals(range.lease(), 9001);
+        Assert.assertEquals(range.lease(), 9002);
+        Assert.assertEquals(range.lease(), -1, "All ports should be busy!");
+
+        Assert.assertTrue(range.release(9001));
+        Assert.assertFalse(range.release(9001), "Port was released twice!");
+        Assert.assertFalse(range.isLeased(9001));
+        Assert.assertEquals(range.getAvailable(), 1);
+        Assert.assertEquals(range.lease(), 9001);
+    }
+
+    @Test
+    public void testExactLease() {
+        PortRange range = new PortRange(9000, 9100);
+        Assert.assertTrue(range.lease(9070));
+        Assert.assertFalse(range.lease(9070), "Port was leased twice!");
+        Assert.assertFalse(range.lease(9101), "Port outside of the range was leased!");
+        Assert.assertTrue(range.isLeased(9070));
+        Assert.assertFalse(range.release(8999));
+    }
+
+    @Test
+    public void testParse() {
+        PortRange range = PortRange.parse("0:0");
+        Assert.assertEquals(range.lease(), 0);
+        Assert.assertEquals(range.lease(), -1);
+        Assert.assertEquals(PortRange.parse("8000:8200").toString(), "8000:8200");
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Please specify BROWSERMOB_PORTS_RANGE.*")
+    public void testParseInvalid() {
+        PortRange.parse("8000-8200");
+    }
+
+    @Test
+    public void testConcurrentLease() throws Exception {
+        // range crosses several words
+        PortRange range = new PortRange(10000, 10199);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<List<Integer>>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    List<Integer> ports = new ArrayList<>();
+                    Set<Integer> released = new HashSet<>();
+                    int port;
+                    while ((port = range.lease()) >= 0) {
+                        // return part of ports back once to verify concurrent release
+                        if (port % 3 == 0 && released.add(port)) {
+                            range.release(port);
+                        } else {
+                            ports.add(port);
+                        }
+                    }
+                    return ports;
+                });
+            }
+            Set<Integer> leased = new HashSet<>();
+            int total = 0;
+            for (Future<List<Integer>> future : pool.invokeAll(tasks)) {
+                total += future.get().size();
+                leased.addAll(future.get());
+            }
+            Assert.assertEquals(total, leased.size(), "The same port was leased by several threads!");
+            Assert.assertEquals(range.getAvailable() + leased.size(), range.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.browsermobproxy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.browsermobproxy.ProxyManager.ProxyHealth;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+import net.lightbody.bmp.BrowserMobProxy;
+import net.lightbody.bmp.proxy.auth.AuthType;
+
+public class ProxyManagerTest {
+    private static String header = "my_header";
+    private static String headerValue = "my_value";
+
+    @BeforeClass(alwaysRun = true)
+    public void beforeClass() {
+        R.CONFIG.put("browsermob_proxy", "true");
+        R.CONFIG.put("browsermob_port", "0");
+        R.CONFIG.put("proxy_set_to_system", "false");
+        R.CONFIG.put("browsermob_disabled_mitm", "false");
+        R.CONFIG.put("browsermob_pool_size", "1");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void afterMethod() {
+        ProxyPool.stopAllProxies();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void afterClass() {
+        R.CONFIG.put("browsermob_pool_size", "0");
+    }
+
+    @Test
+    public void testProxyReusedAfterReset() {
+        ProxyPool.prestartProxies();
+        waitForIdleProxy();
+
+        ProxyPool.setupBrowserMobProxy();
+        BrowserMobProxy proxy = ProxyPool.getProxy();
+        Assert.assertEquals(ProxyManager.getIdleCount(), 0, "Pre-started proxy wasn't taken!");
+        proxy.addHeader(header, headerValue);
+        proxy.newHar();
+        proxy.autoAuthorization("example.com", "user", "password", AuthType.BASIC);
+        proxy.getHostNameResolver().remapHost("example.com", "localhost");
+        proxy.setLatency(100, TimeUnit.MILLISECONDS);
+
+        ProxyPool.stopProxy();
+        Assert.assertFalse(ProxyPool.isProxyRegistered(), "Proxy wasn't released!");
+        Assert.assertEquals(ProxyManager.getIdleCount(), 1, "Proxy wasn't returned into the pool!");
+
+        ProxyPool.setupBrowserMobProxy();
+        BrowserMobProxy reused = ProxyPool.getProxy();
+        Assert.assertSame(reused, proxy, "Pooled proxy wasn't reused!");
+        Assert.assertTrue(reused.getAllHeaders().isEmpty(), "Headers weren't reset!");
+        Assert.assertNull(reused.getHar(), "HAR wasn't reset!");
+        Assert.assertTrue(reused.getHostNameResolver().getHostRemappings().isEmpty(), "Host remappings weren't reset!");
+        Assert.assertTrue(((ReusableProxyServer) reused).getAuthorizedDomains().isEmpty(), "Auto authorization wasn't reset!");
+        Assert.assertEquals(ProxyPool.getProxyPortFromThread(), reused.getPort());
+
+        ProxyHealth health = ProxyManager.getHealth().stream()
+                .filter(h -> h.getActualPort() == reused.getPort())
+                .findFirst()
+                .orElse(null);
+        Assert.assertNotNull(health, "There are no health metrics for the proxy!");
+        Assert.assertEquals(health.getLeases(), 2);
+        Assert.assertEquals(health.getResets(), 1);
+    }
+
+    @Test
+    public void testProxyWithFilterIsNotReused() {
+        ProxyPool.prestartProxies();
+        waitForIdleProxy();
+
+        ProxyPool.setupBrowserMobProxy();
+        BrowserMobProxy proxy = ProxyPool.getProxy();
+        proxy.addRequestFilter((request, contents, messageInfo) -> null);
+
+        ProxyPool.stopProxy();
+        Assert.assertEquals(ProxyManager.getIdleCount(), 0, "Proxy with custom filter was returned into the pool!");
+
+        ProxyPool.setupBrowserMobProxy();
+        Assert.assertNotSame(ProxyPool.getProxy(), proxy, "Proxy with custom filter was reused!");
+    }
+
+    @Test
+    public void testReuseAfterShutdown() {
+        ProxyPool.shutdown();
+        Assert.assertFalse(ProxyManager.isEnabled());
+
+        // next suite
+        ProxyPool.prestartProxies();
+        Assert.assertTrue(ProxyManager.isEnabled(), "Proxy pool wasn't enabled for the next suite!");
+        waitForIdleProxy();
+    }
+
+    private void waitForIdleProxy() {
+        long end = System.currentTimeMillis() + 30000;
+        while (ProxyManager.getIdleCount() == 0 && System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        Assert.assertEquals(ProxyManager.getIdleCount(), 1, "Proxy wasn't pre-started!");
+    }
+
+    @Test
+    public void testCustomProxyIsNotPooled() {
+        BrowserMobProxy proxy = ProxyPool.createProxy();
+        ProxyPool.registerProxy(proxy);
+        ProxyPool.startProxy(0);
+        ProxyPool.stopAllProxies();
+        Assert.assertEquals(ProxyManager.getIdleCount(), 0, "Idle proxies weren't stopped!");
+    }
+
+}
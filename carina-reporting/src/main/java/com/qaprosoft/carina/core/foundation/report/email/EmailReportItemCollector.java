@@ -17,44 +17,116 @@ package com.qaprosoft.carina.core.foundation.report.email;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.testng.ITestResult;
 
 import com.qaprosoft.carina.core.foundation.report.TestResultItem;
+import com.qaprosoft.carina.core.foundation.report.TestResultType;
 import com.zebrunner.agent.testng.core.testname.TestNameResolverRegistry;
 
 /**
  * EmailReportGenerator generates emailable report using data from test suite log.
  * 
+ * Results are collected without locks: the latest result per test is kept in concurrent map, insertion order is kept
+ * by the queue of keys and number of results per status is updated on every push. Snapshot of results is built once
+ * per change and shared by all readers.
+ * 
  * @author Alex Khursevich
  */
 public class EmailReportItemCollector {
-    private static LinkedHashMap<String, TestResultItem> emailResultsMap = new LinkedHashMap<String, TestResultItem>();
-    private static Map<String, TestResultItem> testResultsMap = Collections.synchronizedMap(new HashMap<String, TestResultItem>());
-    private static List<String> createdItems = new ArrayList<String>();
+    private static final Map<String, TestResultItem> emailResultsMap = new ConcurrentHashMap<String, TestResultItem>();
+    // keys of emailResultsMap in order of the first push
+    private static final Queue<String> emailResultsOrder = new ConcurrentLinkedQueue<String>();
+    private static final Map<String, TestResultItem> testResultsMap = new ConcurrentHashMap<String, TestResultItem>();
+    private static final Queue<String> createdItems = new ConcurrentLinkedQueue<String>();
+
+    // number of test (not configuration) results per status
+    private static final Map<TestResultType, LongAdder> counters = new EnumMap<TestResultType, LongAdder>(TestResultType.class);
 
-    public static synchronized void push(TestResultItem emailItem) {
-        emailResultsMap.put(emailItem.hash(), emailItem);
+    private static final AtomicLong version = new AtomicLong();
+    private static volatile Snapshot snapshot = new Snapshot(0, Collections.<TestResultItem> emptyList());
+
+    static {
+        for (TestResultType type : TestResultType.values()) {
+            counters.put(type, new LongAdder());
+        }
+    }
+
+    public static void push(TestResultItem emailItem) {
+        String hash = emailItem.hash();
+        TestResultItem previous = emailResultsMap.put(hash, emailItem);
+        if (previous == null) {
+            emailResultsOrder.add(hash);
+        } else {
+            // retried test keeps its position, its previous status is not counted anymore
+            count(previous, -1);
+        }
+        count(emailItem, 1);
         testResultsMap.put(emailItem.getTest(), emailItem);
+        version.incrementAndGet();
     }
 
-    public static synchronized void push(String itemToDelete) {
+    public static void push(String itemToDelete) {
         createdItems.add(itemToDelete);
     }
 
-    public static synchronized TestResultItem pull(ITestResult result) {
+    public static TestResultItem pull(ITestResult result) {
         return testResultsMap.get(TestNameResolverRegistry.get().resolve(result));
     }
 
+    /**
+     * @return unmodifiable snapshot of results in order of registration
+     */
     public static List<TestResultItem> getTestResults() {
-        return new ArrayList<TestResultItem>(emailResultsMap.values());
+        Snapshot current = snapshot;
+        long actual = version.get();
+        if (current.version == actual) {
+            return current.items;
+        }
+
+        List<TestResultItem> items = new ArrayList<TestResultItem>(emailResultsMap.size());
+        for (String hash : emailResultsOrder) {
+            items.add(emailResultsMap.get(hash));
+        }
+        // results pushed during the copy are taken into account by the next call
+        current = new Snapshot(actual, Collections.unmodifiableList(items));
+        snapshot = current;
+        return current.items;
+    }
+
+    /**
+     * @param type TestResultType
+     * @return number of test results with given status, configuration results are not counted
+     */
+    public static int getCount(TestResultType type) {
+        return counters.get(type).intValue();
     }
 
     public static List<String> getCreatedItems() {
-        return createdItems;
+        return Collections.unmodifiableList(new ArrayList<String>(createdItems));
+    }
+
+    private static void count(TestResultItem item, int delta) {
+        if (!item.isConfig() && item.getResult() != null) {
+            counters.get(item.getResult()).add(delta);
+        }
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final List<TestResultItem> items;
+
+        private Snapshot(long version, List<TestResultItem> items) {
+            this.version = version;
+            this.items = items;
+        }
     }
 }
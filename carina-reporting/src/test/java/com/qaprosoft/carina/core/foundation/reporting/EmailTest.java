@@ -1,5 +1,7 @@
 package com.qaprosoft.carina.core.foundation.reporting;
 
+import java.util.List;
+
 import com.qaprosoft.carina.core.foundation.report.TestResultItem;
 import com.qaprosoft.carina.core.foundation.report.TestResultType;
 import com.qaprosoft.carina.core.foundation.report.email.EmailReportItemCollector;
@@ -71,6 +73,32 @@ public class EmailTest {
     }
 
 
+    @Test
+    public void testEmailReportCollectorRetry() {
+        TestResultItem failed = new TestResultItem("carina-reporting", "Test retry", "", TestResultType.FAIL, "", "", "");
+        TestResultItem passed = new TestResultItem("carina-reporting", "Test retry", "", TestResultType.PASS, "", "", "");
+        int passCount = EmailReportItemCollector.getCount(TestResultType.PASS);
+        int failCount = EmailReportItemCollector.getCount(TestResultType.FAIL);
+
+        EmailReportItemCollector.push(failed);
+        Assert.assertEquals(EmailReportItemCollector.getCount(TestResultType.FAIL), failCount + 1);
+        int position = EmailReportItemCollector.getTestResults().indexOf(failed);
+
+        EmailReportItemCollector.push(passed);
+        List<TestResultItem> results = EmailReportItemCollector.getTestResults();
+        Assert.assertEquals(results.indexOf(passed), position, "retried test result should keep its position");
+        Assert.assertFalse(results.contains(failed), "previous result of retried test should be replaced");
+        Assert.assertEquals(EmailReportItemCollector.getCount(TestResultType.FAIL), failCount);
+        Assert.assertEquals(EmailReportItemCollector.getCount(TestResultType.PASS), passCount + 1);
+        Assert.assertSame(EmailReportItemCollector.getTestResults(), results, "snapshot should be reused while results are not changed");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testEmailReportCollectorSnapshotIsReadOnly() {
+        EmailReportItemCollector.push(TEST_RESULT_ITEM1);
+        EmailReportItemCollector.getTestResults().clear();
+    }
+
     private boolean isEqual(TestResultItem testResultItem1, TestResultItem testResultItem2) {
         EmailReportItemComparator comparator = new EmailReportItemComparator();
 
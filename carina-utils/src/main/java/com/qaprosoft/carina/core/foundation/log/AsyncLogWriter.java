@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Background writer of test.log files. Test threads only put formatted lines into the lock-free queue, files are
+ * written and flushed by batches in the separate thread.
+ * Be careful with LOGGER usage here because it could do recursive call together with ThreadLogAppender functionality.
+ */
+class AsyncLogWriter implements Runnable {
+    // max time between flushes when there is nothing to write
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    // producers wait for writer when too many lines are pending so memory consumption is limited
+    private static final int MAX_PENDING = 10000;
+    private static final long CLOSE_TIMEOUT = 10;
+
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<Record>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long maxFileSize;
+    private final Thread thread;
+
+    private volatile boolean stopped = false;
+
+    AsyncLogWriter(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+        this.thread = new Thread(this, "thread-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        // writer is daemon so pending lines are written on jvm exit explicitly
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "thread-log-writer-shutdown"));
+    }
+
+    void write(TestLog log, String line) {
+        if (stopped) {
+            // jvm is shutting down
+            return;
+        }
+        queue.add(new Record(log, line, null));
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            LockSupport.unpark(thread);
+            while (pending.get() > MAX_PENDING && !stopped) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    /**
+     * Write all pending lines of the log and close its file.
+     */
+    void close(TestLog log) {
+        if (stopped) {
+            return;
+        }
+        CountDownLatch closed = new CountDownLatch(1);
+        queue.add(new Record(log, null, closed));
+        pending.incrementAndGet();
+        LockSupport.unpark(thread);
+        try {
+            if (!closed.await(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                System.err.println("Unable to close " + log.file + " during " + CLOSE_TIMEOUT + " seconds!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        Set<TestLog> dirty = new HashSet<TestLog>();
+        while (true) {
+            Record record = queue.poll();
+            if (record == null) {
+                // batch is over
+                for (TestLog log : dirty) {
+                    log.flush();
+                }
+                dirty.clear();
+                if (stopped) {
+                    return;
+                }
+                LockSupport.parkNanos(FLUSH_INTERVAL);
+                continue;
+            }
+            pending.decrementAndGet();
+
+            if (record.closed != null) {
+                record.log.close();
+                dirty.remove(record.log);
+                record.closed.countDown();
+            } else {
+                record.log.write(record.line, maxFileSize);
+                dirty.add(record.log);
+            }
+        }
+    }
+
+    /*
+     * test.log file state, it is accessed by the writer thread only
+     */
+    static class TestLog {
+        private final File file;
+        private Writer writer;
+        private long size;
+        private boolean truncated;
+
+        TestLog(File file) {
+            this.file = file;
+        }
+
+        private void write(String line, long maxFileSize) {
+            if (truncated) {
+                return;
+            }
+            try {
+                if (writer == null) {
+                    size = file.length();
+                    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+                }
+                if (size + line.length() > maxFileSize) {
+                    truncated = true;
+                    writer.write("test log file size exceeded limit: " + maxFileSize + " bytes, the rest of output is skipped\n");
+                    return;
+                }
+                writer.write(line);
+                size += line.length();
+            } catch (IOException e) {
+                truncated = true;
+                e.printStackTrace();
+            }
+        }
+
+        private void flush() {
+            try {
+                if (writer != null) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void close() {
+            try {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class Record {
+        private final TestLog log;
+        private final String line;
+        private final CountDownLatch closed;
+
+        private Record(TestLog log, String line, CountDownLatch closed) {
+            this.log = log;
+            this.line = line;
+            this.closed = closed;
+        }
+    }
+
+}
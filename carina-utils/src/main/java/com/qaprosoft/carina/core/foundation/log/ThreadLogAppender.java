@@ -15,28 +15,62 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.log;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.MDC;
+import org.apache.log4j.spi.Filter;
 import org.apache.log4j.spi.LoggingEvent;
 
+import com.qaprosoft.carina.core.foundation.log.AsyncLogWriter.TestLog;
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
-import com.qaprosoft.carina.core.foundation.utils.Configuration;
-import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 
 /*
  * This appender log groups test outputs by test method/test thread so they don't mess up each other even they runs in parallel.
+ * Lines are formatted in the test thread and written by the background thread, test.log is flushed when test is finished.
+ * 
+ * Supported properties:
+ * log4j.appender.ThreadLogAppender.LocationInfo=false - take file name from the call stack (slow) instead of logger name
+ * log4j.appender.ThreadLogAppender.MaxFileSize=1024 - max size of each test.log in megabytes
  */
 public class ThreadLogAppender extends AppenderSkeleton {
-    // single buffer for each thread test.log file
-    private final ThreadLocal<BufferedWriter> testLogBuffer = new ThreadLocal<BufferedWriter>();
-    private final String MAX_LOG_FILE_SIZE = "1024";
-    private long bytesWritten;
+    // 2016-05-26 04:39:16
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd hh:mm:ss").withZone(ZoneId.systemDefault());
+
+    // test.log of the current thread
+    private final ThreadLocal<TestLog> testLog = new ThreadLocal<TestLog>();
+    // reusable line buffer of the current thread
+    private final ThreadLocal<StringBuilder> lineBuffer = ThreadLocal.withInitial(StringBuilder::new);
+
+    private boolean locationInfo = false;
+    private long maxFileSize = 1024;
+
+    private volatile AsyncLogWriter writer;
+
+    /**
+     * AppenderSkeleton synchronizes all threads here but every thread writes its own test.log so lock isn't needed.
+     */
+    @Override
+    public void doAppend(LoggingEvent event) {
+        if (event != null && !isAsSevereAsThreshold(event.getLevel())) {
+            return;
+        }
+        for (Filter filter = getFirstFilter(); filter != null; filter = filter.getNext()) {
+            int decision = filter.decide(event);
+            if (decision == Filter.DENY) {
+                return;
+            }
+            if (decision == Filter.ACCEPT) {
+                break;
+            }
+        }
+        append(event);
+    }
+
     @Override
     public void append(LoggingEvent event) {
         // TODO: [VD] OBLIGATORY double check and create separate unit test for this case
@@ -48,49 +82,36 @@ public class ThreadLogAppender extends AppenderSkeleton {
          */
 
         try {
-
-            BufferedWriter fw = testLogBuffer.get();
-            if (fw == null) {
+            TestLog log = testLog.get();
+            if (log == null) {
                 // 1st request to log something for this thread/test
-                File testLogFile = new File(ReportContext.getTestDir() + "/test.log");
-                if (!testLogFile.exists()){
+                File testLogFile = getTestLogFile();
+                if (!testLogFile.exists()) {
                     testLogFile.createNewFile();
-                    bytesWritten = 0;
                 }
-
-                fw = new BufferedWriter(new FileWriter(testLogFile, true));
-                testLogBuffer.set(fw);
-
+                log = new TestLog(testLogFile);
+                testLog.set(log);
             }
 
+            StringBuilder line = lineBuffer.get();
+            line.setLength(0);
             if (event != null) {
                 // append time, thread, class name and device name if any
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss"); // 2016-05-26 04:39:16
-                String time = dateFormat.format(event.getTimeStamp());
-                // System.out.println("time: " + time);
-
                 long threadId = Thread.currentThread().getId();
-                MDC.put("threadId", "-" + String.valueOf(threadId));
-                // System.out.println("thread: " + threadId);
-                String fileName = event.getLocationInformation().getFileName();
-                // System.out.println("fileName: " + fileName);
-
-                String logLevel = event.getLevel().toString();
-
-                String message = "[%s] [%s] [%s] [%s] %s";
-                String eventMessage = "";
-                if (event != null && event.getMessage() != null) {
-                    eventMessage = event.getMessage().toString();
+                MDC.put("threadId", "-" + threadId);
+
+                line.append('[').append(DATE_FORMAT.format(Instant.ofEpochMilli(event.getTimeStamp()))).append("] [")
+                        .append(getFileName(event)).append("] [")
+                        .append(threadId).append("] [")
+                        .append(event.getLevel()).append("] ");
+                if (event.getMessage() != null) {
+                    line.append(event.getMessage());
                 }
-                
-                message = String.format(message, time, fileName, threadId, logLevel, eventMessage);
-                ensureCapacity(message.length());
-                fw.write(message);
             } else {
-                fw.write("null");
+                line.append("null");
             }
-            fw.write("\n");
-            fw.flush();
+            line.append('\n');
+            getWriter().write(log, line.toString());
         } catch (IOException e) {
             e.printStackTrace();
         } catch (Exception e) {
@@ -99,13 +120,16 @@ public class ThreadLogAppender extends AppenderSkeleton {
 
     }
 
+    /**
+     * Writes pending lines and closes test.log of the current thread.
+     */
     @Override
     public void close() {
         try {
-            BufferedWriter fw = testLogBuffer.get();
-            if (fw != null) {
-                fw.close();
-                testLogBuffer.remove();
+            TestLog log = testLog.get();
+            if (log != null) {
+                testLog.remove();
+                getWriter().close(log);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -117,12 +141,45 @@ public class ThreadLogAppender extends AppenderSkeleton {
         return false;
     }
 
-    private void ensureCapacity(int len) throws IOException {
-        long newBytesWritten = this.bytesWritten + len;
-        long maxMegaBytes = Long.parseLong(MAX_LOG_FILE_SIZE) * 1024 * 1024;
+    public boolean getLocationInfo() {
+        return locationInfo;
+    }
+
+    public void setLocationInfo(boolean locationInfo) {
+        this.locationInfo = locationInfo;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    File getTestLogFile() {
+        return new File(ReportContext.getTestDir() + "/test.log");
+    }
+
+    private String getFileName(LoggingEvent event) {
+        if (locationInfo) {
+            return event.getLocationInformation().getFileName();
+        }
+        // loggers are created per class so logger name gives the same file name without stack walking
+        String name = event.getLoggerName();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        int inner = name.indexOf('$');
+        return (inner > 0 ? name.substring(0, inner) : name) + ".java";
+    }
 
-        if (newBytesWritten > maxMegaBytes)
-            throw new IOException("test Log file size exceeded core limit: " + newBytesWritten + " > " + maxMegaBytes);
-        this.bytesWritten = newBytesWritten;
+    private AsyncLogWriter getWriter() {
+        if (writer == null) {
+            synchronized (this) {
+                if (writer == null) {
+                    writer = new AsyncLogWriter(maxFileSize * 1024 * 1024);
+                }
+            }
+        }
+        return writer;
     }
 }
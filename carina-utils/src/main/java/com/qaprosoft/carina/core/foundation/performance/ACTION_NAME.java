@@ -43,7 +43,9 @@ public enum ACTION_NAME implements IPerformanceOperation {
     GET_SELECTED_VALUE("get_selected_value"),
     GET_SELECTED_VALUES("get_selected_values"),
     CAPTURE_SCREENSHOT("capture_screenshot"),
-    GET_LOGS("get_logs"),;
+    GET_LOGS("get_logs"),
+    FIND_ELEMENT("find_element"),
+    DRIVER_COMMAND("driver_command"),;
 
 
     private String key;
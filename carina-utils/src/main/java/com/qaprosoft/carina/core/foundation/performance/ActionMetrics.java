@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.performance;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.performance.Timer.IPerformanceOperation;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.FileManager;
+import com.qaprosoft.carina.core.foundation.utils.JsonUtils;
+
+/**
+ * ActionMetrics - low-overhead latency instrumentation for UI actions, waits and driver commands.
+ *
+ * Every thread records into its own histograms without any locking. Per-test data is exported and merged into the
+ * suite aggregate on test finish. When "action_metrics" is disabled {@link #start()} returns 0 and
+ * {@link #record(IPerformanceOperation, String, Object, long)} exits immediately.
+ */
+public final class ActionMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String REPORT_NAME = "action-metrics";
+
+    private static final String NOT_AVAILABLE = "n/a";
+
+    private static final String[] COLUMNS = { "action", "page", "locator", "count", "total_ms", "mean_ms", "min_ms",
+            "p50_ms", "p90_ms", "p99_ms", "max_ms" };
+
+    private static volatile boolean enabled = Configuration.getBoolean(Parameter.ACTION_METRICS);
+
+    private static final ThreadLocal<Map<MetricKey, LatencyHistogram>> testMetrics = ThreadLocal.withInitial(HashMap::new);
+
+    private static final Map<MetricKey, LatencyHistogram> suiteMetrics = new ConcurrentHashMap<>();
+
+    private ActionMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Start measurement.
+     *
+     * @return start time in nanoseconds or 0 if metrics are disabled.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record latency of the operation started by {@link #start()}.
+     *
+     * @param operation
+     *            IPerformanceOperation
+     * @param page
+     *            page or component name, might be null
+     * @param target
+     *            locator or command, might be null. toString() is called only when metrics are enabled.
+     * @param startNanos
+     *            value returned by {@link #start()}
+     */
+    public static void record(IPerformanceOperation operation, String page, Object target, long startNanos) {
+        if (startNanos == 0 || !enabled) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        MetricKey key = new MetricKey(operation.getKey(), page != null ? page : NOT_AVAILABLE,
+                target != null ? target.toString() : NOT_AVAILABLE);
+        testMetrics.get().computeIfAbsent(key, k -> new LatencyHistogram()).record(elapsed);
+    }
+
+    /**
+     * Export metrics of the current thread into the test report folder and merge them into the suite aggregate.
+     *
+     * @param testDir
+     *            test report folder. Metrics are only merged into suite aggregate when null.
+     */
+    public static void onTestFinish(File testDir) {
+        Map<MetricKey, LatencyHistogram> metrics = testMetrics.get();
+        if (metrics.isEmpty()) {
+            return;
+        }
+        try {
+            if (testDir != null) {
+                write(metrics, testDir);
+            }
+            for (Map.Entry<MetricKey, LatencyHistogram> entry : metrics.entrySet()) {
+                suiteMetrics.merge(entry.getKey(), entry.getValue(), (existing, value) -> {
+                    existing.merge(value);
+                    return existing;
+                });
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unable to export action metrics!", e);
+        } finally {
+            // always start next test from scratch, merged histograms are owned by the suite map now
+            testMetrics.remove();
+        }
+    }
+
+    /**
+     * Export aggregated suite metrics.
+     *
+     * @param baseDir
+     *            suite report folder
+     */
+    public static void onSuiteFinish(File baseDir) {
+        if (suiteMetrics.isEmpty()) {
+            return;
+        }
+        try {
+            write(suiteMetrics, baseDir);
+        } catch (Exception e) {
+            LOGGER.error("Unable to export suite action metrics!", e);
+        }
+    }
+
+    /**
+     * Get snapshot of the current thread metrics.
+     *
+     * @return Map of rows keyed by "action|page|locator"
+     */
+    public static Map<String, LatencyHistogram> getTestMetrics() {
+        Map<String, LatencyHistogram> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<MetricKey, LatencyHistogram> entry : testMetrics.get().entrySet()) {
+            snapshot.put(entry.getKey().toString(), entry.getValue());
+        }
+        return snapshot;
+    }
+
+    public static void clear() {
+        testMetrics.remove();
+        suiteMetrics.clear();
+    }
+
+    private static synchronized void write(Map<MetricKey, LatencyHistogram> metrics, File dir) {
+        List<Map.Entry<MetricKey, LatencyHistogram>> entries = new ArrayList<>(metrics.entrySet());
+        // the most expensive operations go first
+        Collections.sort(entries, Comparator.comparingDouble(
+                (Map.Entry<MetricKey, LatencyHistogram> e) -> e.getValue().getTotalMillis()).reversed());
+
+        List<Map<String, Object>> rows = new ArrayList<>(entries.size());
+        StringBuilder csv = new StringBuilder(String.join(",", COLUMNS)).append('\n');
+        for (Map.Entry<MetricKey, LatencyHistogram> entry : entries) {
+            MetricKey key = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            Object[] values = { key.action, key.page, key.locator, histogram.getCount(), histogram.getTotalMillis(),
+                    histogram.getMeanMillis(), histogram.getMinMillis(), histogram.getPercentileMillis(50),
+                    histogram.getPercentileMillis(90), histogram.getPercentileMillis(99), histogram.getMaxMillis() };
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                row.put(COLUMNS[i], values[i]);
+                if (i > 0) {
+                    csv.append(',');
+                }
+                csv.append(escapeCsv(String.valueOf(values[i])));
+            }
+            csv.append('\n');
+            rows.add(row);
+        }
+
+        FileManager.createFileWithContent(dir.getAbsolutePath() + "/" + REPORT_NAME + ".json", JsonUtils.toJson(rows));
+        FileManager.createFileWithContent(dir.getAbsolutePath() + "/" + REPORT_NAME + ".csv", csv.toString());
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static final class MetricKey {
+        private final String action;
+        private final String page;
+        private final String locator;
+        private final int hash;
+
+        private MetricKey(String action, String page, String locator) {
+            this.action = action;
+            this.page = page;
+            this.locator = locator;
+            this.hash = Objects.hash(action, page, locator);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MetricKey)) {
+                return false;
+            }
+            MetricKey other = (MetricKey) obj;
+            return action.equals(other.action) && page.equals(other.page) && locator.equals(other.locator);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return action + "|" + page + "|" + locator;
+        }
+    }
+
+}
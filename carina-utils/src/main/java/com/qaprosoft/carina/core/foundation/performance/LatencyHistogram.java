@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.performance;
+
+/**
+ * LatencyHistogram - compact log2-bucketed latency histogram.
+ *
+ * Instance is not thread-safe by design: every thread records into its own histogram and
+ * snapshots are merged only on test/suite finish.
+ */
+public class LatencyHistogram {
+
+    // bucket i keeps values in [2^(i-1), 2^i) microseconds, bucket 0 keeps values below 1 microsecond
+    private static final int BUCKETS = 40;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos;
+
+    /**
+     * Record single latency value.
+     *
+     * @param nanos
+     *            elapsed time in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[bucketOf(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos < minNanos) {
+            minNanos = nanos;
+        }
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * Add all values recorded by another histogram.
+     *
+     * @param other
+     *            LatencyHistogram
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        totalNanos += other.totalNanos;
+        minNanos = Math.min(minNanos, other.minNanos);
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getTotalMillis() {
+        return toMillis(totalNanos);
+    }
+
+    public double getMeanMillis() {
+        return count == 0 ? 0 : toMillis(totalNanos / count);
+    }
+
+    public double getMinMillis() {
+        return count == 0 ? 0 : toMillis(minNanos);
+    }
+
+    public double getMaxMillis() {
+        return toMillis(maxNanos);
+    }
+
+    /**
+     * Get approximate percentile value. Result is an upper bound of the bucket which contains
+     * requested percentile and never exceeds recorded max value.
+     *
+     * @param percentile
+     *            double in range (0, 100]
+     * @return percentile value in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= threshold) {
+                long upperNanos = i == 0 ? 1000L : (1L << i) * 1000L;
+                return toMillis(Math.min(upperNanos, maxNanos));
+            }
+        }
+        return toMillis(maxNanos);
+    }
+
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+}
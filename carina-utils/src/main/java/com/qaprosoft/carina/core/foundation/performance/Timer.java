@@ -23,6 +23,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * @deprecated use {@link ActionMetrics} which is fed by ExtendedWebElement, DriverHelper and driver commands.
+ */
 @Deprecated
 public class Timer {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
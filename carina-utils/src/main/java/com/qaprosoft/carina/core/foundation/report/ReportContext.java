@@ -16,33 +16,37 @@
 package com.qaprosoft.carina.core.foundation.report;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedOutputStream;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.PasswordAuthentication;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import javax.imageio.ImageIO;
 
@@ -62,6 +66,7 @@ import com.qaprosoft.carina.core.foundation.log.ThreadLogAppender;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.FileManager;
+import com.qaprosoft.carina.core.foundation.utils.NioFileUtils;
 import com.qaprosoft.carina.core.foundation.utils.R;
 import com.qaprosoft.carina.core.foundation.utils.ZipManager;
 import com.zebrunner.agent.core.registrar.Artifact;
@@ -97,8 +102,11 @@ public class ReportContext {
 
     private static final ExecutorService executor = Executors.newCachedThreadPool();
 
-    // Collects screenshot comments. Screenshot comments are associated using screenshot file name.
-    private static Map<String, String> screenSteps = Collections.synchronizedMap(new HashMap<String, String>());
+    // Gallery manifest of the current test: screenshot file name to comment, sorted by name as names are timestamps.
+    // It is released at the end of test.
+    private static final ThreadLocal<Map<String, String>> screenSteps = ThreadLocal.withInitial(TreeMap::new);
+
+    private static volatile GalleryTemplate galleryTemplate;
 
     public static long getRootID() {
         return rootID;
@@ -463,7 +471,8 @@ public class ReportContext {
 
     public static void emptyTestDirData() {
         testDirectory.remove();
-        isCustomTestDirName.set(Boolean.FALSE);
+        screenSteps.remove();
+        isCustomTestDirName.remove();
         closeThreadLogAppender();
     }
 
@@ -554,51 +563,80 @@ public class ReportContext {
     }
 
     public static void generateHtmlReport(String content) {
+        generateHtmlReport(writer -> writer.write(content));
+    }
+
+    /**
+     * Writes emailable report into the project report directory and shares it with the base directory. Content is streamed
+     * into the file so report size doesn't affect memory consumption.
+     * 
+     * @param content ReportContent
+     */
+    public static void generateHtmlReport(ReportContent content) {
         String emailableReport = SpecialKeywords.HTML_REPORT;
 
         try {
             File reportFile = new File(String.format("%s/%s/%s", System.getProperty("user.dir"),
                     Configuration.get(Parameter.PROJECT_REPORT_DIRECTORY), emailableReport));
+            Files.createDirectories(reportFile.getAbsoluteFile().getParentFile().toPath());
 
-            // if file doesn't exists, then create it
-            if (!reportFile.exists()) {
-                reportFile.createNewFile();
-            }
-
-            FileWriter fw = new FileWriter(reportFile.getAbsoluteFile());
+            // write into the new file and replace the old one so hard link from the previous run base dir isn't changed
+            Path tmp = Files.createTempFile(reportFile.getAbsoluteFile().getParentFile().toPath(), emailableReport, ".tmp");
             try {
-                BufferedWriter bw = new BufferedWriter(fw);
-                try {
-                    bw.write(content);
-                } finally {
-                    bw.close();
+                try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    content.writeTo(writer);
                 }
+                Files.move(tmp, reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             } finally {
-                fw.close();
+                Files.deleteIfExists(tmp);
             }
 
-            File reportFileToBase = new File(String.format("%s/%s", getBaseDir(), emailableReport));
-            FileWriter fwToBaseDir = new FileWriter(reportFileToBase.getAbsolutePath());
+            Path reportFileToBase = new File(String.format("%s/%s", getBaseDir(), emailableReport)).toPath();
+            shareReport(reportFile.toPath(), reportFileToBase, Files::createLink);
 
-            if (!reportFileToBase.exists()) {
-                reportFileToBase.createNewFile();
-            }
-            try {
-                BufferedWriter bw = new BufferedWriter(fwToBaseDir);
-                try {
-                    bw.write(content);
-                } finally {
-                    bw.close();
+            if (Configuration.getBoolean(Parameter.HTML_REPORT_GZIP)) {
+                File gzipFile = new File(String.format("%s/%s.gz", getBaseDir(), emailableReport));
+                try (OutputStream gzip = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+                    Files.copy(reportFile.toPath(), gzip);
                 }
-            } finally {
-                fw.close();
             }
-
         } catch (IOException e) {
             LOGGER.error("generateHtmlReport failure", e);
         }
     }
 
+    /**
+     * Shares report file by hard link or copies it if link can't be created.
+     * 
+     * @param report Path of existing report
+     * @param target Path of shared report, replaced if exists
+     * @param linker ReportLinker creating hard link
+     * @throws IOException if report can't be copied
+     */
+    static void shareReport(Path report, Path target, ReportLinker linker) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            linker.link(target, report);
+        } catch (IOException | UnsupportedOperationException e) {
+            // different file systems or links aren't supported
+            LOGGER.debug("Unable to link report, it will be copied: " + e.getMessage());
+            Files.copy(report, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @FunctionalInterface
+    interface ReportLinker {
+        void link(Path link, Path existing) throws IOException;
+    }
+
+    /**
+     * Report content written directly into the report file.
+     */
+    @FunctionalInterface
+    public interface ReportContent {
+        void writeTo(Writer writer) throws IOException;
+    }
+
     /**
      * Returns URL for test artifacts folder.
      * 
@@ -707,7 +745,11 @@ public class ReportContext {
         executor.execute(new ImageSaverTask(screenshot, String.format("%s/%d.png", getTestDir().getAbsolutePath(), now),
                 Configuration.getInt(Parameter.BIG_SCREEN_WIDTH), Configuration.getInt(Parameter.BIG_SCREEN_HEIGHT)));
 
-        return String.format("%d.png", now);
+        String screenName = String.format("%d.png", now);
+        if (!screenSteps.get().containsKey(screenName)) {
+            addScreenshotComment(screenName, "");
+        }
+        return screenName;
     }
 
     /**
@@ -755,8 +797,9 @@ public class ReportContext {
                     LOGGER.warn("Unable to find in classpath: " + GALLERY_ZIP);
                     return;
                 }
-                ZipManager.copyInputStream(is, new BufferedOutputStream(new FileOutputStream(reportsRootDir.getAbsolutePath() + "/"
-                        + GALLERY_ZIP)));
+                try (InputStream zipStream = is) {
+                    NioFileUtils.copy(zipStream, new File(reportsRootDir.getAbsolutePath() + "/" + GALLERY_ZIP));
+                }
                 ZipManager.unzip(reportsRootDir.getAbsolutePath() + "/" + GALLERY_ZIP, reportsRootDir.getAbsolutePath());
                 File zip = new File(reportsRootDir.getAbsolutePath() + "/" + GALLERY_ZIP);
                 zip.delete();
@@ -766,47 +809,25 @@ public class ReportContext {
         }
     }
 
+    /**
+     * Renders gallery of the current test screenshots registered by {@link #addScreenshotComment(String, String)}.
+     */
     public static void generateTestReport() {
         File testDir = testDirectory.get();
-        try {
-            List<File> images = FileManager.getFilesInDir(testDir);
-            List<String> imgNames = new ArrayList<String>();
-            for (File image : images) {
-                imgNames.add(image.getName());
-            }
-            imgNames.remove("test.log");
-            imgNames.remove("sql.log");
-            if (imgNames.size() == 0)
-                return;
-
-            Collections.sort(imgNames);
-
-            StringBuilder report = new StringBuilder();
-            for (int i = 0; i < imgNames.size(); i++) {
-                // convert toString
-                String image = R.REPORT.get("image");
-
-                image = image.replace("${image}", imgNames.get(i));
+        Map<String, String> steps = screenSteps.get();
+        if (testDir == null || steps.isEmpty()) {
+            return;
+        }
 
-                String title = getScreenshotComment(imgNames.get(i));
-                if (title == null) {
-                    title = "";
-                }
-                image = image.replace("${title}", StringUtils.substring(title, 0, MAX_IMAGE_TITLE));
-                report.append(image);
-            }
-            // String wholeReport = R.REPORT.get("container").replace("${images}", report.toString());
-            String wholeReport = R.REPORT.get("container").replace("${images}", report.toString());
-            wholeReport = wholeReport.replace("${title}", TITLE);
-            String folder = testDir.getAbsolutePath();
-            FileManager.createFileWithContent(folder + REPORT_NAME, wholeReport);
+        try (Writer writer = Files.newBufferedWriter(new File(testDir.getAbsolutePath() + REPORT_NAME).toPath(), StandardCharsets.UTF_8)) {
+            getGalleryTemplate().write(writer, steps);
         } catch (Exception e) {
             LOGGER.error("generateTestReport failure", e);
         }
     }
 
     /**
-     * Stores comment for screenshot.
+     * Stores comment for screenshot and registers screenshot in the gallery of the current test.
      *
      * @param screenId screenId id
      * @param msg message
@@ -814,22 +835,73 @@ public class ReportContext {
      */
     public static void addScreenshotComment(String screenId, String msg) {
         if (!StringUtils.isEmpty(screenId)) {
-            screenSteps.put(screenId, msg);
+            screenSteps.get().put(screenId, msg);
         }
     }
 
     /**
-     * Return comment for screenshot.
+     * Return comment for screenshot of the current test.
      * 
      * @param screenId Screen Id
      * 
      * @return screenshot comment
      */
     public static String getScreenshotComment(String screenId) {
-        String comment = "";
-        if (screenSteps.containsKey(screenId))
-            comment = screenSteps.get(screenId);
-        return comment;
+        String comment = screenSteps.get().get(screenId);
+        return comment != null ? comment : "";
+    }
+
+    private static GalleryTemplate getGalleryTemplate() {
+        if (galleryTemplate == null) {
+            galleryTemplate = new GalleryTemplate(R.REPORT.get("container").replace("${title}", TITLE), R.REPORT.get("image"));
+        }
+        return galleryTemplate;
+    }
+
+    /**
+     * Gallery templates split by placeholders once so rendering is just appending of constant parts and values.
+     */
+    private static class GalleryTemplate {
+        private static final String IMAGES = "${images}";
+        private static final String IMAGE = "${image}";
+        private static final String IMAGE_TITLE = "${title}";
+
+        private final String header;
+        private final String footer;
+        private final List<String> imageParts = new ArrayList<String>();
+        private final List<String> imageKeys = new ArrayList<String>();
+
+        private GalleryTemplate(String container, String image) {
+            int images = container.indexOf(IMAGES);
+            header = images < 0 ? container : container.substring(0, images);
+            footer = images < 0 ? "" : container.substring(images + IMAGES.length());
+
+            Matcher matcher = Pattern.compile(Pattern.quote(IMAGE) + "|" + Pattern.quote(IMAGE_TITLE)).matcher(image);
+            int last = 0;
+            while (matcher.find()) {
+                imageParts.add(image.substring(last, matcher.start()));
+                imageKeys.add(matcher.group());
+                last = matcher.end();
+            }
+            imageParts.add(image.substring(last));
+        }
+
+        private void write(Writer writer, Map<String, String> steps) throws IOException {
+            writer.write(header);
+            for (Map.Entry<String, String> step : steps.entrySet()) {
+                for (int i = 0; i < imageKeys.size(); i++) {
+                    writer.write(imageParts.get(i));
+                    if (IMAGE.equals(imageKeys.get(i))) {
+                        writer.write(step.getKey());
+                    } else {
+                        String title = step.getValue() == null ? "" : step.getValue();
+                        writer.write(StringUtils.substring(title, 0, MAX_IMAGE_TITLE));
+                    }
+                }
+                writer.write(imageParts.get(imageKeys.size()));
+            }
+            writer.write(footer);
+        }
     }
 
     private static String getBaseDirAbsolutePath() {
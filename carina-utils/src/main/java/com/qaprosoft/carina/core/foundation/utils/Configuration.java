@@ -57,6 +57,10 @@ public class Configuration {
         DRIVER_EVENT_LISTENERS("driver_event_listeners"),
 
         MAX_DRIVER_COUNT("max_driver_count"),
+
+        DRIVER_WARM_POOL_SIZE("driver_warm_pool_size"),
+
+        DRIVER_WARM_POOL_MAX_IDLE("driver_warm_pool_max_idle"),
         
         FORCIBLY_DISABLE_DRIVER_QUIT("forcibly_disable_driver_quit"),
 
@@ -94,12 +98,36 @@ public class Configuration {
 
         BROWSERMOB_MITM("browsermob_disabled_mitm"),
 
+        BROWSERMOB_POOL_SIZE("browsermob_pool_size"),
+
         PROXY_SET_TO_SYSTEM("proxy_set_to_system"),
 
         REPORT_URL("report_url"),
 
         AUTO_SCREENSHOT("auto_screenshot"),
 
+        SCREENSHOT_POLICY("screenshot_policy"),
+
+        SCREENSHOT_MIN_INTERVAL("screenshot_min_interval"),
+
+        SCREENSHOT_MAX_PER_TEST("screenshot_max_per_test"),
+
+        SCREENSHOT_DEDUP("screenshot_dedup"),
+
+        SCREENSHOT_BUFFER_SIZE("screenshot_buffer_size"),
+
+        SCREENSHOT_EXCLUSIONS("screenshot_exclusions"),
+
+        DRIVER_LISTENER_EXCLUSIONS("driver_listener_exclusions"),
+
+        VISUAL_BASELINE_DIR("visual_baseline_dir"),
+
+        VISUAL_BASELINE_UPDATE("visual_baseline_update"),
+
+        VISUAL_PIXEL_THRESHOLD("visual_pixel_threshold"),
+
+        VISUAL_DIFF_TOLERANCE("visual_diff_tolerance"),
+
         EXPLICIT_TIMEOUT("explicit_timeout"),
 
         AUTO_DOWNLOAD("auto_download"),
@@ -114,10 +142,14 @@ public class Configuration {
 
         PROJECT_REPORT_DIRECTORY("project_report_directory"),
 
+        HTML_REPORT_GZIP("html_report_gzip"),
+
         MAX_SCREENSHOOT_HISTORY("max_screen_history"),
 
         RESULT_SORTING("result_sorting"),
 
+        ACTION_METRICS("action_metrics"),
+
         BIG_SCREEN_WIDTH("big_screen_width"),
 
         BIG_SCREEN_HEIGHT("big_screen_height"),
@@ -161,6 +193,10 @@ public class Configuration {
 
         SECRET_KEY("secret_key"),
 
+        S3_LIST_THREADS("s3_list_threads"),
+
+        S3_LATEST_ARTIFACT_CACHE_TTL("s3_latest_artifact_cache_ttl"),
+
         // Azure
         AZURE_ACCOUNT_NAME("azure_account_name"),
 
@@ -172,9 +208,21 @@ public class Configuration {
 
         AZURE_LOCAL_STORAGE("azure_local_storage"),
 
+        // Downloaded artifacts cache
+        ARTIFACT_CACHE_DIR("artifact_cache_dir"),
+
+        ARTIFACT_DOWNLOAD_THREADS("artifact_download_threads"),
+
+        ARTIFACT_CACHE_MAX_SIZE("artifact_cache_max_size"),
+
         // AppCenter token
         APPCENTER_TOKEN("appcenter_token"),
 
+        // FTP uploads
+        FTP_UPLOAD_THREADS("ftp_upload_threads"),
+
+        FTP_UPLOAD_QUEUE_SIZE("ftp_upload_queue_size"),
+
         // For localization parser
 
         LOCALIZATION_ENCODING("localization_encoding"),
@@ -191,6 +239,16 @@ public class Configuration {
 
         UNINSTALL_RELATED_APPS("uninstall_related_apps"),
 
+        ADB_NATIVE_CLIENT("adb_native_client"),
+
+        SWIPE_BY_PAGE_SOURCE("swipe_by_page_source"),
+
+        DRIVER_COMMAND_RECORD("driver_command_record"),
+
+        DRIVER_COMMAND_REPLAY("driver_command_replay"),
+
+        DRIVER_COMMAND_REPLAY_TIME_SCALE("driver_command_replay_time_scale"),
+
         // For Device default timezone and language
         DEFAULT_DEVICE_TIMEZONE("default_device_timezone"),
 
@@ -198,6 +256,8 @@ public class Configuration {
 
         DEFAULT_DEVICE_LANGUAGE("default_device_language"),
 
+        DEFAULT_DEVICE_SETTINGS_ON_START("default_device_settings_on_start"),
+
         // Ignore SSL
         IGNORE_SSL("ignore_ssl"),
 
@@ -22,15 +22,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.lang.invoke.MethodHandles;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.security.MessageDigest;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 public class FileManager {
 
@@ -65,23 +63,8 @@ public class FileManager {
     }
 
     public static void createFileWithContent(String filePath, String content) {
-        File file = new File(filePath);
-
         try {
-            file.createNewFile();
-            FileWriter fw = new FileWriter(file);
-            try {
-                fw.write(content);
-            } catch (Exception e) {
-                LOGGER.debug("Error during FileWriter append. " + e.getMessage(), e.getCause());
-            } finally {
-                try {
-                    fw.close();
-                } catch (Exception e) {
-                    LOGGER.debug("Error during FileWriter close. " + e.getMessage(), e.getCause());
-                }
-            }
-
+            Files.write(Paths.get(filePath), content.getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             LOGGER.debug(e.getMessage(), e.getCause());
         }
@@ -96,12 +79,9 @@ public class FileManager {
      *          List of files to archive
      */
     public static void zipFiles(String output, File... files) {
-        try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(output))) {
-            for (File fileToZip : files) {
-                zipOut.putNextEntry(new ZipEntry(fileToZip.getName()));
-                Files.copy(fileToZip.toPath(), zipOut);
-            }
-        } catch (FileNotFoundException e) {
+        try {
+            NioFileUtils.zip(new File(output), files);
+        } catch (FileNotFoundException | NoSuchFileException e) {
             LOGGER.error("Unable to find file for archive operation!", e);
         } catch (IOException e) {
             LOGGER.error("IO exception for archive operation!", e);
@@ -118,28 +98,14 @@ public class FileManager {
      * @throws IOException can be caused by read() method MessageDigest.getInstance() method
      */
     public static String getFileChecksum(Checksum checksumType, File file) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance(checksumType.value);
-
-        try (FileInputStream fileInputStream = new FileInputStream(file); FileChannel channel = fileInputStream.getChannel()) {
-            final ByteBuffer buf = ByteBuffer.allocateDirect(8192);
-            int buffer = channel.read(buf);
-
-            while (buffer != -1 && buffer != 0) {
-                buf.flip();
-                final byte[] bytes = new byte[buffer];
-                buf.get(bytes);
-                digest.update(bytes, 0, buffer);
-                buf.clear();
-                buffer = channel.read(buf);
-            }
-
-            return Base64.encodeBase64String(digest.digest());
-        }
+        return Base64.encodeBase64String(NioFileUtils.checksum(file, checksumType.value));
     }
 
     public enum Checksum {
         MD5("MD5"),
-        SHA_256("SHA-256");
+        SHA_1("SHA-1"),
+        SHA_256("SHA-256"),
+        SHA_512("SHA-512");
 
         public final String value;
 
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * NioFileUtils - file copy, checksum and zip operations based on file channels.
+ *
+ * Copies are done by {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} so the content
+ * isn't copied through heap buffers, checksum is calculated by reading into reused direct buffer, and zip entries are
+ * compressed and extracted by several threads.
+ */
+public class NioFileUtils {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // max size of single transfer call, a bigger file is transferred by parts
+    private static final long TRANSFER_SIZE = 256 * 1024 * 1024;
+    private static final int DIGEST_BUFFER_SIZE = 1024 * 1024;
+    // direct buffer reused by each thread for checksum calculation
+    private static final ThreadLocal<ByteBuffer> DIGEST_BUFFER = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE));
+    // bigger archives require zip64 format, they are created by ZipOutputStream
+    private static final long MAX_ZIP_SIZE = 0xFFFFFFFFL / 2;
+    private static final int MAX_ZIP_ENTRIES = 0xFFFF;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private NioFileUtils() {
+    }
+
+    /**
+     * Copy file content by channels transfer.
+     *
+     * @param source File
+     * @param target File, replaced if exists
+     * @throws IOException if copy failed
+     */
+    public static void copy(File source, File target) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(in, out);
+        }
+    }
+
+    /**
+     * Copy stream into the file. Stream isn't closed.
+     *
+     * @param in InputStream
+     * @param target File, replaced if exists
+     * @return long number of copied bytes
+     * @throws IOException if copy failed
+     */
+    public static long copy(InputStream in, File target) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long count;
+            while ((count = out.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                position += count;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Copy file content into the stream. Stream isn't closed.
+     *
+     * @param source File
+     * @param out OutputStream
+     * @throws IOException if copy failed
+     */
+    public static void copy(File source, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    /**
+     * Calculate file digest reading it by channel into the direct buffer. File isn't mapped so it can be moved or
+     * deleted right after the call.
+     *
+     * @param file File
+     * @param algorithm String digest algorithm, e.g. MD5, SHA-256
+     * @return byte[] digest
+     * @throws IOException if file can't be read
+     * @throws NoSuchAlgorithmException if algorithm isn't supported
+     */
+    public static byte[] checksum(File file, String algorithm) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        ByteBuffer buffer = DIGEST_BUFFER.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Archive files into the single zip compressing them in parallel.
+     *
+     * @param output File zip file, replaced if exists
+     * @param files files to archive, entry name is the file name
+     * @throws IOException if archive can't be created
+     */
+    public static void zip(File output, File... files) throws IOException {
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size > MAX_ZIP_SIZE || files.length > MAX_ZIP_ENTRIES) {
+            zipSequentially(output, files);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(THREADS, files.length)));
+        List<Future<CompressedEntry>> futures = new ArrayList<>();
+        try {
+            for (File file : files) {
+                futures.add(executor.submit(() -> compress(file)));
+            }
+            List<CompressedEntry> entries = new ArrayList<>();
+            for (Future<CompressedEntry> future : futures) {
+                entries.add(get(future));
+            }
+            write(output, entries);
+        } finally {
+            executor.shutdown();
+            // compressed data of every finished entry is removed even if other entry failed
+            for (Future<CompressedEntry> future : futures) {
+                try {
+                    Files.deleteIfExists(get(future).data);
+                } catch (IOException e) {
+                    LOGGER.debug("Compressed entry isn't removed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Extract zip entries in parallel.
+     *
+     * @param zip File archive
+     * @param target File folder to extract into
+     * @throws IOException if archive can't be extracted or has entry outside of the target folder
+     */
+    public static void unzip(File zip, File target) throws IOException {
+        Path root = target.toPath().toAbsolutePath().normalize();
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            List<ZipEntry> files = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path path = resolve(root, entry);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                } else {
+                    Files.createDirectories(path.getParent());
+                    files.add(entry);
+                }
+            }
+
+            // ZipFile supports concurrent reading of different entries
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(THREADS, files.size())));
+            try {
+                List<Future<Long>> futures = new ArrayList<>();
+                for (ZipEntry entry : files) {
+                    futures.add(executor.submit(() -> {
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            return copy(in, resolve(root, entry).toFile());
+                        }
+                    }));
+                }
+                for (Future<Long> future : futures) {
+                    get(future);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static Path resolve(Path root, ZipEntry entry) throws IOException {
+        Path path = root.resolve(entry.getName()).normalize();
+        if (!path.startsWith(root)) {
+            throw new IOException("Zip entry is outside of the target folder: " + entry.getName());
+        }
+        return path;
+    }
+
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = 0;
+        long size = in.size();
+        while (position < size) {
+            position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Operation is interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static CompressedEntry compress(File file) throws IOException {
+        CompressedEntry entry = new CompressedEntry();
+        entry.name = file.getName();
+        entry.time = file.lastModified();
+        entry.data = Files.createTempFile("carina-zip", ".deflate");
+        CRC32 crc = new CRC32();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (InputStream in = Files.newInputStream(file.toPath());
+                OutputStream out = new DeflaterOutputStream(Files.newOutputStream(entry.data), deflater, 64 * 1024)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(entry.data);
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        entry.crc = crc.getValue();
+        entry.size = file.length();
+        entry.compressedSize = Files.size(entry.data);
+        return entry;
+    }
+
+    /**
+     * Write zip structure (local headers with compressed data, central directory) for already deflated entries.
+     */
+    private static void write(File output, List<CompressedEntry> entries) throws IOException {
+        try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (CompressedEntry entry : entries) {
+                entry.offset = out.position();
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(0x04034b50);
+                putEntryFields(header, entry, name);
+                header.put(name);
+                header.flip();
+                write(out, header);
+                try (FileChannel data = FileChannel.open(entry.data, StandardOpenOption.READ)) {
+                    transfer(data, out);
+                }
+            }
+
+            long directoryOffset = out.position();
+            for (CompressedEntry entry : entries) {
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer header = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(0x02014b50);
+                // version made by
+                header.putShort((short) 20);
+                putEntryFields(header, entry, name);
+                // comment length, disk number, internal and external attributes
+                header.putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0);
+                header.putInt((int) entry.offset);
+                header.put(name);
+                header.flip();
+                write(out, header);
+            }
+            long directorySize = out.position() - directoryOffset;
+
+            ByteBuffer end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+            end.putInt(0x06054b50);
+            end.putShort((short) 0).putShort((short) 0);
+            end.putShort((short) entries.size()).putShort((short) entries.size());
+            end.putInt((int) directorySize).putInt((int) directoryOffset);
+            end.putShort((short) 0);
+            end.flip();
+            write(out, end);
+        }
+    }
+
+    private static void putEntryFields(ByteBuffer header, CompressedEntry entry, byte[] name) {
+        // version needed, flags (UTF-8 names), deflate method
+        header.putShort((short) 20).putShort((short) 0x0800).putShort((short) ZipEntry.DEFLATED);
+        header.putInt(toDosTime(entry.time));
+        header.putInt((int) entry.crc).putInt((int) entry.compressedSize).putInt((int) entry.size);
+        header.putShort((short) name.length).putShort((short) 0);
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int toDosTime(long time) {
+        java.util.Date date = new java.util.Date(time);
+        int year = date.getYear() + 1900;
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (date.getMonth() + 1) << 21 | date.getDate() << 16 | date.getHours() << 11
+                | date.getMinutes() << 5 | date.getSeconds() >> 1;
+    }
+
+    private static void zipSequentially(File output, File... files) throws IOException {
+        LOGGER.debug("Files are too big for parallel compression, zip64 archive is created sequentially: " + output);
+        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(output.toPath()))) {
+            for (File file : files) {
+                zipOut.putNextEntry(new ZipEntry(file.getName()));
+                copy(file, zipOut);
+                zipOut.closeEntry();
+            }
+        }
+    }
+
+    private static class CompressedEntry {
+        private String name;
+        private long time;
+        private Path data;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long offset;
+    }
+
+}
@@ -17,9 +17,11 @@ package com.qaprosoft.carina.core.foundation.utils;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -30,6 +32,7 @@ import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.crypto.CryptoTool;
 import com.qaprosoft.carina.core.foundation.exception.InvalidConfigurationException;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.resources.ResourceIndex;
 
 /**
  * R - loads properties from resource files.
@@ -55,12 +58,13 @@ public enum R {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    private static final String OVERRIDE_SIGN = "_";
-
     private static Pattern CRYPTO_PATTERN = Pattern.compile(SpecialKeywords.CRYPT);
 
     private String resourceFile;
 
+    // incremented on every change of global properties context so dependent caches can detect it cheaply
+    private final AtomicLong modificationCount = new AtomicLong();
+
     // temporary thread/test properties which is cleaned on afterTest phase for current thread. It can override any value from below R enum maps
     private static ThreadLocal<Properties> testProperties = new ThreadLocal<>();
 
@@ -83,12 +87,10 @@ public enum R {
                     LOGGER.debug("Base properties loaded: " + resource.resourceFile);
                 }
 
-                URL overrideResource;
-                String resourceName = OVERRIDE_SIGN + resource.resourceFile;
-                while ((overrideResource = ClassLoader.getSystemResource(resourceName)) != null) {
+                // "_" prefixed overrides are resolved once per JVM or taken from the generated manifest
+                for (URL overrideResource : ResourceIndex.get().getOverrideURLs(resource.resourceFile)) {
                     properties.load(overrideResource.openStream());
-                    LOGGER.debug("Override properties loaded: " + resourceName);
-                    resourceName = OVERRIDE_SIGN + resourceName;
+                    LOGGER.debug("Override properties loaded: " + overrideResource);
                 }
 
                 // Overrides properties by systems values
@@ -136,6 +138,7 @@ public enum R {
                     }
                 }
                 propertiesHolder.put(resource.resourceFile, properties);
+                resource.modificationCount.incrementAndGet();
             } catch (Exception e) {
                 throw new InvalidConfigurationException("Invalid config in '" + resource + "': " + e.getMessage());
             }
@@ -151,6 +154,10 @@ public enum R {
         this.resourceFile = resourceKey;
     }
 
+    public String getResourceFile() {
+        return resourceFile;
+    }
+
     /**
      * Put and update globally value for properties context.
      * 
@@ -176,9 +183,36 @@ public enum R {
         } else {
             // override globally configuration map property 
             propertiesHolder.get(resourceFile).put(key, value);
+            modificationCount.incrementAndGet();
         }
     }
     
+    /**
+     * Put and update globally or for current test only all values for properties context by single operation.
+     * 
+     * @param properties Map of keys and values
+     * @param currentTestOnly boolean
+     */
+    public void putAll(Map<String, String> properties, boolean currentTestOnly) {
+        if (currentTestOnly) {
+            LOGGER.warn("Override properties for current test " + properties.keySet() + "!");
+            getTestProperties().putAll(properties);
+        } else {
+            propertiesHolder.get(resourceFile).putAll(properties);
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove value from global properties context.
+     * 
+     * @param key String
+     */
+    public void remove(String key) {
+        propertiesHolder.get(resourceFile).remove(key);
+        modificationCount.incrementAndGet();
+    }
+
     /**
      * Verify if key is declared in data map.
      * 
@@ -204,13 +238,10 @@ public enum R {
             return value;
         }
         
-        value = CONFIG.resourceFile.equals(resourceFile) ? PlaceholderResolver.resolve(propertiesHolder.get(resourceFile), key)
-                : propertiesHolder.get(resourceFile).getProperty(key);
-
         // [VD] Decryption is prohibited here otherwise we have plain sensitive information in logs! 
 
         // [VD] as designed empty MUST be returned
-        return value != null ? value : StringUtils.EMPTY;
+        return getGlobal(key);
     }
     
     /**
@@ -272,30 +303,56 @@ public enum R {
         return path;
     }
 
-	public Properties getProperties() {
-		Properties globalProp = propertiesHolder.get(resourceFile);
-		// Glodal properties will be updated with test specific properties
-		if (!getTestProperties().isEmpty()) {
-			Properties testProp = testProperties.get();
-			LOGGER.debug(String.format("CurrentTestOnly properties has [%s] entries.", testProp.size()));
-			LOGGER.debug(testProp.toString());
-			@SuppressWarnings({ "unchecked", "rawtypes" })
-			Map<String, String> testCapabilitiesMap = new HashMap(testProp);
-			testCapabilitiesMap.keySet().stream().forEach(i -> {
-				if (globalProp.containsKey(i)) {
-					LOGGER.debug(String.format(
-							"Global properties already contains key --- %s --- with value --- %s ---. Global property will be overridden by  --- %s --- from test properties.",
-							i, globalProp.get(i), testProp.get(i)));
-				} else {
-					LOGGER.debug(String.format(
-							"Global properties isn't contains key --- %s ---.  Global key --- %s --- will be set to --- %s ---  from test properties.",
-							i, i, testProp.get(i)));
-				}
-				globalProp.setProperty(i, (String) testProp.get(i));
-			});
-		}
-		return globalProp;
-	}
+    /**
+     * Return properties context merged with current test properties. Test properties are applied to the copy so
+     * global context isn't changed.
+     * 
+     * @return Properties
+     */
+    public Properties getProperties() {
+        Properties globalProp = propertiesHolder.get(resourceFile);
+        if (getTestProperties().isEmpty()) {
+            return globalProp;
+        }
+        Properties testProp = testProperties.get();
+        LOGGER.debug(String.format("CurrentTestOnly properties has [%s] entries.", testProp.size()));
+        LOGGER.debug(testProp.toString());
+        Properties merged = new Properties();
+        merged.putAll(globalProp);
+        merged.putAll(testProp);
+        return merged;
+    }
+
+    /**
+     * Return global properties context without current test properties.
+     * 
+     * @return unmodifiable Map
+     */
+    public Map<Object, Object> getGlobalProperties() {
+        return Collections.unmodifiableMap(propertiesHolder.get(resourceFile));
+    }
+
+    /**
+     * Return number of changes of global properties context made by put, putAll, remove and reinit. Current test
+     * properties aren't counted.
+     * 
+     * @return long modification count
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Return value from global properties context ignoring current test properties.
+     * 
+     * @param key Requested key
+     * @return config value
+     */
+    public String getGlobal(String key) {
+        String value = CONFIG.resourceFile.equals(resourceFile) ? PlaceholderResolver.resolve(propertiesHolder.get(resourceFile), key)
+                : propertiesHolder.get(resourceFile).getProperty(key);
+        return value != null ? value : StringUtils.EMPTY;
+    }
     
     public void clearTestProperties() {
         testProperties.remove();
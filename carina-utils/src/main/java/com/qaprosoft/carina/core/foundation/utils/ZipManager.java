@@ -15,16 +15,11 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.utils;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
-import java.util.Enumeration;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,72 +28,37 @@ public class ZipManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     
 
-    @SuppressWarnings("rawtypes")
+    /**
+     * Extract zip archive into the folder, entries are extracted in parallel.
+     *
+     * @param zip String zip file path
+     * @param extractTo String target folder path
+     */
     public static void unzip(String zip, String extractTo) {
-        Enumeration entries;
-        ZipFile zipFile = null;
-
         try {
-            zipFile = new ZipFile(zip);
-
-            entries = zipFile.entries();
-
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = (ZipEntry) entries.nextElement();
-
-                if (entry.isDirectory()) {
-                    File folder = new File(extractTo + "/" + entry.getName());
-                    boolean isCreated = folder.mkdir();
-                    if (!isCreated) {
-                        throw new RuntimeException("Folder not created: " + folder.getAbsolutePath());
-                    }
-                    continue;
-                }
-
-                InputStream is = zipFile.getInputStream(entry);
-                try {
-                    FileOutputStream fos = new FileOutputStream(extractTo + "/" + entry.getName());
-                    try {
-                        BufferedOutputStream bos = new BufferedOutputStream(fos);
-                        try {
-                            copyInputStream(is, bos);
-                        } finally {
-							bos.close();
-                        }
-                    } finally {
-						fos.close();
-                    }
-                } finally {
-                    if (is != null) {
-                        is.close();
-                    }
-                }
-            }
+            NioFileUtils.unzip(new File(zip), new File(extractTo));
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
-        } finally {
-            try {
-                if (zipFile != null) {
-                    zipFile.close();
-                }
-            } catch (IOException e) {
-                LOGGER.error(e.getMessage(), e);
-            }
         }
     }
 
+    /**
+     * Copy stream content and close both streams.
+     *
+     * @param in InputStream
+     * @param out OutputStream
+     * @throws IOException if copy failed
+     * @deprecated closes streams it doesn't own, use {@link NioFileUtils#copy(InputStream, File)} or
+     *             {@link InputStream#transferTo(OutputStream)}
+     */
+    @Deprecated
     public static final void copyInputStream(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1024];
-        int len;
-
         if (in == null) {
         	return;
         }
-        
-        while ((len = in.read(buffer)) >= 0)
-            out.write(buffer, 0, len);
 
-        in.close();
-        out.close();
+        try (InputStream is = in; OutputStream os = out) {
+            is.transferTo(os);
+        }
     }
 }
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+
+/**
+ * AdbClient - talks to the local adb server using its host protocol instead of starting adb process per command.
+ *
+ * Every request is sent as 4 hex digits length followed by the payload, server replies OKAY or FAIL with length
+ * prefixed message. Each shell stream uses its own short living localhost connection, adb server multiplexes all of
+ * them over the single transport of the device.
+ */
+public class AdbClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String DEFAULT_HOST = "127.0.0.1";
+    public static final int DEFAULT_PORT = 5037;
+
+    private static final int CONNECT_TIMEOUT = 2000;
+    // how long to use process based adb after server was unavailable
+    private static final long RETRY_INTERVAL = 60000;
+
+    private static final String OKAY = "OKAY";
+    private static final String FAIL = "FAIL";
+
+    private final String host;
+    private final int port;
+
+    private volatile long unavailableSince = 0;
+
+    public AdbClient() {
+        this(DEFAULT_HOST, getDefaultPort());
+    }
+
+    public AdbClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Verify if adb server was reachable recently. Server is checked again after {@link #RETRY_INTERVAL} since the
+     * last connection failure.
+     *
+     * @return boolean
+     */
+    public boolean isAvailable() {
+        return unavailableSince == 0 || System.currentTimeMillis() - unavailableSince > RETRY_INTERVAL;
+    }
+
+    /**
+     * Get adb server version.
+     *
+     * @return int version
+     * @throws IOException
+     *             on connection or protocol failure
+     */
+    public int getVersion() throws IOException {
+        try (Socket socket = open()) {
+            request(socket, "host:version");
+            return Integer.parseInt(readMessage(socket.getInputStream()), 16);
+        }
+    }
+
+    /**
+     * List devices in "serial\tstate" format as "adb devices" does.
+     *
+     * @return List of lines
+     * @throws IOException
+     *             on connection or protocol failure
+     */
+    public List<String> getDevices() throws IOException {
+        try (Socket socket = open()) {
+            request(socket, "host:devices");
+            return toLines(readMessage(socket.getInputStream()));
+        }
+    }
+
+    /**
+     * Connect remote device.
+     *
+     * @param address
+     *            String host:port
+     * @return String server message
+     * @throws IOException
+     *             on connection or protocol failure
+     */
+    public String connect(String address) throws IOException {
+        return hostMessage("host:connect:" + address);
+    }
+
+    /**
+     * Disconnect remote device.
+     *
+     * @param address
+     *            String host:port
+     * @return String server message
+     * @throws IOException
+     *             on connection or protocol failure
+     */
+    public String disconnect(String address) throws IOException {
+        return hostMessage("host:disconnect:" + address);
+    }
+
+    /**
+     * Execute shell command and read the whole output.
+     *
+     * @param serial
+     *            String device serial, any single device is used if empty
+     * @param command
+     *            String shell command line
+     * @return List of output lines
+     * @throws IOException
+     *             on connection or protocol failure
+     */
+    public List<String> shell(String serial, String command) throws IOException {
+        List<String> output = new ArrayList<>();
+        shell(serial, command, output::add);
+        return output;
+    }
+
+    /**
+     * Execute shell command and pass output to the handler line by line. Connection is closed as soon as handler
+     * returns false so adb server stops the command on device and the rest of output is never transferred.
+     *
+     * @param serial
+     *            String device serial, any single device is used if empty
+     * @param command
+     *            String shell command line
+     * @param handler
+     *            Predicate which returns false to stop reading
+     * @return boolean true if reading was stopped by handler
+     * @throws IOException
+     *             on connection or protocol failure
+     */
+    public boolean shell(String serial, String command, Predicate<String> handler) throws IOException {
+        return shell(serial, command, handler, connection -> {
+        });
+    }
+
+    /**
+     * Execute shell command and pass output to the handler line by line. Opened connection is passed to the consumer
+     * so other thread can close it and interrupt reading of endless output like logcat.
+     *
+     * @param serial
+     *            String device serial, any single device is used if empty
+     * @param command
+     *            String shell command line
+     * @param handler
+     *            Predicate which returns false to stop reading
+     * @param connection
+     *            Consumer of the opened connection
+     * @return boolean true if reading was stopped by handler
+     * @throws IOException
+     *             on connection or protocol failure, including connection closed by other thread
+     */
+    public boolean shell(String serial, String command, Predicate<String> handler, Consumer<Closeable> connection) throws IOException {
+        try (Socket socket = open()) {
+            connection.accept(socket);
+            request(socket, StringUtils.isEmpty(serial) ? "host:transport-any" : "host:transport:" + serial);
+            request(socket, "shell:" + command);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // legacy shell service uses pty which converts \n into \r\n
+                if (!handler.test(StringUtils.removeEnd(line, "\r"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private String hostMessage(String request) throws IOException {
+        try (Socket socket = open()) {
+            request(socket, request);
+            return readMessage(socket.getInputStream());
+        }
+    }
+
+    private Socket open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            socket.setSoTimeout(Configuration.getAdbExecTimeout());
+            socket.setTcpNoDelay(true);
+        } catch (ConnectException e) {
+            socket.close();
+            unavailableSince = System.currentTimeMillis();
+            throw e;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        unavailableSince = 0;
+        return socket;
+    }
+
+    private void request(Socket socket, String payload) throws IOException {
+        LOGGER.debug("adb request: " + payload);
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        OutputStream out = socket.getOutputStream();
+        out.write(String.format("%04x", bytes.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+
+        InputStream in = socket.getInputStream();
+        String status = new String(readFully(in, 4), StandardCharsets.US_ASCII);
+        if (FAIL.equals(status)) {
+            throw new AdbFailException(readMessage(in));
+        }
+        if (!OKAY.equals(status)) {
+            throw new IOException("Unexpected adb server response: " + status);
+        }
+    }
+
+    private static String readMessage(InputStream in) throws IOException {
+        int length = Integer.parseInt(new String(readFully(in, 4), StandardCharsets.US_ASCII), 16);
+        return new String(readFully(in, length), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(length);
+        byte[] chunk = new byte[Math.max(1, Math.min(length, 8192))];
+        while (buffer.size() < length) {
+            int read = in.read(chunk, 0, Math.min(chunk.length, length - buffer.size()));
+            if (read < 0) {
+                throw new EOFException("adb server closed connection");
+            }
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static List<String> toLines(String message) {
+        List<String> lines = new ArrayList<>();
+        for (String line : message.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static int getDefaultPort() {
+        String port = System.getenv("ANDROID_ADB_SERVER_PORT");
+        if (StringUtils.isNumeric(port) && !port.isEmpty()) {
+            return Integer.parseInt(port);
+        }
+        return DEFAULT_PORT;
+    }
+
+    @Override
+    public String toString() {
+        return "AdbClient " + host + ":" + port;
+    }
+
+    /**
+     * Error reported by adb server itself, for example when device isn't found. Process based adb would fail the same
+     * way so such error shouldn't trigger fallback.
+     */
+    public static class AdbFailException extends IOException {
+
+        private static final long serialVersionUID = 4367312845298731032L;
+
+        public AdbFailException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -17,17 +17,31 @@ package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
 
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.invoke.MethodHandles;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbClient.AdbFailException;
 
 /**
  * Created by YP.
@@ -38,11 +52,28 @@ import com.qaprosoft.carina.core.foundation.utils.Configuration;
 public class AdbExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    // shared client of the local adb server
+    private static final AdbClient DEFAULT_CLIENT = new AdbClient();
+
+    // drains process streams so adb never blocks on the full pipe
+    private static final ExecutorService STREAM_READERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "adb-output-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // private static final String REMOTE_ADB_EXECUTION_CMD = "ssh %s@%s %s";
     private static String[] cmdInit;
 
+    private final AdbClient client;
+
     public AdbExecutor() {
+        this(DEFAULT_CLIENT);
+    }
+
+    AdbExecutor(AdbClient client) {
         cmdInit = "adb".split(" ");
+        this.client = client;
     }
 
     /**
@@ -54,33 +85,269 @@ public class AdbExecutor {
         return cmdInit;
     }
 
+    /**
+     * Verify if commands are sent to adb server directly.
+     * 
+     * @return boolean
+     */
+    public boolean isNativeClientAvailable() {
+        return client != null && Configuration.getBoolean(Parameter.ADB_NATIVE_CLIENT) && client.isAvailable();
+    }
+
     public List<String> execute(String[] cmd) {
+        if (isNativeClientAvailable()) {
+            try {
+                List<String> output = executeNative(cmd);
+                if (output != null) {
+                    return output;
+                }
+            } catch (AdbFailException e) {
+                // the same as adb process writing error into stderr
+                LOGGER.debug("adb: " + e.getMessage());
+                return new ArrayList<String>();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to execute command using adb server, adb process will be used: " + e.getMessage());
+            }
+        }
+        return executeProcess(cmd);
+    }
+
+    /**
+     * Execute command and pass output to the handler line by line without buffering it. Reading is stopped and the
+     * command is terminated as soon as handler returns false.
+     * 
+     * @param cmd String[] adb command line
+     * @param handler Predicate which returns false to stop reading
+     * @return boolean true if reading was stopped by handler
+     */
+    public boolean execute(String[] cmd, Predicate<String> handler) {
+        return execute(cmd, handler, connection -> {
+        });
+    }
+
+    /**
+     * Execute command and pass output to the handler line by line. Connection to adb server or adb process is passed
+     * to the consumer, closing it from other thread terminates the command and finishes reading.
+     * 
+     * @param cmd String[] adb command line
+     * @param handler Predicate which returns false to stop reading
+     * @param connection Consumer of the Closeable terminating the command
+     * @return boolean true if reading was stopped by handler
+     */
+    public boolean execute(String[] cmd, Predicate<String> handler, Consumer<Closeable> connection) {
+        String[] shell = getShellCommand(cmd);
+        if (shell == null) {
+            for (String line : execute(cmd)) {
+                if (!handler.test(line)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (isNativeClientAvailable()) {
+            AtomicBoolean delivered = new AtomicBoolean();
+            AtomicBoolean closed = new AtomicBoolean();
+            try {
+                return client.shell(shell[0], shell[1], line -> {
+                    delivered.set(true);
+                    return handler.test(line);
+                }, socket -> connection.accept(() -> {
+                    closed.set(true);
+                    socket.close();
+                }));
+            } catch (AdbFailException e) {
+                LOGGER.debug("adb: " + e.getMessage());
+                return false;
+            } catch (SocketTimeoutException e) {
+                // server is alive but command doesn't produce output anymore, e.g. idle logcat
+                LOGGER.debug("No output from adb server during " + Configuration.getAdbExecTimeout() + " ms");
+                return false;
+            } catch (IOException e) {
+                if (closed.get()) {
+                    LOGGER.debug("adb server connection was closed by caller");
+                    return false;
+                }
+                if (delivered.get()) {
+                    // part of output is already consumed so command can't be repeated
+                    LOGGER.debug("adb server connection is broken: " + e.getMessage());
+                    return false;
+                }
+                LOGGER.debug("Unable to execute command using adb server, adb process will be used: " + e.getMessage());
+            }
+        }
+        return executeProcess(cmd, handler, connection);
+    }
+
+    /**
+     * Execute command using adb server protocol.
+     * 
+     * @param cmd String[] adb command line
+     * @return output lines or null if command isn't supported by native client
+     * @throws IOException on connection or protocol failure
+     */
+    private List<String> executeNative(String[] cmd) throws IOException {
+        if (cmd.length < 2 || !isAdb(cmd[0])) {
+            return null;
+        }
+
+        int index = 1;
+        String serial = "";
+        if ("-s".equals(cmd[index]) && cmd.length > 3) {
+            serial = cmd[index + 1];
+            index += 2;
+        }
+
+        String command = cmd[index];
+        List<String> args = Arrays.asList(cmd).subList(index + 1, cmd.length);
+        List<String> output;
+        switch (command) {
+        case "shell":
+            if (args.isEmpty()) {
+                // interactive shell
+                return null;
+            }
+            // adb concatenates arguments the same way before sending them to device shell
+            output = client.shell(serial, String.join(" ", args));
+            break;
+        case "devices":
+            if (!args.isEmpty()) {
+                return null;
+            }
+            output = new ArrayList<String>();
+            output.add("List of devices attached");
+            output.addAll(client.getDevices());
+            output.add("");
+            break;
+        case "connect":
+            if (args.size() != 1) {
+                return null;
+            }
+            output = Collections.singletonList(client.connect(args.get(0)));
+            break;
+        case "disconnect":
+            if (args.size() != 1) {
+                return null;
+            }
+            output = Collections.singletonList(client.disconnect(args.get(0)));
+            break;
+        default:
+            // install, push, pull etc. require sync protocol
+            return null;
+        }
+
+        for (String line : output) {
+            LOGGER.debug(line);
+        }
+        return output;
+    }
+
+    private List<String> executeProcess(String[] cmd) {
         ProcessBuilderExecutor executor = null;
-        BufferedReader in = null;
         List<String> output = new ArrayList<String>();
 
         try {
             executor = new ProcessBuilderExecutor(cmd);
 
             Process process = executor.start();
+            // read output in parallel otherwise process is blocked forever on huge output like dumpsys
+            Future<?> stdout = STREAM_READERS.submit(() -> readLines(process.getInputStream(), output, true));
+            STREAM_READERS.submit(() -> readLines(process.getErrorStream(), new ArrayList<String>(), false));
+
             if (!process.waitFor(Configuration.getAdbExecTimeout(), TimeUnit.MILLISECONDS)) {
                 throw new TimeoutException("Waiting time elapsed before the adb execution command has exited");
             }
-            in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            // process is finished so output is closed or will be closed soon
+            stdout.get(Configuration.getAdbExecTimeout(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            ProcessBuilderExecutor.gcNullSafe(executor);
+        }
+
+        synchronized (output) {
+            return new ArrayList<String>(output);
+        }
+    }
+
+    private boolean executeProcess(String[] cmd, Predicate<String> handler, Consumer<Closeable> connection) {
+        ProcessBuilderExecutor executor = null;
+
+        try {
+            executor = new ProcessBuilderExecutor(cmd);
+
+            Process process = executor.start();
+            connection.accept(process::destroy);
+            STREAM_READERS.submit(() -> readLines(process.getErrorStream(), new ArrayList<String>(), false));
+            Future<Boolean> stdout = STREAM_READERS.submit(() -> readLines(process.getInputStream(), handler));
+            return stdout.get(Configuration.getAdbExecTimeout(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        } finally {
+            // terminates process if reading was stopped before the end of output
+            ProcessBuilderExecutor.gcNullSafe(executor);
+        }
+    }
+
+    private static boolean readLines(InputStream stream, Predicate<String> handler) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream));
+        try {
             String line = null;
+            while ((line = in.readLine()) != null) {
+                if (!handler.test(line)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
 
+    private static Void readLines(InputStream stream, List<String> output, boolean log) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream));
+        try {
+            String line = null;
             while ((line = in.readLine()) != null) {
-                output.add(line);
-                LOGGER.debug(line);
+                synchronized (output) {
+                    output.add(line);
+                }
+                if (log) {
+                    LOGGER.debug(line);
+                }
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage(), e);
         } finally {
             closeQuietly(in);
-            ProcessBuilderExecutor.gcNullSafe(executor);
         }
+        return null;
+    }
 
-        return output;
+    /**
+     * Extract device serial and command line from "adb [-s serial] shell cmd" call.
+     * 
+     * @param cmd String[] adb command line
+     * @return String[] serial and command or null for other adb commands
+     */
+    private static String[] getShellCommand(String[] cmd) {
+        if (cmd.length < 3 || !isAdb(cmd[0])) {
+            return null;
+        }
+        int index = 1;
+        String serial = "";
+        if ("-s".equals(cmd[index]) && cmd.length > 4) {
+            serial = cmd[index + 1];
+            index += 2;
+        }
+        if (!"shell".equals(cmd[index])) {
+            return null;
+        }
+        // adb concatenates arguments the same way before sending them to device shell
+        return new String[] { serial, String.join(" ", Arrays.asList(cmd).subList(index + 1, cmd.length)) };
+    }
+
+    private static boolean isAdb(String executable) {
+        String name = new File(executable).getName();
+        return "adb".equals(name) || "adb.exe".equals(name);
     }
 
     public static void closeQuietly(Closeable closeable) {
@@ -0,0 +1,529 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.NioFileUtils;
+
+/**
+ * ArtifactCache - local storage of downloaded build artifacts addressed by content checksum (ETag or MD5).
+ *
+ * Artifact is stored as root/&lt;checksum&gt;/&lt;file name&gt;, so the same build is downloaded once whatever storage
+ * (S3, Azure, AppCenter) and link it was requested by. Download goes into ".part" file which is renamed when complete,
+ * so artifact file either absent or complete. HTTP artifacts are downloaded by ranges in parallel and completed ranges
+ * are tracked in ".progress" file to resume interrupted download. Download is guarded by file lock so forked JVMs of
+ * the same agent wait for the single download instead of starting their own. When the cache exceeds its max size,
+ * least recently used artifacts are removed after the next download.
+ */
+public class ArtifactCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final String PART = ".part";
+    private static final String PROGRESS = ".progress";
+    private static final String LOCK = ".lock";
+
+    private static final int RETRIES = 3;
+    private static final int TIMEOUT = 60000;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+\\d+-\\d+/(\\d+)");
+    private static final Pattern HEX_MD5 = Pattern.compile("[0-9a-fA-F]{32}");
+
+    private static volatile ArtifactCache instance;
+
+    // file lock can't be acquired twice by the same JVM so threads are synchronized before it
+    private static final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    private final File root;
+    private final int threads;
+    private final long chunkSize;
+    private final long maxSize;
+
+    /**
+     * Download of artifact content into the file.
+     */
+    @FunctionalInterface
+    public interface Downloader {
+        void download(File target) throws IOException;
+    }
+
+    public ArtifactCache(File root) {
+        this(root, 4, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ArtifactCache(File root, int threads, long chunkSize) {
+        this(root, threads, chunkSize, 0);
+    }
+
+    /**
+     * @param root File cache folder
+     * @param threads int number of parallel ranged requests
+     * @param chunkSize long size of single range in bytes
+     * @param maxSize long max cache size in bytes, 0 or less for unlimited cache
+     */
+    public ArtifactCache(File root, int threads, long chunkSize, long maxSize) {
+        this.root = root;
+        this.threads = Math.max(1, threads);
+        this.chunkSize = chunkSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return ArtifactCache in "artifact_cache_dir" folder or in temporary folder if it isn't defined, limited by
+     *         "artifact_cache_max_size"
+     */
+    public static ArtifactCache getInstance() {
+        if (instance == null) {
+            synchronized (ArtifactCache.class) {
+                if (instance == null) {
+                    String dir = Configuration.get(Parameter.ARTIFACT_CACHE_DIR);
+                    File root = dir.isEmpty() ? new File(System.getProperty("java.io.tmpdir"), "carina-artifacts") : new File(dir);
+                    long maxSize = Configuration.getLong(Parameter.ARTIFACT_CACHE_MAX_SIZE) * 1024 * 1024;
+                    instance = new ArtifactCache(root, Configuration.getInt(Parameter.ARTIFACT_DOWNLOAD_THREADS), DEFAULT_CHUNK_SIZE, maxSize);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Get artifact by HTTP(S) link, ETag of the server response is used as checksum.
+     *
+     * @param url URL of artifact, e.g. pre-signed S3 url
+     * @param fileName String artifact file name
+     * @return File cached artifact
+     * @throws IOException if artifact can't be downloaded
+     */
+    public File get(URL url, String fileName) throws IOException {
+        return get(url, fileName, null);
+    }
+
+    /**
+     * Get artifact by HTTP(S) link.
+     *
+     * @param url URL of artifact, e.g. pre-signed S3 url
+     * @param fileName String artifact file name
+     * @param checksum String ETag or MD5 (hex or base64) of the artifact, requested from server if empty
+     * @return File cached artifact
+     * @throws IOException if artifact can't be downloaded
+     */
+    public File get(URL url, String fileName, String checksum) throws IOException {
+        if (!StringUtils.isEmpty(checksum)) {
+            File cached = getFile(checksum, fileName);
+            if (cached.exists()) {
+                LOGGER.info("Artifact is already downloaded: " + cached.getAbsolutePath());
+                touch(cached);
+                return cached;
+            }
+        }
+
+        Probe probe = probe(url);
+        String key = !StringUtils.isEmpty(checksum) ? checksum : probe.etag;
+        if (StringUtils.isEmpty(key)) {
+            // server doesn't provide checksum, link without query (signature) and size identify the artifact
+            key = md5Hex((url.getProtocol() + "://" + url.getHost() + url.getPath() + "#" + probe.length).getBytes(StandardCharsets.UTF_8));
+        }
+        return get(fileName, key, target -> download(url, probe, target));
+    }
+
+    /**
+     * Get artifact downloading it by custom downloader if it isn't available in cache yet.
+     *
+     * @param fileName String artifact file name
+     * @param checksum String ETag or MD5 (hex or base64) of the artifact
+     * @param downloader Downloader writing artifact content into the file
+     * @return File cached artifact
+     * @throws IOException if artifact can't be downloaded or its MD5 doesn't match
+     */
+    public File get(String fileName, String checksum, Downloader downloader) throws IOException {
+        File target = getFile(checksum, fileName);
+        if (target.exists()) {
+            LOGGER.info("Artifact is already downloaded: " + target.getAbsolutePath());
+            touch(target);
+            return target;
+        }
+
+        File dir = target.getParentFile();
+        Files.createDirectories(dir.toPath());
+        ReentrantLock localLock = locks.computeIfAbsent(dir.getAbsolutePath(), k -> new ReentrantLock());
+        localLock.lock();
+        try (FileChannel lockChannel = FileChannel.open(new File(dir, LOCK).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = lockChannel.lock()) {
+            // could be downloaded by another thread or process while waiting for lock
+            if (target.exists()) {
+                LOGGER.info("Artifact was downloaded concurrently: " + target.getAbsolutePath());
+                touch(target);
+                return target;
+            }
+
+            File part = new File(dir, target.getName() + PART);
+            LOGGER.info("Downloading artifact into " + target.getAbsolutePath());
+            downloader.download(part);
+            verify(part, checksum);
+            move(part, target);
+            Files.deleteIfExists(new File(dir, target.getName() + PROGRESS).toPath());
+            LOGGER.info("Artifact downloaded: " + target.getAbsolutePath());
+            evict(dir);
+            return target;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    File getFile(String checksum, String fileName) {
+        // quotes of ETag and base64 symbols aren't safe for folder name
+        String folder = checksum.replaceAll("[^a-zA-Z0-9-]", "_");
+        return new File(new File(root, folder), new File(fileName).getName());
+    }
+
+    /**
+     * Remove least recently used artifacts until the cache fits max size. Folder of the requested artifact and folders
+     * locked by download in progress are kept. Lock file is kept as well as another process could wait for it.
+     *
+     * @param keep File folder of the requested artifact
+     */
+    void evict(File keep) {
+        if (maxSize <= 0) {
+            return;
+        }
+        // only folders created by the cache have lock file, other content of shared root (e.g. azure_local_storage) is kept
+        File[] dirs = root.listFiles(dir -> dir.isDirectory() && new File(dir, LOCK).exists());
+        if (dirs == null) {
+            return;
+        }
+
+        long total = 0;
+        List<CachedArtifact> candidates = new ArrayList<>();
+        for (File dir : dirs) {
+            CachedArtifact artifact = new CachedArtifact(dir);
+            total += artifact.size;
+            if (artifact.size > 0 && !dir.equals(keep)) {
+                candidates.add(artifact);
+            }
+        }
+
+        candidates.sort(Comparator.comparingLong(artifact -> artifact.lastAccess));
+        for (CachedArtifact artifact : candidates) {
+            if (total <= maxSize) {
+                break;
+            }
+            if (remove(artifact.dir)) {
+                LOGGER.info("Artifact is evicted from cache: " + artifact.dir.getAbsolutePath());
+                total -= artifact.size;
+            }
+        }
+    }
+
+    private static boolean remove(File dir) {
+        ReentrantLock localLock = locks.computeIfAbsent(dir.getAbsolutePath(), k -> new ReentrantLock());
+        if (!localLock.tryLock()) {
+            return false;
+        }
+        try (FileChannel lockChannel = FileChannel.open(new File(dir, LOCK).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = lockChannel.tryLock()) {
+            if (lock == null) {
+                // artifact is being downloaded by another process
+                return false;
+            }
+            File[] files = dir.listFiles(file -> !LOCK.equals(file.getName()));
+            if (files != null) {
+                for (File file : files) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            return true;
+        } catch (IOException | OverlappingFileLockException e) {
+            // e.g. artifact is still opened by another process on Windows
+            LOGGER.debug("Unable to evict artifact " + dir.getAbsolutePath() + ": " + e.getMessage());
+            return false;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    private static void touch(File file) {
+        // modification time is used as last access time for eviction
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Unable to update last access time of " + file.getAbsolutePath());
+        }
+    }
+
+    private void download(URL url, Probe probe, File part) throws IOException {
+        if (!probe.ranges || probe.length <= 0) {
+            LOGGER.debug("Server doesn't support ranges, artifact is downloaded by single request: " + url.getPath());
+            downloadAll(url, part);
+            return;
+        }
+
+        int chunks = (int) ((probe.length + chunkSize - 1) / chunkSize);
+        File progressFile = new File(part.getParentFile(), part.getName().replace(PART, PROGRESS));
+        BitSet completed = readProgress(progressFile, part, probe.length);
+        if (!completed.isEmpty()) {
+            LOGGER.info(String.format("Resuming download: %d of %d chunks are already downloaded", completed.cardinality(), chunks));
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            if (!completed.get(i)) {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, pending.size()));
+        try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int chunk : pending) {
+                long start = chunk * chunkSize;
+                long end = Math.min(start + chunkSize, probe.length) - 1;
+                futures.add(executor.submit(() -> {
+                    downloadRange(url, channel, start, end);
+                    return chunk;
+                }));
+            }
+
+            IOException failure = null;
+            for (Future<Integer> future : futures) {
+                try {
+                    completed.set(future.get());
+                    Files.write(progressFile.toPath(), completed.toByteArray());
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Artifact download is interrupted", e);
+                }
+            }
+            if (failure != null) {
+                // completed chunks are kept for the next attempt
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BitSet readProgress(File progressFile, File part, long length) throws IOException {
+        if (progressFile.exists() && part.exists() && part.length() <= length) {
+            return BitSet.valueOf(Files.readAllBytes(progressFile.toPath()));
+        }
+        Files.deleteIfExists(part.toPath());
+        return new BitSet();
+    }
+
+    private static void downloadRange(URL url, FileChannel channel, long start, long end) throws IOException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= RETRIES; attempt++) {
+            HttpURLConnection connection = open(url);
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+            try {
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new IOException("Unexpected response code " + connection.getResponseCode() + " for range " + start + "-" + end);
+                }
+                long position = start;
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream in = connection.getInputStream()) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                        while (bytes.hasRemaining()) {
+                            position += channel.write(bytes, position);
+                        }
+                    }
+                }
+                if (position != end + 1) {
+                    throw new IOException("Incomplete range " + start + "-" + end + ": " + (position - start) + " bytes received");
+                }
+                return;
+            } catch (IOException e) {
+                LOGGER.debug(String.format("Range %d-%d download attempt #%d failed: %s", start, end, attempt, e.getMessage()));
+                failure = e;
+            } finally {
+                connection.disconnect();
+            }
+        }
+        throw failure;
+    }
+
+    private static void downloadAll(URL url, File part) throws IOException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= RETRIES; attempt++) {
+            HttpURLConnection connection = open(url);
+            try (InputStream in = connection.getInputStream()) {
+                Files.copy(in, part.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            } catch (IOException e) {
+                LOGGER.debug(String.format("Download attempt #%d failed: %s", attempt, e.getMessage()));
+                failure = e;
+            } finally {
+                connection.disconnect();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Request the first byte only to get size, ETag and ranges support. HEAD isn't used as pre-signed urls are signed
+     * for GET method.
+     */
+    private static Probe probe(URL url) throws IOException {
+        HttpURLConnection connection = open(url);
+        connection.setRequestProperty("Range", "bytes=0-0");
+        try {
+            int code = connection.getResponseCode();
+            Probe probe = new Probe();
+            probe.etag = connection.getHeaderField("ETag");
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                Matcher matcher = CONTENT_RANGE.matcher(StringUtils.defaultString(connection.getHeaderField("Content-Range")));
+                probe.ranges = matcher.matches();
+                probe.length = probe.ranges ? Long.parseLong(matcher.group(1)) : -1;
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                probe.length = connection.getContentLengthLong();
+            } else {
+                throw new IOException("Unable to get artifact " + url.getPath() + ", response code: " + code);
+            }
+            return probe;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        return connection;
+    }
+
+    /**
+     * Verify MD5 if checksum is MD5 in hex (S3 ETag of single part upload) or base64 (Azure Content-MD5) form.
+     */
+    private static void verify(File file, String checksum) throws IOException {
+        String expected = StringUtils.strip(checksum, "\"");
+        boolean hex = HEX_MD5.matcher(expected).matches();
+        boolean base64 = expected.length() == 24 && expected.endsWith("==");
+        if (!hex && !base64) {
+            return;
+        }
+
+        byte[] digest = md5(file);
+        String actual = hex ? Hex.encodeHexString(digest) : Base64.getEncoder().encodeToString(digest);
+        if (!actual.equalsIgnoreCase(expected)) {
+            Files.deleteIfExists(file.toPath());
+            throw new IOException("Downloaded artifact checksum " + actual + " doesn't match expected " + expected);
+        }
+    }
+
+    private static byte[] md5(File file) throws IOException {
+        try {
+            return NioFileUtils.checksum(file, "MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String md5Hex(byte[] bytes) {
+        return Hex.encodeHexString(getMd5().digest(bytes));
+    }
+
+    private static MessageDigest getMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void move(File source, File target) throws IOException {
+        Path from = source.toPath();
+        Path to = target.toPath();
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class CachedArtifact {
+        private final File dir;
+        private long size;
+        private long lastAccess;
+
+        private CachedArtifact(File dir) {
+            this.dir = dir;
+            File[] files = dir.listFiles(file -> !LOCK.equals(file.getName()));
+            if (files != null) {
+                for (File file : files) {
+                    size += file.length();
+                    lastAccess = Math.max(lastAccess, file.lastModified());
+                }
+            }
+        }
+    }
+
+    private static class Probe {
+        private String etag;
+        private long length = -1;
+        private boolean ranges;
+    }
+
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.ftp;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.input.CharSequenceInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FtpUploadService - asynchronous uploads to single FTP server over the pool of logged in connections.
+ *
+ * Uploads are executed by fixed number of threads, each thread reuses idle connection if it is still alive. The queue
+ * of waiting uploads is bounded, when it is full the upload is executed by the caller thread. Base64 data is decoded
+ * while it is sent so the decoded copy of the video isn't kept in memory.
+ */
+public class FtpUploadService implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int TIMEOUT = 60000;
+
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+
+    private final BlockingQueue<FTPClient> idle;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Set<CompletableFuture<Boolean>> pending = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder uploaded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder uploadTime = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+
+    /**
+     * Source of the data to upload opened by upload thread.
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * @param host String FTP host
+     * @param port int FTP port
+     * @param user String user name
+     * @param password String password
+     * @param threads int max number of parallel uploads and pooled connections
+     * @param queueSize int max number of uploads waiting for free connection
+     */
+    public FtpUploadService(String host, int port, String user, String password, int threads, int queueSize) {
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.idle = new ArrayBlockingQueue<>(threads);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "ftp-upload-" + host);
+            thread.setDaemon(true);
+            return thread;
+        }, (r, pool) -> r.run());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public CompletableFuture<Boolean> uploadFile(String filePath, String fileName) {
+        return upload(() -> new FileInputStream(filePath), fileName);
+    }
+
+    /**
+     * Upload base64 encoded data.
+     *
+     * @param data String base64 encoded content
+     * @param fileName String destination file name
+     * @return CompletableFuture completed with true if file was stored
+     */
+    public CompletableFuture<Boolean> uploadData(String data, String fileName) {
+        LOGGER.debug("Data size to upload: " + data.length());
+        return upload(() -> Base64.getDecoder().wrap(new CharSequenceInputStream(data, StandardCharsets.US_ASCII)), fileName);
+    }
+
+    /**
+     * Schedule upload.
+     *
+     * @param source Source of the content
+     * @param fileName String destination file name
+     * @return CompletableFuture completed with true if file was stored, false if upload failed
+     */
+    public CompletableFuture<Boolean> upload(Source source, String fileName) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        inFlight.incrementAndGet();
+        pending.add(future);
+        future.whenComplete((result, e) -> {
+            pending.remove(future);
+            inFlight.decrementAndGet();
+        });
+        // rejected upload (queue is full or service is closed) is executed by the caller thread
+        executor.execute(() -> future.complete(store(source, fileName)));
+        return future;
+    }
+
+    /**
+     * @return CompletableFuture completed when all uploads scheduled so far are finished
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    public boolean isUploading() {
+        return inFlight.get() > 0;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getUploadedCount() {
+        return uploaded.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getUploadedBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return long number of connections opened to the server
+     */
+    public long getConnectionCount() {
+        return connections.sum();
+    }
+
+    /**
+     * @return double average upload speed in bytes per second
+     */
+    public double getThroughput() {
+        long time = uploadTime.sum();
+        return time == 0 ? 0 : bytes.sum() * 1000.0 / time;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        FTPClient ftp;
+        while ((ftp = idle.poll()) != null) {
+            FtpUtils.ftpDisconnect(ftp);
+        }
+        LOGGER.debug(String.format("FTP uploads to %s: %d uploaded, %d failed, %d bytes, %.0f bytes/sec, %d connections", host,
+                getUploadedCount(), getFailedCount(), getUploadedBytes(), getThroughput(), getConnectionCount()));
+    }
+
+    private boolean store(Source source, String fileName) {
+        LOGGER.info("Uploading video: " + fileName);
+        long start = System.currentTimeMillis();
+        FTPClient ftp = null;
+        try (CountingInputStream is = new CountingInputStream(source.open())) {
+            ftp = borrow();
+            boolean stored = ftp.storeFile(fileName, is);
+            long time = System.currentTimeMillis() - start;
+            if (stored) {
+                uploaded.increment();
+                bytes.add(is.getByteCount());
+                uploadTime.add(time);
+                LOGGER.info("Uploaded video in " + time + " msecs for: " + fileName);
+            } else {
+                failed.increment();
+                LOGGER.error("Failed to upload video in " + time + " msecs for: " + fileName + ". Reply: " + ftp.getReplyString());
+            }
+            release(ftp);
+            return stored;
+        } catch (Exception e) {
+            failed.increment();
+            LOGGER.error("Exception while uploading file to FTP: " + fileName, e);
+            if (ftp != null) {
+                // connection state is unknown after failure
+                FtpUtils.ftpDisconnect(ftp);
+            }
+            return false;
+        }
+    }
+
+    private FTPClient borrow() throws IOException {
+        FTPClient ftp;
+        while ((ftp = idle.poll()) != null) {
+            try {
+                if (ftp.sendNoOp()) {
+                    return ftp;
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Pooled FTP connection is closed: " + e.getMessage());
+            }
+            FtpUtils.ftpDisconnect(ftp);
+        }
+        return connect();
+    }
+
+    private void release(FTPClient ftp) {
+        if (executor.isShutdown() || !ftp.isConnected() || !idle.offer(ftp)) {
+            FtpUtils.ftpDisconnect(ftp);
+        }
+    }
+
+    private FTPClient connect() throws IOException {
+        LOGGER.debug("Connecting to FTP server " + host + ":" + port);
+        FTPClient ftp = new FTPClient();
+        ftp.setConnectTimeout(TIMEOUT);
+        ftp.setDefaultTimeout(TIMEOUT);
+        ftp.setDataTimeout(TIMEOUT);
+        ftp.connect(host, port);
+        connections.increment();
+        int reply = ftp.getReplyCode();
+        if (!FTPReply.isPositiveCompletion(reply)) {
+            FtpUtils.ftpDisconnect(ftp);
+            throw new IOException("FTP server refused connection. Reply code is : " + reply);
+        }
+        if (!ftp.login(user, password)) {
+            FtpUtils.ftpDisconnect(ftp);
+            throw new IOException("Login to ftp failed. Check user credentials.");
+        }
+        ftp.setFileType(FTP.BINARY_FILE_TYPE);
+        ftp.enterLocalPassiveMode();
+        LOGGER.debug("User has been successfully logged in.");
+        return ftp;
+    }
+
+}
@@ -1,26 +1,25 @@
 package com.qaprosoft.carina.core.foundation.utils.ftp;
 
-import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
-import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
-import org.apache.commons.net.ftp.FTPReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
 public class FtpUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	private static final int DEFAULT_PORT = 21;
-	
-	//TODO: https://github.com/zebrunner/carina/issues/954
-	// migrate FtpUtils methods to use com.qaprosoft.carina.core.foundation.utils.async.AsyncOperation
-	private static int uploading = 0;
+
+	// upload service per server and user, connections are reused by all uploads of the run
+	private static final Map<String, FtpUploadService> services = new ConcurrentHashMap<>();
 
 	public static void uploadFile(String ftpHost, String user, String password, String filePassToUpload,
 			String fileName) {
@@ -29,13 +28,12 @@ public class FtpUtils {
 
 	public static void uploadFile(String ftpHost, int port, String user, String password, String filePassToUpload,
 			String fileName) {
-		try (InputStream is = new FileInputStream(filePassToUpload)) {
-			upload(ftpHost, port, user, password, is, fileName);
-		} catch (FileNotFoundException e) {
-			LOGGER.info("File is not found. Specify correct file pass");
-		} catch (IOException e) {
-			LOGGER.info("Exception while opening file for upload.");
-		}
+		uploadFileAsync(ftpHost, port, user, password, filePassToUpload, fileName).join();
+	}
+
+	public static CompletableFuture<Boolean> uploadFileAsync(String ftpHost, int port, String user, String password,
+			String filePassToUpload, String fileName) {
+		return getService(ftpHost, port, user, password).uploadFile(filePassToUpload, fileName);
 	}
 
 	public static void uploadData(String ftpHost, String user, String password, String data,
@@ -45,63 +43,31 @@ public class FtpUtils {
 
 	public static void uploadData(String ftpHost, int port, String user, String password, String data,
 			String destinationFileName) {
-		byte[] decode = Base64.getDecoder().decode(data);
-		LOGGER.debug("Data size to upload: " + data.length());
-		LOGGER.debug("Encoded data size to upload: " + decode.length);
-		try (InputStream is = new ByteArrayInputStream(decode)) {
-			upload(ftpHost, port, user, password, is, destinationFileName);
-		} catch (IOException e) {
-			LOGGER.info("Exception while opening file for upload.");
-		}
+		uploadDataAsync(ftpHost, port, user, password, data, destinationFileName).join();
 	}
 
-	private static void upload(String ftpHost, int port, String user, String password, InputStream is,
-			String fileName) {
-	    LOGGER.debug("FTP host to upload data : " + ftpHost);
-	    LOGGER.debug("FTP port to upload data : " + port);
-        LOGGER.debug("Destination file name : " + fileName);
-        long start = System.currentTimeMillis();
-		FTPClient ftp = new FTPClient();
-		try {
-			int reply;
-			ftp.connect(ftpHost, port);
-			LOGGER.debug("Connected to server : " + ftpHost);
-			reply = ftp.getReplyCode();
-			LOGGER.debug("Reply code is : " + reply);
-			if (!FTPReply.isPositiveCompletion(reply)) {
-				ftp.disconnect();
-				LOGGER.error("FTP server refused connection. Reply code is : " + reply);
-				throw new Exception("FTP server refused connection.");
-			}
-			if (!ftp.login(user, password)) {
-			    throw new Exception("Login to ftp failed. Check user credentials.");
-			};
-			LOGGER.debug("User has been successfully logged in.");
-			ftp.setFileType(FTP.BINARY_FILE_TYPE);
-			try {
-			    ftp.enterLocalPassiveMode();
-			    LOGGER.debug("Passive host : " + ftp.getPassiveHost() + " Passive port : " + ftp.getPassivePort());
-			    LOGGER.debug("Default port : " + ftp.getDefaultPort());
-			    LOGGER.debug("Local port : " + ftp.getLocalPort());
-			    LOGGER.debug("Remote port : " + ftp.getRemotePort());
-			    
-			    uploading++;
-			    LOGGER.info("Uploading video: " + fileName);
-				if (ftp.storeFile(fileName, is)) {
-                    LOGGER.info("Uploaded video in " + (System.currentTimeMillis() - start) + " msecs for: " + fileName);
-				} else {
-				    LOGGER.error("Failed to upload video in " + (System.currentTimeMillis() - start) + " msecs for: " + fileName);			    
-				}
-			} catch (IOException e) {
-				LOGGER.error("Exception while storing file to FTP", e);
-			} finally {
-			    uploading--;
-			}
-		} catch (Exception e) {
-			LOGGER.error("Exception while uploading while to FTP", e);
-		} finally {
-			ftpDisconnect(ftp);
-		}
+	/**
+	 * Schedule upload of base64 encoded data.
+	 *
+	 * @param ftpHost String
+	 * @param port int
+	 * @param user String
+	 * @param password String
+	 * @param data String base64 encoded content
+	 * @param destinationFileName String
+	 * @return CompletableFuture completed with true if file was stored
+	 */
+	public static CompletableFuture<Boolean> uploadDataAsync(String ftpHost, int port, String user, String password,
+			String data, String destinationFileName) {
+		return getService(ftpHost, port, user, password).uploadData(data, destinationFileName);
+	}
+
+	public static FtpUploadService getService(String ftpHost, int port, String user, String password) {
+		LOGGER.debug("FTP host to upload data : " + ftpHost);
+		LOGGER.debug("FTP port to upload data : " + port);
+		return services.computeIfAbsent(ftpHost + ":" + port + ":" + user,
+				k -> new FtpUploadService(ftpHost, port, user, password, Configuration.getInt(Parameter.FTP_UPLOAD_THREADS),
+						Configuration.getInt(Parameter.FTP_UPLOAD_QUEUE_SIZE)));
 	}
 
     public static void ftpDisconnect(FTPClient ftp) {
@@ -121,6 +87,37 @@ public class FtpUtils {
     }
     
     public static boolean isUploading() {
-        return uploading > 0;
+        return services.values().stream().anyMatch(FtpUploadService::isUploading);
+    }
+
+    /**
+     * @return CompletableFuture completed when all uploads scheduled so far are finished
+     */
+    public static CompletableFuture<Void> getUploadsCompletion() {
+        return CompletableFuture.allOf(services.values().stream().map(FtpUploadService::getCompletion).toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Wait for scheduled uploads and close pooled connections.
+     *
+     * @param timeout long max time to wait in seconds
+     * @return boolean true if all uploads were finished
+     */
+    public static boolean shutdown(long timeout) {
+        boolean finished = true;
+        try {
+            getUploadsCompletion().get(timeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("FTP uploads weren't finished in " + timeout + " sec.");
+            finished = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        } catch (Exception e) {
+            LOGGER.error("Exception while waiting for FTP uploads", e);
+        }
+        services.values().forEach(FtpUploadService::close);
+        services.clear();
+        return finished;
     }
 }
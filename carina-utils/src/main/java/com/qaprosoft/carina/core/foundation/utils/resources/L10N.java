@@ -3,21 +3,24 @@ package com.qaprosoft.carina.core.foundation.utils.resources;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.invoke.MethodHandles;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.asserts.SoftAssert;
 
-import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.IWebElement;
@@ -37,88 +40,43 @@ public class L10N {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     
     private static Locale locale = getLocale(Configuration.get(Configuration.Parameter.LOCALE));
-    private static ArrayList<ResourceBundle> resBoundles = new ArrayList<ResourceBundle>();
-    private static Properties missedResources = new Properties();
-    
-    private static SoftAssert mistakes = new SoftAssert();
+    private static List<ResourceBundle> resBoundles = new CopyOnWriteArrayList<ResourceBundle>();
+
+    // flat translations of all loaded bundles per locale, rebuilt on load
+    private static final Map<String, Map<String, String>> index = new ConcurrentHashMap<String, Map<String, String>>();
+
+    // every thread collects its own missed resources, all of them are merged on flush
+    private static final Queue<Map<String, String>> missedResourcesByThread = new ConcurrentLinkedQueue<Map<String, String>>();
+    private static final ThreadLocal<Map<String, String>> threadMissedResources = ThreadLocal.withInitial(() -> {
+        Map<String, String> resources = new ConcurrentHashMap<String, String>();
+        missedResourcesByThread.add(resources);
+        return resources;
+    });
+
+    private static final ThreadLocal<SoftAssert> mistakes = ThreadLocal.withInitial(SoftAssert::new);
 
     /**
      * Load L10N resource bundle.
      */    
     public static void load() {
-        List<String> loadedResources = new ArrayList<String>();
-        try {
-
-            for (URL u : Resources.getResourceURLs(new ResourceURLFilter() {
-                public @Override
-                boolean accept(URL u) {
-                    String s = u.getPath();
-                    boolean contains = s.contains(SpecialKeywords.L10N);
-                    if (contains) {
-                        LOGGER.debug("L10N: file URL: " + u);
-                    }
-                    return contains;
-                }
-            })) {
-                LOGGER.debug(String.format(
-                        "Analyzing '%s' L10N resource for loading...", u));
-                /*
-                 * 2. Exclude localization resources like such L10N.messages_de, L10N.messages_ptBR etc...
-                 * Note: we ignore valid resources if 3rd or 5th char from the end is "_". As designed :(
-                 */
-                String fileName = FilenameUtils.getBaseName(u.getPath());
-
-                if (u.getPath().endsWith("L10N.class")
-                        || u.getPath().endsWith("L10N$1.class")) {
-                    // separate conditions to support core JUnit tests
-                    continue;
-                }
-
-                if (fileName.lastIndexOf('_') == fileName.length() - 3
-                        || fileName.lastIndexOf('_') == fileName.length() - 5) {
-                    LOGGER.debug(String
-                            .format("'%s' resource IGNORED as it looks like localized resource!",
-                                    fileName));
-                    continue;
-                }
-                /*
-                 * convert "file: <REPO>\target\classes\L10N\messages.properties" to "L10N.messages"
-                 */
-                String filePath = FilenameUtils.getPath(u.getPath());
-                int index = filePath.indexOf(SpecialKeywords.L10N);
-
-                if (index == -1) {
-                    LOGGER.warn("Unable to find L10N pattern for " + u.getPath() + " resource!");
-                    continue;
-                }
+        // bundles are listed by resource index instead of walking L10N folder on every load
+        List<String> resources = ResourceIndex.get().getL10NBundles();
+        if (resources.isEmpty()) {
+            LOGGER.debug("L10N folder with resources is missing!");
+        }
 
-                String resource = filePath.substring(
-                        filePath.indexOf(SpecialKeywords.L10N))
-                        .replaceAll("/", ".")
-                        + fileName;
-
-                if (!loadedResources.contains(resource)) {
-                    loadedResources.add(resource);
-                    try {
-                        LOGGER.debug(String.format("Adding '%s' resource...",
-                                resource));
-                        
-                        resBoundles.add(ResourceBundle.getBundle(resource, locale));
-                        LOGGER.debug(String
-                                .format("Resource '%s' added.", resource));
-                    } catch (MissingResourceException e) {
-                        LOGGER.debug(e.getMessage(), e);
-                    }
-                } else {
-                    LOGGER.debug(String
-                            .format("Requested resource '%s' is already loaded into the ResourceBundle!",
-                                    resource));
-                }
+        for (String resource : resources) {
+            try {
+                LOGGER.debug(String.format("Adding '%s' resource...", resource));
+                resBoundles.add(ResourceBundle.getBundle(resource, locale));
+                LOGGER.debug(String.format("Resource '%s' added.", resource));
+            } catch (MissingResourceException e) {
+                LOGGER.debug(e.getMessage(), e);
             }
-            LOGGER.debug("init: L10N bundle size: " + resBoundles.size());
-        } catch (IllegalArgumentException e) {
-            LOGGER.debug("L10N folder with resources is missing!");
         }
+        LOGGER.debug("init: L10N bundle size: " + resBoundles.size());
+        index.clear();
+        LOGGER.debug("init: L10N index size: " + getIndex().size());
     }
 
     /**
@@ -128,7 +86,8 @@ public class L10N {
      *
      */    
     public static void load(ArrayList<ResourceBundle> resources) {
-        resBoundles = resources;
+        resBoundles = new CopyOnWriteArrayList<ResourceBundle>(resources);
+        index.clear();
     }
     
     /**
@@ -139,20 +98,30 @@ public class L10N {
      * @return String
      */
     static public String getText(String key) {
-        LOGGER.debug("getText: L10N bundle size: " + resBoundles.size());
-        Iterator<ResourceBundle> iter = resBoundles.iterator();
-        while (iter.hasNext()) {
-            ResourceBundle bundle = iter.next();
-            try {
-                String value = bundle.getString(key);
-                if (bundle.getLocale().toString().equals(locale.toString())) {
-                    return value;
+        String value = getIndex().get(key);
+        return value != null ? value : key;
+    }
+
+    /**
+     * Return translations of the current locale. The first loaded bundle of the locale wins as bundles were looked up
+     * in load order before.
+     *
+     * @return Map key to translated value
+     */
+    private static Map<String, String> getIndex() {
+        return index.computeIfAbsent(locale.toString(), loc -> {
+            Map<String, String> values = new HashMap<String, String>();
+            for (ResourceBundle bundle : resBoundles) {
+                if (!bundle.getLocale().toString().equals(loc)) {
+                    continue;
+                }
+                // keySet includes keys of parent bundles as getString resolves them too
+                for (String key : bundle.keySet()) {
+                    values.putIfAbsent(key, bundle.getString(key));
                 }
-            } catch (MissingResourceException e) {
-                // do nothing
             }
-        }
-        return key;
+            return Collections.unmodifiableMap(values);
+        });
     }
     
     /**
@@ -177,11 +146,11 @@ public class L10N {
                     ". Actual: '" + actualText + "', length=" + actualText.length() + ".";
 
             LOGGER.error(error);
-            mistakes.fail(error);
+            mistakes.get().fail(error);
 
             String newItem = key + "=" + actualText;
             LOGGER.info("Making new localization string: " + newItem);
-            missedResources.setProperty(key, actualText);
+            threadMissedResources.get().put(key, actualText);
         } else {
             LOGGER.debug("Found localization text '" + actualText + " in +" + getEncoding() + " encoding: " + expectedText);
         }
@@ -190,10 +159,13 @@ public class L10N {
     }
 
     /**
-     * Raise summarized asserts for mistakes in localization  
+     * Raise summarized asserts for mistakes in localization found by the current thread. Mistakes are reset after
+     * that.
      */       
     public static void assertAll() {
-        mistakes.assertAll();
+        SoftAssert softAssert = mistakes.get();
+        mistakes.remove();
+        softAssert.assertAll();
     }    
     
     /**
@@ -211,6 +183,16 @@ public class L10N {
      * Flush missed localization resources to property file.
      */
     public static void flush() {
+        Properties missedResources = new Properties();
+        for (Map<String, String> resources : missedResourcesByThread) {
+            for (String key : resources.keySet()) {
+                String value = resources.remove(key);
+                if (value != null) {
+                    missedResources.setProperty(key, value);
+                }
+            }
+        }
+
         try {
             if (missedResources.size() == 0) {
                 LOGGER.info("There are no new localization properties.");
@@ -231,7 +213,6 @@ public class L10N {
         } catch (Exception e) {
             LOGGER.error("Unable to store missed resources: " + missedResorceFile + "!", e);
         }
-        missedResources.clear();
     }
     
     private static String getEncoding() {
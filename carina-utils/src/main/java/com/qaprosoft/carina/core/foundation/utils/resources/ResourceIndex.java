@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+/**
+ * ResourceIndex - L10N bundles and "_" prefixed overrides of the configuration files available in classpath.
+ *
+ * Index is read from {@value #INDEX_FILE} manifest if it is available in classpath, otherwise classpath is scanned
+ * once per JVM: L10N roots of folders and jars are listed and override chains are probed on first request only. The
+ * manifest could be generated at build time by {@link #main(String[])}, e.g. by exec-maven-plugin on
+ * process-test-resources phase with "${project.build.testOutputDirectory}" argument.
+ */
+public final class ResourceIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String INDEX_FILE = "carina-resource-index.properties";
+
+    private static final String L10N_KEY = "l10n";
+    private static final String OVERRIDE_PREFIX = "override.";
+    private static final String OVERRIDE_SIGN = "_";
+    private static final String SEPARATOR = ",";
+
+    private static volatile ResourceIndex instance;
+
+    private final ClassLoader loader;
+    private final List<String> l10nBundles;
+    // resource file to names of its overrides in load order
+    private final Map<String, List<String>> overrides = new ConcurrentHashMap<>();
+    private final Map<String, List<URL>> overrideURLs = new ConcurrentHashMap<>();
+
+    private ResourceIndex(ClassLoader loader, List<String> l10nBundles) {
+        this.loader = loader;
+        this.l10nBundles = Collections.unmodifiableList(l10nBundles);
+    }
+
+    /**
+     * @return ResourceIndex of system class loader
+     */
+    public static ResourceIndex get() {
+        if (instance == null) {
+            synchronized (ResourceIndex.class) {
+                if (instance == null) {
+                    instance = create(ClassLoader.getSystemClassLoader());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Read manifest of the class loader if it is available or scan its L10N resources.
+     *
+     * @param loader ClassLoader
+     * @return ResourceIndex
+     */
+    public static ResourceIndex create(ClassLoader loader) {
+        URL manifest = loader.getResource(INDEX_FILE);
+        if (manifest != null) {
+            try {
+                ResourceIndex index = load(loader, manifest);
+                LOGGER.debug("Resource index loaded: " + manifest);
+                return index;
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read resource index " + manifest + ", classpath will be scanned", e);
+            }
+        }
+        return scan(loader);
+    }
+
+    /**
+     * Scan L10N folders and jars of the class loader.
+     *
+     * @param loader ClassLoader
+     * @return ResourceIndex
+     */
+    public static ResourceIndex scan(ClassLoader loader) {
+        Set<String> bundles = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> roots = loader.getResources(SpecialKeywords.L10N);
+            while (roots.hasMoreElements()) {
+                URL root = roots.nextElement();
+                for (String path : list(root)) {
+                    String bundle = getBundleName(path);
+                    if (bundle != null) {
+                        bundles.add(bundle);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to scan L10N resources: " + e.getMessage(), e);
+        }
+        LOGGER.debug("L10N bundles found: " + bundles);
+        return new ResourceIndex(loader, new ArrayList<>(bundles));
+    }
+
+    static ResourceIndex load(ClassLoader loader, URL manifest) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = manifest.openStream()) {
+            properties.load(in);
+        }
+        ResourceIndex index = new ResourceIndex(loader, split(properties.getProperty(L10N_KEY)));
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(OVERRIDE_PREFIX)) {
+                index.overrides.put(key.substring(OVERRIDE_PREFIX.length()), split(properties.getProperty(key)));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return List of L10N bundle base names like "L10N.messages"
+     */
+    public List<String> getL10NBundles() {
+        return l10nBundles;
+    }
+
+    /**
+     * @param resourceFile String like "config.properties"
+     * @return List of "_config.properties", "__config.properties" etc. names available in classpath
+     */
+    public List<String> getOverrides(String resourceFile) {
+        return overrides.computeIfAbsent(resourceFile, file -> {
+            List<String> names = new ArrayList<>();
+            String name = OVERRIDE_SIGN + file;
+            while (loader.getResource(name) != null) {
+                names.add(name);
+                name = OVERRIDE_SIGN + name;
+            }
+            return Collections.unmodifiableList(names);
+        });
+    }
+
+    /**
+     * @param resourceFile String like "config.properties"
+     * @return List of override URLs in load order
+     */
+    public List<URL> getOverrideURLs(String resourceFile) {
+        return overrideURLs.computeIfAbsent(resourceFile, file -> {
+            List<URL> urls = new ArrayList<>();
+            for (String name : getOverrides(file)) {
+                URL url = loader.getResource(name);
+                if (url != null) {
+                    urls.add(url);
+                }
+            }
+            return Collections.unmodifiableList(urls);
+        });
+    }
+
+    /**
+     * Write manifest with L10N bundles and overrides of the resource files.
+     *
+     * @param out OutputStream
+     * @param resourceFiles resource files to resolve overrides for
+     * @throws IOException if manifest can't be written
+     */
+    public void store(OutputStream out, List<String> resourceFiles) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(L10N_KEY, String.join(SEPARATOR, l10nBundles));
+        for (String file : resourceFiles) {
+            properties.setProperty(OVERRIDE_PREFIX + file, String.join(SEPARATOR, getOverrides(file)));
+        }
+        properties.store(out, "Generated by " + ResourceIndex.class.getName());
+    }
+
+    /**
+     * Generate {@value #INDEX_FILE} for the current classpath.
+     *
+     * @param args output folder and optionally resource files, {@link R} files are used by default
+     * @throws IOException if manifest can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Output folder is required!");
+        }
+        List<String> files = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+        if (files.isEmpty()) {
+            for (R resource : R.values()) {
+                files.add(resource.getResourceFile());
+            }
+        }
+
+        // manifest of the previous build shouldn't be used
+        ResourceIndex index = scan(ClassLoader.getSystemClassLoader());
+        Path output = Paths.get(args[0], INDEX_FILE);
+        Files.createDirectories(output.getParent());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            index.store(out, files);
+        }
+        LOGGER.info("Resource index generated: " + output.toAbsolutePath());
+    }
+
+    /**
+     * Convert "L10N/folder/messages.properties" to "L10N.folder.messages". Localized resources like
+     * "messages_de.properties" and "messages_ptBR.properties" are ignored as they are resolved by ResourceBundle.
+     */
+    static String getBundleName(String path) {
+        if (path.endsWith(".class")) {
+            return null;
+        }
+        String fileName = FilenameUtils.getBaseName(path);
+        // Note: we ignore valid resources if 3rd or 5th char from the end is "_". As designed :(
+        if (fileName.lastIndexOf('_') == fileName.length() - 3
+                || fileName.lastIndexOf('_') == fileName.length() - 5) {
+            return null;
+        }
+        return FilenameUtils.getPath(path).replaceAll("/", ".") + fileName;
+    }
+
+    /**
+     * @return relative paths starting with "L10N/" of all files under the root
+     */
+    private static List<String> list(URL root) throws IOException {
+        if ("jar".equals(root.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) root.openConnection();
+            String prefix = StringUtils.appendIfMissing(connection.getEntryName(), "/");
+            List<String> paths = new ArrayList<>();
+            try (JarFile jar = new JarFile(new File(connection.getJarFileURL().toURI()))) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+                        paths.add(entry.getName());
+                    }
+                }
+            } catch (URISyntaxException e) {
+                LOGGER.debug(e.getMessage(), e);
+            }
+            return paths;
+        }
+
+        if ("file".equals(root.getProtocol())) {
+            try {
+                Path dir = Paths.get(root.toURI());
+                Path base = dir.getParent();
+                try (Stream<Path> files = Files.walk(dir)) {
+                    return files.filter(Files::isRegularFile)
+                            .map(file -> base.relativize(file).toString().replace(File.separatorChar, '/'))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+            } catch (URISyntaxException e) {
+                LOGGER.debug(e.getMessage(), e);
+            }
+        }
+
+        LOGGER.debug("Unsupported L10N resource location: " + root);
+        return Collections.emptyList();
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        if (!StringUtils.isEmpty(value)) {
+            for (String item : value.split(SEPARATOR)) {
+                if (!item.trim().isEmpty()) {
+                    values.add(item.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ThreadLogAppenderTest {
+
+    private static final Pattern LINE_PATTERN = Pattern.compile("\\[\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}\\] \\[ThreadLogAppenderTest.java\\] \\[\\d+\\] \\[INFO\\] message \\d+");
+
+    private File dir;
+    private final ConcurrentHashMap<Long, File> files = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("logs").toFile();
+    }
+
+    @BeforeMethod
+    public void resetFiles() {
+        files.clear();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void removeDir() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test()
+    public void testFileNameWithoutLocation() throws IOException {
+        ThreadLogAppender appender = new TestAppender();
+        appender.doAppend(createEvent("message 1"));
+        appender.close();
+
+        List<String> lines = readLines();
+        Assert.assertEquals(lines.size(), 1);
+        Assert.assertTrue(LINE_PATTERN.matcher(lines.get(0)).matches(), lines.get(0));
+    }
+
+    @Test()
+    public void testThreadsWriteOwnFiles() throws Exception {
+        ThreadLogAppender appender = new TestAppender();
+        int threads = 4;
+        int count = 1000;
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    for (int j = 0; j < count; j++) {
+                        appender.doAppend(createEvent("message " + j));
+                    }
+                    // all lines are on disk once test is finished
+                    appender.close();
+                    List<String> lines = readLines();
+                    Assert.assertEquals(lines.size(), count);
+                    Assert.assertTrue(lines.get(count - 1).endsWith("message " + (count - 1)), lines.get(count - 1));
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertTrue(errors.isEmpty(), errors.toString());
+    }
+
+    @Test()
+    public void testThreshold() throws IOException {
+        ThreadLogAppender appender = new TestAppender();
+        appender.setThreshold(Level.WARN);
+        appender.doAppend(createEvent("message 1"));
+        appender.close();
+        Assert.assertFalse(getFile().exists());
+    }
+
+    @Test()
+    public void testMaxFileSize() throws IOException {
+        ThreadLogAppender appender = new TestAppender();
+        appender.setMaxFileSize(1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1024; i++) {
+            sb.append('x');
+        }
+        String message = sb.toString();
+        for (int i = 0; i < 2048; i++) {
+            appender.doAppend(createEvent(message));
+        }
+        appender.close();
+
+        Assert.assertTrue(getFile().length() <= 1024 * 1024 + 1024, "test.log is too big: " + getFile().length());
+        List<String> lines = readLines();
+        Assert.assertTrue(lines.get(lines.size() - 1).startsWith("test log file size exceeded limit"), lines.get(lines.size() - 1));
+    }
+
+    private LoggingEvent createEvent(String message) {
+        return new LoggingEvent(ThreadLogAppenderTest.class.getName(), Logger.getLogger(ThreadLogAppenderTest.class), Level.INFO, message,
+                null);
+    }
+
+    private File getFile() {
+        return files.computeIfAbsent(Thread.currentThread().getId(), id -> new File(dir, id + "-" + System.nanoTime() + ".log"));
+    }
+
+    private List<String> readLines() throws IOException {
+        return Files.readAllLines(getFile().toPath(), StandardCharsets.UTF_8);
+    }
+
+    private class TestAppender extends ThreadLogAppender {
+        @Override
+        File getTestLogFile() {
+            return getFile();
+        }
+    }
+
+}
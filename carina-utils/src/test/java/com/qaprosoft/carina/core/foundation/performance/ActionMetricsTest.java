@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.performance.Operation.OPERATIONS;
+
+public class ActionMetricsTest {
+
+    @AfterMethod
+    public void cleanup() {
+        ActionMetrics.clear();
+        ActionMetrics.setEnabled(false);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        Assert.assertEquals(histogram.getCount(), 100);
+        Assert.assertEquals(histogram.getMinMillis(), 1.0);
+        Assert.assertEquals(histogram.getMaxMillis(), 100.0);
+        Assert.assertEquals(histogram.getMeanMillis(), 50.5);
+        Assert.assertTrue(histogram.getPercentileMillis(50) >= 50.0, "p50 should be upper bound of the bucket");
+        Assert.assertTrue(histogram.getPercentileMillis(99) <= 100.0, "percentile can't exceed max value");
+    }
+
+    @Test
+    public void testHistogramMerge() {
+        LatencyHistogram first = new LatencyHistogram();
+        first.record(2_000_000L);
+        LatencyHistogram second = new LatencyHistogram();
+        second.record(8_000_000L);
+        first.merge(second);
+        Assert.assertEquals(first.getCount(), 2);
+        Assert.assertEquals(first.getTotalMillis(), 10.0);
+        Assert.assertEquals(first.getMaxMillis(), 8.0);
+    }
+
+    @Test
+    public void testDisabledMetrics() {
+        ActionMetrics.setEnabled(false);
+        long start = ActionMetrics.start();
+        Assert.assertEquals(start, 0);
+        ActionMetrics.record(OPERATIONS.TEST, "Page", "By.id: test", start);
+        Assert.assertTrue(ActionMetrics.getTestMetrics().isEmpty());
+    }
+
+    @Test
+    public void testTestReport() throws IOException {
+        ActionMetrics.setEnabled(true);
+        ActionMetrics.record(OPERATIONS.TEST, "HomePage", "By.id: login", ActionMetrics.start());
+        ActionMetrics.record(OPERATIONS.TEST, "HomePage", "By.id: login", ActionMetrics.start());
+        ActionMetrics.record(OPERATIONS.TEST2, null, null, ActionMetrics.start());
+
+        Map<String, LatencyHistogram> metrics = ActionMetrics.getTestMetrics();
+        Assert.assertEquals(metrics.size(), 2);
+        Assert.assertEquals(metrics.get("test|HomePage|By.id: login").getCount(), 2);
+        Assert.assertEquals(metrics.get("test2|n/a|n/a").getCount(), 1);
+
+        File dir = Files.createTempDirectory("metrics").toFile();
+        try {
+            ActionMetrics.onTestFinish(dir);
+            Assert.assertTrue(ActionMetrics.getTestMetrics().isEmpty(), "test metrics should be released on test finish");
+
+            String csv = FileUtils.readFileToString(new File(dir, ActionMetrics.REPORT_NAME + ".csv"), "UTF-8");
+            Assert.assertTrue(csv.startsWith("action,page,locator,count"), csv);
+            Assert.assertTrue(csv.contains("test,HomePage,By.id: login,2,"), csv);
+            Assert.assertTrue(new File(dir, ActionMetrics.REPORT_NAME + ".json").exists());
+
+            File suiteDir = new File(dir, "suite");
+            suiteDir.mkdir();
+            ActionMetrics.onSuiteFinish(suiteDir);
+            Assert.assertTrue(new File(suiteDir, ActionMetrics.REPORT_NAME + ".json").exists());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+}
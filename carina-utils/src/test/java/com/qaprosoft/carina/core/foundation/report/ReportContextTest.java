@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+public class ReportContextTest {
+
+    private static final String REPORT_DIRECTORY = "target/report-context-test";
+
+    private static final String CONTENT = "<html><body><table>%s</table></body></html>";
+
+    @BeforeMethod
+    public void setUp() {
+        R.CONFIG.put("project_report_directory", REPORT_DIRECTORY, true);
+        R.CONFIG.put("max_screen_history", "0", true);
+        R.CONFIG.put("html_report_gzip", "false", true);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test()
+    public void testGenerateHtmlReport() throws IOException {
+        String content = generate(100);
+
+        Path report = getProjectReport();
+        Path shared = getSharedReport();
+        Assert.assertEquals(new String(Files.readAllBytes(report), StandardCharsets.UTF_8), content);
+        Assert.assertEquals(new String(Files.readAllBytes(shared), StandardCharsets.UTF_8), content);
+    }
+
+    @Test()
+    public void testReportOfPreviousRunIsKept() throws IOException {
+        generate(1);
+        // report of the previous run shares the same file by link
+        Path previous = getProjectReport().resolveSibling("previous-" + SpecialKeywords.HTML_REPORT);
+        Files.deleteIfExists(previous);
+        Files.createLink(previous, getProjectReport());
+        String old = new String(Files.readAllBytes(previous), StandardCharsets.UTF_8);
+
+        String content = generate(2);
+
+        Assert.assertEquals(new String(Files.readAllBytes(getProjectReport()), StandardCharsets.UTF_8), content);
+        Assert.assertEquals(new String(Files.readAllBytes(previous), StandardCharsets.UTF_8), old);
+        Files.delete(previous);
+    }
+
+    @Test()
+    public void testGzipReport() throws IOException {
+        R.CONFIG.put("html_report_gzip", "true", true);
+        String content = generate(50);
+
+        File gzip = new File(ReportContext.getBaseDir(), SpecialKeywords.HTML_REPORT + ".gz");
+        Assert.assertTrue(gzip.exists(), "Gzipped report isn't created");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip.toPath()))) {
+            Assert.assertEquals(new String(in.readAllBytes(), StandardCharsets.UTF_8), content);
+        }
+    }
+
+    @Test()
+    public void testShareReportByLink() throws IOException {
+        Path report = Files.createTempFile("report", ".html");
+        Path target = report.resolveSibling(report.getFileName() + ".shared");
+        try {
+            Files.write(report, "report".getBytes(StandardCharsets.UTF_8));
+            Files.write(target, "outdated".getBytes(StandardCharsets.UTF_8));
+
+            ReportContext.shareReport(report, target, Files::createLink);
+
+            Assert.assertTrue(Files.isSameFile(report, target), "Report isn't shared by link");
+        } finally {
+            Files.deleteIfExists(report);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    @Test()
+    public void testShareReportFallbackToCopy() throws IOException {
+        Path report = Files.createTempFile("report", ".html");
+        Path target = report.resolveSibling(report.getFileName() + ".shared");
+        try {
+            Files.write(report, "report".getBytes(StandardCharsets.UTF_8));
+            Files.write(target, "outdated".getBytes(StandardCharsets.UTF_8));
+
+            ReportContext.shareReport(report, target, (link, existing) -> {
+                throw new IOException("Links aren't supported");
+            });
+
+            Assert.assertFalse(Files.isSameFile(report, target));
+            Assert.assertEquals(new String(Files.readAllBytes(target), StandardCharsets.UTF_8), "report");
+        } finally {
+            Files.deleteIfExists(report);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    @Test()
+    public void testGalleryPerThread() throws Exception {
+        final int threads = 2;
+        final int steps = 20;
+        // base dir is shared by all threads so it is created with the test configuration
+        ReportContext.getBaseDir();
+
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> galleries = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String name = "thread" + i;
+                galleries.add(executor.submit(() -> {
+                    File testDir = ReportContext.getTestDir("gallery-" + UUID.randomUUID());
+                    for (int step = 0; step < steps; step++) {
+                        // screenshots of both threads are registered at the same time
+                        barrier.await(10, TimeUnit.SECONDS);
+                        ReportContext.addScreenshotComment(String.format("%s-%02d.png", name, step), name + " step " + step);
+                    }
+                    ReportContext.generateTestReport();
+                    ReportContext.emptyTestDirData();
+                    return new String(Files.readAllBytes(new File(testDir, "report.html").toPath()), StandardCharsets.UTF_8);
+                }));
+            }
+
+            for (int i = 0; i < threads; i++) {
+                String gallery = galleries.get(i).get(30, TimeUnit.SECONDS);
+                for (int j = 0; j < threads; j++) {
+                    for (int step = 0; step < steps; step++) {
+                        String image = String.format("thread%d-%02d.png", j, step);
+                        Assert.assertEquals(gallery.contains(image), i == j, "Gallery of thread" + i + " and " + image);
+                    }
+                }
+                // images are sorted by name
+                Assert.assertTrue(gallery.indexOf(String.format("thread%d-01.png", i)) < gallery.indexOf(String.format("thread%d-02.png", i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test()
+    public void testGalleryIsReleasedAfterTest() {
+        ReportContext.getTestDir("gallery-" + UUID.randomUUID());
+        ReportContext.addScreenshotComment("1.png", "first test step");
+        Assert.assertEquals(ReportContext.getScreenshotComment("1.png"), "first test step");
+        ReportContext.emptyTestDirData();
+
+        // the next test on the same thread starts with empty gallery
+        Assert.assertEquals(ReportContext.getScreenshotComment("1.png"), "");
+        File testDir = ReportContext.getTestDir("gallery-" + UUID.randomUUID());
+        ReportContext.generateTestReport();
+        ReportContext.emptyTestDirData();
+        Assert.assertFalse(new File(testDir, "report.html").exists(), "Gallery is generated for test without screenshots");
+    }
+
+    private static String generate(int rows) {
+        StringBuilder table = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            table.append("<tr><td>test ").append(i).append(" \u2714</td></tr>");
+        }
+        String content = String.format(CONTENT, table);
+        ReportContext.generateHtmlReport(writer -> {
+            // content is streamed by parts
+            int middle = content.length() / 2;
+            writer.write(content.substring(0, middle));
+            writer.write(content.substring(middle));
+        });
+        return content;
+    }
+
+    private static Path getProjectReport() {
+        return new File(String.format("%s/%s/%s", System.getProperty("user.dir"), REPORT_DIRECTORY, SpecialKeywords.HTML_REPORT)).toPath();
+    }
+
+    private static Path getSharedReport() {
+        return new File(ReportContext.getBaseDir(), SpecialKeywords.HTML_REPORT).toPath();
+    }
+
+}
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class NioFileUtilsTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int FILES = 8;
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+    private Path root;
+    private File[] files;
+
+    @BeforeClass
+    public void createFiles() throws IOException {
+        root = Files.createTempDirectory("nio-file-utils");
+        files = new File[FILES];
+        Random random = new Random(1);
+        for (int i = 0; i < FILES; i++) {
+            // half random to be compressible but not trivial
+            byte[] content = new byte[FILE_SIZE];
+            random.nextBytes(content);
+            for (int j = 0; j < content.length; j += 2) {
+                content[j] = (byte) (j % 7);
+            }
+            files[i] = root.resolve("file-" + i + ".bin").toFile();
+            Files.write(files[i].toPath(), content);
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void removeFiles() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    @Test()
+    public void testCopy() throws IOException {
+        File copy = root.resolve("copy.bin").toFile();
+        NioFileUtils.copy(files[0], copy);
+        Assert.assertEquals(Files.readAllBytes(copy.toPath()), Files.readAllBytes(files[0].toPath()));
+
+        File streamed = root.resolve("streamed.bin").toFile();
+        try (InputStream in = new FileInputStream(files[1])) {
+            Assert.assertEquals(NioFileUtils.copy(in, streamed), FILE_SIZE);
+        }
+        Assert.assertEquals(Files.readAllBytes(streamed.toPath()), Files.readAllBytes(files[1].toPath()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NioFileUtils.copy(files[2], out);
+        Assert.assertEquals(out.toByteArray(), Files.readAllBytes(files[2].toPath()));
+    }
+
+    @Test()
+    public void testEmptyStreamCopy() throws IOException {
+        File empty = root.resolve("empty-stream.bin").toFile();
+        Assert.assertEquals(NioFileUtils.copy(new ByteArrayInputStream(new byte[0]), empty), 0);
+        Assert.assertTrue(empty.exists());
+    }
+
+    @Test()
+    public void testChecksum() throws Exception {
+        for (String algorithm : new String[] { "MD5", "SHA-256" }) {
+            byte[] expected = MessageDigest.getInstance(algorithm).digest(Files.readAllBytes(files[0].toPath()));
+            Assert.assertEquals(NioFileUtils.checksum(files[0], algorithm), expected, algorithm);
+        }
+        File empty = root.resolve("empty.bin").toFile();
+        Files.write(empty.toPath(), new byte[0]);
+        Assert.assertEquals(NioFileUtils.checksum(empty, "MD5"), MessageDigest.getInstance("MD5").digest());
+    }
+
+    @Test()
+    public void testMoveAfterChecksum() throws Exception {
+        File part = root.resolve("checksum.part").toFile();
+        NioFileUtils.copy(files[0], part);
+        byte[] expected = NioFileUtils.checksum(part, "MD5");
+
+        // file isn't held by the checksum so it can be moved right away
+        File moved = root.resolve("checksum.bin").toFile();
+        Files.move(part.toPath(), moved.toPath());
+        Assert.assertEquals(NioFileUtils.checksum(moved, "MD5"), expected);
+    }
+
+    @Test()
+    public void testZipAndUnzip() throws IOException {
+        File zip = root.resolve("archive.zip").toFile();
+        NioFileUtils.zip(zip, files);
+
+        // archive is readable by standard implementation
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Assert.assertEquals(zipFile.size(), FILES);
+            for (File file : files) {
+                ZipEntry entry = zipFile.getEntry(file.getName());
+                Assert.assertNotNull(entry, file.getName());
+                Assert.assertEquals(entry.getSize(), FILE_SIZE);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    Assert.assertEquals(in.readAllBytes(), Files.readAllBytes(file.toPath()));
+                }
+            }
+        }
+
+        File target = root.resolve("extracted").toFile();
+        NioFileUtils.unzip(zip, target);
+        for (File file : files) {
+            Assert.assertEquals(Files.readAllBytes(new File(target, file.getName()).toPath()), Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    @Test()
+    public void testUnzipFolders() throws IOException {
+        File zip = root.resolve("folders.zip").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("gallery-lib/"));
+            out.putNextEntry(new ZipEntry("gallery-lib/js/app.js"));
+            out.write("app".getBytes());
+            out.putNextEntry(new ZipEntry("gallery-lib/css/app.css"));
+            out.write("css".getBytes());
+        }
+        File target = root.resolve("folders").toFile();
+        NioFileUtils.unzip(zip, target);
+        Assert.assertEquals(Files.readAllBytes(new File(target, "gallery-lib/js/app.js").toPath()), "app".getBytes());
+        Assert.assertEquals(Files.readAllBytes(new File(target, "gallery-lib/css/app.css").toPath()), "css".getBytes());
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*outside of the target folder.*")
+    public void testUnzipEntryOutsideOfTarget() throws IOException {
+        File zip = root.resolve("slip.zip").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("../slip.txt"));
+            out.write("slip".getBytes());
+        }
+        NioFileUtils.unzip(zip, root.resolve("slip").toFile());
+    }
+
+    /**
+     * Comparison with the stream based implementation used before.
+     */
+    @Test(groups = "benchmark", enabled = false)
+    public void testBenchmark() throws Exception {
+        final int runs = 5;
+        File zip = root.resolve("benchmark.zip").toFile();
+        File target = root.resolve("benchmark").toFile();
+        File copy = root.resolve("benchmark.bin").toFile();
+
+        long[] legacy = new long[4];
+        long[] nio = new long[4];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            legacyCopy(files[0], copy);
+            legacy[0] += System.nanoTime() - start;
+            start = System.nanoTime();
+            NioFileUtils.copy(files[0], copy);
+            nio[0] += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            byte[] expected = legacyChecksum(files[0]);
+            legacy[1] += System.nanoTime() - start;
+            start = System.nanoTime();
+            byte[] actual = NioFileUtils.checksum(files[0], "MD5");
+            nio[1] += System.nanoTime() - start;
+            Assert.assertEquals(actual, expected);
+
+            start = System.nanoTime();
+            legacyZip(zip, files);
+            legacy[2] += System.nanoTime() - start;
+            start = System.nanoTime();
+            NioFileUtils.zip(zip, files);
+            nio[2] += System.nanoTime() - start;
+
+            FileUtils.deleteQuietly(target);
+            target.mkdirs();
+            start = System.nanoTime();
+            legacyUnzip(zip, target);
+            legacy[3] += System.nanoTime() - start;
+            FileUtils.deleteQuietly(target);
+            start = System.nanoTime();
+            NioFileUtils.unzip(zip, target);
+            nio[3] += System.nanoTime() - start;
+        }
+
+        String[] operations = { "copy", "md5", "zip", "unzip" };
+        for (int i = 0; i < operations.length; i++) {
+            LOGGER.info(String.format("%s of %d x %d MB: streams %d ms, channels %d ms", operations[i], i < 2 ? 1 : FILES,
+                    FILE_SIZE / 1024 / 1024, TimeUnit.NANOSECONDS.toMillis(legacy[i] / runs), TimeUnit.NANOSECONDS.toMillis(nio[i] / runs)));
+        }
+    }
+
+    private static void legacyCopy(File source, File target) throws IOException {
+        try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+            }
+        }
+    }
+
+    private static byte[] legacyChecksum(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void legacyZip(File output, File... files) throws IOException {
+        try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(output))) {
+            for (File file : files) {
+                zipOut.putNextEntry(new ZipEntry(file.getName()));
+                Files.copy(file.toPath(), zipOut);
+            }
+        }
+    }
+
+    private static void legacyUnzip(File zip, File target) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                try (InputStream in = zipFile.getInputStream(entry); OutputStream out = new FileOutputStream(new File(target, entry.getName()))) {
+                    legacyStreamCopy(in, out);
+                }
+            }
+        }
+    }
+
+    private static void legacyStreamCopy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[1024];
+        int len;
+        while ((len = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, len);
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android.recorder.utils;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.R;
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbClient.AdbFailException;
+
+public class AdbClientTest {
+
+    private static final String SERIAL = "emulator-5554";
+    private static final String NATIVE_CLIENT = "adb_native_client";
+    private static final String TRANSPORT = "host:transport:";
+    private static final String ECHO = "shell:echo";
+    private static final int BIG_OUTPUT_LINES = 100000;
+    private static final String OKAY = "OKAY";
+    private static final String FAIL = "FAIL";
+
+    private ServerSocket server;
+    private AdbClient client;
+    private final AtomicInteger shellRequests = new AtomicInteger();
+    private Object nativeClient;
+
+    @BeforeClass
+    public void startFakeServer() throws IOException {
+        nativeClient = R.CONFIG.getGlobalProperties().get(NATIVE_CLIENT);
+        R.CONFIG.put(NATIVE_CLIENT, "true");
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    new Thread(() -> handle(socket)).start();
+                } catch (IOException e) {
+                    // server is stopped
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        client = new AdbClient("127.0.0.1", server.getLocalPort());
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopFakeServer() throws IOException {
+        server.close();
+        if (nativeClient != null) {
+            R.CONFIG.put(NATIVE_CLIENT, (String) nativeClient);
+        } else {
+            R.CONFIG.remove(NATIVE_CLIENT);
+        }
+    }
+
+    @Test()
+    public void testVersion() throws IOException {
+        Assert.assertEquals(client.getVersion(), 41);
+    }
+
+    @Test()
+    public void testDevices() throws IOException {
+        List<String> devices = client.getDevices();
+        Assert.assertEquals(devices.size(), 1);
+        Assert.assertEquals(devices.get(0), SERIAL + "\tdevice");
+    }
+
+    @Test()
+    public void testShell() throws IOException {
+        List<String> output = client.shell(SERIAL, "echo hello world");
+        Assert.assertEquals(output.size(), 1);
+        Assert.assertEquals(output.get(0), "hello world");
+
+        Assert.assertTrue(client.shell(SERIAL, "echo").isEmpty());
+    }
+
+    @Test(expectedExceptions = AdbFailException.class)
+    public void testUnknownDevice() throws IOException {
+        client.shell("unknown", "echo");
+    }
+
+    @Test()
+    public void testExecutorUsesServer() {
+        AdbExecutor executor = new AdbExecutor(client);
+        int before = shellRequests.get();
+        List<String> output = executor.execute(new String[] { "adb", "-s", SERIAL, "shell", "echo", "hello", "world" });
+        Assert.assertEquals(output.size(), 1);
+        Assert.assertEquals(output.get(0), "hello world");
+        Assert.assertEquals(shellRequests.get(), before + 1);
+
+        List<String> devices = executor.execute(new String[] { "adb", "devices" });
+        Assert.assertTrue(devices.contains(SERIAL + "\tdevice"), devices.toString());
+
+        Assert.assertTrue(executor.execute(new String[] { "adb", "-s", "unknown", "shell", "echo" }).isEmpty());
+    }
+
+    @Test()
+    public void testBigShellOutput() throws IOException {
+        List<String> output = client.shell(SERIAL, "dumpsys");
+        Assert.assertEquals(output.size(), BIG_OUTPUT_LINES);
+        Assert.assertEquals(output.get(BIG_OUTPUT_LINES - 1), "line " + (BIG_OUTPUT_LINES - 1));
+    }
+
+    @Test()
+    public void testStreamStoppedByHandler() {
+        List<String> read = new ArrayList<>();
+        boolean stopped = new AdbExecutor(client).execute(new String[] { "adb", "-s", SERIAL, "shell", "dumpsys" }, line -> {
+            read.add(line);
+            return !"line 10".equals(line);
+        });
+        Assert.assertTrue(stopped);
+        Assert.assertEquals(read.size(), 11);
+    }
+
+    @Test()
+    public void testStreamClosedByCaller() throws Exception {
+        AtomicReference<Closeable> connection = new AtomicReference<>();
+        AdbExecutor executor = new AdbExecutor(client);
+        // idle logcat doesn't produce output until connection is closed
+        FutureTask<Boolean> logcat = new FutureTask<>(
+                () -> executor.execute(new String[] { "adb", "-s", SERIAL, "shell", "logcat" }, line -> true, connection::set));
+        new Thread(logcat).start();
+
+        long end = System.currentTimeMillis() + 5000;
+        while (connection.get() == null && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Assert.assertNotNull(connection.get(), "Connection wasn't opened");
+        connection.get().close();
+
+        // closed connection finishes reading without fallback to adb process
+        Assert.assertFalse(logcat.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test()
+    public void testBigProcessOutput() {
+        if (System.getProperty("os.name").toLowerCase().contains("win")) {
+            throw new SkipException("sh is required");
+        }
+        // output is much bigger than the pipe buffer, process can't exit until it is read
+        List<String> output = new AdbExecutor(null).execute(new String[] { "sh", "-c", "seq 1 " + BIG_OUTPUT_LINES });
+        Assert.assertEquals(output.size(), BIG_OUTPUT_LINES);
+        Assert.assertEquals(output.get(BIG_OUTPUT_LINES - 1), String.valueOf(BIG_OUTPUT_LINES));
+    }
+
+    /**
+     * Replies as adb server does: host service result is OKAY or FAIL followed by 4 hex digits length and payload,
+     * transport switch and shell service are confirmed by bare OKAY and then shell output is streamed till the socket
+     * is closed. Legacy shell service uses pty so lines are terminated by \r\n.
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+
+            String request = read(in);
+            if ("host:version".equals(request)) {
+                reply(out, OKAY, String.format("%04x", 41));
+            } else if ("host:devices".equals(request)) {
+                reply(out, OKAY, SERIAL + "\tdevice\n");
+            } else if (request.startsWith(TRANSPORT) && !SERIAL.equals(request.substring(TRANSPORT.length()))) {
+                reply(out, FAIL, "device '" + request.substring(TRANSPORT.length()) + "' not found");
+            } else if (request.startsWith(TRANSPORT)) {
+                write(out, OKAY);
+                String shell = read(in);
+                shellRequests.incrementAndGet();
+                write(out, OKAY);
+                if (shell.equals(ECHO) || shell.startsWith(ECHO + " ")) {
+                    String text = shell.substring(ECHO.length()).trim();
+                    write(out, text.isEmpty() ? "" : text + "\r\n");
+                } else if ("shell:dumpsys".equals(shell)) {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < BIG_OUTPUT_LINES; i++) {
+                        sb.append("line ").append(i).append("\r\n");
+                    }
+                    write(out, sb.toString());
+                } else if ("shell:logcat".equals(shell)) {
+                    out.flush();
+                    // wait till client closes connection
+                    in.read();
+                }
+            } else {
+                reply(out, FAIL, "unknown host service");
+            }
+            out.flush();
+        } catch (IOException e) {
+            // client closed connection
+        }
+    }
+
+    private static String read(DataInputStream in) throws IOException {
+        byte[] length = new byte[4];
+        in.readFully(length);
+        byte[] payload = new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static void reply(OutputStream out, String status, String message) throws IOException {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        write(out, status + String.format("%04x", payload.length));
+        out.write(payload);
+    }
+
+    private static void write(OutputStream out, String data) throws IOException {
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
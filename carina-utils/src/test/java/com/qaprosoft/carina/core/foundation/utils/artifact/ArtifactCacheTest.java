@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in of S3-like storage: ETag is MD5 of the content, ranges are supported for "/ranged" path only.
+ */
+public class ArtifactCacheTest {
+
+    private static final int SIZE = 1024 * 1024 + 123;
+    private static final long CHUNK = 64 * 1024;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private HttpServer server;
+    private byte[] content;
+    private String etag;
+    private File root;
+
+    private final AtomicInteger dataRequests = new AtomicInteger();
+    // number of range requests left before the server starts failing, negative to never fail
+    private final AtomicInteger failAfter = new AtomicInteger(-1);
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        etag = "\"" + Hex.encodeHexString(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ranged", exchange -> serve(exchange, true, etag));
+        server.createContext("/plain", exchange -> serve(exchange, false, etag));
+        server.createContext("/corrupted", exchange -> serve(exchange, true, "\"00000000000000000000000000000000\""));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws IOException {
+        server.stop(0);
+        FileUtils.deleteQuietly(root);
+    }
+
+    @BeforeMethod
+    public void cleanCache() throws IOException {
+        FileUtils.deleteQuietly(root);
+        root = Files.createTempDirectory("artifact-cache").toFile();
+        dataRequests.set(0);
+        failAfter.set(-1);
+    }
+
+    @Test()
+    public void testRangedDownloadAndCacheHit() throws Exception {
+        ArtifactCache cache = new ArtifactCache(root, 4, CHUNK);
+        File file = cache.get(url("/ranged/app.apk"), "app.apk");
+        Assert.assertEquals(Files.readAllBytes(file.toPath()), content);
+        Assert.assertEquals(file.getName(), "app.apk");
+        Assert.assertEquals(dataRequests.get(), (int) ((SIZE + CHUNK - 1) / CHUNK));
+        Assert.assertFalse(new File(file.getParentFile(), "app.apk.part").exists());
+
+        // the same content by another link is taken from cache by known checksum without any request
+        dataRequests.set(0);
+        File cached = cache.get(url("/plain/other.apk"), "app.apk", etag);
+        Assert.assertEquals(cached, file);
+        Assert.assertEquals(dataRequests.get(), 0);
+    }
+
+    @Test()
+    public void testPlainDownload() throws Exception {
+        File file = new ArtifactCache(root, 4, CHUNK).get(url("/plain/app.ipa"), "app.ipa");
+        Assert.assertEquals(Files.readAllBytes(file.toPath()), content);
+        Assert.assertEquals(dataRequests.get(), 1);
+    }
+
+    @Test()
+    public void testResume() throws Exception {
+        ArtifactCache cache = new ArtifactCache(root, 1, CHUNK);
+        failAfter.set(5);
+        try {
+            cache.get(url("/ranged/app.apk"), "app.apk");
+            Assert.fail("Download should fail");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(cache.getFile(etag, "app.apk").exists(), false);
+
+        failAfter.set(-1);
+        dataRequests.set(0);
+        File file = cache.get(url("/ranged/app.apk"), "app.apk");
+        Assert.assertEquals(Files.readAllBytes(file.toPath()), content);
+        // completed chunks aren't requested again
+        Assert.assertEquals(dataRequests.get(), (int) ((SIZE + CHUNK - 1) / CHUNK) - 5);
+    }
+
+    @Test()
+    public void testConcurrentDownloadOnce() throws Exception {
+        ArtifactCache cache = new ArtifactCache(root, 2, CHUNK);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            Callable<File> task = () -> cache.get("app.apk", etag, target -> {
+                pause(200);
+                Files.write(target.toPath(), content);
+                dataRequests.incrementAndGet();
+            });
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<File> future : futures) {
+                Assert.assertEquals(Files.readAllBytes(future.get().toPath()), content);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(dataRequests.get(), 1);
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*doesn't match.*")
+    public void testChecksumMismatch() throws Exception {
+        new ArtifactCache(root, 4, CHUNK).get(url("/corrupted/app.apk"), "app.apk");
+    }
+
+    @Test()
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        ArtifactCache cache = new ArtifactCache(root, 4, CHUNK, 2500);
+        File first = cache.get("first.apk", "first-1", target -> Files.write(target.toPath(), new byte[1000]));
+        File second = cache.get("second.apk", "second-1", target -> Files.write(target.toPath(), new byte[1000]));
+        long now = System.currentTimeMillis();
+        Assert.assertTrue(first.setLastModified(now - 30000));
+        Assert.assertTrue(second.setLastModified(now - 20000));
+
+        // cache hit makes the first artifact the most recently used one
+        Assert.assertEquals(cache.get("first.apk", "first-1", target -> Assert.fail("Artifact isn't taken from cache")), first);
+        File third = cache.get("third.apk", "third-1", target -> Files.write(target.toPath(), new byte[1000]));
+
+        Assert.assertTrue(first.exists(), "Recently used artifact is evicted");
+        Assert.assertFalse(second.exists(), "Least recently used artifact isn't evicted");
+        Assert.assertTrue(third.exists(), "Downloaded artifact is evicted");
+    }
+
+    @Test()
+    public void testEvictKeepsForeignFolders() throws Exception {
+        File foreign = new File(new File(root, "builds"), "old.apk");
+        Assert.assertTrue(foreign.getParentFile().mkdirs());
+        Files.write(foreign.toPath(), new byte[3000]);
+
+        ArtifactCache cache = new ArtifactCache(root, 4, CHUNK, 2500);
+        File artifact = cache.get("app.apk", "app-1", target -> Files.write(target.toPath(), new byte[1000]));
+
+        Assert.assertTrue(foreign.exists(), "File which doesn't belong to cache is evicted");
+        Assert.assertTrue(artifact.exists(), "Downloaded artifact is evicted");
+    }
+
+    @Test()
+    public void testUnlimitedCache() throws Exception {
+        ArtifactCache cache = new ArtifactCache(root, 4, CHUNK);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            files.add(cache.get("app.apk", "app-" + i, target -> Files.write(target.toPath(), new byte[1000])));
+        }
+        for (File file : files) {
+            Assert.assertTrue(file.exists(), file.getAbsolutePath());
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        // query emulates signature of pre-signed link
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path + "?X-Amz-Signature=" + System.nanoTime());
+    }
+
+    private void serve(HttpExchange exchange, boolean ranges, String tag) throws IOException {
+        exchange.getResponseHeaders().add("ETag", tag);
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = RANGE.matcher(range == null ? "" : range);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (ranges && matcher.matches()) {
+                int start = Integer.parseInt(matcher.group(1));
+                int end = Math.min(Integer.parseInt(matcher.group(2)), SIZE - 1);
+                if (end > start || start > 0) {
+                    dataRequests.incrementAndGet();
+                    if (failAfter.get() >= 0 && failAfter.getAndDecrement() == 0) {
+                        failAfter.set(0);
+                        exchange.sendResponseHeaders(500, -1);
+                        return;
+                    }
+                }
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+                exchange.sendResponseHeaders(206, end - start + 1);
+                out.write(content, start, end - start + 1);
+            } else {
+                // probe of the plain server is a full response too, it isn't counted as download
+                if (range == null) {
+                    dataRequests.incrementAndGet();
+                }
+                exchange.sendResponseHeaders(200, SIZE);
+                out.write(content);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.ftp;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests are executed against embedded FTP server supporting passive mode uploads only.
+ */
+public class FtpUploadServiceTest {
+
+    private static final String USER = "carina";
+    private static final String PASSWORD = "secret";
+
+    private ServerSocket server;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<Socket> sessions = new CopyOnWriteArrayList<>();
+    private volatile CountDownLatch storeGate = new CountDownLatch(0);
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    sessions.add(socket);
+                    new Thread(() -> handle(socket)).start();
+                } catch (IOException e) {
+                    // server is stopped
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @BeforeMethod
+    public void reset() {
+        files.clear();
+        storeGate = new CountDownLatch(0);
+    }
+
+    @Test()
+    public void testUploadsReuseConnections() throws Exception {
+        Random random = new Random(7);
+        List<byte[]> contents = new ArrayList<>();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        long size = 0;
+        try (FtpUploadService service = createService(PASSWORD)) {
+            for (int i = 0; i < 10; i++) {
+                byte[] content = new byte[100000 + i];
+                random.nextBytes(content);
+                contents.add(content);
+                size += content.length;
+                futures.add(service.uploadData(Base64.getEncoder().encodeToString(content), "video-" + i + ".mp4"));
+            }
+            service.getCompletion().get(30, TimeUnit.SECONDS);
+
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(futures.get(i).get());
+                Assert.assertEquals(files.get("video-" + i + ".mp4"), contents.get(i));
+            }
+            Assert.assertEquals(service.getUploadedCount(), 10);
+            Assert.assertEquals(service.getUploadedBytes(), size);
+            Assert.assertTrue(service.getThroughput() > 0);
+            Assert.assertTrue(service.getConnectionCount() <= 2, "Connections aren't reused: " + service.getConnectionCount());
+            Assert.assertFalse(service.isUploading());
+        }
+    }
+
+    @Test()
+    public void testCompletionWaitsForUploads() throws Exception {
+        storeGate = new CountDownLatch(1);
+        try (FtpUploadService service = createService(PASSWORD)) {
+            CompletableFuture<Boolean> upload = service.uploadData(Base64.getEncoder().encodeToString(new byte[] { 1, 2, 3 }), "slow.mp4");
+            CompletableFuture<Void> completion = service.getCompletion();
+            Assert.assertTrue(service.isUploading());
+            Assert.assertEquals(service.getInFlight(), 1);
+            Assert.assertFalse(completion.isDone());
+
+            storeGate.countDown();
+            completion.get(30, TimeUnit.SECONDS);
+            Assert.assertTrue(upload.get());
+            Assert.assertFalse(service.isUploading());
+        }
+    }
+
+    @Test()
+    public void testBrokenPooledConnectionIsReplaced() throws Exception {
+        try (FtpUploadService service = createService(PASSWORD)) {
+            Assert.assertTrue(service.uploadData(Base64.getEncoder().encodeToString(new byte[] { 1 }), "first.mp4").get());
+            // server drops idle sessions
+            for (Socket session : sessions) {
+                session.close();
+            }
+            Assert.assertTrue(service.uploadData(Base64.getEncoder().encodeToString(new byte[] { 2 }), "second.mp4").get());
+            Assert.assertEquals(service.getConnectionCount(), 2);
+        }
+    }
+
+    @Test()
+    public void testLoginFailure() throws Exception {
+        try (FtpUploadService service = createService("wrong")) {
+            Assert.assertFalse(service.uploadData(Base64.getEncoder().encodeToString(new byte[] { 1 }), "video.mp4").get());
+            Assert.assertEquals(service.getFailedCount(), 1);
+            Assert.assertFalse(service.isUploading());
+        }
+    }
+
+    private FtpUploadService createService(String password) {
+        return new FtpUploadService("127.0.0.1", server.getLocalPort(), USER, password, 2, 10);
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = s.getOutputStream();
+            reply(out, "220 Embedded FTP server");
+            ServerSocket data = null;
+            boolean loggedIn = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.split(" ", 2)[0].toUpperCase();
+                String argument = line.contains(" ") ? line.substring(line.indexOf(' ') + 1) : "";
+                switch (command) {
+                case "USER":
+                    reply(out, "331 Password required");
+                    break;
+                case "PASS":
+                    loggedIn = PASSWORD.equals(argument);
+                    reply(out, loggedIn ? "230 Logged in" : "530 Login incorrect");
+                    break;
+                case "TYPE":
+                case "NOOP":
+                    reply(out, "200 OK");
+                    break;
+                case "PASV":
+                    data = new ServerSocket(0);
+                    int port = data.getLocalPort();
+                    reply(out, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xff) + ")");
+                    break;
+                case "STOR":
+                    if (!loggedIn || data == null) {
+                        reply(out, "530 Not logged in");
+                        break;
+                    }
+                    reply(out, "150 Opening data connection");
+                    try (ServerSocket dataServer = data; Socket transfer = dataServer.accept(); InputStream content = transfer.getInputStream()) {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = content.read(buffer)) != -1) {
+                            bytes.write(buffer, 0, read);
+                        }
+                        storeGate.await(30, TimeUnit.SECONDS);
+                        files.put(argument, bytes.toByteArray());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    data = null;
+                    reply(out, "226 Transfer complete");
+                    break;
+                case "QUIT":
+                    reply(out, "221 Bye");
+                    return;
+                default:
+                    reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // client closed connection
+        } finally {
+            sessions.remove(socket);
+        }
+    }
+
+    private static void reply(OutputStream out, String message) throws IOException {
+        out.write((message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ResourceIndexTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int BUNDLES = 300;
+    private static final String[] LOCALES = { "", "_de", "_en_US", "_fr_FR" };
+    private static final List<String> FILES = Arrays.asList("config.properties", "api.properties");
+
+    private Path root;
+    private URLClassLoader loader;
+
+    @BeforeClass
+    public void createClasspath() throws IOException {
+        root = Files.createTempDirectory("resource-index");
+
+        // folder with many bundles and overrides
+        Path classes = Files.createDirectories(root.resolve("classes"));
+        Path l10n = Files.createDirectories(classes.resolve("L10N/nested"));
+        for (int i = 0; i < BUNDLES; i++) {
+            for (String locale : LOCALES) {
+                Files.write((i % 2 == 0 ? l10n.getParent() : l10n).resolve("bundle" + i + locale + ".properties"),
+                        ("key=" + i).getBytes());
+            }
+        }
+        Files.write(classes.resolve("config.properties"), "a=1".getBytes());
+        Files.write(classes.resolve("_config.properties"), "a=2".getBytes());
+        Files.write(classes.resolve("__config.properties"), "a=3".getBytes());
+
+        // jar packaged bundle
+        File jar = root.resolve("l10n.jar").toFile();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            for (String name : new String[] { "L10N/", "L10N/jar.properties", "L10N/jar_de.properties" }) {
+                out.putNextEntry(new JarEntry(name));
+                if (!name.endsWith("/")) {
+                    out.write("key=jar".getBytes());
+                }
+                out.closeEntry();
+            }
+        }
+
+        loader = new URLClassLoader(new URL[] { classes.toUri().toURL(), jar.toURI().toURL() }, null);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteClasspath() throws IOException {
+        loader.close();
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Test()
+    public void testScan() {
+        ResourceIndex index = ResourceIndex.scan(loader);
+        List<String> bundles = index.getL10NBundles();
+
+        Assert.assertEquals(bundles.size(), BUNDLES + 1, bundles.toString());
+        Assert.assertTrue(bundles.contains("L10N.bundle0"));
+        Assert.assertTrue(bundles.contains("L10N.nested.bundle1"));
+        Assert.assertTrue(bundles.contains("L10N.jar"), "Jar packaged bundle wasn't found");
+        Assert.assertFalse(bundles.contains("L10N.bundle0_de"), "Localized resource was indexed");
+
+        Assert.assertEquals(index.getOverrides("config.properties"), Arrays.asList("_config.properties", "__config.properties"));
+        Assert.assertEquals(index.getOverrideURLs("config.properties").size(), 2);
+        Assert.assertTrue(index.getOverrides("api.properties").isEmpty());
+    }
+
+    @Test()
+    public void testBundleName() {
+        Assert.assertEquals(ResourceIndex.getBundleName("L10N/messages.properties"), "L10N.messages");
+        Assert.assertEquals(ResourceIndex.getBundleName("L10N/web/messages.properties"), "L10N.web.messages");
+        Assert.assertNull(ResourceIndex.getBundleName("L10N/messages_de.properties"));
+        Assert.assertNull(ResourceIndex.getBundleName("L10N/messages_ptBR.properties"));
+        Assert.assertNull(ResourceIndex.getBundleName("L10N/L10N.class"));
+    }
+
+    @Test()
+    public void testManifest() throws IOException {
+        ResourceIndex scanned = ResourceIndex.scan(loader);
+        ResourceIndex loaded = ResourceIndex.load(loader, writeManifest(scanned));
+
+        Assert.assertEquals(loaded.getL10NBundles(), scanned.getL10NBundles());
+        Assert.assertEquals(loaded.getOverrides("config.properties"), scanned.getOverrides("config.properties"));
+        Assert.assertEquals(loaded.getOverrides("api.properties"), scanned.getOverrides("api.properties"));
+    }
+
+    @Test(groups = "benchmark", enabled = false)
+    public void testStartupBenchmark() throws IOException {
+        final int runs = 20;
+        URL manifest = writeManifest(ResourceIndex.scan(loader));
+
+        long scan = 0;
+        long load = 0;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            ResourceIndex scanned = ResourceIndex.scan(loader);
+            for (String file : FILES) {
+                scanned.getOverrideURLs(file);
+            }
+            scan += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ResourceIndex loaded = ResourceIndex.load(loader, manifest);
+            for (String file : FILES) {
+                loaded.getOverrideURLs(file);
+            }
+            load += System.nanoTime() - start;
+
+            Assert.assertEquals(loaded.getL10NBundles().size(), scanned.getL10NBundles().size());
+        }
+
+        LOGGER.info(String.format("Resource index of %d bundles: classpath scan %d us, manifest %d us", BUNDLES * LOCALES.length,
+                TimeUnit.NANOSECONDS.toMicros(scan / runs), TimeUnit.NANOSECONDS.toMicros(load / runs)));
+    }
+
+    private URL writeManifest(ResourceIndex index) throws IOException {
+        Path manifest = root.resolve(ResourceIndex.INDEX_FILE);
+        try (OutputStream out = Files.newOutputStream(manifest)) {
+            index.store(out, FILES);
+        }
+        return manifest.toUri().toURL();
+    }
+
+}
@@ -1,5 +1,9 @@
 package com.qaprosoft.carina.core.utils;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.qaprosoft.carina.core.foundation.utils.IWebElement;
+import com.qaprosoft.carina.core.foundation.utils.R;
 import com.qaprosoft.carina.core.foundation.utils.resources.L10N;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -48,4 +52,61 @@ public class L10NTest {
 
         Assert.assertEquals(value, FRANCE_VALUE, "France value doesn't equal to " + GERMAN_VALUE);
     }
+
+    @Test
+    public void testMissingKey() {
+        L10N.setLocale("de_DE");
+        L10N.load();
+
+        Assert.assertEquals(L10N.getText("missing_key"), "missing_key");
+    }
+
+    @Test
+    public void testMistakesCollectedPerThread() throws InterruptedException {
+        R.CONFIG.put("localization_testing", "true");
+        try {
+            L10N.setLocale("de_DE");
+            L10N.load();
+
+            Assert.assertTrue(L10N.verify(element(KEY, GERMAN_VALUE)));
+            Assert.assertFalse(L10N.verify(element(KEY, US_VALUE)));
+
+            AtomicReference<Throwable> otherThread = new AtomicReference<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    L10N.assertAll();
+                } catch (Throwable e) {
+                    otherThread.set(e);
+                }
+            });
+            thread.start();
+            thread.join();
+            Assert.assertNull(otherThread.get(), "Mistake of another thread was raised");
+
+            Assert.expectThrows(AssertionError.class, L10N::assertAll);
+            // mistakes are reset after assert
+            L10N.assertAll();
+        } finally {
+            R.CONFIG.put("localization_testing", "false");
+        }
+    }
+
+    private static IWebElement element(String name, String text) {
+        return new IWebElement() {
+            @Override
+            public String getText() {
+                return text;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean isElementPresent(long timeout) {
+                return true;
+            }
+        };
+    }
 }
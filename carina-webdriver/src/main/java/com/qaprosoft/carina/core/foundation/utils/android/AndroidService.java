@@ -18,14 +18,19 @@ package com.qaprosoft.carina.core.foundation.utils.android;
 import java.lang.invoke.MethodHandles;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.android.DeviceTimeZone.TimeFormat;
 import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.CmdLine;
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
@@ -46,9 +51,8 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
 
     protected static final int INIT_TIMEOUT = 20;
 
-    private final Pattern NOTIFICATION_PATTERN = Pattern.compile(".* NotificationRecord.*pkg=(.*) user");
-
-    private final Pattern NOTIFICATION_TEXT_PATTERN = Pattern.compile(".*tickerText=(.*)");
+    // max time to wait until device settings are applied in seconds
+    protected static final int SETTINGS_TIMEOUT = 10;
 
     private final String TZ_CHANGE_APP_PATH = "app/TimeZone_Changer.apk";
     private final String TZ_CHANGE_APP_ACTIVITY = "com.futurek.android.tzc/com.futurek.android.tzc.MainActivity";
@@ -250,50 +254,49 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return List of Notification
      */
     public List<Notification> getNotifications(boolean withLogger) {
-        String[] getNotificationsCmd = null;
-        String deviceName = IDriverPool.getDefaultDevice().getAdbName();
-        if (!deviceName.isEmpty()) {
-            getNotificationsCmd = CmdLine.insertCommandsAfter(baseInitCmd, "-s", deviceName, "shell", "dumpsys", "notification");
-        } else {
-            getNotificationsCmd = CmdLine.insertCommandsAfter(baseInitCmd, "shell", "dumpsys", "notification");
-        }
+        return getNotifications(withLogger, getNotificationsCmd());
+    }
+
+    /**
+     * getNotifications of the package only. Dump is scoped on device side so the rest of notifications isn't
+     * transferred and parsed.
+     *
+     * @param pkg String full package name
+     * @return List of Notification
+     */
+    public List<Notification> getNotifications(String pkg) {
+        return getNotifications(true, getNotificationsCmd("--noredact", "--package", pkg));
+    }
 
+    private List<Notification> getNotifications(boolean withLogger, String[] getNotificationsCmd) {
         LOGGER.info("getNotifications cmd was built: " + CmdLine.arrayToString(getNotificationsCmd));
 
-        // TODO: migrate to executeAbdCommand later
-        List<Notification> resultList = new ArrayList<Notification>();
-        List<String> notificationsOutput = executor.execute(getNotificationsCmd);
-        Notification notification = new Notification();
-        for (String output : notificationsOutput) {
-            boolean found = false;
-
-            Matcher matcher = NOTIFICATION_PATTERN.matcher(output);
-            while (matcher.find()) {
-                notification.setNotificationPkg(matcher.group(1));
-                if (withLogger)
-                    LOGGER.info(matcher.group(1));
-            }
-            Matcher matcher2 = NOTIFICATION_TEXT_PATTERN.matcher(output);
-            while (matcher2.find()) {
-                notification.setNotificationText(matcher2.group(1));
-                if (withLogger)
-                    LOGGER.info(matcher2.group(1));
-                found = true;
-            }
-            if (found) {
-                resultList.add(notification);
-                if (withLogger)
-                    LOGGER.info(notification.getNotificationText());
-                notification = new Notification();
-                found = false;
+        // output is parsed while reading without buffering of the whole dump
+        NotificationDumpParser parser = new NotificationDumpParser();
+        executor.execute(getNotificationsCmd, parser);
+        List<Notification> resultList = parser.getNotifications();
+        if (withLogger) {
+            for (Notification notification : resultList) {
+                LOGGER.info(notification.getNotificationPkg());
+                LOGGER.info(notification.getNotificationText());
             }
-
-        }
-        if (withLogger)
             LOGGER.info("Found: " + resultList.size() + " notifications.");
+        }
         return resultList;
     }
 
+    /**
+     * findNotification. Reading of notifications dump is stopped on the first matched notification.
+     *
+     * @param condition Predicate of Notification
+     * @return Notification or null if nothing matches
+     */
+    public Notification findNotification(Predicate<Notification> condition) {
+        NotificationDumpParser parser = new NotificationDumpParser(condition);
+        executor.execute(getNotificationsCmd("--noredact"), parser);
+        return parser.getFound();
+    }
+
     /**
      * notificationsCount
      *
@@ -312,14 +315,10 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return boolean
      */
     public boolean isNotificationWithTextExist(String text) {
-        List<Notification> resultList = getNotifications(false);
-
-        for (Notification notify : resultList) {
-            if (notify.getNotificationText().contains(text)) {
-                LOGGER.info("Found '" + text + "' in notification '" + notify.getNotificationText() + "'.");
-                return true;
-            }
-
+        Notification notify = findNotification(hasText(text));
+        if (notify != null) {
+            LOGGER.info("Found '" + text + "' in notification '" + notify.getNotificationText() + "'.");
+            return true;
         }
         return false;
     }
@@ -332,20 +331,7 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return boolean
      */
     public boolean waitUntilNewNotificationAppear(String text, long timeout) {
-        // boolean found = false;
-        int base = notificationsCount();
-        int time = 0;
-        boolean foundText = isNotificationWithTextExist(text);
-
-        int actual = notificationsCount();
-        while (actual <= base && ++time < timeout && !foundText) {
-            LOGGER.info("Wait for notification. Second: " + time + ". Actual number:" + actual);
-            CommonUtils.pause(1);
-            actual = notificationsCount();
-            foundText = isNotificationWithTextExist(text);
-        }
-
-        return (foundText);
+        return waitForNotification(hasText(text), null, timeout);
     }
 
     /**
@@ -355,15 +341,11 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return boolean
      */
     public boolean isNotificationPkgExist(String text) {
-        List<Notification> resultList = getNotifications(false);
-
-        for (Notification notify : resultList) {
-            if (notify.getNotificationPkg().contains(text)) {
-                LOGGER.info("Found '" + text + "' in notification packages '" + notify.getNotificationPkg() + "' with text '"
-                        + notify.getNotificationText() + "'.");
-                return true;
-            }
-
+        Notification notify = findNotification(hasPkg(text));
+        if (notify != null) {
+            LOGGER.info("Found '" + text + "' in notification packages '" + notify.getNotificationPkg() + "' with text '"
+                    + notify.getNotificationText() + "'.");
+            return true;
         }
         return false;
     }
@@ -376,20 +358,60 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @return boolean
      */
     public boolean waitUntilNewNotificationPackageAppear(String pkg, long timeout) {
-        // boolean found = false;
-        int base = notificationsCount();
-        int time = 0;
-        boolean foundText = isNotificationPkgExist(pkg);
-
-        int actual = notificationsCount();
-        while (actual <= base && ++time < timeout && !foundText) {
-            LOGGER.info("Wait for notification. Second: " + time + ". Actual number:" + actual);
-            CommonUtils.pause(1);
-            actual = notificationsCount();
-            foundText = isNotificationPkgExist(pkg);
+        return waitForNotification(hasPkg(pkg), pkg, timeout);
+    }
+
+    /**
+     * Wait for notification matching the condition. Notifications are dumped again only when new notification is
+     * posted on device, see {@link NotificationWatcher}.
+     *
+     * @param condition Predicate of Notification
+     * @param pkg String package name (or its part) to react on, null to react on any notification
+     * @param timeout long in seconds
+     * @return boolean
+     */
+    public boolean waitForNotification(Predicate<Notification> condition, String pkg, long timeout) {
+        long end = System.currentTimeMillis() + timeout * 1000;
+        // watcher is started before the first check so notification posted in between isn't missed
+        try (NotificationWatcher watcher = new NotificationWatcher(executor, getAdbCmd(), pkg)) {
+            watcher.start();
+            boolean check = true;
+            while (true) {
+                if (check && findNotification(condition) != null) {
+                    return true;
+                }
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LOGGER.debug("Wait for notification. Remaining time: " + remaining + " ms.");
+                check = watcher.awaitEvent(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private String[] getAdbCmd() {
+        String deviceName = IDriverPool.getDefaultDevice().getAdbName();
+        if (!deviceName.isEmpty()) {
+            return CmdLine.insertCommandsAfter(baseInitCmd, "-s", deviceName);
         }
+        return baseInitCmd;
+    }
+
+    private String[] getNotificationsCmd(String... args) {
+        String[] cmd = CmdLine.insertCommandsAfter(getAdbCmd(), "shell", "dumpsys", "notification");
+        return CmdLine.insertCommandsAfter(cmd, args);
+    }
+
+    private static Predicate<Notification> hasText(String text) {
+        return notify -> notify.getNotificationText() != null && notify.getNotificationText().contains(text);
+    }
 
-        return (foundText);
+    private static Predicate<Notification> hasPkg(String pkg) {
+        return notify -> notify.getNotificationPkg() != null && notify.getNotificationPkg().contains(pkg);
     }
 
     /**
@@ -665,8 +687,10 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
             value = "1";
         }
 
-        executeAdbCommand("shell settings put global auto_time " + value);
-        executeAdbCommand("shell settings put global auto_time_zone " + value);
+        new DeviceSettingsTransaction(executor)
+                .putGlobal("auto_time", value)
+                .putGlobal("auto_time_zone", value)
+                .commit(getDevice().getAdbName(), 0);
     }
 
     /**
@@ -690,21 +714,28 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
                      // thread
         DeviceTimeZone dt = new DeviceTimeZone();
 
-        String value = executeAdbCommand("shell settings get global auto_time");
+        // all values are read by single adb call
+        List<String> values = new DeviceSettingsTransaction(executor).query(getDevice().getAdbName(),
+                "settings get global auto_time",
+                "settings get global auto_time_zone",
+                "settings get system time_12_24",
+                "getprop persist.sys.timezone");
+
+        String value = values.get(0);
         if (value.contains("0")) {
             dt.setAutoTime(false);
         } else {
             dt.setAutoTime(true);
         }
 
-        value = executeAdbCommand("shell settings get global auto_time_zone");
+        value = values.get(1);
         if (value.contains("0")) {
             dt.setAutoTimezone(false);
         } else {
             dt.setAutoTimezone(true);
         }
 
-        value = executeAdbCommand("shell settings get system time_12_24");
+        value = values.get(2);
         if (value.contains("12")) {
             dt.setTimeFormat(TimeFormat.FORMAT_12);
         } else {
@@ -712,7 +743,7 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
         }
 
         if (defaultTZ.isEmpty()) {
-            value = executeAdbCommand("shell getprop persist.sys.timezone");
+            value = values.get(3);
             if (!value.isEmpty()) {
                 dt.setTimezone(value);
             }
@@ -830,6 +861,43 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
         return changed;
     }
 
+    /**
+     * Set default time zone and time format from configuration on several devices in parallel. Every device is
+     * configured by single adb call without driver session so it could be done when suite starts.
+     *
+     * @param serials Collection of device serials
+     * @return Map of serial to result
+     */
+    public Map<String, Boolean> setDefaultTimeZone(Collection<String> serials) {
+        TimeFormat timeFormat = TimeFormat.parse(Configuration.get(Parameter.DEFAULT_DEVICE_TIME_FORMAT));
+        String timeZone = DeviceTimeZone.TimeZoneFormat.parse(Configuration.get(Parameter.DEFAULT_DEVICE_TIMEZONE)).getTimeZone();
+        LOGGER.info("Set device timezone to " + timeZone + " and time format to " + timeFormat + " on " + serials);
+
+        DeviceSettingsTransaction transaction = new DeviceSettingsTransaction(executor)
+                .putGlobal("auto_time", "0")
+                .putGlobal("auto_time_zone", "0");
+        setSystemTime(transaction, timeFormat);
+        transaction.setTimeZone(timeZone)
+                .broadcast("android.intent.action.TIME_SET")
+                .expect("getprop persist.sys.timezone", actual -> isRequiredTimeZone(actual, timeZone));
+        return transaction.commit(serials, SETTINGS_TIMEOUT);
+    }
+
+    /**
+     * get serials of devices connected to the local adb server
+     *
+     * @return List of serials
+     */
+    public List<String> getConnectedDevices() {
+        List<String> serials = new ArrayList<String>();
+        for (String line : executor.execute(CmdLine.insertCommandsAfter(baseInitCmd, "devices"))) {
+            if (line.endsWith("\tdevice")) {
+                serials.add(line.substring(0, line.indexOf('\t')));
+            }
+        }
+        return serials;
+    }
+
     // End of TimeZone change sections
 
     /**
@@ -875,7 +943,7 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * time) adb shell settings put global auto_time 0 Automatic time zone = OFF
      * (settings - date and time) adb shell settings put global auto_time_zone 0
      * <p>
-     * Set Time Zone on device adb shell setprop persist.sys.timezone
+     * Set Time Zone on device adb shell cmd alarm set-timezone
      * "America/Chicago"
      * <p>
      * Check timezones: <a href=
@@ -902,27 +970,35 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
         if (dt.isAutoTime()) {
             autoTime = "1";
         }
-        executeAdbCommand("shell settings put global auto_time " + autoTime);
-
         if (dt.isAutoTimezone()) {
             autoTimeZone = "1";
         }
-        executeAdbCommand("shell settings put global auto_time_zone " + autoTimeZone);
 
-        setSystemTime(dt.getTimeFormat());
+        // all changes are sent by single adb call
+        DeviceSettingsTransaction transaction = new DeviceSettingsTransaction(executor)
+                .putGlobal("auto_time", autoTime)
+                .putGlobal("auto_time_zone", autoTimeZone);
+
+        setSystemTime(transaction, dt.getTimeFormat());
 
         if (!dt.getTimezone().isEmpty()) {
-            executeAdbCommand("shell setprop persist.sys.timezone \"" + dt.getTimezone() + "\"");
+            String timeZone = dt.getTimezone();
+            transaction.setTimeZone(timeZone)
+                    .expect("getprop persist.sys.timezone", actual -> isRequiredTimeZone(actual, timeZone));
         }
 
         if (dt.isRefreshDeviceTime()) {
-            executeAdbCommand("shell am broadcast -a android.intent.action.TIME_SET");
+            transaction.broadcast("android.intent.action.TIME_SET");
         }
 
         if (dt.isChangeDateTime() && !dt.getSetDeviceDateTime().isEmpty()) {
             // Try to set date for device but it will not work on not rooted
             // devices
-            executeAdbCommand("shell date " + dt.getSetDeviceDateTime());
+            transaction.shell("date " + dt.getSetDeviceDateTime());
+        }
+
+        if (!transaction.commit(getDevice().getAdbName(), SETTINGS_TIMEOUT)) {
+            LOGGER.warn("Device time settings changed by ADB weren't confirmed by device.");
         }
 
         String actualDT = executeAdbCommand("shell date -s %mynow%");
@@ -1100,11 +1176,7 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @param timeFormat - can be 12 or 24. Or empty.
      */
     private void openDateTimeSettingsSetupWizard(boolean turnOffAuto, TimeFormat timeFormat) {
-        if (turnOffAuto) {
-            switchDeviceAutoTimeAndTimeZone(false);
-        }
-
-        setSystemTime(timeFormat);
+        prepareTimeSettings(turnOffAuto, timeFormat);
         openApp("com.android.settings/.Settings\\$DateTimeSettingsActivity");
     }
 
@@ -1115,25 +1187,36 @@ public class AndroidService implements IDriverPool, IAndroidUtils {
      * @param timeFormat - can be 12 or 24. Or empty.
      */
     private void openTZChangingApk(boolean turnOffAuto, TimeFormat timeFormat) {
-        if (turnOffAuto) {
-            switchDeviceAutoTimeAndTimeZone(false);
-        }
-
-        setSystemTime(timeFormat);
+        prepareTimeSettings(turnOffAuto, timeFormat);
 
         openApp(TZ_CHANGE_APP_ACTIVITY);
         CommonUtils.pause(2);
     }
 
-    private void setSystemTime(TimeFormat timeFormat) {
+    /**
+     * Turn off auto time and time zone if needed and set time format by single adb call
+     *
+     * @param turnOffAuto - turn off AutoTimeZone and AutoTime
+     * @param timeFormat - can be 12 or 24. Or empty.
+     */
+    private void prepareTimeSettings(boolean turnOffAuto, TimeFormat timeFormat) {
+        DeviceSettingsTransaction transaction = new DeviceSettingsTransaction(executor);
+        if (turnOffAuto) {
+            transaction.putGlobal("auto_time", "0").putGlobal("auto_time_zone", "0");
+        }
+        setSystemTime(transaction, timeFormat);
+        transaction.commit(getDevice().getAdbName(), 0);
+    }
+
+    private void setSystemTime(DeviceSettingsTransaction transaction, TimeFormat timeFormat) {
         switch (timeFormat) {
         case FORMAT_12:
             LOGGER.info("Set 12 hours format");
-            executeAdbCommand("shell settings put system time_12_24 12");
+            transaction.putSystem("time_12_24", "12");
             break;
         case FORMAT_24:
             LOGGER.info("Set 24 hours format");
-            executeAdbCommand("shell settings put system time_12_24 24");
+            transaction.putSystem("time_12_24", "24");
             break;
         }
     }
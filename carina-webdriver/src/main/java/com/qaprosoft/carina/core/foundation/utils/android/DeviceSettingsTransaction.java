@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.CmdLine;
+
+/**
+ * DeviceSettingsTransaction - batch of device settings changes applied by single adb shell invocation.
+ *
+ * Commands are joined into one shell script instead of adb call per setting, and the result is verified by polling of
+ * the expected state instead of fixed pauses. The same transaction could be applied to several devices in parallel.
+ *
+ * <pre>
+ * boolean applied = new DeviceSettingsTransaction()
+ *         .putGlobal("auto_time", "0")
+ *         .setTimeZone("Europe/London")
+ *         .broadcast("android.intent.action.TIME_SET")
+ *         .expectProp("persist.sys.timezone", "Europe/London")
+ *         .commit(serial, 10);
+ * </pre>
+ */
+public class DeviceSettingsTransaction {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final long POLL_INTERVAL = 500;
+
+    private final AdbExecutor executor;
+    private final List<String> commands = new ArrayList<String>();
+    private final List<String> reads = new ArrayList<String>();
+    private final List<Predicate<String>> conditions = new ArrayList<Predicate<String>>();
+
+    public DeviceSettingsTransaction() {
+        this(new AdbExecutor());
+    }
+
+    public DeviceSettingsTransaction(AdbExecutor executor) {
+        this.executor = executor;
+    }
+
+    public DeviceSettingsTransaction putGlobal(String key, String value) {
+        return shell("settings put global " + key + " " + quote(value));
+    }
+
+    public DeviceSettingsTransaction putSystem(String key, String value) {
+        return shell("settings put system " + key + " " + quote(value));
+    }
+
+    public DeviceSettingsTransaction putSecure(String key, String value) {
+        return shell("settings put secure " + key + " " + quote(value));
+    }
+
+    public DeviceSettingsTransaction setProp(String name, String value) {
+        return shell("setprop " + name + " " + quote(value));
+    }
+
+    /**
+     * Set device time zone without root. "setprop persist.sys.timezone" is rejected for shell user on modern devices,
+     * so time zone is set by "cmd alarm set-timezone" (Android 11+) or by direct IAlarmManager.setTimeZone binder call
+     * on older versions. Both update "persist.sys.timezone" which could be used for verification.
+     *
+     * @param timeZone String time zone id, e.g. Europe/London
+     * @return DeviceSettingsTransaction
+     */
+    public DeviceSettingsTransaction setTimeZone(String timeZone) {
+        // setTimeZone is the 3rd method of IAlarmManager binder interface
+        return shell("cmd alarm set-timezone " + quote(timeZone) + " 2>/dev/null || service call alarm 3 s16 " + quote(timeZone));
+    }
+
+    public DeviceSettingsTransaction broadcast(String action) {
+        return shell("am broadcast -a " + action);
+    }
+
+    /**
+     * Add raw shell command to the batch.
+     *
+     * @param command String shell command line
+     * @return DeviceSettingsTransaction
+     */
+    public DeviceSettingsTransaction shell(String command) {
+        commands.add(command);
+        return this;
+    }
+
+    public DeviceSettingsTransaction expectSetting(String namespace, String key, String value) {
+        return expect("settings get " + namespace + " " + key, value::equals);
+    }
+
+    public DeviceSettingsTransaction expectProp(String name, String value) {
+        return expect("getprop " + name, value::equals);
+    }
+
+    /**
+     * Add condition verified after commands execution.
+     *
+     * @param readCommand String shell command printing actual value
+     * @param condition Predicate of the trimmed command output
+     * @return DeviceSettingsTransaction
+     */
+    public DeviceSettingsTransaction expect(String readCommand, Predicate<String> condition) {
+        reads.add(readCommand);
+        conditions.add(condition);
+        return this;
+    }
+
+    /**
+     * Execute all commands by single shell call and wait until all expected conditions are met.
+     *
+     * @param serial String device serial, the only connected device is used if empty
+     * @param timeout long max time to wait for expected state in seconds
+     * @return boolean true if expected state was reached
+     */
+    public boolean commit(String serial, long timeout) {
+        List<String> output = Collections.emptyList();
+        if (!commands.isEmpty()) {
+            String script = getScript();
+            LOGGER.info("Apply device settings" + (serial.isEmpty() ? "" : " on " + serial) + ": " + script);
+            output = executor.execute(getShellCmd(serial, script));
+        }
+
+        if (reads.isEmpty()) {
+            return true;
+        }
+        boolean applied = poll(() -> verify(query(serial)), timeout);
+        if (!applied) {
+            // output contains errors of rejected commands, e.g. permission denial
+            LOGGER.error("Device settings weren't applied" + (serial.isEmpty() ? "" : " on " + serial) + " during " + timeout
+                    + " seconds. Actual state: " + query(serial) + (output.isEmpty() ? "" : ", output: " + String.join("\n", output)));
+        }
+        return applied;
+    }
+
+    /**
+     * Apply transaction to several devices in parallel.
+     *
+     * @param serials Collection of device serials
+     * @param timeout long max time to wait for expected state in seconds
+     * @return Map of serial to commit result
+     */
+    public Map<String, Boolean> commit(Collection<String> serials, long timeout) {
+        Map<String, Boolean> results = new LinkedHashMap<String, Boolean>();
+        if (serials.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(serials.size());
+        try {
+            Map<String, Future<Boolean>> futures = new LinkedHashMap<String, Future<Boolean>>();
+            for (String serial : serials) {
+                futures.put(serial, pool.submit(() -> commit(serial, timeout)));
+            }
+            for (Map.Entry<String, Future<Boolean>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (Exception e) {
+                    LOGGER.error("Unable to apply device settings on " + entry.getKey(), e);
+                    results.put(entry.getKey(), false);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Read several values by single shell call.
+     *
+     * @param serial String device serial
+     * @param readCommands shell commands printing values
+     * @return List of trimmed outputs in the same order
+     */
+    public List<String> query(String serial, String... readCommands) {
+        return parseQuery(executor.execute(getShellCmd(serial, getQueryScript(Arrays.asList(readCommands)))), readCommands.length);
+    }
+
+    /**
+     * Wait for condition checking it every {@link #POLL_INTERVAL} ms.
+     *
+     * @param condition BooleanSupplier
+     * @param timeout long in seconds
+     * @return boolean true if condition was met before timeout
+     */
+    public static boolean poll(BooleanSupplier condition, long timeout) {
+        long end = System.currentTimeMillis() + timeout * 1000;
+        while (true) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            if (System.currentTimeMillis() + POLL_INTERVAL > end) {
+                return false;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    String getScript() {
+        return String.join(" ; ", commands);
+    }
+
+    static String getQueryScript(List<String> readCommands) {
+        // every value is prefixed by its index so order and empty values are preserved
+        List<String> echoes = new ArrayList<String>();
+        for (int i = 0; i < readCommands.size(); i++) {
+            echoes.add("echo \"" + i + "=$(" + readCommands.get(i) + ")\"");
+        }
+        return String.join(" ; ", echoes);
+    }
+
+    static List<String> parseQuery(List<String> output, int count) {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            values.add("");
+        }
+        int current = -1;
+        for (String line : output) {
+            int separator = line.indexOf('=');
+            if (separator > 0 && line.substring(0, separator).matches("\\d+")) {
+                int index = Integer.parseInt(line.substring(0, separator));
+                if (index < count) {
+                    current = index;
+                    values.set(current, line.substring(separator + 1));
+                    continue;
+                }
+            }
+            if (current >= 0) {
+                // multiline output of the current command
+                values.set(current, values.get(current) + "\n" + line);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            values.set(i, values.get(i).trim());
+        }
+        return values;
+    }
+
+    private List<String> query(String serial) {
+        return query(serial, reads.toArray(new String[reads.size()]));
+    }
+
+    private boolean verify(List<String> values) {
+        for (int i = 0; i < conditions.size(); i++) {
+            if (!conditions.get(i).test(values.get(i))) {
+                LOGGER.debug("Unexpected result of '" + reads.get(i) + "': " + values.get(i));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String[] getShellCmd(String serial, String script) {
+        // script is passed as single argument, adb sends it to device shell as is
+        if (serial.isEmpty()) {
+            return CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "shell", script);
+        }
+        return CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", serial, "shell", script);
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+}
@@ -170,7 +170,7 @@ public interface IAndroidUtils extends IMobileUtils {
      * @param language
      *            to set. Can be es, en, etc.
      * @param waitTime
-     *            int wait in seconds before device refresh.
+     *            int max time in seconds to wait for the language change.
      * @return boolean
      */
     default public boolean setDeviceLanguage(String language, int waitTime) {
@@ -188,33 +188,28 @@ public interface IAndroidUtils extends IMobileUtils {
             return true;
         }
 
-        String setLocalizationChangePermissionCmd = "shell pm grant net.sanapeli.adbchangelanguage android.permission.CHANGE_CONFIGURATION";
-
-        String setLocalizationCmd = "shell am start -n net.sanapeli.adbchangelanguage/.AdbChangeLanguage -e language "
-                + language;
-
-        UTILS_LOGGER.info("Try set localization change permission with following cmd:" + setLocalizationChangePermissionCmd);
-        String expandOutput = executeAdbCommand(setLocalizationChangePermissionCmd);
-
         String pathToInstalledAppCmd = "shell pm path net.sanapeli.adbchangelanguage";
         String pathToInstalledApp = executeAdbCommand(pathToInstalledAppCmd);
 
-        if (expandOutput.contains("Unknown package: net.sanapeli.adbchangelanguage") || pathToInstalledApp.isEmpty()) {
+        if (pathToInstalledApp.isEmpty()) {
             UTILS_LOGGER.info("Looks like 'ADB Change Language apk' is not installed. Install it and try again.");
             installApk(LANGUAGE_CHANGE_APP_PATH, true);
-            expandOutput = executeAdbCommand(setLocalizationChangePermissionCmd);
         }
 
-        UTILS_LOGGER.info("Output after set localization change permission using 'ADB Change Language apk': " + expandOutput);
-
-        UTILS_LOGGER.info("Try set localization to '" + language + "' with following cmd: " + setLocalizationCmd);
-        String changeLocaleOutput = executeAdbCommand(setLocalizationCmd);
-        UTILS_LOGGER.info("Output after set localization to '" + language + "' using 'ADB Change Language apk' : "
-                + changeLocaleOutput);
+        // permission and locale change are sent by single adb call
+        DeviceSettingsTransaction transaction = new DeviceSettingsTransaction(executor)
+                .shell("pm grant net.sanapeli.adbchangelanguage android.permission.CHANGE_CONFIGURATION")
+                .shell("am start -n net.sanapeli.adbchangelanguage/.AdbChangeLanguage -e language " + language);
+        UTILS_LOGGER.info("Try set localization to '" + language + "' using 'ADB Change Language apk'");
+        transaction.commit(getDevice().getAdbName(), 0);
 
         if (waitTime > 0) {
-            UTILS_LOGGER.info("Wait for at least '" + waitTime + "' seconds before device refresh.");
-            CommonUtils.pause(waitTime);
+            UTILS_LOGGER.info("Wait up to '" + waitTime + "' seconds for the device language change.");
+            final String expectedLanguage = language;
+            DeviceSettingsTransaction.poll(() -> {
+                String actual = getDeviceLanguage().toLowerCase();
+                return !actual.isEmpty() && (expectedLanguage.contains(actual) || actual.contains(expectedLanguage));
+            }, waitTime);
         }
 
         actualDeviceLanguage = getDeviceLanguage();
@@ -352,48 +347,8 @@ public interface IAndroidUtils extends IMobileUtils {
      **/
     default public ExtendedWebElement scroll(String scrollToEle, ExtendedWebElement scrollableContainer,
             SelectorType containerSelectorType, int containerInstance, SelectorType eleSelectorType) {
-        ExtendedWebElement extendedWebElement = null;
-        long startTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-        // TODO: support multi threaded WebDriver's removing DriverPool usage
-        WebDriver drv = castDriver();
-
-        // workaorund for appium issue: https://github.com/appium/appium/issues/10159
-        if (scrollToEle.contains(",")) {
-            scrollToEle = StringUtils.join(StringUtils.split(scrollToEle, ","), ",", 0, 2);
-            if (eleSelectorType.equals(SelectorType.TEXT)) {
-                eleSelectorType = SelectorType.TEXT_CONTAINS;
-            }
-        }
-
-        for (int i = 0; i < SCROLL_MAX_SEARCH_SWIPES; i++) {
-
-            try {
-                By scrollBy = MobileBy.AndroidUIAutomator("new UiScrollable("
-                        + getScrollContainerSelector(scrollableContainer, containerSelectorType) + ".instance("
-                        + containerInstance + "))" + ".setMaxSearchSwipes(" + SCROLL_MAX_SEARCH_SWIPES + ")"
-                        + ".scrollIntoView(" + getScrollToElementSelector(scrollToEle, eleSelectorType) + ")");
-
-                WebElement ele = drv.findElement(scrollBy);
-                if (ele.isDisplayed()) {
-                    UTILS_LOGGER.info("Element found!!!");
-                    extendedWebElement = new ExtendedWebElement(scrollBy, scrollToEle, drv);
-                    break;
-                }
-            } catch (NoSuchElementException noSuchElement) {
-                UTILS_LOGGER.error(String.format("Element %s:%s was NOT found.", eleSelectorType, scrollToEle),
-                        noSuchElement);
-            }
-
-            for (int j = 0; j < i; j++) {
-                checkTimeout(startTime);
-                MobileBy.AndroidUIAutomator(
-                        "new UiScrollable(" + getScrollContainerSelector(scrollableContainer, containerSelectorType)
-                                + ".instance(" + containerInstance + ")).scrollForward()");
-                UTILS_LOGGER.info("Scroller got stuck on a page, scrolling forward to next page of elements..");
-            }
-        }
-
-        return extendedWebElement;
+        return scrollIntoView(scrollToEle, eleSelectorType, -1,
+                getScrollContainerSelector(scrollableContainer, containerSelectorType) + ".instance(" + containerInstance + ")");
     }
 
     /**
@@ -423,49 +378,8 @@ public interface IAndroidUtils extends IMobileUtils {
     default public ExtendedWebElement scroll(String scrollToEle, ExtendedWebElement scrollableContainer,
             SelectorType containerSelectorType, int containerInstance, SelectorType eleSelectorType,
             int eleSelectorInstance) {
-        ExtendedWebElement extendedWebElement = null;
-        long startTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-        // TODO: support multi threaded WebDriver's removing DriverPool usage
-        WebDriver drv = castDriver();
-
-        // workaorund for appium issue: https://github.com/appium/appium/issues/10159
-        if (scrollToEle.contains(",")) {
-            scrollToEle = StringUtils.join(StringUtils.split(scrollToEle, ","), ",", 0, 2);
-            if (eleSelectorType.equals(SelectorType.TEXT)) {
-                eleSelectorType = SelectorType.TEXT_CONTAINS;
-            }
-        }
-
-        for (int i = 0; i < SCROLL_MAX_SEARCH_SWIPES; i++) {
-
-            try {
-                By scrollBy = MobileBy.AndroidUIAutomator("new UiScrollable("
-                        + getScrollContainerSelector(scrollableContainer, containerSelectorType) + ".instance("
-                        + containerInstance + "))" + ".setMaxSearchSwipes(" + SCROLL_MAX_SEARCH_SWIPES + ")"
-                        + ".scrollIntoView(" + getScrollToElementSelector(scrollToEle, eleSelectorType) + ".instance("
-                        + eleSelectorInstance + "))");
-
-                WebElement ele = drv.findElement(scrollBy);
-                if (ele.isDisplayed()) {
-                    UTILS_LOGGER.info("Element found!!!");
-                    extendedWebElement = new ExtendedWebElement(scrollBy, scrollToEle, drv);
-                    break;
-                }
-            } catch (NoSuchElementException noSuchElement) {
-                UTILS_LOGGER.error(String.format("Element %s:%s was NOT found.", eleSelectorType, scrollToEle),
-                        noSuchElement);
-            }
-
-            for (int j = 0; j < i; j++) {
-                checkTimeout(startTime);
-                MobileBy.AndroidUIAutomator(
-                        "new UiScrollable(" + getScrollContainerSelector(scrollableContainer, containerSelectorType)
-                                + ".instance(" + containerInstance + ")).scrollForward()");
-                UTILS_LOGGER.info("Scroller got stuck on a page, scrolling forward to next page of elements..");
-            }
-        }
-
-        return extendedWebElement;
+        return scrollIntoView(scrollToEle, eleSelectorType, eleSelectorInstance,
+                getScrollContainerSelector(scrollableContainer, containerSelectorType) + ".instance(" + containerInstance + ")");
     }
 
     /**
@@ -490,6 +404,24 @@ public interface IAndroidUtils extends IMobileUtils {
      **/
     default public ExtendedWebElement scroll(String scrollToEle, ExtendedWebElement scrollableContainer,
             SelectorType containerSelectorType, SelectorType eleSelectorType) {
+        return scrollIntoView(scrollToEle, eleSelectorType, -1, getScrollContainerSelector(scrollableContainer, containerSelectorType));
+    }
+
+    /**
+     * Scrolls into view in container found by UiSelector. Locators are built once and reused by every attempt.
+     * 
+     * @param scrollToEle
+     *            - has to be id, text, contentDesc or className
+     * @param eleSelectorType
+     *            - scrollToEle Selector type
+     * @param eleSelectorInstance
+     *            - instance number of desired element or -1
+     * @param containerSelector
+     *            - UiSelector of the scrollable container
+     * @return ExtendedWebElement or null
+     */
+    default ExtendedWebElement scrollIntoView(String scrollToEle, SelectorType eleSelectorType, int eleSelectorInstance,
+            String containerSelector) {
         ExtendedWebElement extendedWebElement = null;
         long startTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
         // TODO: support multi threaded WebDriver's removing DriverPool usage
@@ -503,14 +435,17 @@ public interface IAndroidUtils extends IMobileUtils {
             }
         }
 
+        String elementSelector = getScrollToElementSelector(scrollToEle, eleSelectorType);
+        if (eleSelectorInstance >= 0) {
+            elementSelector = elementSelector + ".instance(" + eleSelectorInstance + ")";
+        }
+        By scrollBy = MobileBy.AndroidUIAutomator("new UiScrollable(" + containerSelector + ")"
+                + ".setMaxSearchSwipes(" + SCROLL_MAX_SEARCH_SWIPES + ")" + ".scrollIntoView(" + elementSelector + ")");
+        By scrollForwardBy = MobileBy.AndroidUIAutomator("new UiScrollable(" + containerSelector + ").scrollForward()");
+
         for (int i = 0; i < SCROLL_MAX_SEARCH_SWIPES; i++) {
 
             try {
-                By scrollBy = MobileBy.AndroidUIAutomator(
-                        "new UiScrollable(" + getScrollContainerSelector(scrollableContainer, containerSelectorType)
-                                + ")" + ".setMaxSearchSwipes(" + SCROLL_MAX_SEARCH_SWIPES + ")" + ".scrollIntoView("
-                                + getScrollToElementSelector(scrollToEle, eleSelectorType) + ")");
-
                 WebElement ele = drv.findElement(scrollBy);
                 if (ele.isDisplayed()) {
                     UTILS_LOGGER.info("Element found!!!");
@@ -522,11 +457,13 @@ public interface IAndroidUtils extends IMobileUtils {
                         noSuchElement);
             }
 
-            for (int j = 0; j < i; j++) {
-                checkTimeout(startTime);
-                MobileBy.AndroidUIAutomator("new UiScrollable("
-                        + getScrollContainerSelector(scrollableContainer, containerSelectorType) + ").scrollForward()");
-                UTILS_LOGGER.info("Scroller got stuck on a page, scrolling forward to next page of elements..");
+            checkTimeout(startTime);
+            UTILS_LOGGER.info("Scroller got stuck on a page, scrolling forward to next page of elements..");
+            try {
+                // scrollForward returns boolean instead of element, lookup result doesn't matter
+                drv.findElements(scrollForwardBy);
+            } catch (WebDriverException e) {
+                UTILS_LOGGER.debug("Scroll forward was executed with error: " + e.getMessage());
             }
         }
 
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.Notification;
+
+/**
+ * NotificationDumpParser - incremental parser of "dumpsys notification" output.
+ *
+ * Lines are passed one by one as they are read from adb, so the whole dump is never kept in memory. Parser returns
+ * false as soon as the notification matching the target is found to stop reading the rest of output.
+ */
+public class NotificationDumpParser implements Predicate<String> {
+
+    private static final Pattern NOTIFICATION_PATTERN = Pattern.compile(".* NotificationRecord.*pkg=(.*) user");
+
+    private static final Pattern NOTIFICATION_TEXT_PATTERN = Pattern.compile(".*tickerText=(.*)");
+
+    private final Predicate<Notification> target;
+    private final List<Notification> notifications = new ArrayList<Notification>();
+
+    private Notification notification = new Notification();
+    private Notification found;
+
+    /**
+     * Parser collecting all notifications.
+     */
+    public NotificationDumpParser() {
+        this(null);
+    }
+
+    /**
+     * @param target
+     *            Predicate to stop parsing on the first matched notification, null to parse the whole dump
+     */
+    public NotificationDumpParser(Predicate<Notification> target) {
+        this.target = target;
+    }
+
+    @Override
+    public boolean test(String line) {
+        // cheap check first as the most of dump lines are not related to notification records
+        if (line.contains("NotificationRecord")) {
+            Matcher matcher = NOTIFICATION_PATTERN.matcher(line);
+            while (matcher.find()) {
+                notification.setNotificationPkg(matcher.group(1));
+            }
+        }
+
+        if (!line.contains("tickerText=")) {
+            return true;
+        }
+
+        boolean completed = false;
+        Matcher matcher = NOTIFICATION_TEXT_PATTERN.matcher(line);
+        while (matcher.find()) {
+            notification.setNotificationText(matcher.group(1));
+            completed = true;
+        }
+        if (completed) {
+            notifications.add(notification);
+            if (target != null && target.test(notification)) {
+                found = notification;
+                return false;
+            }
+            notification = new Notification();
+        }
+        return true;
+    }
+
+    /**
+     * @return notifications parsed so far
+     */
+    public List<Notification> getNotifications() {
+        return notifications;
+    }
+
+    /**
+     * @return Notification matching the target or null
+     */
+    public Notification getFound() {
+        return found;
+    }
+
+}
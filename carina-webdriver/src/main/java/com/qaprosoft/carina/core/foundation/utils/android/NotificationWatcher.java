@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.CmdLine;
+
+/**
+ * NotificationWatcher - listens "notification_enqueue" records of the events log buffer so notification state is
+ * dumped again only when something was posted on device.
+ *
+ * Listening requires adb server connection, otherwise watcher works in polling mode and
+ * {@link #awaitEvent(long)} just waits for the poll interval.
+ */
+public class NotificationWatcher implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String EVENT_TAG = "notification_enqueue";
+
+    private static final long POLL_INTERVAL = 1000;
+
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    private final AdbExecutor executor;
+    private final String[] logcatCmd;
+    private final String pkg;
+
+    private final Semaphore events = new Semaphore(0);
+    private volatile boolean listening = false;
+    private volatile boolean closed = false;
+
+    // adb server connection or logcat process of the current listening attempt
+    private volatile Closeable connection;
+    private Thread thread;
+
+    /**
+     * @param executor
+     *            AdbExecutor
+     * @param baseCmd
+     *            String[] adb command with device serial
+     * @param pkg
+     *            String package name (or its part) to react on, null to react on any notification
+     */
+    public NotificationWatcher(AdbExecutor executor, String[] baseCmd, String pkg) {
+        this.executor = executor;
+        // -T 1 skips the whole buffer history, the last record only triggers one extra check
+        this.logcatCmd = CmdLine.insertCommandsAfter(baseCmd, "shell", "logcat", "-b", "events", "-v", "brief", "-T", "1", "-s", EVENT_TAG);
+        this.pkg = pkg;
+    }
+
+    /**
+     * Start listening of notification events in background.
+     *
+     * @return boolean true if events are listened, false if polling mode is used
+     */
+    public boolean start() {
+        if (!executor.isNativeClientAvailable()) {
+            LOGGER.debug("adb server isn't available, notifications will be polled");
+            return false;
+        }
+        listening = true;
+        thread = new Thread(this::listen, "notification-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Wait for the next notification event. In polling mode just waits for poll interval.
+     *
+     * @param timeout
+     *            long max time to wait in milliseconds
+     * @return boolean true if event was received or poll interval elapsed
+     * @throws InterruptedException
+     *             if current thread is interrupted
+     */
+    public boolean awaitEvent(long timeout) throws InterruptedException {
+        if (!listening) {
+            Thread.sleep(Math.min(timeout, POLL_INTERVAL));
+            return true;
+        }
+        // listener could fail while waiting so don't wait longer than poll interval without checking it
+        boolean received = events.tryAcquire(Math.min(timeout, POLL_INTERVAL), TimeUnit.MILLISECONDS);
+        // several notifications posted together require one check only
+        events.drainPermits();
+        return received || !listening;
+    }
+
+    public boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * Stop listening: logcat connection is closed and listener thread is awaited.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        listening = false;
+        // wake up waiting thread if any
+        events.release();
+        // listener is blocked in reading of logcat output which may never come
+        AdbExecutor.closeQuietly(connection);
+        if (thread != null) {
+            try {
+                thread.join(CLOSE_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                LOGGER.debug("Notification events listener wasn't stopped in " + CLOSE_TIMEOUT + " ms");
+            }
+        }
+    }
+
+    private void listen() {
+        try {
+            while (!closed) {
+                long start = System.currentTimeMillis();
+                AtomicBoolean delivered = new AtomicBoolean();
+                executor.execute(logcatCmd, line -> {
+                    delivered.set(true);
+                    if (line.contains(EVENT_TAG) && (pkg == null || line.contains(pkg))) {
+                        LOGGER.debug("Notification event: " + line);
+                        events.release();
+                    }
+                    return !closed;
+                }, this::setConnection);
+                // stream is finished by adb idle timeout normally, quick return without output means failure
+                if (!delivered.get() && System.currentTimeMillis() - start < Configuration.getAdbExecTimeout() / 2) {
+                    LOGGER.debug("Unable to listen notification events, notifications will be polled");
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("Notification events listening failed, notifications will be polled: " + e.getMessage());
+        } finally {
+            listening = false;
+            connection = null;
+        }
+    }
+
+    private void setConnection(Closeable connection) {
+        this.connection = connection;
+        // close could be called while connection was opening
+        if (closed) {
+            AdbExecutor.closeQuietly(connection);
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.lang.invoke.MethodHandles;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PackageDumpParser - incremental parser of version info from "dumpsys package PACKAGE" output.
+ *
+ * The installed package is described in "Packages:" section before resolver tables, dexopt and other statistics, so
+ * reading is stopped once both versionCode and versionName are found. Versions of hidden system packages printed
+ * later are ignored.
+ */
+public class PackageDumpParser implements Predicate<String> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private String versionCode;
+    private String versionName;
+
+    @Override
+    public boolean test(String line) {
+        if (versionCode == null && line.contains("versionCode")) {
+            // versionCode=17040000 targetSdk=25
+            LOGGER.info("Line for parsing installed app: " + line);
+            String[] outputs = line.split("=");
+            versionCode = outputs[1].split(" ")[0];
+        }
+
+        if (versionName == null && line.contains("versionName")) {
+            // versionName=8.5.0
+            LOGGER.info("Line for parsing installed app: " + line);
+            String[] outputs = line.split("=");
+            versionName = outputs[1];
+        }
+        return versionCode == null || versionName == null;
+    }
+
+    public String getVersionCode() {
+        return versionCode;
+    }
+
+    public String getVersionName() {
+        return versionName;
+    }
+
+}
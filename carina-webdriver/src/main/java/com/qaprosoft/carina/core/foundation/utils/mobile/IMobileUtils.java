@@ -316,15 +316,6 @@ public interface IMobileUtils extends IDriverPool {
     default public boolean swipe(ExtendedWebElement element, ExtendedWebElement container, Direction direction,
             int count, int duration) {
 
-        boolean isVisible = element.isVisible(1);
-        if (isVisible) {
-            // no sense to continue;
-            UTILS_LOGGER.info("element already present before swipe: " + element.getNameWithLocator().toString());
-            return true;
-        } else {
-            UTILS_LOGGER.info("swiping to element: " + element.getNameWithLocator().toString());
-        }
-
         Direction oppositeDirection = Direction.DOWN;
         boolean bothDirections = false;
 
@@ -365,6 +356,28 @@ public interface IMobileUtils extends IDriverPool {
             throw new RuntimeException("Unsupported direction for swipeInContainerTillElement: " + direction);
         }
 
+        if (Configuration.getBoolean(Parameter.SWIPE_BY_PAGE_SOURCE) && PageSourceSnapshot.isSupported(element.getBy())) {
+            try {
+                boolean found = swipeByPageSource(element, container, direction, count, duration);
+                if (!found && bothDirections) {
+                    found = swipeByPageSource(element, container, oppositeDirection, count, duration);
+                }
+                UTILS_LOGGER.info("Result: " + found);
+                return found;
+            } catch (IllegalArgumentException e) {
+                UTILS_LOGGER.warn("Unable to search element in page source, visibility will be verified after every swipe: " + e.getMessage());
+            }
+        }
+
+        boolean isVisible = element.isVisible(1);
+        if (isVisible) {
+            // no sense to continue;
+            UTILS_LOGGER.info("element already present before swipe: " + element.getNameWithLocator().toString());
+            return true;
+        } else {
+            UTILS_LOGGER.info("swiping to element: " + element.getNameWithLocator().toString());
+        }
+
         int currentCount = count;
 
         while (!isVisible && currentCount-- > 0) {
@@ -388,6 +401,51 @@ public interface IMobileUtils extends IDriverPool {
         return isVisible;
     }
 
+    /**
+     * Swipe in one direction till the xpath element appears in page source. Element is looked up remotely only when
+     * it is found in the snapshot, and swiping is stopped as soon as two consecutive snapshots are equal which means
+     * that the end of the list is reached.
+     *
+     * @param element
+     *            ExtendedWebElement with xpath locator
+     * @param container
+     *            element, inside which scrolling is expected. null to scroll
+     * @param direction
+     *            Direction LEFT, RIGHT, UP or DOWN
+     * @param count
+     *            max number of swipes
+     * @param duration
+     *            pulling timeout, ms
+     * @return boolean
+     */
+    default public boolean swipeByPageSource(ExtendedWebElement element, ExtendedWebElement container, Direction direction, int count,
+            int duration) {
+        WebDriver drv = castDriver();
+        Integer previousHash = null;
+        for (int attempt = 0; attempt <= count; attempt++) {
+            if (attempt > 0) {
+                UTILS_LOGGER.debug("Element not found in page source! Swipe " + direction + " will be executed to element: "
+                        + element.getNameWithLocator().toString());
+                swipeInContainer(container, direction, duration);
+                UTILS_LOGGER.info("Swipe was executed. Attempts remain: " + (count - attempt));
+            }
+
+            PageSourceSnapshot snapshot = PageSourceSnapshot.parse(drv.getPageSource());
+            // page source could contain element outside of the viewport so visibility is verified remotely
+            if (snapshot.contains(element.getBy()) && element.isVisible(1)) {
+                UTILS_LOGGER.info("element found after " + attempt + " swipe(s): " + element.getNameWithLocator().toString());
+                return true;
+            }
+
+            if (previousHash != null && previousHash == snapshot.getHash()) {
+                UTILS_LOGGER.info("Screen wasn't changed after swipe " + direction + ", end of the list is reached.");
+                return false;
+            }
+            previousHash = snapshot.getHash();
+        }
+        return false;
+    }
+
     /**
      * Swipe by coordinates using TouchAction (platform independent)
      *
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.By;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * PageSourceSnapshot - parsed Appium page source which allows to evaluate XPath locators locally without extra
+ * remote calls.
+ */
+public class PageSourceSnapshot {
+
+    private static final String XPATH_PREFIX = "By.xpath: ";
+
+    private final String source;
+    private final Document document;
+
+    private PageSourceSnapshot(String source, Document document) {
+        this.source = source;
+        this.document = document;
+    }
+
+    /**
+     * Parse page source.
+     *
+     * @param source
+     *            String xml page source
+     * @return PageSourceSnapshot
+     * @throws IllegalArgumentException
+     *             if source can't be parsed as xml
+     */
+    public static PageSourceSnapshot parse(String source) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return new PageSourceSnapshot(source, builder.parse(new InputSource(new StringReader(source))));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to parse page source!", e);
+        }
+    }
+
+    /**
+     * Verify if locator could be evaluated locally.
+     *
+     * @param by
+     *            By
+     * @return true for xpath locators only
+     */
+    public static boolean isSupported(By by) {
+        return by != null && by.toString().startsWith(XPATH_PREFIX);
+    }
+
+    /**
+     * Find all nodes matching the xpath locator in document order.
+     *
+     * @param by
+     *            xpath By
+     * @return List of node attributes
+     */
+    public List<Map<String, String>> findAll(By by) {
+        if (!isSupported(by)) {
+            throw new IllegalArgumentException("Only xpath locators could be evaluated against page source: " + by);
+        }
+        return findAll(StringUtils.removeStart(by.toString(), XPATH_PREFIX));
+    }
+
+    /**
+     * Find all nodes matching xpath in document order.
+     *
+     * @param xpath
+     *            String
+     * @return List of node attributes
+     */
+    public List<Map<String, String>> findAll(String xpath) {
+        NodeList nodes;
+        try {
+            nodes = (NodeList) XPathFactory.newInstance().newXPath().evaluate(xpath, document, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Unable to evaluate xpath: " + xpath, e);
+        }
+
+        List<Map<String, String>> result = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            result.add(getAttributes(nodes.item(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Check if at least one node matches the xpath locator.
+     *
+     * @param by
+     *            xpath By
+     * @return boolean
+     */
+    public boolean contains(By by) {
+        return !findAll(by).isEmpty();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Content hash of the page source. Equal hashes for consecutive snapshots mean that the screen wasn't changed.
+     *
+     * @return int hash
+     */
+    public int getHash() {
+        return source.hashCode();
+    }
+
+    private static Map<String, String> getAttributes(Node node) {
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            result.put(attribute.getNodeName(), attribute.getNodeValue());
+        }
+        return result;
+    }
+
+}
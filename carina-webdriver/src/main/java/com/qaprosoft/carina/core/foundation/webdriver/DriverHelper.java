@@ -56,11 +56,15 @@ import org.testng.Assert;
 
 import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.crypto.CryptoTool;
+import com.qaprosoft.carina.core.foundation.performance.ACTION_NAME;
+import com.qaprosoft.carina.core.foundation.performance.ActionMetrics;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.LogicUtils;
 import com.qaprosoft.carina.core.foundation.utils.Messager;
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.webdriver.decorator.BulkElementReader;
+import com.qaprosoft.carina.core.foundation.webdriver.decorator.ElementDataTable;
 import com.qaprosoft.carina.core.foundation.webdriver.decorator.ExtendedWebElement;
 import com.qaprosoft.carina.core.foundation.webdriver.listener.DriverListener;
 import com.qaprosoft.carina.core.gui.AbstractPage;
@@ -1123,13 +1127,16 @@ public class DriverHelper {
     	}
     	
     	webElements = getDriver().findElements(by);
+    	// read all names using single remote call instead of getText per element
+    	List<String> names = new ArrayList<String>();
+    	try {
+    	    names = BulkElementReader.getTexts(getDriver(), webElements);
+    	} catch (Exception e) {
+    	    /* do nothing and keep 'undefined' for control names */
+    	}
     	int i = 1;
         for (WebElement element : webElements) {
-            try {
-                name = element.getText();
-            } catch (Exception e) {
-            	/* do nothing and keep 'undefined' for control name */
-            }
+            name = names.size() >= i ? names.get(i - 1) : "undefined";
 
             ExtendedWebElement tempElement = new ExtendedWebElement(element, name);
             tempElement.setBy(tempElement.generateByForList(by, i));
@@ -1139,6 +1146,31 @@ public class DriverHelper {
         return extendedWebElements;
     }
 
+    /**
+     * Read text of all elements using single remote call.
+     * 
+     * @param elements
+     *            List of ExtendedWebElement
+     * @return List of texts in the same order.
+     */
+    public List<String> getTexts(List<ExtendedWebElement> elements) {
+        return BulkElementReader.getTexts(elements);
+    }
+
+    /**
+     * Read text and attributes of all elements using single remote call.
+     * Falls back to per-element calls when scripts and page source evaluation are not available.
+     * 
+     * @param elements
+     *            List of ExtendedWebElement
+     * @param attributes
+     *            attribute names to read
+     * @return ElementDataTable where row index equals element index.
+     */
+    public ElementDataTable readElements(List<ExtendedWebElement> elements, String... attributes) {
+        return BulkElementReader.read(elements, attributes);
+    }
+
     protected void setDriver(WebDriver driver) {
         this.driver = driver;
     }
@@ -1166,6 +1198,7 @@ public class DriverHelper {
 		Wait<WebDriver> wait = new WebDriverWait(drv, timeout, RETRY_TIME)
 		        .ignoring(WebDriverException.class)
 				.ignoring(NoSuchSessionException.class);
+		long start = ActionMetrics.start();
 		try {
 		    startMillis = System.currentTimeMillis();
 			wait.until(condition);
@@ -1179,6 +1212,7 @@ public class DriverHelper {
 			LOGGER.error("waitUntil: " + condition.toString(), e);
 			result = false;
 		} finally {
+		    ActionMetrics.record(ACTION_NAME.WAIT, getClass().getSimpleName(), null, start);
 		    long timePassed = System.currentTimeMillis() - startMillis;
 		    // timePassed is time in ms timeout in sec so we have to adjust
             if (timePassed > 2 * timeout * 1000) {
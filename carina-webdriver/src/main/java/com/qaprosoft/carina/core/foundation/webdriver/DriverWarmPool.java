@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openqa.selenium.ContextAware;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.webdriver.core.factory.DriverFactory;
+import com.qaprosoft.carina.core.foundation.webdriver.device.Device;
+
+import io.appium.java_client.MobileDriver;
+
+/**
+ * DriverWarmPool - opt-in pool of started driver sessions which are reused across tests.
+ *
+ * Sessions are grouped by SHA-256 of capabilities, selenium host and driver related configuration. When driver is
+ * acquired for some key the pool starts replacement sessions in background up to driver_warm_pool_size so the next
+ * test gets driver without waiting for browser launch or application install. Released drivers are reset and
+ * checked asynchronously, idle sessions are quit after driver_warm_pool_max_idle seconds.
+ *
+ * Reset of web driver closes extra windows, clears cookies and storage of the current origin and opens about:blank.
+ * WebDriver can't clear cookies and storage of other visited origins, so reuse is safe only for suites working with
+ * single origin or resetting their state explicitly.
+ */
+public final class DriverWarmPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final long MAX_IDLE = TimeUnit.SECONDS.toMillis(Configuration.getInt(Parameter.DRIVER_WARM_POOL_MAX_IDLE));
+
+    private static final ConcurrentHashMap<String, BlockingDeque<PooledDriver>> idleDrivers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<WebDriver, PooledDriver> leasedDrivers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicInteger> startingDrivers = new ConcurrentHashMap<>();
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService evictor;
+    private static volatile boolean stopped = false;
+
+    private DriverWarmPool() {
+    }
+
+    public static boolean isEnabled() {
+        return getSize() > 0 && !stopped;
+    }
+
+    /**
+     * Take healthy idle driver for capabilities and register its device for the current thread.
+     *
+     * @param name
+     *            String driver name
+     * @param capabilities
+     *            DesiredCapabilities
+     * @param seleniumHost
+     *            String
+     * @return WebDriver or null if nothing suitable is in the pool
+     */
+    static WebDriver acquire(String name, DesiredCapabilities capabilities, String seleniumHost) {
+        String key = getKey(capabilities, seleniumHost);
+        long start = System.currentTimeMillis();
+
+        PooledDriver pooled = null;
+        BlockingDeque<PooledDriver> idle = idleDrivers.get(key);
+        while (idle != null && (pooled = idle.pollFirst()) != null) {
+            if (!pooled.isExpired() && isHealthy(pooled.driver)) {
+                break;
+            }
+            LOGGER.debug("Pooled driver is expired or not healthy and will be quit: " + pooled);
+            quitAsync(pooled);
+            pooled = null;
+        }
+
+        // start replacement sessions ahead of the next demand
+        prewarm(name, capabilities, seleniumHost, key);
+
+        if (pooled == null) {
+            return null;
+        }
+
+        leasedDrivers.put(pooled.driver, pooled);
+        if (!pooled.device.isNull()) {
+            IDriverPool.registerDevice(pooled.device);
+        }
+        LOGGER.info("Driver '" + name + "' was taken from the warm pool in " + (System.currentTimeMillis() - start) + " ms.");
+        return pooled.driver;
+    }
+
+    /**
+     * Mark freshly started driver as reusable so it is returned into the pool instead of quit.
+     *
+     * @param driver
+     *            WebDriver
+     * @param capabilities
+     *            DesiredCapabilities used for the driver start
+     * @param seleniumHost
+     *            String
+     */
+    static void register(WebDriver driver, DesiredCapabilities capabilities, String seleniumHost) {
+        leasedDrivers.put(driver, new PooledDriver(getKey(capabilities, seleniumHost), driver, IDriverPool.getNullDevice()));
+    }
+
+    /**
+     * Return driver into the pool. Reset and health check are executed in background.
+     *
+     * @param carinaDriver
+     *            CarinaDriver
+     * @return true if driver was accepted by the pool, false if it should be quit by caller
+     */
+    static boolean release(CarinaDriver carinaDriver) {
+        if (!isEnabled()) {
+            return false;
+        }
+        PooledDriver pooled = leasedDrivers.remove(carinaDriver.getDriver());
+        if (pooled == null) {
+            return false;
+        }
+
+        pooled.device = carinaDriver.getDevice();
+        BlockingDeque<PooledDriver> idle = getIdle(pooled.key);
+        if (idle.remainingCapacity() == 0) {
+            LOGGER.debug("Warm pool is full for key: " + pooled.key);
+            return false;
+        }
+
+        getExecutor().submit(() -> {
+            if (reset(pooled.driver) && !stopped) {
+                pooled.idleSince = System.currentTimeMillis();
+                // concurrent releases could fill the pool during reset
+                if (idle.offerLast(pooled)) {
+                    LOGGER.debug("Driver returned into the warm pool: " + pooled);
+                    return;
+                }
+                LOGGER.debug("Warm pool is full for key: " + pooled.key);
+            }
+            quit(pooled);
+        });
+        return true;
+    }
+
+    /**
+     * Forget driver which is going to be quit explicitly, for example on restartDriver.
+     *
+     * @param driver
+     *            WebDriver
+     */
+    static void discard(WebDriver driver) {
+        leasedDrivers.remove(driver);
+    }
+
+    /**
+     * Enable reuse again after {@link #shutdown()} of the previous suite.
+     */
+    public static synchronized void resume() {
+        stopped = false;
+    }
+
+    /**
+     * Quit all idle drivers and stop background threads until the next {@link #resume()}. Leased drivers stay under
+     * the control of tests.
+     */
+    public static synchronized void shutdown() {
+        stopped = true;
+        for (BlockingDeque<PooledDriver> idle : idleDrivers.values()) {
+            PooledDriver pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                quit(pooled);
+            }
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    static String getKey(DesiredCapabilities capabilities, String seleniumHost) {
+        Map<String, Object> caps = new TreeMap<>();
+        if (capabilities != null) {
+            caps.putAll(capabilities.asMap());
+        }
+        String canonical = String.join("|", caps.toString(), String.valueOf(seleniumHost),
+                Configuration.getDriverType(capabilities),
+                Configuration.get(Parameter.SELENIUM_URL),
+                Configuration.get(Parameter.BROWSER),
+                Configuration.get(Parameter.CUSTOM_CAPABILITIES));
+        return DigestUtils.sha256Hex(canonical);
+    }
+
+    private static void prewarm(String name, DesiredCapabilities capabilities, String seleniumHost, String key) {
+        AtomicInteger starting = startingDrivers.computeIfAbsent(key, k -> new AtomicInteger());
+        BlockingDeque<PooledDriver> idle = getIdle(key);
+
+        while (starting.get() + idle.size() < getSize()) {
+            starting.incrementAndGet();
+            getExecutor().submit(() -> {
+                try {
+                    // test level configuration overrides aren't visible from background thread
+                    if (!key.equals(getKey(capabilities, seleniumHost))) {
+                        LOGGER.debug("Skip driver pre-start as configuration differs from the test one for key: " + key);
+                        return;
+                    }
+                    LOGGER.debug("Pre-starting driver for key: " + key);
+                    WebDriver drv = DriverFactory.create(name, capabilities, seleniumHost);
+                    PooledDriver pooled = new PooledDriver(key, drv, IDriverPool.getDefaultDevice());
+                    // device was registered for the pool thread by factory
+                    IDriverPool.currentDevice.remove();
+                    if (stopped || !idle.offerLast(pooled)) {
+                        quit(pooled);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Unable to pre-start driver for key: " + key, e);
+                } finally {
+                    starting.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private static boolean isHealthy(WebDriver driver) {
+        try {
+            WebDriver drv = castDriver(driver);
+            if (drv instanceof RemoteWebDriver && ((RemoteWebDriver) drv).getSessionId() == null) {
+                return false;
+            }
+            // cheap remote call to verify that session is still alive
+            if (drv instanceof ContextAware) {
+                ((ContextAware) drv).getContext();
+            } else {
+                drv.getWindowHandle();
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.debug("Pooled driver health check failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean reset(WebDriver driver) {
+        try {
+            WebDriver drv = castDriver(driver);
+            if (drv instanceof MobileDriver) {
+                ((MobileDriver<?>) drv).resetApp();
+            } else {
+                List<String> handles = new ArrayList<>(drv.getWindowHandles());
+                for (int i = 1; i < handles.size(); i++) {
+                    drv.switchTo().window(handles.get(i));
+                    drv.close();
+                }
+                drv.switchTo().window(handles.get(0));
+                drv.manage().deleteAllCookies();
+                if (drv instanceof JavascriptExecutor) {
+                    // storage is accessible for the current origin only so it is cleared before leaving the page
+                    try {
+                        ((JavascriptExecutor) drv).executeScript("window.localStorage.clear(); window.sessionStorage.clear();");
+                    } catch (Exception e) {
+                        LOGGER.debug("Unable to clear web storage of pooled driver: " + e.getMessage());
+                    }
+                }
+                drv.get("about:blank");
+            }
+            return isHealthy(driver);
+        } catch (Exception e) {
+            LOGGER.debug("Unable to reset pooled driver: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void evict() {
+        for (BlockingDeque<PooledDriver> idle : idleDrivers.values()) {
+            Iterator<PooledDriver> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                PooledDriver pooled = iterator.next();
+                if (pooled.isExpired() && idle.removeFirstOccurrence(pooled)) {
+                    LOGGER.debug("Evicting idle driver: " + pooled);
+                    quit(pooled);
+                }
+            }
+        }
+    }
+
+    private static void quitAsync(PooledDriver pooled) {
+        getExecutor().submit(() -> quit(pooled));
+    }
+
+    private static void quit(PooledDriver pooled) {
+        try {
+            pooled.device.disconnectRemote();
+            castDriver(pooled.driver).quit();
+        } catch (Exception e) {
+            LOGGER.debug("Error message detected during pooled driver quit: " + e.getMessage());
+        }
+    }
+
+    private static BlockingDeque<PooledDriver> getIdle(String key) {
+        return idleDrivers.computeIfAbsent(key, k -> new LinkedBlockingDeque<>(Math.max(getSize(), 1)));
+    }
+
+    private static int getSize() {
+        return Configuration.getInt(Parameter.DRIVER_WARM_POOL_SIZE);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "driver-warm-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "driver-warm-pool-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(MAX_IDLE / 2, 1000);
+            evictor.scheduleWithFixedDelay(DriverWarmPool::evict, period, period, TimeUnit.MILLISECONDS);
+        }
+        return executor;
+    }
+
+    private static WebDriver castDriver(WebDriver drv) {
+        if (drv instanceof EventFiringWebDriver) {
+            drv = ((EventFiringWebDriver) drv).getWrappedDriver();
+        }
+        return drv;
+    }
+
+    private static class PooledDriver {
+        private final String key;
+        private final WebDriver driver;
+        private volatile Device device;
+        private volatile long idleSince = System.currentTimeMillis();
+
+        private PooledDriver(String key, WebDriver driver, Device device) {
+            this.key = key;
+            this.driver = driver;
+            this.device = device;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - idleSince > MAX_IDLE;
+        }
+
+        @Override
+        public String toString() {
+            return "PooledDriver [key=" + key + ", device=" + device.getName() + "]";
+        }
+    }
+
+}
@@ -261,7 +261,12 @@ public interface IDriverPool {
         for (CarinaDriver carinaDriver : driversPool) {
             if ((phases.contains(carinaDriver.getPhase()) && threadId.equals(carinaDriver.getThreadId()))
                     || phases.contains(Phase.ALL)) {
-                quitDriver(carinaDriver, false);
+                if (DriverWarmPool.release(carinaDriver)) {
+                    // session is returned into the warm pool instead of quit
+                    ProxyPool.stopProxy();
+                } else {
+                    quitDriver(carinaDriver, false);
+                }
                 drivers4Remove.add(carinaDriver);
             }
         }
@@ -289,6 +294,7 @@ public interface IDriverPool {
     }    
     
     private void quitDriver(CarinaDriver carinaDriver, boolean keepProxyDuring) {
+        DriverWarmPool.discard(carinaDriver.getDriver());
         try {
             carinaDriver.getDevice().disconnectRemote();
             
@@ -381,7 +387,15 @@ public interface IDriverPool {
                     Assert.fail("Driver '" + name + "' is already registered for thread: " + threadId);
                 }
                 
-                drv = DriverFactory.create(name, capabilities, seleniumHost);
+                if (DriverWarmPool.isEnabled()) {
+                    drv = DriverWarmPool.acquire(name, capabilities, seleniumHost);
+                    if (drv == null) {
+                        drv = DriverFactory.create(name, capabilities, seleniumHost);
+                        DriverWarmPool.register(drv, capabilities, seleniumHost);
+                    }
+                } else {
+                    drv = DriverFactory.create(name, capabilities, seleniumHost);
+                }
 
                 if (device.isNull()) {
                     // During driver creation we choose device and assign it to
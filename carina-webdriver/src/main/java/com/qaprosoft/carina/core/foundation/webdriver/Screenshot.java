@@ -16,6 +16,8 @@
 package com.qaprosoft.carina.core.foundation.webdriver;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
@@ -25,6 +27,7 @@ import java.lang.reflect.Proxy;
 import java.nio.file.Files;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -52,13 +55,16 @@ import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.webdriver.augmenter.DriverAugmenter;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.FullPageScreenshot;
 import com.qaprosoft.carina.core.foundation.webdriver.screenshot.IScreenshotRule;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.ImageComparator;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.ImageComparison;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.MessageMatcher;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.ScreenshotPolicy;
 
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.windows.WindowsDriver;
 import ru.yandex.qatools.ashot.AShot;
-import ru.yandex.qatools.ashot.comparison.ImageDiff;
-import ru.yandex.qatools.ashot.comparison.ImageDiffer;
 import ru.yandex.qatools.ashot.shooting.ShootingStrategies;
 import ru.yandex.qatools.ashot.shooting.ShootingStrategy;
 
@@ -145,7 +151,36 @@ public class Screenshot {
                 break;
             }
         }
-        return capture(driver, isTakeScreenshotRules, comment, false);
+        if (!isTakeScreenshotRules || !ScreenshotPolicy.tryAcquire()) {
+            return "";
+        }
+        if (ScreenshotPolicy.isFailureOnly()) {
+            captureFrame(driver, comment);
+            return "";
+        }
+        return capture(driver, true, comment, false, true);
+    }
+
+    /**
+     * Captures visible screenshot into the in-memory buffer of the current test. Buffered screenshots are written
+     * into the report only when test fails.
+     *
+     * @param driver
+     *            instance used for capturing.
+     * @param comment String
+     */
+    public static void captureFrame(WebDriver driver, String comment) {
+        driver = castDriver(driver);
+        if (!isCaptured(comment)) {
+            return;
+        }
+        try {
+            driver = unwrapProxy(driver);
+            ScreenshotPolicy.addFrame(takeVisibleScreenshotBytes(augment(driver)), comment);
+        } catch (Exception e) {
+            LOGGER.warn("Unable to capture screenshot frame due to the Exception!");
+            LOGGER.debug(e.getMessage(), e);
+        }
     }
 
     /**
@@ -172,7 +207,7 @@ public class Screenshot {
      * @return screenshot name.
      */
     public static String capture(WebDriver driver, String comment, boolean isFullSize) {
-        return capture(driver, true, comment, isFullSize);
+        return capture(driver, true, comment, isFullSize, false);
     }
     
     /**
@@ -331,7 +366,7 @@ public class Screenshot {
      * @return screenshot name.
      */
 
-    private static String capture(WebDriver driver, boolean isTakeScreenshot, String comment, boolean fullSize) {
+    private static String capture(WebDriver driver, boolean isTakeScreenshot, String comment, boolean fullSize, boolean dedup) {
         String screenName = "";
         
         // TODO: AUTO-2883 make full size screenshot generation only when fullSize == true
@@ -354,28 +389,8 @@ public class Screenshot {
                 screenName = System.currentTimeMillis() + ".png";
                 String screenPath = testScreenRootDir.getAbsolutePath() + "/" + screenName;
 
-                WebDriver augmentedDriver = driver;
-
-                //hotfix to converting proxy into the valid driver
-                if (driver instanceof Proxy) {
-    				try {
-        				InvocationHandler innerProxy = Proxy.getInvocationHandler((Proxy) driver);
-        				// "arg$2" is by default RemoteWebDriver;
-        				// "arg$1" is EventFiringWebDriver
-        				// wrap into try/catch to make sure we don't affect test execution
-        				Field locatorField = innerProxy.getClass().getDeclaredField("arg$2");
-        				locatorField.setAccessible(true);
-
-        				augmentedDriver = driver = (WebDriver) locatorField.get(innerProxy);
-    				} catch (Exception e) {
-    					//do nothing and receive augmenting warning in the logs
-    				}
-                }
-
-                if (!driver.toString().contains("AppiumNativeDriver")) {
-                    // do not augment for Appium 1.x anymore
-                    augmentedDriver = new DriverAugmenter().augment(driver);
-                }
+                driver = unwrapProxy(driver);
+                WebDriver augmentedDriver = augment(driver);
 
                 BufferedImage screen;
 
@@ -391,6 +406,11 @@ public class Screenshot {
                 	return "";
                 }
 
+                if (dedup && ScreenshotPolicy.isDuplicate(screen)) {
+                    LOGGER.debug("Screenshot is skipped as screen wasn't changed: " + comment);
+                    return "";
+                }
+
                 if (Configuration.getInt(Parameter.BIG_SCREEN_WIDTH) != -1
                         && Configuration.getInt(Parameter.BIG_SCREEN_HEIGHT) != -1) {
                     resizeImg(screen, Configuration.getInt(Parameter.BIG_SCREEN_WIDTH),
@@ -438,6 +458,10 @@ public class Screenshot {
      *            - path to screenshot file.
      */
     private static void resizeImg(BufferedImage bufferedImage, int width, int height, String path) {
+        if (bufferedImage.getWidth() <= width && bufferedImage.getHeight() <= height) {
+            // already downscaled during capturing
+            return;
+        }
         try {
             BufferedImage bufImage = Scalr.resize(bufferedImage, Scalr.Method.BALANCED, Scalr.Mode.FIT_TO_WIDTH, width, height,
                     Scalr.OP_ANTIALIAS);
@@ -503,11 +527,14 @@ public class Screenshot {
                         screenShot = screenshot.getImage();
                     }
                 } else {
-                    // regular web
-                    ru.yandex.qatools.ashot.Screenshot screenshot;
+                    // regular web: DevTools capture or scrolling with downscale during stitching
+                    screenShot = FullPageScreenshot.capture(driver);
+                    if (screenShot == null) {
+                        ru.yandex.qatools.ashot.Screenshot screenshot;
                         screenshot = (new AShot()).shootingStrategy(ShootingStrategies.viewportPasting(SpecialKeywords.DEFAULT_SCROLL_TIMEOUT))
                                 .takeScreenshot(augmentedDriver);
                         screenShot = screenshot.getImage();
+                    }
                 }
                 return screenShot;
             }
@@ -549,18 +576,31 @@ public class Screenshot {
      * @return screenshot image
      */
     private static BufferedImage takeVisibleScreenshot(WebDriver augmentedDriver) throws Exception {
-        Future<?> future = Executors.newSingleThreadExecutor().submit(new Callable<BufferedImage>() {
-            public BufferedImage call() throws IOException {
-                return ImageIO.read(((TakesScreenshot) augmentedDriver).getScreenshotAs(OutputType.FILE));
+        byte[] screenShot = takeVisibleScreenshotBytes(augmentedDriver);
+        return screenShot == null ? null : ImageIO.read(new ByteArrayInputStream(screenShot));
+    }
+
+    /**
+     * Makes screenshot of visible part of the page without decoding
+     *
+     * @param augmentedDriver
+     *            - webDriver.
+     *
+     * @return encoded png screenshot or null
+     */
+    private static byte[] takeVisibleScreenshotBytes(WebDriver augmentedDriver) {
+        Future<byte[]> future = Executors.newSingleThreadExecutor().submit(new Callable<byte[]>() {
+            public byte[] call() {
+                return ((TakesScreenshot) augmentedDriver).getScreenshotAs(OutputType.BYTES);
             }
         }); 
         
-        BufferedImage screenShot = null;
+        byte[] screenShot = null;
         // default timeout for driver quit 1/3 of explicit
         long timeout = Configuration.getInt(Parameter.EXPLICIT_TIMEOUT) / 3;
         try {
             LOGGER.debug("starting screenshot capturing...");
-            screenShot = (BufferedImage) future.get(timeout, TimeUnit.SECONDS);
+            screenShot = future.get(timeout, TimeUnit.SECONDS);
         } catch (java.util.concurrent.TimeoutException e) {
             String message = "Unable to capture screenshot during " + timeout + "sec!";
             LOGGER.error(message);
@@ -592,61 +632,89 @@ public class Screenshot {
 	 * @return boolean
 	 */
 	public static boolean isCaptured(String message){
-		// [VD] do not use below line as it is too common!
-		// || message.contains("timeout")
 		if (message == null) {
 			// unable to detect driver invalid status so return true
 			return true;
 		}
-		// disable screenshot if error message contains any of this info
-		boolean isContains = message.contains("StaleObjectException")
-				|| message.contains("StaleElementReferenceException")
-				|| message.contains("stale_element_reference.html")
-				|| message.contains("Error executing JavaScript")
-				|| message.contains("Session ID is null. Using WebDriver after calling quit")
-				|| message.contains("A session is either terminated or not started")
-                || message.contains("invalid session id")
-                || message.contains("Session does not exist")
-				|| message.contains("Session timed out or not found")
-				|| message.contains("Unable to determine type from: <. Last 1 characters read")
-				|| message.contains("not available and is not among the last 1000 terminated sessions")				
-				|| message.contains("cannot forward the request")
-                || message.contains("connect ECONNREFUSED")
-				|| message.contains("was terminated due to") // FORWARDING_TO_NODE_FAILED, CLIENT_STOPPED_SESSION, PROXY_REREGISTRATION, TIMEOUT, BROWSER_TIMEOUT etc
-				|| message.contains("InvalidElementStateException") || message.contains("stale element reference")
-				|| message.contains("no such element: Unable to locate element")
-				|| message.contains("https://www.seleniumhq.org/exceptions/no_such_element.html") // use-case for Safari driver
-				|| message.contains("no such window: window was already closed")
-				|| message.contains("Method is not implemented") //to often exception for mobile native app testing
-				// [VD] exclude below condition otherwise we overload appium when fluent wait looking for device and doing screenshot in a loop 
-				|| message.contains("An element could not be located on the page using the given search parameters")
-				|| message.contains("current view have 'secure' flag set")
-				|| message.contains("Error communicating with the remote browser. It may have died")
-				|| message.contains("unexpected alert open") 
-				|| message.contains("chrome not reachable")
-				|| message.contains("cannot forward the request Connect to")
-				|| message.contains("Could not proxy command to remote server. Original error:") // Error: socket hang up, Error: read ECONNRESET etc				
-				|| message.contains("Could not proxy command to the remote server. Original error:") // Different messages on some Appium versions
-				|| message.contains("Unable to find elements by Selenium")
-				|| message.contains("generateUiDump") //do not generate screenshot if getPageSource is invalid
-				|| message.contains("Expected to read a START_MAP but instead have: END") // potential drivers issues fix for moon
-				|| message.contains("An unknown error has occurred") //
-				|| message.contains("Unable to find element with")
-				|| message.contains("Unable to locate element")
-				|| message.contains("Illegal base64 character 2e")
-        || message.contains("javascript error: Cannot read property 'outerHTML' of null")
-				// carina based errors which means that driver is not ready for screenshoting
-				|| message.contains("Unable to open url during");
-
-		if (!isContains) {
+		// disable screenshot if error message contains any of exclusions
+		String exclusion = getExclusions().find(message);
+		if (exclusion == null) {
 		    // for released builds put below message to debug  
 		    LOGGER.debug("isCaptured->message: '" + message + "'");
 		    // for snapshot builds use info to get more useful information
 		    //LOGGER.info("isCaptured->message: '" + message + "'");
+		} else {
+		    LOGGER.debug("isCaptured->exclusion: '" + exclusion + "'");
 		}
-		return !isContains;
+		return exclusion == null;
 	}
 
+    /**
+     * Returns compiled screenshot exclusions: default ones and declared by screenshot_exclusions parameter.
+     * 
+     * @return MessageMatcher with hit counter per exclusion
+     */
+    public static MessageMatcher getExclusions() {
+        return ExclusionsHolder.EXCLUSIONS;
+    }
+
+    private static class ExclusionsHolder {
+        // [VD] do not use "timeout" as it is too common!
+        private static final List<String> DEFAULT_EXCLUSIONS = Arrays.asList(
+                "StaleObjectException",
+                "StaleElementReferenceException",
+                "stale_element_reference.html",
+                "Error executing JavaScript",
+                "Session ID is null. Using WebDriver after calling quit",
+                "A session is either terminated or not started",
+                "invalid session id",
+                "Session does not exist",
+                "Session timed out or not found",
+                "Unable to determine type from: <. Last 1 characters read",
+                "not available and is not among the last 1000 terminated sessions",
+                "cannot forward the request",
+                "connect ECONNREFUSED",
+                "was terminated due to", // FORWARDING_TO_NODE_FAILED, CLIENT_STOPPED_SESSION, PROXY_REREGISTRATION, TIMEOUT, BROWSER_TIMEOUT etc
+                "InvalidElementStateException",
+                "stale element reference",
+                "no such element: Unable to locate element",
+                "https://www.seleniumhq.org/exceptions/no_such_element.html", // use-case for Safari driver
+                "no such window: window was already closed",
+                "Method is not implemented", // to often exception for mobile native app testing
+                // [VD] exclude below condition otherwise we overload appium when fluent wait looking for device and doing screenshot in a loop
+                "An element could not be located on the page using the given search parameters",
+                "current view have 'secure' flag set",
+                "Error communicating with the remote browser. It may have died",
+                "unexpected alert open",
+                "chrome not reachable",
+                "Could not proxy command to remote server. Original error:", // Error: socket hang up, Error: read ECONNRESET etc
+                "Could not proxy command to the remote server. Original error:", // Different messages on some Appium versions
+                "Unable to find elements by Selenium",
+                "generateUiDump", // do not generate screenshot if getPageSource is invalid
+                "Expected to read a START_MAP but instead have: END", // potential drivers issues fix for moon
+                "An unknown error has occurred",
+                "Unable to find element with",
+                "Unable to locate element",
+                "Illegal base64 character 2e",
+                "javascript error: Cannot read property 'outerHTML' of null",
+                // carina based errors which means that driver is not ready for screenshoting
+                "Unable to open url during");
+
+        private static final MessageMatcher EXCLUSIONS = compile();
+
+        private static MessageMatcher compile() {
+            List<String> exclusions = new ArrayList<>(DEFAULT_EXCLUSIONS);
+            String custom = Configuration.get(Parameter.SCREENSHOT_EXCLUSIONS);
+            if (!custom.isEmpty()) {
+                for (String exclusion : custom.split(",")) {
+                    exclusions.add(exclusion.trim());
+                }
+                LOGGER.debug("Custom screenshot exclusions: " + custom);
+            }
+            return new MessageMatcher(exclusions);
+        }
+    }
+
     /**
      * Compares two different screenshots
      *
@@ -657,35 +725,10 @@ public class Screenshot {
      * @return boolean
      */
     public static boolean isScreenshotDiff(BufferedImage bufferedImageExpected, BufferedImage bufferedImageActual, String comment, boolean artifact) {
-        String screenName;
-        BufferedImage screen;
         try {
-            ImageDiffer imageDiff = new ImageDiffer();
-            ImageDiff diff = imageDiff.makeDiff(bufferedImageExpected, bufferedImageActual);
+            ImageComparison diff = new ImageComparator(0, 0).compare(bufferedImageExpected, bufferedImageActual);
             if (diff.hasDiff()) {
-                screen = diff.getMarkedImage();
-                // Define test screenshot root
-                File testScreenRootDir = ReportContext.getTestDir();
-
-                screenName = comment + ".png";
-                String screenPath = testScreenRootDir.getAbsolutePath() + "/" + screenName;
-
-                if (Configuration.getInt(Parameter.BIG_SCREEN_WIDTH) != -1
-                        && Configuration.getInt(Parameter.BIG_SCREEN_HEIGHT) != -1) {
-                    resizeImg(screen, Configuration.getInt(Parameter.BIG_SCREEN_WIDTH),
-                            Configuration.getInt(Parameter.BIG_SCREEN_HEIGHT), screenPath);
-                }
-
-                File screenshot = new File(screenPath);
-                FileUtils.touch(screenshot);
-                ImageIO.write(screen, "PNG", screenshot);
-
-                // Uploading comparative screenshot to Amazon S3
-                if (artifact){
-                    com.zebrunner.agent.core.registrar.Artifact.attachToTest(comment + ".png", screenshot);
-                } else {
-                    com.zebrunner.agent.core.registrar.Screenshot.upload(Files.readAllBytes(screenshot.toPath()), Instant.now().toEpochMilli());
-                }
+                saveDiff(diff.getMarkedImage(), comment, artifact);
             }
             else {
                 LOGGER.info("Unable to create comparative screenshot, there is no difference between images!");
@@ -709,6 +752,35 @@ public class Screenshot {
         return true;
     }
 
+    /**
+     * Saves comparative screenshot into the test folder and uploads it. Image is encoded and written once, the same
+     * bytes are uploaded.
+     *
+     * @param screen - marked image
+     * @param comment - String used as file name
+     * @param artifact - boolean attach as test artifact or as screenshot
+     * @return File saved screenshot
+     * @throws IOException if screenshot can't be written
+     */
+    public static File saveDiff(BufferedImage screen, String comment, boolean artifact) throws IOException {
+        String screenName = comment + ".png";
+        File screenshot = new File(ReportContext.getTestDir().getAbsolutePath() + "/" + screenName);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(screen, "PNG", png);
+        byte[] bytes = png.toByteArray();
+        Files.write(screenshot.toPath(), bytes);
+        ReportContext.addScreenshotComment(screenName, comment);
+
+        // Uploading comparative screenshot to Amazon S3
+        if (artifact){
+            com.zebrunner.agent.core.registrar.Artifact.attachToTest(screenName, screenshot);
+        } else {
+            com.zebrunner.agent.core.registrar.Screenshot.upload(bytes, Instant.now().toEpochMilli());
+        }
+        return screenshot;
+    }
+
     private static ShootingStrategy getScreenshotShuttingStrategy(int deviceWidth, String deviceName) {
         switch (deviceWidth) {
         case SpecialKeywords.DEFAULT_WIDTH:
@@ -739,6 +811,35 @@ public class Screenshot {
         }
     }
 
+    // unwraps the dynamic proxy around the driver to reach the underlying RemoteWebDriver
+    private static WebDriver unwrapProxy(WebDriver driver) {
+        //hotfix to converting proxy into the valid driver
+        if (driver instanceof Proxy) {
+            try {
+                InvocationHandler innerProxy = Proxy.getInvocationHandler((Proxy) driver);
+                // "arg$2" is by default RemoteWebDriver;
+                // "arg$1" is EventFiringWebDriver
+                // wrap into try/catch to make sure we don't affect test execution
+                Field locatorField = innerProxy.getClass().getDeclaredField("arg$2");
+                locatorField.setAccessible(true);
+
+                driver = (WebDriver) locatorField.get(innerProxy);
+            } catch (Exception e) {
+                //do nothing and receive augmenting warning in the logs
+            }
+        }
+        return driver;
+    }
+
+    // augments the driver for screenshots, Appium native drivers are returned as is
+    private static WebDriver augment(WebDriver driver) {
+        if (!driver.toString().contains("AppiumNativeDriver")) {
+            // do not augment for Appium 1.x anymore
+            return new DriverAugmenter().augment(driver);
+        }
+        return driver;
+    }
+
     /**
      * Cast Carina driver to WebDriver removing all extra listeners (use it in problematic places where you handle all exceptions)
      *
@@ -39,7 +39,6 @@ import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
-import com.qaprosoft.carina.core.foundation.utils.R;
 import com.qaprosoft.carina.proxy.SystemProxy;
 
 public abstract class AbstractCapabilities {
@@ -65,24 +64,10 @@ public abstract class AbstractCapabilities {
     }
 
     protected DesiredCapabilities initCapabilities(DesiredCapabilities capabilities) {
-        // read all properties which starts from "capabilities.*" prefix and add them into desired capabilities.
-        final String prefix = SpecialKeywords.CAPABILITIES + ".";
-        @SuppressWarnings({ "unchecked", "rawtypes" })
-        Map<String, String> capabilitiesMap = new HashMap(R.CONFIG.getProperties());
-        for (Map.Entry<String, String> entry : capabilitiesMap.entrySet()) {
-            if (entry.getKey().toLowerCase().startsWith(prefix)) {
-                String value = R.CONFIG.get(entry.getKey());
-                if (!value.isEmpty()) {
-                    String cap = entry.getKey().replaceAll(prefix, "");
-                    if ("false".equalsIgnoreCase(value)) {
-                        capabilities.setCapability(cap, false);
-                    } else if ("true".equalsIgnoreCase(value)) {
-                        capabilities.setCapability(cap, true);
-                    } else {
-                        capabilities.setCapability(cap, value);
-                    }
-                }
-            }
+        // all properties which starts from "capabilities.*" prefix are resolved once per configuration state and added
+        // into desired capabilities.
+        for (Map.Entry<String, Object> entry : ConfigCapabilities.get().entrySet()) {
+            capabilities.setCapability(entry.getKey(), entry.getValue());
         }
         capabilities.setCapability("carinaTestRunId", SpecialKeywords.TEST_RUN_ID);
         
@@ -17,9 +17,11 @@ package com.qaprosoft.carina.core.foundation.webdriver.core.capability;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.slf4j.Logger;
@@ -36,6 +38,10 @@ public class CapabilitiesLoader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    // capabilities files are parsed once per JVM, the same file is usually loaded for each test or driver
+    private static final Map<String, Map<String, String>> properties = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, Object>> capabilities = new ConcurrentHashMap<>();
+
     /**
      * Load capabilities and properties from external file into the global CONFIG context.
      * {@code capabilities.<name>=<value> will be attached to each WebDriver capabilities
@@ -59,18 +65,12 @@ public class CapabilitiesLoader {
      */
     public void loadCapabilities(String fileName, boolean currentTestOnly) {
         LOGGER.info("Loading capabilities to global context from " + fileName);
-        Properties props = loadProperties(fileName);
-
-        @SuppressWarnings({ "rawtypes", "unchecked" })
-        Map<String, String> capabilitiesMap = new HashMap(props);
-        for (Map.Entry<String, String> entry : capabilitiesMap.entrySet()) {
-            String value = entry.getValue();
-            String key = entry.getKey();
-            LOGGER.info("Set custom property: " + key + "; value: " + value);
-            // add each property directly into CONFIG
-            R.CONFIG.put(key, value, currentTestOnly);
+        Map<String, String> props = loadProperties(fileName);
+        for (Map.Entry<String, String> entry : props.entrySet()) {
+            LOGGER.info("Set custom property: " + entry.getKey() + "; value: " + entry.getValue());
         }
-
+        // add all properties directly into CONFIG
+        R.CONFIG.putAll(props, currentTestOnly);
     }
     
     /**
@@ -84,38 +84,40 @@ public class CapabilitiesLoader {
      * 			DesiredCapabilities y
      */
     public DesiredCapabilities getCapabilities(String fileName) {
-        DesiredCapabilities capabilities = new DesiredCapabilities();
-        
         LOGGER.info("Generating capabilities from " + fileName);
-        Properties props = loadProperties(fileName);
+        // DesiredCapabilities are mutable so every caller gets its own copy of the cached set
+        return new DesiredCapabilities(capabilities.computeIfAbsent(fileName, this::parseCapabilities));
+    }
 
+    private Map<String, Object> parseCapabilities(String fileName) {
+        Map<String, Object> result = new HashMap<>();
         final String prefix = SpecialKeywords.CAPABILITIES + ".";
-        
-        @SuppressWarnings({ "rawtypes", "unchecked" })
-        Map<String, String> capabilitiesMap = new HashMap(props);
-        for (Map.Entry<String, String> entry : capabilitiesMap.entrySet()) {
+        for (Map.Entry<String, String> entry : loadProperties(fileName).entrySet()) {
             if (entry.getKey().toLowerCase().startsWith(prefix)) {
                 String value = entry.getValue();
                 if (!value.isEmpty()) {
                     String cap = entry.getKey().replaceAll(prefix, "");
                     if ("false".equalsIgnoreCase(value)) {
                         LOGGER.debug("Set capabilities value as boolean: false");
-                        capabilities.setCapability(cap, false);
+                        result.put(cap, false);
                     } else if ("true".equalsIgnoreCase(value)) {
                         LOGGER.debug("Set capabilities value as boolean: true");
-                        capabilities.setCapability(cap, true);
+                        result.put(cap, true);
                     } else {
                         LOGGER.debug("Set capabilities value as string: " + value);
-                        capabilities.setCapability(cap, value);
+                        result.put(cap, value);
                     }
                 }
             }
         }
-
-        return capabilities;
+        return Collections.unmodifiableMap(result);
     }
     
-    private Properties loadProperties(String fileName) {
+    private Map<String, String> loadProperties(String fileName) {
+        return properties.computeIfAbsent(fileName, this::readProperties);
+    }
+
+    private Map<String, String> readProperties(String fileName) {
         Properties props = new Properties();
         URL baseResource = ClassLoader.getSystemResource(fileName);
         try {
@@ -129,6 +131,8 @@ public class CapabilitiesLoader {
             Assert.fail("Unable to load custom capabilities from '" + baseResource.getPath() + "'!", e);
         }
 
-        return props;
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        Map<String, String> result = new HashMap(props);
+        return Collections.unmodifiableMap(result);
     }
-}
\ No newline at end of file
+}
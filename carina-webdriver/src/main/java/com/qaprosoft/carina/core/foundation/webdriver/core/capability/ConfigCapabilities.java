@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.core.capability;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+/**
+ * ConfigCapabilities - "capabilities.*" configuration properties converted to capabilities.
+ *
+ * Global capabilities are built once per configuration state: the set is immutable and rebuilt only when modification
+ * count of the global configuration changes. Capabilities overridden for the current test are applied as overlay over
+ * the global set and merged sets are cached by the overlay too, so driver creation doesn't scan and parse the whole
+ * configuration.
+ */
+public final class ConfigCapabilities {
+
+    private static final String PREFIX = SpecialKeywords.CAPABILITIES + ".";
+    private static final int MAX_MERGED = 64;
+
+    private static volatile CapabilitySet global;
+    private static final Map<OverlayKey, Map<String, Object>> merged = new ConcurrentHashMap<>();
+
+    private ConfigCapabilities() {
+    }
+
+    /**
+     * @return unmodifiable Map of capability name to value (String or Boolean) for the current test
+     */
+    public static Map<String, Object> get() {
+        CapabilitySet base = getGlobal();
+        Map<String, String> overlay = getOverlay(R.CONFIG.getTestProperties());
+        if (overlay.isEmpty()) {
+            return base.capabilities;
+        }
+
+        OverlayKey key = new OverlayKey(base.version, overlay);
+        Map<String, Object> result = merged.get(key);
+        if (result == null) {
+            if (merged.size() >= MAX_MERGED) {
+                merged.clear();
+            }
+            result = merge(base.capabilities, overlay);
+            merged.put(key, result);
+        }
+        return result;
+    }
+
+    private static CapabilitySet getGlobal() {
+        // counter is read before the properties so concurrent change makes the next call rebuild capabilities
+        long version = R.CONFIG.getModificationCount();
+        CapabilitySet current = global;
+        if (current != null && current.version == version) {
+            return current;
+        }
+
+        Map<Object, Object> properties = R.CONFIG.getGlobalProperties();
+        Map<String, Object> capabilities = new HashMap<>();
+        for (Object name : properties.keySet().toArray()) {
+            String key = (String) name;
+            if (key.toLowerCase().startsWith(PREFIX)) {
+                put(capabilities, key, R.CONFIG.getGlobal(key));
+            }
+        }
+        CapabilitySet result = new CapabilitySet(version, Collections.unmodifiableMap(capabilities));
+        global = result;
+        merged.clear();
+        return result;
+    }
+
+    private static Map<String, String> getOverlay(Properties testProperties) {
+        if (testProperties.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> overlay = new HashMap<>();
+        for (String key : testProperties.stringPropertyNames()) {
+            if (key.toLowerCase().startsWith(PREFIX)) {
+                overlay.put(key, testProperties.getProperty(key));
+            }
+        }
+        return overlay;
+    }
+
+    private static Map<String, Object> merge(Map<String, Object> base, Map<String, String> overlay) {
+        Map<String, Object> capabilities = new HashMap<>(base);
+        for (Map.Entry<String, String> entry : overlay.entrySet()) {
+            // empty test value hides global capability
+            capabilities.remove(toName(entry.getKey()));
+            put(capabilities, entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(capabilities);
+    }
+
+    private static void put(Map<String, Object> capabilities, String key, String value) {
+        if (value.isEmpty()) {
+            return;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            capabilities.put(toName(key), false);
+        } else if ("true".equalsIgnoreCase(value)) {
+            capabilities.put(toName(key), true);
+        } else {
+            capabilities.put(toName(key), value);
+        }
+    }
+
+    private static String toName(String key) {
+        return key.replaceAll(PREFIX, "");
+    }
+
+    private static class CapabilitySet {
+        private final long version;
+        private final Map<String, Object> capabilities;
+
+        CapabilitySet(long version, Map<String, Object> capabilities) {
+            this.version = version;
+            this.capabilities = capabilities;
+        }
+    }
+
+    private static class OverlayKey {
+        private final long base;
+        private final Map<String, String> overlay;
+
+        OverlayKey(long base, Map<String, String> overlay) {
+            this.base = base;
+            this.overlay = overlay;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof OverlayKey)) {
+                return false;
+            }
+            OverlayKey other = (OverlayKey) o;
+            return base == other.base && overlay.equals(other.overlay);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(base) + overlay.hashCode();
+        }
+    }
+
+}
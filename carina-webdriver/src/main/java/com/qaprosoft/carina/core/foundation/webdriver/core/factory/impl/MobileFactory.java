@@ -15,6 +15,8 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.webdriver.core.factory.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -23,6 +25,7 @@ import java.util.regex.Pattern;
 
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +38,8 @@ import com.qaprosoft.carina.core.foundation.webdriver.core.capability.impl.mobil
 import com.qaprosoft.carina.core.foundation.webdriver.core.factory.AbstractFactory;
 import com.qaprosoft.carina.core.foundation.webdriver.device.Device;
 import com.qaprosoft.carina.core.foundation.webdriver.listener.EventFiringAppiumCommandExecutor;
+import com.qaprosoft.carina.core.foundation.webdriver.replay.CommandRecorder;
+import com.qaprosoft.carina.core.foundation.webdriver.replay.ReplayCommandExecutor;
 
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.AndroidElement;
@@ -83,7 +88,7 @@ public class MobileFactory extends AbstractFactory {
         LOGGER.debug("capabilities: " + capabilities);
         
         try {
-            EventFiringAppiumCommandExecutor ce = new EventFiringAppiumCommandExecutor(new URL(seleniumHost));
+            HttpCommandExecutor ce = getCommandExecutor(new URL(seleniumHost));
             
             if (mobilePlatformName.equalsIgnoreCase(SpecialKeywords.ANDROID)) {
                 driver = new AndroidDriver<AndroidElement>(ce, capabilities);
@@ -141,6 +146,35 @@ public class MobileFactory extends AbstractFactory {
         return new MobileCapabilities().getCapability(name);
     }
 
+    /**
+     * Command executor of the driver: replays recorded session if "driver_command_replay" is set, otherwise sends
+     * commands to the server recording them into "driver_command_record" folder if it is set.
+     * 
+     * @param url URL of selenium/appium server
+     * @return HttpCommandExecutor
+     */
+    private HttpCommandExecutor getCommandExecutor(URL url) {
+        String replayLog = Configuration.get(Parameter.DRIVER_COMMAND_REPLAY);
+        if (!replayLog.isEmpty()) {
+            try {
+                return new ReplayCommandExecutor(new File(replayLog), Configuration.getDouble(Parameter.DRIVER_COMMAND_REPLAY_TIME_SCALE));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read driver command log: " + replayLog, e);
+            }
+        }
+
+        EventFiringAppiumCommandExecutor ce = new EventFiringAppiumCommandExecutor(url);
+        String recordDir = Configuration.get(Parameter.DRIVER_COMMAND_RECORD);
+        if (!recordDir.isEmpty()) {
+            try {
+                ce.getListeners().add(CommandRecorder.create(new File(recordDir)));
+            } catch (IOException e) {
+                LOGGER.error("Unable to record driver commands into " + recordDir, e);
+            }
+        }
+        return ce;
+    }
+
     /**
      * Method to extract debug info in case exception has been thrown during app installation
      * 
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.decorator;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openqa.selenium.By;
+import org.openqa.selenium.ContextAware;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.EventFiringWebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.PageSourceSnapshot;
+
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.ios.IOSDriver;
+
+/**
+ * BulkElementReader - reads text and attributes of the whole {@link ExtendedWebElement} list using single remote call.
+ *
+ * Strategies in order of preference:
+ * 1. single executeScript call for web and hybrid contexts;
+ * 2. single getPageSource call with local xpath evaluation for native Appium contexts where scripts are rejected;
+ * 3. regular per-element calls when none of the above is applicable.
+ */
+public final class BulkElementReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String NATIVE_CONTEXT = "NATIVE_APP";
+
+    private static final String READ_SCRIPT = "var elements = arguments[0], attributes = arguments[1], result = [];"
+            + "for (var i = 0; i < elements.length; i++) {"
+            + "  var e = elements[i], row = [];"
+            + "  var text = e.innerText !== undefined ? e.innerText : e.textContent;"
+            + "  row.push(text === null || text === undefined ? '' : String(text));"
+            + "  for (var j = 0; j < attributes.length; j++) {"
+            + "    var v = e.getAttribute(attributes[j]);"
+            + "    if (v === null && attributes[j] in e) { v = e[attributes[j]]; }"
+            + "    row.push(v === null || v === undefined ? null : String(v));"
+            + "  }"
+            + "  result.push(row);"
+            + "}"
+            + "return result;";
+
+    private BulkElementReader() {
+    }
+
+    /**
+     * Read text of all elements.
+     *
+     * @param elements
+     *            List of ExtendedWebElement
+     * @return List of texts in the same order
+     */
+    public static List<String> getTexts(List<ExtendedWebElement> elements) {
+        return read(elements).getTexts();
+    }
+
+    /**
+     * Read text of raw web elements using single script call if possible.
+     *
+     * @param driver
+     *            WebDriver which owns elements
+     * @param elements
+     *            List of WebElement
+     * @return List of texts in the same order
+     */
+    public static List<String> getTexts(WebDriver driver, List<WebElement> elements) {
+        List<List<String>> rows = null;
+        if (!elements.isEmpty() && isScriptSupported(castDriver(driver))) {
+            rows = readByScript(driver, elements, new String[0]);
+        }
+
+        List<String> texts = new ArrayList<>(elements.size());
+        if (rows != null) {
+            for (List<String> row : rows) {
+                texts.add(row.get(0));
+            }
+        } else {
+            for (WebElement element : elements) {
+                texts.add(element.getText());
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Read single attribute of all elements.
+     *
+     * @param elements
+     *            List of ExtendedWebElement
+     * @param attribute
+     *            String attribute name
+     * @return List of values in the same order
+     */
+    public static List<String> getAttributes(List<ExtendedWebElement> elements, String attribute) {
+        return read(elements, attribute).getColumn(attribute);
+    }
+
+    /**
+     * Read text and requested attributes of all elements.
+     *
+     * @param elements
+     *            List of ExtendedWebElement
+     * @param attributes
+     *            attribute names to read
+     * @return ElementDataTable where row index equals element index
+     */
+    public static ElementDataTable read(List<ExtendedWebElement> elements, String... attributes) {
+        if (elements == null || elements.isEmpty()) {
+            return new ElementDataTable(attributes, new ArrayList<>());
+        }
+
+        WebDriver driver = castDriver(elements.get(0).getDriver());
+        List<List<String>> rows = null;
+
+        if (isScriptSupported(driver)) {
+            List<WebElement> webElements = new ArrayList<>(elements.size());
+            for (ExtendedWebElement element : elements) {
+                webElements.add(element.getCachedElement());
+            }
+            rows = readByScript(elements.get(0).getDriver(), webElements, attributes);
+        }
+
+        if (rows == null && isMobile(driver)) {
+            rows = readFromPageSource(driver, elements, attributes);
+        }
+
+        if (rows == null) {
+            LOGGER.debug("Bulk read is not applicable, reading " + elements.size() + " elements one by one.");
+            rows = readOneByOne(elements, attributes);
+        }
+        return new ElementDataTable(attributes, rows);
+    }
+
+    private static List<List<String>> readByScript(WebDriver driver, List<WebElement> elements, String[] attributes) {
+        Object output;
+        try {
+            output = ((JavascriptExecutor) driver).executeScript(READ_SCRIPT, elements, attributes);
+        } catch (WebDriverException e) {
+            // elements became stale or script is rejected by the driver
+            LOGGER.debug("Unable to read elements using script: " + e.getMessage());
+            return null;
+        }
+
+        if (!(output instanceof List) || ((List<?>) output).size() != elements.size()) {
+            LOGGER.debug("Unexpected bulk read script output: " + output);
+            return null;
+        }
+
+        List<List<String>> rows = new ArrayList<>(elements.size());
+        for (Object item : (List<?>) output) {
+            List<?> values = (List<?>) item;
+            List<String> row = new ArrayList<>(values.size());
+            // normalize text the same way as WebElement.getText does
+            row.add(StringUtils.trim(String.valueOf(values.get(0))));
+            for (int i = 1; i < values.size(); i++) {
+                row.add(values.get(i) == null ? null : String.valueOf(values.get(i)));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<List<String>> readFromPageSource(WebDriver driver, List<ExtendedWebElement> elements,
+            String[] attributes) {
+        By by = elements.get(0).getBy();
+        if (!PageSourceSnapshot.isSupported(by)) {
+            return null;
+        }
+        for (ExtendedWebElement element : elements) {
+            if (!by.equals(element.getBy())) {
+                // not a list produced by the single locator
+                return null;
+            }
+        }
+
+        List<Map<String, String>> nodes;
+        try {
+            nodes = PageSourceSnapshot.parse(driver.getPageSource()).findAll(by);
+        } catch (WebDriverException | IllegalArgumentException e) {
+            LOGGER.debug("Unable to read elements using page source: " + e.getMessage());
+            return null;
+        }
+
+        if (nodes.size() != elements.size()) {
+            // screen was changed or locator is relative to another element
+            LOGGER.debug("Page source contains " + nodes.size() + " nodes instead of " + elements.size());
+            return null;
+        }
+
+        boolean isAndroid = driver instanceof AndroidDriver;
+        List<List<String>> rows = new ArrayList<>(nodes.size());
+        for (Map<String, String> node : nodes) {
+            List<String> row = new ArrayList<>(attributes.length + 1);
+            String text = isAndroid ? node.get("text") : StringUtils.defaultIfEmpty(node.get("value"), node.get("label"));
+            row.add(StringUtils.defaultString(text));
+            for (String attribute : attributes) {
+                row.add(node.get(attribute));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<List<String>> readOneByOne(List<ExtendedWebElement> elements, String[] attributes) {
+        List<List<String>> rows = new ArrayList<>(elements.size());
+        for (ExtendedWebElement element : elements) {
+            List<String> row = new ArrayList<>(attributes.length + 1);
+            row.add(element.getText());
+            for (String attribute : attributes) {
+                row.add(element.getAttribute(attribute));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Native Appium context rejects any executeScript call so the script is not sent at all there.
+     *
+     * @param driver
+     *            unwrapped WebDriver
+     * @return true if bulk read script can be executed in the current context
+     */
+    private static boolean isScriptSupported(WebDriver driver) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return false;
+        }
+        if (!isMobile(driver)) {
+            return true;
+        }
+        try {
+            return !StringUtils.startsWith(((ContextAware) driver).getContext(), NATIVE_CONTEXT);
+        } catch (WebDriverException e) {
+            LOGGER.debug("Unable to detect current context: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isMobile(WebDriver driver) {
+        return (driver instanceof IOSDriver) || (driver instanceof AndroidDriver);
+    }
+
+    private static WebDriver castDriver(WebDriver driver) {
+        if (driver instanceof EventFiringWebDriver) {
+            driver = ((EventFiringWebDriver) driver).getWrappedDriver();
+        }
+        return driver;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.decorator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ElementDataTable - immutable result of the bulk read of element list.
+ * Row index matches the index of element in the source list, column "text" keeps element text and other columns
+ * keep requested attributes in declared order.
+ */
+public class ElementDataTable {
+
+    public static final String TEXT = "text";
+
+    private final List<String> columns;
+    private final List<List<String>> rows;
+
+    ElementDataTable(String[] attributes, List<List<String>> rows) {
+        List<String> cols = new ArrayList<>(attributes.length + 1);
+        cols.add(TEXT);
+        cols.addAll(Arrays.asList(attributes));
+        this.columns = Collections.unmodifiableList(cols);
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public String getText(int row) {
+        return rows.get(row).get(0);
+    }
+
+    /**
+     * Get attribute value.
+     *
+     * @param row
+     *            int element index
+     * @param attribute
+     *            String attribute name which was requested for bulk read
+     * @return String value or null if element has no such attribute
+     */
+    public String getAttribute(int row, String attribute) {
+        return rows.get(row).get(indexOf(attribute));
+    }
+
+    public List<String> getTexts() {
+        return getColumn(TEXT);
+    }
+
+    /**
+     * Get all values of single column.
+     *
+     * @param column
+     *            String "text" or attribute name
+     * @return List of values
+     */
+    public List<String> getColumn(String column) {
+        int index = indexOf(column);
+        List<String> values = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            values.add(row.get(index));
+        }
+        return values;
+    }
+
+    /**
+     * Get single row as map: column name to value.
+     *
+     * @param row
+     *            int element index
+     * @return Map
+     */
+    public Map<String, String> getRow(int row) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            values.put(columns.get(i), rows.get(row).get(i));
+        }
+        return values;
+    }
+
+    private int indexOf(String column) {
+        int index = columns.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Column '" + column + "' wasn't requested. Available columns: " + columns);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "ElementDataTable" + columns + " rows: " + rows.size();
+    }
+
+}
@@ -65,6 +65,7 @@ import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
 import com.qaprosoft.carina.core.foundation.crypto.CryptoTool;
 import com.qaprosoft.carina.core.foundation.exception.DriverPoolException;
 import com.qaprosoft.carina.core.foundation.performance.ACTION_NAME;
+import com.qaprosoft.carina.core.foundation.performance.ActionMetrics;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.IWebElement;
@@ -102,6 +103,8 @@ public class ExtendedWebElement implements IWebElement {
     private Throwable originalException;
     private String name;
     private By by;
+    // declaring page/component class name used to group action metrics
+    private String pageName;
     
     private boolean caseInsensitive;
 
@@ -164,6 +167,7 @@ public class ExtendedWebElement implements IWebElement {
 
 				ExtendedElementLocator locator = (ExtendedElementLocator) locatorField.get(innerProxy);
 				this.isLocalized = locator.isLocalized();
+				this.pageName = locator.getClassName();
 
 				if (isLocalized){
     			    this.name = locator.getClassName() + "." + name;
@@ -266,7 +270,7 @@ public class ExtendedWebElement implements IWebElement {
     	return element;
     }
     
-    private WebElement getCachedElement() {
+    WebElement getCachedElement() {
         if (element == null) {
             LOGGER.debug("TODO: investigate why cached element might be null!");
             
@@ -333,6 +337,7 @@ public class ExtendedWebElement implements IWebElement {
 		// do not ignore TimeoutException or NoSuchSessionException otherwise you can wait for minutes instead of timeout!
 		
 		LOGGER.debug("waitUntil: starting... timeout: " + timeout);		
+		long start = ActionMetrics.start();
 		try {
 			wait.until(condition);
 			result = true;
@@ -360,6 +365,8 @@ public class ExtendedWebElement implements IWebElement {
 			result = false;
 			//TODO: e or e.getCause()?
 			originalException = e;
+		} finally {
+			ActionMetrics.record(ACTION_NAME.WAIT, pageName, by, start);
 		}
 		return result;
 	}
@@ -383,6 +390,7 @@ public class ExtendedWebElement implements IWebElement {
         // do not return without element initialization!
         // TODO: if is added as part of a hotfix. Ideal solution should init searchContext everytime so we can remove getDriver usage from this class
         // at all!
+        long start = ActionMetrics.start();
         try {
             if (searchContext != null) {
                 // TODO: use-case when format method is used. Need investigate howto init context in this case as well
@@ -406,6 +414,8 @@ public class ExtendedWebElement implements IWebElement {
             LOGGER.debug("refindElement catched WebDriverException: '" + e.getMessage() + "'", e);
             // that's should fix use case when we switch between tabs and corrupt searchContext (mostly for Appium for mobile)
             element = getDriver().findElement(by);
+        } finally {
+            ActionMetrics.record(ACTION_NAME.FIND_ELEMENT, pageName, by, start);
         }
         return element;
     }
@@ -1394,6 +1404,7 @@ public class ExtendedWebElement implements IWebElement {
 		Object output = null;
 		// captureElements();
 
+		long start = ActionMetrics.start();
 		//handle invalid element state: Element is not currently interactable and may not be manipulated
 		try {
 			element = getCachedElement();
@@ -1422,7 +1433,7 @@ public class ExtendedWebElement implements IWebElement {
 			e.printStackTrace();
 			throw e;
 		} finally {
-		    // do nothing
+			ActionMetrics.record(actionName, pageName, by, start);
 		}
 
 		return output;
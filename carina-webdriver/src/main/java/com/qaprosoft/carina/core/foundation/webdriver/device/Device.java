@@ -39,6 +39,7 @@ import com.qaprosoft.carina.core.foundation.report.ReportContext;
 import com.qaprosoft.carina.core.foundation.utils.Configuration;
 import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.R;
+import com.qaprosoft.carina.core.foundation.utils.android.PackageDumpParser;
 import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
 import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.CmdLine;
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
@@ -508,25 +509,11 @@ public class Device implements IDriverPool {
         res[0] = packageName;
 
         String[] cmd = CmdLine.insertCommandsAfter(executor.getDefaultCmd(), "-s", getAdbName(), "shell", "dumpsys", "package", packageName);
-        List<String> output = executor.execute(cmd);
-
-        for (String line : output) {
-            LOGGER.debug(line);
-            if (line.contains("versionCode")) {
-                // versionCode=17040000 targetSdk=25
-                LOGGER.info("Line for parsing installed app: " + line);
-                String[] outputs = line.split("=");
-                String tmp = outputs[1]; // everything after '=' sign
-                res[1] = tmp.split(" ")[0];
-            }
-
-            if (line.contains("versionName")) {
-                // versionName=8.5.0
-                LOGGER.info("Line for parsing installed app: " + line);
-                String[] outputs = line.split("=");
-                res[2] = outputs[1];
-            }
-        }
+        // reading is stopped as soon as versions are found
+        PackageDumpParser parser = new PackageDumpParser();
+        executor.execute(cmd, parser);
+        res[1] = parser.getVersionCode();
+        res[2] = parser.getVersionName();
 
         if (res[0] == null && res[1] == null && res[2] == null) {
             return null;
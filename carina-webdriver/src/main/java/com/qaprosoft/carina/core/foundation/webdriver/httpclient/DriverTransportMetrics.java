@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.httpclient;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * DriverTransportMetrics - bytes sent and received by WebDriver HTTP transport.
+ *
+ * Commands are executed synchronously so network interceptor runs in the thread executing the command and the current
+ * command traffic is accumulated in thread local counters. Totals are collected for the whole process.
+ */
+public final class DriverTransportMetrics {
+
+    private static final ThreadLocal<long[]> current = ThreadLocal.withInitial(() -> new long[3]);
+
+    private static final LongAdder totalRequests = new LongAdder();
+    private static final LongAdder totalSent = new LongAdder();
+    private static final LongAdder totalReceived = new LongAdder();
+
+    private static final int REQUESTS = 0;
+    private static final int SENT = 1;
+    private static final int RECEIVED = 2;
+
+    private DriverTransportMetrics() {
+    }
+
+    /**
+     * Reset counters of the current thread before command execution.
+     */
+    public static void reset() {
+        long[] counters = current.get();
+        counters[REQUESTS] = 0;
+        counters[SENT] = 0;
+        counters[RECEIVED] = 0;
+    }
+
+    /**
+     * @return long number of HTTP requests sent by the current thread since {@link #reset()}, redirects and
+     *         authentication retries included
+     */
+    public static long getRequests() {
+        return current.get()[REQUESTS];
+    }
+
+    /**
+     * @return long request body bytes sent by the current thread since {@link #reset()}
+     */
+    public static long getBytesSent() {
+        return current.get()[SENT];
+    }
+
+    /**
+     * @return long response body bytes received by the current thread since {@link #reset()}
+     */
+    public static long getBytesReceived() {
+        return current.get()[RECEIVED];
+    }
+
+    public static long getTotalRequests() {
+        return totalRequests.sum();
+    }
+
+    public static long getTotalBytesSent() {
+        return totalSent.sum();
+    }
+
+    public static long getTotalBytesReceived() {
+        return totalReceived.sum();
+    }
+
+    static Interceptor interceptor() {
+        return DriverTransportMetrics::intercept;
+    }
+
+    private static Response intercept(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        long sent = request.body() != null ? Math.max(0, request.body().contentLength()) : 0;
+        // hub responses are not chunked, Content-Length is known before the body is read
+        long received = response.body() != null ? Math.max(0, response.body().contentLength()) : 0;
+
+        long[] counters = current.get();
+        counters[REQUESTS]++;
+        counters[SENT] += sent;
+        counters[RECEIVED] += received;
+        totalRequests.increment();
+        totalSent.add(sent);
+        totalReceived.add(received);
+        return response;
+    }
+
+}
@@ -16,7 +16,9 @@
 package com.qaprosoft.carina.core.foundation.webdriver.httpclient;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.net.Proxy;
 import java.net.URL;
 import java.time.Duration;
 
@@ -32,52 +34,114 @@ import okhttp3.Credentials;
 import okhttp3.Request;
 import okhttp3.Response;
 
+/**
+ * HttpClientFactoryCustom - OkHttp based transport of WebDriver commands.
+ *
+ * Clients created by the same factory share connection pool and dispatcher. Use {@link #getShared()} so all drivers
+ * of the process reuse keep-alive connections to the same hub.
+ */
 public class HttpClientFactoryCustom implements HttpClient.Factory {
 
-	private final ConnectionPool pool = new ConnectionPool();
+	private final ConnectionPool pool;
 
-	@Override
-	public Builder builder() {
-		return new Builder() {
-			@Override
-			public HttpClient createClient(URL url) {
-				okhttp3.OkHttpClient.Builder client = new okhttp3.OkHttpClient.Builder().connectionPool(pool)
-						.followRedirects(true).followSslRedirects(true).proxy(proxy)
-						.readTimeout(readTimeout.toMillis(), MILLISECONDS)
-						.connectTimeout(connectionTimeout.toMillis(), MILLISECONDS);
-
-				String info = url.getUserInfo();
-				if (!Strings.isNullOrEmpty(info)) {
-					String[] parts = info.split(":", 2);
-					String user = parts[0];
-					String pass = parts.length > 1 ? parts[1] : null;
-
-					String credentials = Credentials.basic(user, pass);
-
-					client.authenticator((route, response) -> {
-						if (response.request().header("Authorization") != null) {
-							return null; // Give up, we've already attempted to authenticate.
-						}
-
-						return response.request().newBuilder().header("Authorization", credentials).build();
-					});
-				}
+	// pool of the process-wide factory is used by other sessions so idle connections expire by keep-alive only
+	private final boolean shared;
+
+	private final okhttp3.OkHttpClient baseClient;
+
+	public HttpClientFactoryCustom() {
+		this(new ConnectionPool());
+	}
+
+	public HttpClientFactoryCustom(ConnectionPool pool) {
+		this(pool, false);
+	}
 
-				client.addNetworkInterceptor(chain -> {
+	HttpClientFactoryCustom(ConnectionPool pool, boolean shared) {
+		this.pool = pool;
+		this.shared = shared;
+		this.baseClient = new okhttp3.OkHttpClient.Builder().connectionPool(pool)
+				.followRedirects(true).followSslRedirects(true)
+				.addNetworkInterceptor(chain -> {
 					Request request = chain.request();
 					Response response = chain.proceed(request);
 					return response.code() == 408
 							? response.newBuilder().code(500).message("Server-Side Timeout").build()
 							: response;
-				});
-				
-				return new OkHttpClient(client.build(), url);
+				})
+				.addNetworkInterceptor(DriverTransportMetrics.interceptor())
+				.build();
+	}
+
+	/**
+	 * Process-wide factory. Connection pool limits are configured by "driver_http_max_idle_connections" and
+	 * "driver_http_keep_alive_sec".
+	 *
+	 * @return HttpClientFactoryCustom
+	 */
+	public static HttpClientFactoryCustom getShared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	@Override
+	public Builder builder() {
+		return new Builder() {
+			@Override
+			public HttpClient createClient(URL url) {
+				// derived client is cheap so it isn't cached, local services get new random port for every session
+				return new OkHttpClient(buildClient(url, proxy, readTimeout, connectionTimeout), url);
 			}
 		}.readTimeout(Duration.ofMinutes(R.CONFIG.getInt("appium_http_client_read_timeout_min")));
 	}
 
+	/**
+	 * Called on driver quit. Connections of the shared factory are left to other sessions and expire after
+	 * "driver_http_keep_alive_sec".
+	 */
 	@Override
 	public void cleanupIdleClients() {
-		pool.evictAll();
+		if (!shared) {
+			pool.evictAll();
+		}
+	}
+
+	public int getConnectionCount() {
+		return pool.connectionCount();
+	}
+
+	public int getIdleConnectionCount() {
+		return pool.idleConnectionCount();
+	}
+
+	private okhttp3.OkHttpClient buildClient(URL url, Proxy proxy, Duration readTimeout, Duration connectionTimeout) {
+		// derived client shares connection pool, dispatcher and interceptors of the base one
+		okhttp3.OkHttpClient.Builder client = baseClient.newBuilder().proxy(proxy)
+				.readTimeout(readTimeout.toMillis(), MILLISECONDS)
+				.connectTimeout(connectionTimeout.toMillis(), MILLISECONDS);
+
+		String info = url.getUserInfo();
+		if (!Strings.isNullOrEmpty(info)) {
+			String[] parts = info.split(":", 2);
+			String user = parts[0];
+			String pass = parts.length > 1 ? parts[1] : null;
+
+			String credentials = Credentials.basic(user, pass);
+
+			client.authenticator((route, response) -> {
+				if (response.request().header("Authorization") != null) {
+					return null; // Give up, we've already attempted to authenticate.
+				}
+
+				return response.request().newBuilder().header("Authorization", credentials).build();
+			});
+		}
+
+		return client.build();
+	}
+
+	private static class SharedHolder {
+		private static final HttpClientFactoryCustom INSTANCE = new HttpClientFactoryCustom(
+				new ConnectionPool(R.CONFIG.getInt("driver_http_max_idle_connections"),
+						R.CONFIG.getInt("driver_http_keep_alive_sec"), SECONDS), true);
 	}
 }
@@ -17,7 +17,9 @@ package com.qaprosoft.carina.core.foundation.webdriver.listener;
 
 import java.io.File;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.openqa.selenium.By;
@@ -30,9 +32,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.qaprosoft.carina.core.foundation.report.ReportContext;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
 import com.qaprosoft.carina.core.foundation.utils.FileManager;
 import com.qaprosoft.carina.core.foundation.webdriver.IDriverPool;
 import com.qaprosoft.carina.core.foundation.webdriver.Screenshot;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.MessageMatcher;
+import com.qaprosoft.carina.core.foundation.webdriver.screenshot.ScreenshotPolicy;
 import com.zebrunner.agent.core.registrar.Artifact;
 
 /**
@@ -47,6 +53,23 @@ public class DriverListener implements WebDriverEventListener {
     private final static ThreadLocal<String> currentPositiveMessage = new ThreadLocal<String>();
     private final static ThreadLocal<String> currentNegativeMessage = new ThreadLocal<String>();
 
+    // exceptions ignored by onException at all
+    private static final List<String> DEFAULT_IGNORED_EXCEPTIONS = Arrays.asList(
+            "Method has not yet been implemented",
+            "Expected to read a START_MAP but instead have: END. Last 0 characters read",
+            "Unable to determine type from: <. Last 1 characters read",
+            "script timeout",
+            "javascript error: Cannot read property 'outerHTML' of null",
+            "javascript error: Cannot read property 'scrollHeight' of null",
+            "Method is not implemented",
+            "An element could not be located on the page using the given search parameters",
+            "no such element: Unable to locate element",
+            // carina has a lot of extra verifications to solve all stale reference issue and finally perform an action so ignore such exception in listener!
+            "StaleElementReferenceException",
+            "stale_element_reference.html");
+
+    private static final MessageMatcher IGNORED_EXCEPTIONS = compileIgnoredExceptions();
+
     @Override
     public void afterAlertAccept(WebDriver driver) {
         onAfterAction("Alert accepted", driver);
@@ -156,18 +179,7 @@ public class DriverListener implements WebDriverEventListener {
         // most suspicious are capture screenshots, generating dumps etc
         if (thr == null
                 || thr.getMessage() == null
-                || thr.getMessage().contains("Method has not yet been implemented")                        
-                || thr.getMessage().contains("Expected to read a START_MAP but instead have: END. Last 0 characters read")
-                || thr.getMessage().contains("Unable to determine type from: <. Last 1 characters read")
-                || thr.getMessage().contains("script timeout")
-                || thr.getMessage().contains("javascript error: Cannot read property 'outerHTML' of null")
-                || thr.getMessage().contains("javascript error: Cannot read property 'scrollHeight' of null")
-                || thr.getMessage().contains("Method is not implemented")
-                || thr.getMessage().contains("An element could not be located on the page using the given search parameters")
-                || thr.getMessage().contains("no such element: Unable to locate element")
-                // carina has a lot of extra verifications to solve all stale reference issue and finally perform an action so ignore such exception in listener!
-                || thr.getMessage().contains("StaleElementReferenceException")
-                || thr.getMessage().contains("stale_element_reference.html")) {
+                || IGNORED_EXCEPTIONS.matches(thr.getMessage())) {
             // do nothing
             return;
         }
@@ -188,10 +200,7 @@ public class DriverListener implements WebDriverEventListener {
         }
 
         // hopefully castDriver below resolve root cause of the recursive onException calls but keep below if to ensure
-        if (thr.getStackTrace() != null
-                && (Arrays.toString(thr.getStackTrace())
-                        .contains("com.qaprosoft.carina.core.foundation.webdriver.listener.DriverListener.onException")
-                        || Arrays.toString(thr.getStackTrace()).contains("Unable to capture screenshot due to the WebDriverException"))) {
+        if (isRecursiveException(thr)) {
             LOGGER.error("Do not generate screenshot for invalid driver!");
             // prevent recursive crash for onException
             return;
@@ -243,6 +252,27 @@ public class DriverListener implements WebDriverEventListener {
         return s;
     }
 
+    /**
+     * Returns exceptions ignored by listener with number of occurrences.
+     * 
+     * @return MessageMatcher
+     */
+    public static MessageMatcher getIgnoredExceptions() {
+        return IGNORED_EXCEPTIONS;
+    }
+
+    private static MessageMatcher compileIgnoredExceptions() {
+        List<String> exclusions = new ArrayList<>(DEFAULT_IGNORED_EXCEPTIONS);
+        String custom = Configuration.get(Parameter.DRIVER_LISTENER_EXCLUSIONS);
+        if (!custom.isEmpty()) {
+            for (String exclusion : custom.split(",")) {
+                exclusions.add(exclusion.trim());
+            }
+            LOGGER.debug("Custom driver listener exclusions: " + custom);
+        }
+        return new MessageMatcher(exclusions);
+    }
+
     @Override
     public void afterSwitchToWindow(String arg0, WebDriver driver) {
         // do nothing
@@ -283,7 +313,10 @@ public class DriverListener implements WebDriverEventListener {
         try {
             if (errorMessage) {
                 LOGGER.error(comment);
-                if (Screenshot.isEnabled()) {
+                if (Screenshot.isEnabled() && ScreenshotPolicy.isFailureOnly()) {
+                    // keep lightweight frame, it is reported only if test fails
+                    Screenshot.captureFrame(driver, comment);
+                } else if (Screenshot.isEnabled()) {
                     String screenName = Screenshot.capture(driver, comment, true); // in case of failure
                     // do not generate UI dump if no screenshot
                     if (!screenName.isEmpty()) {
@@ -301,6 +334,26 @@ public class DriverListener implements WebDriverEventListener {
         }
     }
 
+    /**
+     * Verify if exception is raised by onException itself. Stack frames are compared one by one instead of
+     * building string representation of the whole stack.
+     * 
+     * @param thr Throwable
+     * @return boolean
+     */
+    private boolean isRecursiveException(Throwable thr) {
+        StackTraceElement[] stackTrace = thr.getStackTrace();
+        if (stackTrace == null) {
+            return false;
+        }
+        for (StackTraceElement element : stackTrace) {
+            if (DriverListener.class.getName().equals(element.getClassName()) && "onException".equals(element.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void generateDump(String screenName) {
         // XML layout extraction
         File uiDumpFile = IDriverPool.getDefaultDevice().generateUiDump(screenName);
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.openqa.selenium.WebDriverException;
@@ -43,7 +44,10 @@ import org.openqa.selenium.remote.service.DriverService;
 
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
+import com.qaprosoft.carina.core.foundation.performance.ACTION_NAME;
+import com.qaprosoft.carina.core.foundation.performance.ActionMetrics;
 import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+import com.qaprosoft.carina.core.foundation.webdriver.httpclient.DriverTransportMetrics;
 import com.qaprosoft.carina.core.foundation.webdriver.httpclient.HttpClientFactoryCustom;
 
 import io.appium.java_client.MobileCommand;
@@ -60,6 +64,10 @@ import io.appium.java_client.remote.AppiumW3CHttpCommandCodec;
 public class EventFiringAppiumCommandExecutor extends HttpCommandExecutor {
     private static final Logger LOGGER = Logger.getLogger(EventFiringAppiumCommandExecutor.class);
     
+    // resolved once, HttpCommandExecutor doesn't expose codec and additional commands to subclasses
+    private static final Field ADDITIONAL_COMMANDS_FIELD = getSuperclassField("additionalCommands");
+    private static final Field COMMAND_CODEC_FIELD = getSuperclassField("commandCodec");
+
     private final Optional<DriverService> serviceOptional;
 
     private List<IDriverCommandListener> listeners = new ArrayList<>();
@@ -87,50 +95,56 @@ public class EventFiringAppiumCommandExecutor extends HttpCommandExecutor {
 
     public EventFiringAppiumCommandExecutor(Map<String, CommandInfo> additionalCommands,
             URL addressOfRemoteServer) {
-        this(additionalCommands, addressOfRemoteServer, new HttpClientFactoryCustom());
+        this(additionalCommands, addressOfRemoteServer, HttpClientFactoryCustom.getShared());
     }
 
     public EventFiringAppiumCommandExecutor(Map<String, CommandInfo> additionalCommands,
             DriverService service) {
-        this(additionalCommands, service, new HttpClientFactoryCustom());
+        this(additionalCommands, service, HttpClientFactoryCustom.getShared());
     }
 
     public EventFiringAppiumCommandExecutor(URL addressOfRemoteServer) {
-        this(MobileCommand.commandRepository, addressOfRemoteServer, new HttpClientFactoryCustom());
+        this(MobileCommand.commandRepository, addressOfRemoteServer, HttpClientFactoryCustom.getShared());
     }
 
-    private <B> B getPrivateFieldValue(String fieldName, Class<B> fieldType) {
+    private static Field getSuperclassField(String fieldName) {
         try {
-            final Field f = getClass().getSuperclass().getDeclaredField(fieldName);
+            final Field f = HttpCommandExecutor.class.getDeclaredField(fieldName);
             f.setAccessible(true);
-            return fieldType.cast(f.get(this));
-        } catch (NoSuchFieldException | IllegalAccessException e) {
+            return f;
+        } catch (NoSuchFieldException e) {
             throw new WebDriverException(e);
         }
     }
 
-    private void setPrivateFieldValue(String fieldName, Object newValue) {
+    private <B> B getPrivateFieldValue(Field field, Class<B> fieldType) {
         try {
-            final Field f = getClass().getSuperclass().getDeclaredField(fieldName);
-            f.setAccessible(true);
-            f.set(this, newValue);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
+            return fieldType.cast(field.get(this));
+        } catch (IllegalAccessException e) {
+            throw new WebDriverException(e);
+        }
+    }
+
+    private void setPrivateFieldValue(Field field, Object newValue) {
+        try {
+            field.set(this, newValue);
+        } catch (IllegalAccessException e) {
             throw new WebDriverException(e);
         }
     }
 
     private Map<String, CommandInfo> getAdditionalCommands() {
         // noinspection unchecked
-        return getPrivateFieldValue("additionalCommands", Map.class);
+        return getPrivateFieldValue(ADDITIONAL_COMMANDS_FIELD, Map.class);
     }
 
     private CommandCodec<HttpRequest> getCommandCodec() {
         // noinspection unchecked
-        return getPrivateFieldValue("commandCodec", CommandCodec.class);
+        return getPrivateFieldValue(COMMAND_CODEC_FIELD, CommandCodec.class);
     }
 
     private void setCommandCodec(CommandCodec<HttpRequest> newCodec) {
-        setPrivateFieldValue("commandCodec", newCodec);
+        setPrivateFieldValue(COMMAND_CODEC_FIELD, newCodec);
     }
 
     @Override
@@ -146,6 +160,9 @@ public class EventFiringAppiumCommandExecutor extends HttpCommandExecutor {
         }
 
         Response response;
+        long start = ActionMetrics.start();
+        long started = System.nanoTime();
+        DriverTransportMetrics.reset();
         try {
 
             for (IDriverCommandListener listener : listeners) {
@@ -163,7 +180,7 @@ public class EventFiringAppiumCommandExecutor extends HttpCommandExecutor {
             }
 
             for (IDriverCommandListener listener : listeners) {
-                listener.afterEvent(command);
+                listener.afterEvent(command, response);
             }
         } catch (Throwable t) {
             Throwable rootCause = Throwables.getRootCause(t);
@@ -181,6 +198,8 @@ public class EventFiringAppiumCommandExecutor extends HttpCommandExecutor {
             // throwIfUnchecked(t);
             throw new WebDriverException(t);
         } finally {
+            ActionMetrics.record(ACTION_NAME.DRIVER_COMMAND, null, command.getName(), start);
+            notifyMetrics(command, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
             if (DriverCommand.QUIT.equals(command.getName())) {
                 serviceOptional.ifPresent(DriverService::stop);
             }
@@ -195,6 +214,21 @@ public class EventFiringAppiumCommandExecutor extends HttpCommandExecutor {
         return response;
     }
 
+    private void notifyMetrics(Command command, long duration) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        long sent = DriverTransportMetrics.getBytesSent();
+        long received = DriverTransportMetrics.getBytesReceived();
+        for (IDriverCommandListener listener : listeners) {
+            try {
+                listener.onCommandMetrics(command, duration, sent, received);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to notify listener about command metrics: " + command.getName(), e);
+            }
+        }
+    }
+
     public List<IDriverCommandListener> getListeners() {
         return listeners;
     }
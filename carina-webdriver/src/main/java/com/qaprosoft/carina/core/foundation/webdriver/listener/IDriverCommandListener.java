@@ -18,6 +18,7 @@ package com.qaprosoft.carina.core.foundation.webdriver.listener;
 import org.apache.log4j.Logger;
 import org.openqa.selenium.remote.Command;
 import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
 
 /**
  * IDriverEventListener - listens to {@link RemoteWebDriver} commands and injects additional steps.
@@ -40,5 +41,27 @@ public interface IDriverCommandListener {
 	 * @param command {@link Command}
 	 */
 	void afterEvent(Command command);
+
+	/**
+	 * Triggered after command execution with the server response.
+	 * 
+	 * @param command {@link Command}
+	 * @param response {@link Response}
+	 */
+	default void afterEvent(Command command, Response response) {
+		afterEvent(command);
+	}
+
+	/**
+	 * Triggered when command is finished successfully or not.
+	 * 
+	 * @param command {@link Command}
+	 * @param duration command execution time in milliseconds including listeners
+	 * @param bytesSent request body bytes sent to the server
+	 * @param bytesReceived response body bytes received from the server
+	 */
+	default void onCommandMetrics(Command command, long duration, long bytesSent, long bytesReceived) {
+		// do nothing by default
+	}
 	
 }
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.replay;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+
+/**
+ * CommandRecord - single WebDriver command and response of the recorded session.
+ *
+ * Binary layout: command name, session id, parameters json, response status (-1 if absent), state, session id, value
+ * json and duration in microseconds. Strings are written as int length (-1 for null) and UTF-8 bytes.
+ */
+public class CommandRecord {
+
+    private static final Json JSON = new Json();
+
+    private final String command;
+    private final String sessionId;
+    private final String parameters;
+    private final Integer status;
+    private final String state;
+    private final String responseSessionId;
+    private final String value;
+    private final long duration;
+
+    CommandRecord(String command, String sessionId, String parameters, Integer status, String state, String responseSessionId,
+            String value, long duration) {
+        this.command = command;
+        this.sessionId = sessionId;
+        this.parameters = parameters;
+        this.status = status;
+        this.state = state;
+        this.responseSessionId = responseSessionId;
+        this.value = value;
+        this.duration = duration;
+    }
+
+    /**
+     * @param command Command
+     * @param response Response
+     * @param duration long command execution time in microseconds
+     * @return CommandRecord
+     */
+    public static CommandRecord of(Command command, Response response, long duration) {
+        return new CommandRecord(command.getName(),
+                command.getSessionId() != null ? command.getSessionId().toString() : null,
+                JSON.toJson(command.getParameters()),
+                response.getStatus(),
+                response.getState(),
+                response.getSessionId(),
+                JSON.toJson(response.getValue()),
+                duration);
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getParameters() {
+        return (Map<String, Object>) JSON.toType(parameters, Map.class);
+    }
+
+    /**
+     * @return long command execution time in microseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return Response new instance with recorded values
+     */
+    public Response toResponse() {
+        Response response = new Response();
+        if (status != null) {
+            response.setStatus(status);
+        }
+        if (state != null) {
+            response.setState(state);
+        }
+        response.setSessionId(responseSessionId);
+        response.setValue(JSON.toType(value, Object.class));
+        return response;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        writeString(out, command);
+        writeString(out, sessionId);
+        writeString(out, parameters);
+        out.writeInt(status != null ? status : -1);
+        writeString(out, state);
+        writeString(out, responseSessionId);
+        writeString(out, value);
+        out.writeLong(duration);
+    }
+
+    static CommandRecord read(DataInputStream in) throws IOException {
+        String command = readString(in);
+        String sessionId = readString(in);
+        String parameters = readString(in);
+        int status = in.readInt();
+        String state = readString(in);
+        String responseSessionId = readString(in);
+        String value = readString(in);
+        long duration = in.readLong();
+        return new CommandRecord(command, sessionId, parameters, status >= 0 ? status : null, state, responseSessionId, value,
+                duration);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        // writeUTF is limited by 64K while page source and screenshots are much bigger
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return command + " (" + duration + " us)";
+    }
+
+}
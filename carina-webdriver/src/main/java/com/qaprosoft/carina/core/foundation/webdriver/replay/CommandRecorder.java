@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.webdriver.listener.IDriverCommandListener;
+
+/**
+ * CommandRecorder - writes commands and responses of the driver session into compressed binary log which could be
+ * served later by {@link ReplayCommandExecutor} without browser or device.
+ *
+ * Log is closed when session is finished by quit command.
+ */
+public class CommandRecorder implements IDriverCommandListener, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final int MAGIC = 0x43574452; // CWDR
+    static final int VERSION = 1;
+
+    public static final String EXTENSION = ".wdlog";
+
+    private final File file;
+    private final DataOutputStream out;
+    private final ThreadLocal<Long> started = new ThreadLocal<>();
+    private boolean closed = false;
+
+    public CommandRecorder(File file) throws IOException {
+        this.file = file;
+        // sync flush makes every record readable even if session isn't finished properly
+        this.out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)), true));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Create recorder writing into new log of the folder.
+     *
+     * @param dir File folder for logs, created if absent
+     * @return CommandRecorder
+     * @throws IOException if log can't be created
+     */
+    public static CommandRecorder create(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create folder: " + dir.getAbsolutePath());
+        }
+        File file = new File(dir, System.currentTimeMillis() + "-" + Thread.currentThread().getId() + EXTENSION);
+        LOGGER.info("Driver commands are recorded into " + file.getAbsolutePath());
+        return new CommandRecorder(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void beforeEvent(Command command) {
+        started.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterEvent(Command command) {
+        // response is recorded by afterEvent(Command, Response)
+    }
+
+    @Override
+    public void afterEvent(Command command, Response response) {
+        Long start = started.get();
+        long duration = start != null ? TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) : 0;
+        record(CommandRecord.of(command, response, duration));
+        if (DriverCommand.QUIT.equals(command.getName())) {
+            close();
+        }
+    }
+
+    synchronized void record(CommandRecord record) {
+        if (closed) {
+            return;
+        }
+        try {
+            record.write(out);
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to record driver command " + record + ", recording is stopped", e);
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to close driver command log " + file.getAbsolutePath(), e);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.webdriver.httpclient.HttpClientFactoryCustom;
+
+/**
+ * ReplayCommandExecutor - serves responses of the session recorded by {@link CommandRecorder} so page objects and
+ * listeners could be profiled without grid, browser or device.
+ *
+ * Responses of every command are served in recorded order, so extra or missing calls of other commands don't shift
+ * them. Recorded command duration is reproduced multiplied by time scale: 1 keeps original timings, 0 disables
+ * delays. Executor extends {@link HttpCommandExecutor} to be accepted by Appium drivers but never connects to the
+ * server.
+ *
+ * <pre>
+ * WebDriver driver = new AndroidDriver&lt;&gt;(new ReplayCommandExecutor(log, 0), capabilities);
+ * </pre>
+ */
+public class ReplayCommandExecutor extends HttpCommandExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String REPLAY_URL = "http://localhost:4444/wd/hub";
+
+    private final Map<String, Deque<CommandRecord>> responses = new HashMap<>();
+    private final double timeScale;
+
+    public ReplayCommandExecutor(File log, double timeScale) throws IOException {
+        this(read(log), timeScale);
+        LOGGER.info("Driver commands are replayed from " + log.getAbsolutePath());
+    }
+
+    public ReplayCommandExecutor(List<CommandRecord> records, double timeScale) throws IOException {
+        super(Collections.emptyMap(), new URL(REPLAY_URL), HttpClientFactoryCustom.getShared());
+        if (timeScale < 0) {
+            throw new IllegalArgumentException("Time scale can't be negative: " + timeScale);
+        }
+        this.timeScale = timeScale;
+        for (CommandRecord record : records) {
+            responses.computeIfAbsent(record.getCommand(), k -> new ArrayDeque<>()).add(record);
+        }
+    }
+
+    /**
+     * Read all records of the log. Log of the session which wasn't finished properly is read up to the last complete
+     * record.
+     *
+     * @param log File
+     * @return List of CommandRecord
+     * @throws IOException if log can't be read or has unsupported format
+     */
+    public static List<CommandRecord> read(File log) throws IOException {
+        List<CommandRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(log))))) {
+            if (in.readInt() != CommandRecorder.MAGIC) {
+                throw new IOException("Not a driver command log: " + log.getAbsolutePath());
+            }
+            int version = in.readInt();
+            if (version != CommandRecorder.VERSION) {
+                throw new IOException("Unsupported driver command log version " + version + ": " + log.getAbsolutePath());
+            }
+            while (true) {
+                try {
+                    records.add(CommandRecord.read(in));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public Response execute(Command command) {
+        CommandRecord record = next(command.getName());
+        if (record == null) {
+            if (DriverCommand.QUIT.equals(command.getName())) {
+                // session could be recorded without quit, teardown shouldn't fail
+                Response response = new Response();
+                response.setSessionId(command.getSessionId() != null ? command.getSessionId().toString() : null);
+                return response;
+            }
+            throw new WebDriverException("No recorded response for command: " + command.getName());
+        }
+
+        long delay = (long) (record.getDuration() * timeScale);
+        if (delay > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebDriverException(e);
+            }
+        }
+        return record.toResponse();
+    }
+
+    /**
+     * @return int number of recorded responses which weren't served yet
+     */
+    public synchronized int getRemaining() {
+        int remaining = 0;
+        for (Deque<CommandRecord> queue : responses.values()) {
+            remaining += queue.size();
+        }
+        return remaining;
+    }
+
+    private synchronized CommandRecord next(String command) {
+        Deque<CommandRecord> queue = responses.get(command);
+        return queue != null ? queue.poll() : null;
+    }
+
+}
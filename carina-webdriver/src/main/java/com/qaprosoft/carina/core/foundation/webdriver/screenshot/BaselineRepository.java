@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
+/**
+ * BaselineRepository - file system storage of baseline screenshots for visual regression.
+ *
+ * Baselines are stored as {@code <visual_baseline_dir>/<device>/<locale>/<page>.png} so the same page could have
+ * different baseline per device and locale.
+ */
+public class BaselineRepository {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String DEFAULT = "default";
+
+    private final File root;
+
+    public BaselineRepository() {
+        this(new File(Configuration.get(Parameter.VISUAL_BASELINE_DIR)));
+    }
+
+    public BaselineRepository(File root) {
+        this.root = root;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public File getFile(String page, String device, String locale) {
+        return new File(root, toName(device) + File.separator + toName(locale) + File.separator + toName(page) + ".png");
+    }
+
+    public boolean exists(String page, String device, String locale) {
+        return getFile(page, device, locale).isFile();
+    }
+
+    /**
+     * @param page
+     *            String page name
+     * @param device
+     *            String device or browser name
+     * @param locale
+     *            String locale
+     * @return BufferedImage baseline or null if it doesn't exist
+     * @throws IOException
+     *             if baseline can't be read
+     */
+    public BufferedImage load(String page, String device, String locale) throws IOException {
+        File file = getFile(page, device, locale);
+        if (!file.isFile()) {
+            return null;
+        }
+        return ImageIO.read(file);
+    }
+
+    /**
+     * Save image as baseline replacing existing one. File is replaced atomically so parallel tests never read
+     * partially written baseline.
+     *
+     * @param page
+     *            String page name
+     * @param device
+     *            String device or browser name
+     * @param locale
+     *            String locale
+     * @param image
+     *            BufferedImage
+     * @return File baseline
+     * @throws IOException
+     *             if baseline can't be written
+     */
+    public File save(String page, String device, String locale, BufferedImage image) throws IOException {
+        File file = getFile(page, device, locale);
+        Files.createDirectories(file.getParentFile().toPath());
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            ImageIO.write(image, "png", tmp);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        LOGGER.debug("Baseline saved: " + file.getAbsolutePath());
+        return file;
+    }
+
+    private static String toName(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT;
+        }
+        return value.trim().replaceAll("[^\\w.-]", "_");
+    }
+
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.imageio.ImageIO;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.CommandInfo;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.commons.SpecialKeywords;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.utils.common.CommonUtils;
+
+/**
+ * FullPageScreenshot - captures the whole page of desktop browser.
+ *
+ * Chromium based browsers are captured by single DevTools Page.captureScreenshot call with captureBeyondViewport
+ * option. Other browsers are scrolled and every visible tile is drawn into preallocated image by
+ * {@link TileStitcher}. In both cases image is downscaled to big_screen_width during capturing and height is
+ * limited by {@link #MAX_HEIGHT}.
+ */
+public final class FullPageScreenshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // the same limit as browsers apply to the captured surface
+    public static final int MAX_HEIGHT = 16384;
+
+    private static final String CDP_COMMAND = "executeCdpCommand";
+
+    private static final String PAGE_METRICS_SCRIPT = "var d = document.documentElement, b = document.body || d;"
+            + "return [Math.max(d.scrollWidth, b.scrollWidth), Math.max(d.scrollHeight, b.scrollHeight),"
+            + " window.innerHeight, window.devicePixelRatio || 1, window.pageXOffset, window.pageYOffset];";
+
+    // executors which already know DevTools command
+    private static final Set<CommandExecutor> cdpExecutors = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<CommandExecutor, Boolean>()));
+
+    private FullPageScreenshot() {
+    }
+
+    /**
+     * Capture full page screenshot.
+     *
+     * @param driver
+     *            WebDriver without listeners
+     * @return BufferedImage or null if page can't be captured
+     */
+    public static BufferedImage capture(WebDriver driver) {
+        if (driver instanceof RemoteWebDriver && isChromium((RemoteWebDriver) driver)) {
+            try {
+                BufferedImage screen = captureByDevTools((RemoteWebDriver) driver);
+                if (screen != null) {
+                    return screen;
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Unable to capture full page using DevTools: " + e.getMessage());
+            }
+        }
+
+        if (driver instanceof JavascriptExecutor && driver instanceof TakesScreenshot) {
+            try {
+                return captureByScrolling(driver);
+            } catch (IOException | WebDriverException e) {
+                LOGGER.debug("Unable to capture full page by scrolling: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculate output scale to fit big_screen_width.
+     *
+     * @param width
+     *            int source width in pixels
+     * @return double scale not greater than 1
+     */
+    static double getScale(int width) {
+        int targetWidth = Configuration.getInt(Parameter.BIG_SCREEN_WIDTH);
+        if (targetWidth <= 0 || width <= targetWidth) {
+            return 1;
+        }
+        return (double) targetWidth / width;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BufferedImage captureByDevTools(RemoteWebDriver driver) throws IOException {
+        Map<String, Object> metrics = executeCdp(driver, "Page.getLayoutMetrics", new HashMap<>());
+        if (metrics == null) {
+            return null;
+        }
+        Map<String, Object> contentSize = (Map<String, Object>) metrics.getOrDefault("cssContentSize", metrics.get("contentSize"));
+        if (contentSize == null) {
+            return null;
+        }
+
+        double width = ((Number) contentSize.get("width")).doubleValue();
+        double height = ((Number) contentSize.get("height")).doubleValue();
+        double dpr = ((Number) driver.executeScript("return window.devicePixelRatio || 1;")).doubleValue();
+        double scale = getScale((int) Math.ceil(width * dpr));
+        // surface is rendered in device pixels
+        height = Math.min(height, MAX_HEIGHT / (scale * dpr));
+
+        Map<String, Object> clip = new HashMap<>();
+        clip.put("x", 0);
+        clip.put("y", 0);
+        clip.put("width", width);
+        clip.put("height", height);
+        clip.put("scale", scale);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("format", "png");
+        params.put("captureBeyondViewport", true);
+        params.put("fromSurface", true);
+        params.put("clip", clip);
+
+        Map<String, Object> result = executeCdp(driver, "Page.captureScreenshot", params);
+        if (result == null || result.get("data") == null) {
+            return null;
+        }
+        byte[] png = Base64.getDecoder().decode(String.valueOf(result.get("data")));
+        LOGGER.debug("Full page captured using DevTools: " + width + "x" + height + ", scale " + scale);
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+
+    private static BufferedImage captureByScrolling(WebDriver driver) throws IOException {
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        List<?> metrics = (List<?>) js.executeScript(PAGE_METRICS_SCRIPT);
+        int pageWidth = ((Number) metrics.get(0)).intValue();
+        int pageHeight = ((Number) metrics.get(1)).intValue();
+        int viewportHeight = ((Number) metrics.get(2)).intValue();
+        double dpr = ((Number) metrics.get(3)).doubleValue();
+        long initialX = ((Number) metrics.get(4)).longValue();
+        long initialY = ((Number) metrics.get(5)).longValue();
+
+        if (viewportHeight <= 0) {
+            return null;
+        }
+
+        double scale = getScale((int) Math.ceil(pageWidth * dpr));
+        // limit captured area so output height doesn't exceed MAX_HEIGHT
+        int maxPageHeight = (int) Math.min(pageHeight, MAX_HEIGHT / (scale * dpr));
+
+        TileStitcher stitcher = new TileStitcher((int) Math.ceil(pageWidth * dpr), (int) Math.ceil(maxPageHeight * dpr), scale);
+        try {
+            int scrollY = 0;
+            while (!stitcher.isComplete()) {
+                js.executeScript("window.scrollTo(0, arguments[0]);", scrollY);
+                CommonUtils.pause(SpecialKeywords.DEFAULT_SCROLL_TIMEOUT / 1000.0);
+                // real offset could be less than requested for the last tile
+                int actualY = ((Number) js.executeScript("return window.pageYOffset;")).intValue();
+
+                // tile is decoded and released one by one
+                byte[] png = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+                BufferedImage tile = ImageIO.read(new ByteArrayInputStream(png));
+                stitcher.draw(tile, (int) Math.round(actualY * dpr));
+
+                if (actualY + viewportHeight >= maxPageHeight || actualY < scrollY) {
+                    // end of the page is reached
+                    break;
+                }
+                scrollY = actualY + viewportHeight;
+            }
+        } finally {
+            js.executeScript("window.scrollTo(arguments[0], arguments[1]);", initialX, initialY);
+        }
+        LOGGER.debug("Full page captured by scrolling: " + pageWidth + "x" + maxPageHeight + ", scale " + scale);
+        return stitcher.getImage();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> executeCdp(RemoteWebDriver driver, String cmd, Map<String, Object> params) throws IOException {
+        CommandExecutor executor = driver.getCommandExecutor();
+        if (!registerCdpCommand(driver, executor)) {
+            return null;
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("cmd", cmd);
+        parameters.put("params", params);
+        Response response = executor.execute(new Command(driver.getSessionId(), CDP_COMMAND, parameters));
+        if (response.getStatus() != null && response.getStatus() != 0 || !(response.getValue() instanceof Map)) {
+            LOGGER.debug("DevTools command " + cmd + " failed: " + response.getValue());
+            return null;
+        }
+        return (Map<String, Object>) response.getValue();
+    }
+
+    private static boolean registerCdpCommand(RemoteWebDriver driver, CommandExecutor executor) {
+        if (cdpExecutors.contains(executor)) {
+            return true;
+        }
+        if (!(executor instanceof HttpCommandExecutor)) {
+            return false;
+        }
+        String vendor = isEdge(driver) ? "ms" : "goog";
+        try {
+            // defineCommand is protected as it is expected to be called by driver specific executors only
+            Method defineCommand = HttpCommandExecutor.class.getDeclaredMethod("defineCommand", String.class, CommandInfo.class);
+            defineCommand.setAccessible(true);
+            defineCommand.invoke(executor, CDP_COMMAND, new CommandInfo("/session/:sessionId/" + vendor + "/cdp/execute", HttpMethod.POST));
+            cdpExecutors.add(executor);
+            return true;
+        } catch (Exception e) {
+            LOGGER.debug("Unable to register DevTools command: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isChromium(RemoteWebDriver driver) {
+        String browser = String.valueOf(driver.getCapabilities().getBrowserName()).toLowerCase();
+        return browser.contains("chrome") || isEdge(driver);
+    }
+
+    private static boolean isEdge(RemoteWebDriver driver) {
+        String browser = String.valueOf(driver.getCapabilities().getBrowserName()).toLowerCase();
+        // legacy EdgeHTML doesn't support DevTools
+        return browser.contains("edge") && driver.getCapabilities().getCapability("ms:edgeOptions") != null;
+    }
+
+}
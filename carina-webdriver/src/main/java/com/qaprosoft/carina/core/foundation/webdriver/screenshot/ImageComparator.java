@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
+/**
+ * ImageComparator - pixel comparison of two screenshots with perceptual tolerance and masked regions.
+ *
+ * Images are compared as int[] rasters by tiles of {@link #TILE_SIZE} pixels. Every tile row is compared by
+ * {@link Arrays#mismatch(int[], int, int, int[], int, int)} which is vectorized by JIT, so identical areas cost almost
+ * nothing and per pixel color math is done for changed rows only. Tile scanning stops on the first changed pixel once
+ * the allowed number of different pixels is exceeded, so heavily changed screens don't cost more than identical ones.
+ */
+public class ImageComparator {
+
+    public static final int TILE_SIZE = 64;
+
+    // max YIQ color distance between black and white
+    private static final double MAX_DELTA = 35215;
+
+    private final double maxDelta;
+    private final double diffTolerance;
+
+    /**
+     * Comparator configured by visual_pixel_threshold and visual_diff_tolerance parameters.
+     */
+    public ImageComparator() {
+        this(Configuration.getDouble(Parameter.VISUAL_PIXEL_THRESHOLD), Configuration.getDouble(Parameter.VISUAL_DIFF_TOLERANCE));
+    }
+
+    /**
+     * @param pixelThreshold
+     *            double 0..1 perceptual color difference ignored for a single pixel, 0 - any change is a difference
+     * @param diffTolerance
+     *            double percent of different pixels when images are still treated as the same
+     */
+    public ImageComparator(double pixelThreshold, double diffTolerance) {
+        this.maxDelta = MAX_DELTA * pixelThreshold * pixelThreshold;
+        this.diffTolerance = diffTolerance;
+    }
+
+    public ImageComparison compare(BufferedImage expected, BufferedImage actual) {
+        return compare(expected, actual, Collections.<Rectangle> emptyList());
+    }
+
+    /**
+     * Compare images ignoring masked regions.
+     *
+     * @param expected
+     *            BufferedImage baseline
+     * @param actual
+     *            BufferedImage current screen
+     * @param masks
+     *            List of regions ignored in comparison, e.g. clock, ads or animated content
+     * @return ImageComparison
+     */
+    public ImageComparison compare(BufferedImage expected, BufferedImage actual, List<Rectangle> masks) {
+        int width = actual.getWidth();
+        int height = actual.getHeight();
+        long total = (long) width * height;
+        long allowed = (long) (total * diffTolerance / 100);
+
+        List<Rectangle> diffTiles = new ArrayList<Rectangle>();
+        if (expected.getWidth() != width || expected.getHeight() != height) {
+            diffTiles.add(new Rectangle(0, 0, width, height));
+            return new ImageComparison(actual, diffTiles, total, allowed, true);
+        }
+
+        int[] expectedPixels = getPixels(expected);
+        int[] actualPixels = getPixels(actual);
+        long diffPixels = 0;
+
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                Rectangle tile = new Rectangle(tileX, tileY, Math.min(TILE_SIZE, width - tileX), Math.min(TILE_SIZE, height - tileY));
+                List<Rectangle> tileMasks = getMasks(tile, masks);
+                if (tileMasks == null) {
+                    // tile is masked entirely
+                    continue;
+                }
+
+                long tileDiff = compareTile(expectedPixels, actualPixels, width, tile, tileMasks, diffPixels > allowed);
+                if (tileDiff > 0) {
+                    diffTiles.add(tile);
+                    diffPixels += tileDiff;
+                }
+            }
+        }
+        return new ImageComparison(actual, diffTiles, diffPixels, allowed, false);
+    }
+
+    /**
+     * @return number of different pixels in tile, 1 at least if tile is different and firstOnly is set
+     */
+    private long compareTile(int[] expected, int[] actual, int width, Rectangle tile, List<Rectangle> masks, boolean firstOnly) {
+        long diff = 0;
+        for (int y = tile.y; y < tile.y + tile.height; y++) {
+            int from = y * width + tile.x;
+            int to = from + tile.width;
+            int offset = Arrays.mismatch(expected, from, to, actual, from, to);
+            while (offset >= 0) {
+                int index = from + offset;
+                int x = index - y * width;
+                if (!isMasked(masks, x, y) && isDifferent(expected[index], actual[index])) {
+                    if (firstOnly) {
+                        return 1;
+                    }
+                    diff++;
+                }
+                from = index + 1;
+                offset = from < to ? Arrays.mismatch(expected, from, to, actual, from, to) : -1;
+            }
+        }
+        return diff;
+    }
+
+    boolean isDifferent(int expected, int actual) {
+        int r1 = (expected >> 16) & 0xFF;
+        int g1 = (expected >> 8) & 0xFF;
+        int b1 = expected & 0xFF;
+        int r2 = (actual >> 16) & 0xFF;
+        int g2 = (actual >> 8) & 0xFF;
+        int b2 = actual & 0xFF;
+        if (r1 == r2 && g1 == g2 && b1 == b2) {
+            // alpha only difference, screenshots are opaque
+            return false;
+        }
+
+        // YIQ color space distance is close to perceived difference
+        double y = 0.29889531 * (r1 - r2) + 0.58662247 * (g1 - g2) + 0.11448223 * (b1 - b2);
+        double i = 0.59597799 * (r1 - r2) - 0.27417610 * (g1 - g2) - 0.32180189 * (b1 - b2);
+        double q = 0.21147017 * (r1 - r2) - 0.52261711 * (g1 - g2) + 0.31114694 * (b1 - b2);
+        return 0.5053 * y * y + 0.299 * i * i + 0.1957 * q * q > maxDelta;
+    }
+
+    /**
+     * @return masks intersecting the tile or null if tile is covered by one of masks entirely
+     */
+    private static List<Rectangle> getMasks(Rectangle tile, List<Rectangle> masks) {
+        List<Rectangle> result = new ArrayList<Rectangle>();
+        for (Rectangle mask : masks) {
+            if (mask.contains(tile)) {
+                return null;
+            }
+            if (mask.intersects(tile)) {
+                result.add(mask);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isMasked(List<Rectangle> masks, int x, int y) {
+        for (Rectangle mask : masks) {
+            if (mask.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return packed RGB pixels, image data is used without copying when it is stored as int per pixel
+     */
+    static int[] getPixels(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int width = image.getWidth();
+        if ((image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == width) {
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            if (data.length == width * image.getHeight()) {
+                return data;
+            }
+        }
+        return image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
+    }
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ImageComparison - result of {@link ImageComparator#compare(BufferedImage, BufferedImage, List)}.
+ */
+public class ImageComparison {
+
+    private static final Color DIFF_COLOR = Color.RED;
+
+    private final BufferedImage actual;
+    private final List<Rectangle> diffTiles;
+    private final long diffPixels;
+    private final long allowedPixels;
+    private final boolean sizeMismatch;
+
+    ImageComparison(BufferedImage actual, List<Rectangle> diffTiles, long diffPixels, long allowedPixels, boolean sizeMismatch) {
+        this.actual = actual;
+        this.diffTiles = diffTiles;
+        this.diffPixels = diffPixels;
+        this.allowedPixels = allowedPixels;
+        this.sizeMismatch = sizeMismatch;
+    }
+
+    /**
+     * @return boolean true if any pixel is different
+     */
+    public boolean hasDiff() {
+        return !diffTiles.isEmpty();
+    }
+
+    /**
+     * @return boolean true if images have the same size and number of different pixels is within tolerance
+     */
+    public boolean isPassed() {
+        return !sizeMismatch && diffPixels <= allowedPixels;
+    }
+
+    public boolean isSizeMismatch() {
+        return sizeMismatch;
+    }
+
+    /**
+     * @return long number of different pixels, it is a lower bound when comparison is failed as counting is stopped
+     *         after tolerance is exceeded
+     */
+    public long getDiffPixels() {
+        return diffPixels;
+    }
+
+    public List<Rectangle> getDiffTiles() {
+        return Collections.unmodifiableList(diffTiles);
+    }
+
+    /**
+     * Build copy of actual image with highlighted different tiles.
+     *
+     * @return BufferedImage
+     */
+    public BufferedImage getMarkedImage() {
+        BufferedImage marked = new BufferedImage(actual.getWidth(), actual.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = marked.createGraphics();
+        try {
+            graphics.drawImage(actual, 0, 0, null);
+            graphics.setColor(DIFF_COLOR);
+            for (Rectangle tile : diffTiles) {
+                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.3f));
+                graphics.fill(tile);
+                graphics.setComposite(AlphaComposite.SrcOver);
+                graphics.drawRect(tile.x, tile.y, tile.width - 1, tile.height - 1);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return marked;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageComparison [diffPixels=" + diffPixels + ", allowedPixels=" + allowedPixels + ", diffTiles=" + diffTiles.size()
+                + ", sizeMismatch=" + sizeMismatch + "]";
+    }
+
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * MessageMatcher - compiled set of substrings (Aho-Corasick automaton) used to classify exception messages.
+ *
+ * Message is scanned once whatever number of rules is registered, and every rule has its own hit counter, so it is
+ * possible to see which failure classes dominate in the run. Matching is case sensitive as plain
+ * {@link String#contains(CharSequence)}.
+ */
+public final class MessageMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NO_MATCH = -1;
+
+    private final String[] rules;
+    private final AtomicLongArray hits;
+
+    // compiled automaton: sorted transition chars and target states per state
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    // index of the rule ending in the state (directly or by failure link), NO_MATCH otherwise
+    private final int[] output;
+
+    /**
+     * @param rules
+     *            Collection of substrings, empty and duplicated values are ignored
+     */
+    public MessageMatcher(Collection<String> rules) {
+        List<String> unique = new ArrayList<String>();
+        for (String rule : rules) {
+            if (!StringUtils.isEmpty(rule) && !unique.contains(rule)) {
+                unique.add(rule);
+            }
+        }
+        this.rules = unique.toArray(new String[unique.size()]);
+        this.hits = new AtomicLongArray(this.rules.length);
+
+        // 1. trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+        List<Integer> terminal = new ArrayList<Integer>();
+        trie.add(new TreeMap<Character, Integer>());
+        terminal.add(NO_MATCH);
+        for (int i = 0; i < this.rules.length; i++) {
+            int state = ROOT;
+            for (char c : this.rules[i].toCharArray()) {
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    terminal.add(NO_MATCH);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == NO_MATCH) {
+                terminal.set(state, i);
+            }
+        }
+
+        int size = trie.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> children = trie.get(state);
+            keys[state] = new char[children.size()];
+            targets[state] = new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                keys[state][i] = child.getKey();
+                targets[state][i] = child.getValue();
+                i++;
+            }
+        }
+
+        // 2. failure links in breadth-first order so the link target is always resolved before the state itself
+        fail = new int[size];
+        output = new int[size];
+        output[ROOT] = NO_MATCH;
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        for (int child : targets[ROOT]) {
+            fail[child] = ROOT;
+            output[child] = terminal.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < keys[state].length; i++) {
+                int child = targets[state][i];
+                fail[child] = next(fail[state], keys[state][i]);
+                output[child] = terminal.get(child) != NO_MATCH ? terminal.get(child) : output[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Find the first rule contained in the message and increment its hit counter.
+     *
+     * @param message
+     *            CharSequence
+     * @return String matched rule or null
+     */
+    public String find(CharSequence message) {
+        int rule = indexOf(message);
+        if (rule == NO_MATCH) {
+            return null;
+        }
+        hits.incrementAndGet(rule);
+        return rules[rule];
+    }
+
+    /**
+     * @param message
+     *            CharSequence
+     * @return boolean true if message contains any rule
+     */
+    public boolean matches(CharSequence message) {
+        return find(message) != null;
+    }
+
+    public List<String> getRules() {
+        return Collections.unmodifiableList(Arrays.asList(rules));
+    }
+
+    /**
+     * @return Map of rule to number of matched messages for the rules matched at least once, the most frequent first
+     */
+    public Map<String, Long> getHits() {
+        List<Integer> matched = new ArrayList<Integer>();
+        for (int i = 0; i < rules.length; i++) {
+            if (hits.get(i) > 0) {
+                matched.add(i);
+            }
+        }
+        matched.sort((a, b) -> Long.compare(hits.get(b), hits.get(a)));
+
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (int i : matched) {
+            result.put(rules[i], hits.get(i));
+        }
+        return result;
+    }
+
+    int indexOf(CharSequence message) {
+        if (message == null) {
+            return NO_MATCH;
+        }
+        int state = ROOT;
+        for (int i = 0; i < message.length(); i++) {
+            state = next(state, message.charAt(i));
+            if (output[state] != NO_MATCH) {
+                return output[state];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(keys[state], c);
+            if (i >= 0) {
+                return targets[state][i];
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+}
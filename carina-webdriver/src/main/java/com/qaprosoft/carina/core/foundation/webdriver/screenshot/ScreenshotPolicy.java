@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.report.ReportContext;
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+
+/**
+ * ScreenshotPolicy - decides if automatic screenshot should be captured for the current test.
+ *
+ * screenshot_policy=always keeps regular behavior limited by screenshot_min_interval and screenshot_max_per_test;
+ * screenshot_dedup skips frames which are visually identical to the previous one.
+ * screenshot_policy=failure keeps last screenshot_buffer_size frames in memory and writes them into the report only
+ * when test fails.
+ */
+public final class ScreenshotPolicy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String FAILURE = "failure";
+
+    // difference hash dimensions: 16x16 bits
+    private static final int HASH_WIDTH = 16;
+    private static final int HASH_HEIGHT = 16;
+
+    private static final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    private ScreenshotPolicy() {
+    }
+
+    /**
+     * Verify if automatic screenshots are kept in memory and reported for failed tests only.
+     *
+     * @return boolean
+     */
+    public static boolean isFailureOnly() {
+        return FAILURE.equalsIgnoreCase(Configuration.get(Parameter.SCREENSHOT_POLICY));
+    }
+
+    /**
+     * Verify per test rate limits and register capture attempt.
+     *
+     * @return true if screenshot could be captured now
+     */
+    public static boolean tryAcquire() {
+        State current = state.get();
+        long now = System.currentTimeMillis();
+
+        int maxCount = Configuration.getInt(Parameter.SCREENSHOT_MAX_PER_TEST);
+        if (maxCount >= 0 && current.count >= maxCount) {
+            LOGGER.debug("Screenshot skipped as max number per test is reached: " + maxCount);
+            return false;
+        }
+
+        long interval = Configuration.getLong(Parameter.SCREENSHOT_MIN_INTERVAL);
+        if (interval > 0 && now - current.lastCapture < interval) {
+            LOGGER.debug("Screenshot skipped as previous one was captured less than " + interval + " ms ago.");
+            return false;
+        }
+
+        current.lastCapture = now;
+        current.count++;
+        return true;
+    }
+
+    /**
+     * Compare image with the previous captured one using perceptual hash.
+     *
+     * @param image
+     *            BufferedImage
+     * @return true if dedup is enabled and image looks the same as previous one
+     */
+    public static boolean isDuplicate(BufferedImage image) {
+        if (!Configuration.getBoolean(Parameter.SCREENSHOT_DEDUP)) {
+            return false;
+        }
+        State current = state.get();
+        long[] hash = getHash(image);
+        boolean duplicate = Arrays.equals(hash, current.lastHash);
+        current.lastHash = hash;
+        return duplicate;
+    }
+
+    /**
+     * Keep encoded png frame in memory ring buffer. The oldest frame is dropped when buffer is full.
+     *
+     * @param png
+     *            byte[] encoded image
+     * @param comment
+     *            String screenshot comment
+     */
+    public static void addFrame(byte[] png, String comment) {
+        int size = Configuration.getInt(Parameter.SCREENSHOT_BUFFER_SIZE);
+        if (png == null || size <= 0) {
+            return;
+        }
+
+        Deque<Frame> frames = state.get().frames;
+        Frame last = frames.peekLast();
+        if (last != null && Configuration.getBoolean(Parameter.SCREENSHOT_DEDUP) && Arrays.equals(last.png, png)) {
+            // the same screen, just actualize the comment
+            last.comment = comment;
+            return;
+        }
+
+        while (frames.size() >= size) {
+            frames.pollFirst();
+        }
+        frames.addLast(new Frame(png, comment, System.currentTimeMillis()));
+    }
+
+    /**
+     * Write buffered frames of the current test into the test report folder.
+     *
+     * @return List of screenshot names
+     */
+    public static List<String> flush() {
+        Deque<Frame> frames = state.get().frames;
+        List<String> screens = new ArrayList<>(frames.size());
+        if (frames.isEmpty()) {
+            return screens;
+        }
+
+        File testDir = ReportContext.getTestDir();
+        Frame frame;
+        long lastTime = 0;
+        while ((frame = frames.pollFirst()) != null) {
+            // keep unique names for frames captured during the same millisecond
+            long time = Math.max(frame.timestamp, lastTime + 1);
+            lastTime = time;
+            String screenName = time + ".png";
+            try {
+                Files.write(new File(testDir, screenName).toPath(), frame.png);
+                com.zebrunner.agent.core.registrar.Screenshot.upload(frame.png, time);
+                ReportContext.addScreenshotComment(screenName, frame.comment);
+                screens.add(screenName);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write buffered screenshot: " + e.getMessage());
+            }
+        }
+        LOGGER.debug(screens.size() + " buffered screenshots were flushed into the report.");
+        return screens;
+    }
+
+    /**
+     * Release screenshots state of the current test.
+     */
+    public static void clear() {
+        state.remove();
+    }
+
+    static int getFramesCount() {
+        return state.get().frames.size();
+    }
+
+    /**
+     * Difference hash: image is reduced to (HASH_WIDTH + 1) x HASH_HEIGHT grayscale and every bit keeps brightness
+     * gradient between neighbour pixels. Hash ignores compression noise and tiny rendering differences.
+     *
+     * @param image
+     *            BufferedImage
+     * @return long[] hash
+     */
+    static long[] getHash(BufferedImage image) {
+        BufferedImage small = new BufferedImage(HASH_WIDTH + 1, HASH_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = small.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, HASH_WIDTH + 1, HASH_HEIGHT, null);
+        graphics.dispose();
+
+        Raster raster = small.getRaster();
+        // the last element keeps image size so different resolutions/orientations are never equal
+        long[] hash = new long[HASH_WIDTH * HASH_HEIGHT / Long.SIZE + 1];
+        int bit = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH; x++) {
+                if (raster.getSample(x, y, 0) > raster.getSample(x + 1, y, 0)) {
+                    hash[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+                bit++;
+            }
+        }
+        hash[hash.length - 1] = ((long) image.getWidth() << 32) | image.getHeight();
+        return hash;
+    }
+
+    private static class State {
+        private long lastCapture;
+        private int count;
+        private long[] lastHash;
+        private final Deque<Frame> frames = new ArrayDeque<>();
+    }
+
+    private static class Frame {
+        private final byte[] png;
+        private String comment;
+        private final long timestamp;
+
+        private Frame(byte[] png, String comment, long timestamp) {
+            this.png = png;
+            this.comment = comment;
+            this.timestamp = timestamp;
+        }
+    }
+
+}
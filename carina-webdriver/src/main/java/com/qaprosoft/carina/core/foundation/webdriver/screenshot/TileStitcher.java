@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * TileStitcher - draws screenshot tiles of the scrolled page into single preallocated image.
+ * Every tile is scaled while drawing so the full size page image is never allocated and tile could be released
+ * right after the draw call.
+ */
+public class TileStitcher {
+
+    private final int pageWidth;
+    private final int pageHeight;
+    private final double scale;
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+
+    // number of page rows (in source pixels) which are already drawn
+    private int filled = 0;
+
+    /**
+     * @param pageWidth
+     *            int page width in screenshot pixels
+     * @param pageHeight
+     *            int page height in screenshot pixels
+     * @param scale
+     *            double output scale, 1 - keep original size
+     */
+    public TileStitcher(int pageWidth, int pageHeight, double scale) {
+        if (pageWidth <= 0 || pageHeight <= 0 || scale <= 0) {
+            throw new IllegalArgumentException("Invalid page size " + pageWidth + "x" + pageHeight + " or scale " + scale);
+        }
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.scale = scale;
+        this.image = new BufferedImage(Math.max(1, toOutput(pageWidth)), Math.max(1, toOutput(pageHeight)), BufferedImage.TYPE_INT_RGB);
+        this.graphics = image.createGraphics();
+        this.graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    /**
+     * Draw tile located at the pageY offset. Rows which were drawn by previous tiles are skipped.
+     *
+     * @param tile
+     *            BufferedImage visible part of the page
+     * @param pageY
+     *            int offset of the tile top in screenshot pixels
+     */
+    public void draw(BufferedImage tile, int pageY) {
+        int top = Math.max(pageY, filled);
+        int bottom = Math.min(pageY + tile.getHeight(), pageHeight);
+        if (bottom <= top) {
+            return;
+        }
+        int width = Math.min(tile.getWidth(), pageWidth);
+
+        // the same rounding for the top and bottom edges guarantees seamless joins between tiles
+        graphics.drawImage(tile,
+                0, toOutput(top), toOutput(width), toOutput(bottom),
+                0, top - pageY, width, bottom - pageY,
+                null);
+        filled = bottom;
+    }
+
+    public boolean isComplete() {
+        return filled >= pageHeight;
+    }
+
+    /**
+     * @return stitched image. Stitcher shouldn't be used after this call.
+     */
+    public BufferedImage getImage() {
+        graphics.dispose();
+        return image;
+    }
+
+    private int toOutput(int value) {
+        return (int) Math.round(value * scale);
+    }
+
+}
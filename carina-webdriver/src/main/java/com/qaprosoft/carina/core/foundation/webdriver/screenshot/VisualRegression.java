@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qaprosoft.carina.core.foundation.utils.Configuration;
+import com.qaprosoft.carina.core.foundation.utils.Configuration.Parameter;
+import com.qaprosoft.carina.core.foundation.webdriver.IDriverPool;
+import com.qaprosoft.carina.core.foundation.webdriver.Screenshot;
+import com.qaprosoft.carina.core.foundation.webdriver.device.Device;
+
+/**
+ * VisualRegression - verification of the screen against stored baseline.
+ *
+ * Baseline is resolved by page name, current device (or browser) and locale. Missing baseline is created from the
+ * actual screen, visual_baseline_update=true replaces existing baselines by actual screens. Diff image is written and
+ * attached to the test only when verification fails.
+ *
+ * <pre>
+ * BufferedImage screen = Screenshot.captureFullSize(driver, "home");
+ * Assert.assertTrue(VisualRegression.verify("home", screen, clockRegion));
+ * </pre>
+ */
+public class VisualRegression {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final BaselineRepository repository;
+    private final ImageComparator comparator;
+
+    public VisualRegression() {
+        this(new BaselineRepository(), new ImageComparator());
+    }
+
+    public VisualRegression(BaselineRepository repository, ImageComparator comparator) {
+        this.repository = repository;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Verify screen against baseline of the current device and locale using default configuration.
+     *
+     * @param page
+     *            String page name
+     * @param actual
+     *            BufferedImage current screen
+     * @param masks
+     *            regions ignored in comparison
+     * @return boolean true if screen matches baseline within tolerance
+     */
+    public static boolean verify(String page, BufferedImage actual, Rectangle... masks) {
+        return new VisualRegression().verify(page, getDeviceName(), Configuration.get(Parameter.LOCALE), actual, Arrays.asList(masks));
+    }
+
+    /**
+     * Verify screen against baseline.
+     *
+     * @param page
+     *            String page name
+     * @param device
+     *            String device or browser name
+     * @param locale
+     *            String locale
+     * @param actual
+     *            BufferedImage current screen
+     * @param masks
+     *            List of regions ignored in comparison
+     * @return boolean true if screen matches baseline within tolerance
+     */
+    public boolean verify(String page, String device, String locale, BufferedImage actual, List<Rectangle> masks) {
+        if (actual == null) {
+            LOGGER.error("Unable to verify '" + page + "' as screen wasn't captured!");
+            return false;
+        }
+
+        try {
+            BufferedImage baseline = repository.load(page, device, locale);
+            if (baseline == null || Configuration.getBoolean(Parameter.VISUAL_BASELINE_UPDATE)) {
+                repository.save(page, device, locale, actual);
+                LOGGER.info("Baseline for '" + page + "' was " + (baseline == null ? "created" : "updated") + ": "
+                        + repository.getFile(page, device, locale).getAbsolutePath());
+                return true;
+            }
+
+            ImageComparison comparison = comparator.compare(baseline, actual, masks);
+            if (comparison.isPassed()) {
+                LOGGER.debug("Screen '" + page + "' matches baseline: " + comparison);
+                return true;
+            }
+
+            LOGGER.error("Screen '" + page + "' doesn't match baseline: " + comparison);
+            Screenshot.saveDiff(comparison.getMarkedImage(), "visual_diff_" + page, true);
+        } catch (IOException e) {
+            LOGGER.error("Unable to verify '" + page + "' due to the I/O issues: " + e.getMessage(), e);
+        }
+        return false;
+    }
+
+    private static String getDeviceName() {
+        Device device = IDriverPool.getDefaultDevice();
+        return device.isNull() ? Configuration.getBrowser() : device.getName();
+    }
+
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
+
+public class DeviceSettingsTransactionTest {
+
+    @Test()
+    public void testScript() {
+        DeviceSettingsTransaction transaction = new DeviceSettingsTransaction(new FakeExecutor(cmd -> Collections.<String> emptyList()))
+                .putGlobal("auto_time", "0")
+                .putSystem("time_12_24", "24")
+                .setProp("persist.sys.timezone", "America/New_York")
+                .setProp("test.prop", "it's")
+                .broadcast("android.intent.action.TIME_SET");
+
+        Assert.assertEquals(transaction.getScript(), "settings put global auto_time '0' ; "
+                + "settings put system time_12_24 '24' ; "
+                + "setprop persist.sys.timezone 'America/New_York' ; "
+                + "setprop test.prop 'it'\\''s' ; "
+                + "am broadcast -a android.intent.action.TIME_SET");
+    }
+
+    @Test()
+    public void testSetTimeZone() {
+        DeviceSettingsTransaction transaction = new DeviceSettingsTransaction(new FakeExecutor(cmd -> Collections.<String> emptyList()))
+                .setTimeZone("Europe/London");
+
+        // no root is required, binder call is used where alarm shell command isn't available
+        Assert.assertEquals(transaction.getScript(),
+                "cmd alarm set-timezone 'Europe/London' 2>/dev/null || service call alarm 3 s16 'Europe/London'");
+        Assert.assertFalse(transaction.getScript().contains("setprop"));
+    }
+
+    @Test()
+    public void testRejectedCommandIsNotApplied() {
+        Iterator<List<String>> outputs = Arrays.asList(
+                Collections.singletonList("Failed to set property 'persist.sys.timezone' to 'Europe/London'"),
+                Collections.singletonList("0=GMT")).iterator();
+        FakeExecutor executor = new FakeExecutor(cmd -> outputs.hasNext() ? outputs.next() : Collections.singletonList("0=GMT"));
+
+        boolean applied = new DeviceSettingsTransaction(executor)
+                .setProp("persist.sys.timezone", "Europe/London")
+                .expectProp("persist.sys.timezone", "Europe/London")
+                .commit("emulator-5554", 1);
+
+        Assert.assertFalse(applied, "Rejected change is treated as applied");
+    }
+
+    @Test()
+    public void testQuery() {
+        Assert.assertEquals(DeviceSettingsTransaction.getQueryScript(Arrays.asList("getprop a", "settings get global b")),
+                "echo \"0=$(getprop a)\" ; echo \"1=$(settings get global b)\"");
+
+        List<String> values = DeviceSettingsTransaction.parseQuery(Arrays.asList("0=Europe/London", "1=first", "second", "2="), 4);
+        Assert.assertEquals(values, Arrays.asList("Europe/London", "first\nsecond", "", ""));
+    }
+
+    @Test()
+    public void testCommitWaitsForExpectedState() {
+        Iterator<List<String>> outputs = Arrays.asList(
+                Collections.<String> emptyList(), // settings are applied
+                Collections.singletonList("0=GMT"),
+                Collections.singletonList("0=Europe/London")).iterator();
+        FakeExecutor executor = new FakeExecutor(cmd -> outputs.next());
+
+        boolean applied = new DeviceSettingsTransaction(executor)
+                .setProp("persist.sys.timezone", "Europe/London")
+                .expectProp("persist.sys.timezone", "Europe/London")
+                .commit("emulator-5554", 5);
+
+        Assert.assertTrue(applied);
+        // one call for all changes and one per verification attempt
+        Assert.assertEquals(executor.calls.size(), 3);
+        Assert.assertEquals(executor.calls.get(0), "adb -s emulator-5554 shell setprop persist.sys.timezone 'Europe/London'");
+    }
+
+    @Test()
+    public void testCommitTimeout() {
+        FakeExecutor executor = new FakeExecutor(cmd -> Collections.singletonList("0=GMT"));
+
+        boolean applied = new DeviceSettingsTransaction(executor)
+                .expectProp("persist.sys.timezone", "Europe/London")
+                .commit("", 1);
+        Assert.assertFalse(applied);
+    }
+
+    @Test()
+    public void testParallelCommit() {
+        // the second device never reaches expected state
+        FakeExecutor executor = new FakeExecutor(cmd -> Collections.singletonList("emulator-5556".equals(cmd[2]) ? "0=0" : "0=1"));
+
+        Map<String, Boolean> results = new DeviceSettingsTransaction(executor)
+                .putGlobal("auto_time", "1")
+                .expectSetting("global", "auto_time", "1")
+                .commit(Arrays.asList("emulator-5554", "emulator-5556"), 1);
+
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertTrue(results.get("emulator-5554"));
+        Assert.assertFalse(results.get("emulator-5556"));
+    }
+
+    private static class FakeExecutor extends AdbExecutor {
+        private final Function<String[], List<String>> output;
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+        FakeExecutor(Function<String[], List<String>> output) {
+            this.output = output;
+        }
+
+        @Override
+        public String[] getDefaultCmd() {
+            return new String[] { "adb" };
+        }
+
+        @Override
+        public List<String> execute(String[] cmd) {
+            calls.add(String.join(" ", cmd));
+            return output.apply(cmd);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.notifications.android.Notification;
+
+public class NotificationDumpParserTest {
+
+    private static final List<String> DUMP = Arrays.asList(
+            "Current Notification Manager state:",
+            "  Notification List:",
+            "    NotificationRecord(0x0b3c1d2e: pkg=com.android.systemui user=UserHandle{0} id=1 tag=null importance=2)",
+            "      uid=10023 userId=0",
+            "      tickerText=USB debugging connected",
+            "    NotificationRecord(0x0a1b2c3d: pkg=com.example.app user=UserHandle{0} id=7 tag=null importance=3)",
+            "      uid=10101 userId=0",
+            "      tickerText=New message from Bob",
+            "    NotificationRecord(0x01020304: pkg=com.example.mail user=UserHandle{0} id=2 tag=null importance=3)",
+            "      tickerText=null",
+            "  mArchive=Archive (3 notifications)");
+
+    @Test()
+    public void testParseAll() {
+        NotificationDumpParser parser = new NotificationDumpParser();
+        for (String line : DUMP) {
+            Assert.assertTrue(parser.test(line));
+        }
+
+        List<Notification> notifications = parser.getNotifications();
+        Assert.assertEquals(notifications.size(), 3);
+        Assert.assertEquals(notifications.get(0).getNotificationPkg(), "com.android.systemui");
+        Assert.assertEquals(notifications.get(0).getNotificationText(), "USB debugging connected");
+        Assert.assertEquals(notifications.get(1).getNotificationPkg(), "com.example.app");
+        Assert.assertEquals(notifications.get(1).getNotificationText(), "New message from Bob");
+        Assert.assertNull(parser.getFound());
+    }
+
+    @Test()
+    public void testStopOnTarget() {
+        NotificationDumpParser parser = new NotificationDumpParser(n -> n.getNotificationText().contains("Bob"));
+        int read = 0;
+        for (String line : DUMP) {
+            read++;
+            if (!parser.test(line)) {
+                break;
+            }
+        }
+
+        Assert.assertEquals(read, 8, "Parsing wasn't stopped on the matched notification");
+        Assert.assertNotNull(parser.getFound());
+        Assert.assertEquals(parser.getFound().getNotificationPkg(), "com.example.app");
+    }
+
+    @Test()
+    public void testPackageVersion() {
+        List<String> dump = Arrays.asList(
+                "Packages:",
+                "  Package [com.example.app] (5f1c2a):",
+                "    versionCode=17040000 minSdk=21 targetSdk=29",
+                "    versionName=8.5.0",
+                "Hidden system packages:",
+                "  Package [com.example.app] (1a2b3c):",
+                "    versionCode=100 minSdk=21 targetSdk=29",
+                "    versionName=1.0.0");
+
+        PackageDumpParser parser = new PackageDumpParser();
+        int read = 0;
+        for (String line : dump) {
+            read++;
+            if (!parser.test(line)) {
+                break;
+            }
+        }
+
+        Assert.assertEquals(read, 4);
+        Assert.assertEquals(parser.getVersionCode(), "17040000");
+        Assert.assertEquals(parser.getVersionName(), "8.5.0");
+    }
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.android;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.android.recorder.utils.AdbExecutor;
+
+public class NotificationWatcherTest {
+
+    private static final String[] BASE_CMD = { "adb", "-s", "emulator-5554" };
+
+    @Test()
+    public void testEventReceived() throws InterruptedException {
+        LogcatExecutor executor = new LogcatExecutor("I/notification_enqueue( 1234): [10001,com.app,1]");
+        try (NotificationWatcher watcher = new NotificationWatcher(executor, BASE_CMD, "com.app")) {
+            Assert.assertTrue(watcher.start());
+            Assert.assertTrue(executor.opened.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(watcher.awaitEvent(5000));
+        }
+    }
+
+    @Test()
+    public void testCloseStopsListener() throws InterruptedException {
+        LogcatExecutor executor = new LogcatExecutor();
+        NotificationWatcher watcher = new NotificationWatcher(executor, BASE_CMD, null);
+        Assert.assertTrue(watcher.start());
+        Assert.assertTrue(executor.opened.await(5, TimeUnit.SECONDS));
+
+        long start = System.currentTimeMillis();
+        watcher.close();
+
+        Assert.assertEquals(executor.closed.getCount(), 0, "logcat connection wasn't closed");
+        Assert.assertEquals(executor.finished.getCount(), 0, "Listener thread is still blocked in logcat reading");
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertFalse(watcher.isListening());
+    }
+
+    /**
+     * Streams given lines and then blocks like idle logcat until connection is closed.
+     */
+    private static class LogcatExecutor extends AdbExecutor {
+        private final String[] lines;
+        private final CountDownLatch opened = new CountDownLatch(1);
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        LogcatExecutor(String... lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public boolean isNativeClientAvailable() {
+            return true;
+        }
+
+        @Override
+        public boolean execute(String[] cmd, Predicate<String> handler, Consumer<Closeable> connection) {
+            try {
+                connection.accept(closed::countDown);
+                opened.countDown();
+                for (String line : lines) {
+                    if (!handler.test(line)) {
+                        return true;
+                    }
+                }
+                closed.await();
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.mobile.IMobileUtils.Direction;
+import com.qaprosoft.carina.core.foundation.webdriver.decorator.ExtendedWebElement;
+
+public class IMobileUtilsTest {
+
+    private static final By TARGET = By.xpath("//android.widget.TextView[@text='Target']");
+
+    private WebDriver driver;
+    private ExtendedWebElement element;
+    private final List<Direction> swipes = new ArrayList<>();
+
+    private final IMobileUtils utils = new IMobileUtils() {
+        @Override
+        public WebDriver castDriver() {
+            return driver;
+        }
+
+        @Override
+        public boolean swipeInContainer(ExtendedWebElement container, Direction direction, int duration) {
+            swipes.add(direction);
+            return true;
+        }
+    };
+
+    @BeforeMethod
+    public void setUp() {
+        swipes.clear();
+        driver = mock(WebDriver.class);
+        element = mock(ExtendedWebElement.class);
+        when(element.getBy()).thenReturn(TARGET);
+        when(element.getNameWithLocator()).thenReturn("target " + TARGET);
+        when(element.isVisible(1)).thenReturn(true);
+    }
+
+    @Test()
+    public void testElementFoundAfterSwipes() {
+        when(driver.getPageSource()).thenReturn(page("First", "Second"), page("Third", "Fourth"), page("Fifth", "Target"));
+
+        Assert.assertTrue(utils.swipeByPageSource(element, null, Direction.UP, 5, 100));
+        Assert.assertEquals(swipes.size(), 2);
+    }
+
+    @Test()
+    public void testElementAlreadyOnScreen() {
+        when(driver.getPageSource()).thenReturn(page("Target"));
+
+        Assert.assertTrue(utils.swipeByPageSource(element, null, Direction.DOWN, 5, 100));
+        Assert.assertTrue(swipes.isEmpty(), "Swipe was executed for element already present on screen");
+    }
+
+    @Test()
+    public void testEndOfListStopsSwiping() {
+        when(driver.getPageSource()).thenReturn(page("First", "Second"), page("Third", "Fourth"), page("Third", "Fourth"));
+
+        Assert.assertFalse(utils.swipeByPageSource(element, null, Direction.UP, 10, 100));
+        Assert.assertEquals(swipes.size(), 2, "Swiping wasn't stopped when screen stopped changing");
+        verify(element, never()).isVisible(1);
+    }
+
+    @Test()
+    public void testSwipeCountLimit() {
+        when(driver.getPageSource()).thenReturn(page("1"), page("2"), page("3"), page("4"));
+
+        Assert.assertFalse(utils.swipeByPageSource(element, null, Direction.LEFT, 3, 100));
+        Assert.assertEquals(swipes.size(), 3);
+    }
+
+    @Test()
+    public void testElementOutsideOfViewportIsVerifiedRemotely() {
+        when(driver.getPageSource()).thenReturn(page("Target", "First"), page("Target", "Second"));
+        when(element.isVisible(1)).thenReturn(false, true);
+
+        Assert.assertTrue(utils.swipeByPageSource(element, null, Direction.UP, 5, 100));
+        Assert.assertEquals(swipes.size(), 1);
+    }
+
+    private static String page(String... texts) {
+        StringBuilder page = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><hierarchy rotation=\"0\">"
+                + "<android.widget.ListView resource-id=\"com.app:id/list\">");
+        for (String text : texts) {
+            page.append("<android.widget.TextView text=\"").append(text).append("\"/>");
+        }
+        return page.append("</android.widget.ListView></hierarchy>").toString();
+    }
+
+}
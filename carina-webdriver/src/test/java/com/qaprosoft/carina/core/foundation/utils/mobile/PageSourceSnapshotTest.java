@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.utils.mobile;
+
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PageSourceSnapshotTest {
+
+    private static final String SOURCE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<hierarchy rotation=\"0\">"
+            + "<android.widget.FrameLayout resource-id=\"android:id/content\">"
+            + "<android.widget.TextView text=\"First\" resource-id=\"com.app:id/cell\"/>"
+            + "<android.widget.TextView text=\"Second\" resource-id=\"com.app:id/cell\"/>"
+            + "<android.widget.Button text=\"Submit\" resource-id=\"com.app:id/submit\"/>"
+            + "</android.widget.FrameLayout>"
+            + "</hierarchy>";
+
+    @Test()
+    public void testFindAllInDocumentOrder() {
+        PageSourceSnapshot snapshot = PageSourceSnapshot.parse(SOURCE);
+        List<Map<String, String>> nodes = snapshot.findAll(By.xpath("//*[@resource-id='com.app:id/cell']"));
+        Assert.assertEquals(nodes.size(), 2);
+        Assert.assertEquals(nodes.get(0).get("text"), "First");
+        Assert.assertEquals(nodes.get(1).get("text"), "Second");
+    }
+
+    @Test()
+    public void testContains() {
+        PageSourceSnapshot snapshot = PageSourceSnapshot.parse(SOURCE);
+        Assert.assertTrue(snapshot.contains(By.xpath("//android.widget.Button[@text='Submit']")));
+        Assert.assertFalse(snapshot.contains(By.xpath("//android.widget.Button[@text='Cancel']")));
+    }
+
+    @Test()
+    public void testOnlyXpathIsSupported() {
+        Assert.assertTrue(PageSourceSnapshot.isSupported(By.xpath("//a")));
+        Assert.assertFalse(PageSourceSnapshot.isSupported(By.id("a")));
+        Assert.assertFalse(PageSourceSnapshot.isSupported(null));
+    }
+
+    @Test()
+    public void testSameSourceHash() {
+        Assert.assertEquals(PageSourceSnapshot.parse(SOURCE).getHash(), PageSourceSnapshot.parse(SOURCE).getHash());
+    }
+
+}
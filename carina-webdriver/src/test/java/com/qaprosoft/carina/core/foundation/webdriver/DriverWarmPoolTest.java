@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriver.Options;
+import org.openqa.selenium.WebDriver.TargetLocator;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.R;
+import com.qaprosoft.carina.core.foundation.webdriver.TestPhase.Phase;
+
+public class DriverWarmPoolTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private final AtomicInteger quits = new AtomicInteger();
+
+    private DesiredCapabilities capabilities;
+
+    // holds reset of released drivers
+    private volatile CountDownLatch resetGate = new CountDownLatch(0);
+
+    @BeforeMethod
+    public void enablePool(Method method) {
+        // current test overrides aren't visible from pool threads so background pre-start is skipped by key mismatch
+        R.CONFIG.put("driver_warm_pool_size", "1", true);
+        R.CONFIG.put("browser", "warm-pool-" + method.getName(), true);
+        capabilities = new DesiredCapabilities();
+        capabilities.setCapability("browserName", "chrome");
+        quits.set(0);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void disablePool() {
+        R.CONFIG.clearTestProperties();
+    }
+
+    @Test()
+    public void testKeyDoesNotDependOnCapabilitiesOrder() {
+        DesiredCapabilities first = new DesiredCapabilities();
+        first.setCapability("browserName", "chrome");
+        first.setCapability("version", "88");
+
+        DesiredCapabilities second = new DesiredCapabilities();
+        second.setCapability("version", "88");
+        second.setCapability("browserName", "chrome");
+
+        Assert.assertEquals(DriverWarmPool.getKey(first, null), DriverWarmPool.getKey(second, null));
+    }
+
+    @Test()
+    public void testKeyDependsOnCapabilities() {
+        DesiredCapabilities chrome = new DesiredCapabilities();
+        chrome.setCapability("browserName", "chrome");
+
+        DesiredCapabilities firefox = new DesiredCapabilities();
+        firefox.setCapability("browserName", "firefox");
+
+        Assert.assertNotEquals(DriverWarmPool.getKey(chrome, null), DriverWarmPool.getKey(firefox, null));
+        Assert.assertNotEquals(DriverWarmPool.getKey(chrome, null), DriverWarmPool.getKey(chrome, "http://localhost:4444/wd/hub"));
+    }
+
+    @Test()
+    public void testKeyIsSha256() {
+        Assert.assertTrue(DriverWarmPool.getKey(capabilities, null).matches("[0-9a-f]{64}"));
+    }
+
+    @Test()
+    public void testReleaseOfUnknownDriver() {
+        Assert.assertTrue(DriverWarmPool.isEnabled());
+        CarinaDriver carinaDriver = new CarinaDriver("default", mockDriver(), IDriverPool.getNullDevice(), Phase.METHOD, 1L);
+        Assert.assertFalse(DriverWarmPool.release(carinaDriver), "Driver which wasn't leased from pool should be quit by caller");
+    }
+
+    @Test()
+    public void testLeaseReleaseReuse() throws InterruptedException {
+        WebDriver driver = mockDriver();
+        DriverWarmPool.register(driver, capabilities, null);
+        Assert.assertTrue(DriverWarmPool.release(new CarinaDriver("default", driver, IDriverPool.getNullDevice(), Phase.METHOD, 1L)));
+
+        Assert.assertSame(awaitDriver(), driver, "Released driver wasn't reused");
+        Assert.assertEquals(quits.get(), 0);
+    }
+
+    @Test()
+    public void testConcurrentReleaseDoesNotOverfillPool() throws InterruptedException {
+        WebDriver first = mockDriver();
+        WebDriver second = mockDriver();
+        DriverWarmPool.register(first, capabilities, null);
+        DriverWarmPool.register(second, capabilities, null);
+
+        // both drivers pass size check while reset is in progress
+        resetGate = new CountDownLatch(1);
+        Assert.assertTrue(DriverWarmPool.release(new CarinaDriver("first", first, IDriverPool.getNullDevice(), Phase.METHOD, 1L)));
+        Assert.assertTrue(DriverWarmPool.release(new CarinaDriver("second", second, IDriverPool.getNullDevice(), Phase.METHOD, 1L)));
+        resetGate.countDown();
+
+        WebDriver reused = awaitDriver();
+        Assert.assertNotNull(reused);
+        long start = System.currentTimeMillis();
+        while (quits.get() == 0 && System.currentTimeMillis() - start < TIMEOUT) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(quits.get(), 1, "Driver over the pool size wasn't quit");
+        Assert.assertNull(DriverWarmPool.acquire("default", capabilities, null), "Pool holds more drivers than its size");
+    }
+
+    @Test()
+    public void testReuseAfterShutdown() throws InterruptedException {
+        DriverWarmPool.shutdown();
+        Assert.assertFalse(DriverWarmPool.isEnabled());
+
+        // next suite
+        DriverWarmPool.resume();
+        Assert.assertTrue(DriverWarmPool.isEnabled(), "Warm pool wasn't enabled for the next suite");
+        WebDriver driver = mockDriver();
+        DriverWarmPool.register(driver, capabilities, null);
+        Assert.assertTrue(DriverWarmPool.release(new CarinaDriver("default", driver, IDriverPool.getNullDevice(), Phase.METHOD, 1L)));
+        Assert.assertSame(awaitDriver(), driver, "Released driver wasn't reused after resume");
+    }
+
+    private WebDriver awaitDriver() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        WebDriver driver;
+        while ((driver = DriverWarmPool.acquire("default", capabilities, null)) == null && System.currentTimeMillis() - start < TIMEOUT) {
+            Thread.sleep(10);
+        }
+        return driver;
+    }
+
+    private WebDriver mockDriver() {
+        WebDriver driver = mock(WebDriver.class);
+        when(driver.getWindowHandles()).thenAnswer(invocation -> {
+            resetGate.await();
+            return Collections.singleton("main");
+        });
+        when(driver.switchTo()).thenReturn(mock(TargetLocator.class));
+        when(driver.manage()).thenReturn(mock(Options.class));
+        doAnswer(invocation -> quits.incrementAndGet()).when(driver).quit();
+        return driver;
+    }
+
+}
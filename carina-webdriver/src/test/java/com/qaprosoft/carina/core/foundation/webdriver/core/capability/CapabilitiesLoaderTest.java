@@ -15,8 +15,14 @@
  *******************************************************************************/
 package com.qaprosoft.carina.core.foundation.webdriver.core.capability;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.qaprosoft.carina.core.foundation.utils.R;
@@ -39,6 +45,35 @@ public class CapabilitiesLoaderTest {
     private final static String coreParam = "coreParam";
     private final static String coreValue = "coreValue";
 
+    private final static String[] loadedKeys = { "capabilities." + stringParam, "capabilities." + booleanParamTrue,
+            "capabilities." + booleanParamFalse, coreParam };
+
+    private final Map<Object, Object> globalProperties = new HashMap<>();
+
+    @BeforeClass
+    public void saveGlobalProperties() {
+        globalProperties.putAll(R.CONFIG.getGlobalProperties());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void clearTestProperties() {
+        R.CONFIG.clearTestProperties();
+    }
+
+    /*
+     * Restore properties loaded globally by loadGlobalCapabilitiesTest
+     */
+    @AfterClass(alwaysRun = true)
+    public void restoreGlobalProperties() {
+        for (String key : loadedKeys) {
+            if (globalProperties.containsKey(key)) {
+                R.CONFIG.put(key, (String) globalProperties.get(key));
+            } else {
+                R.CONFIG.remove(key);
+            }
+        }
+    }
+
     /*
      * Test that loadCapabilities() raise exception if no properties file detected on classpath
      */
@@ -94,6 +129,33 @@ public class CapabilitiesLoaderTest {
 
         Assert.assertEquals(R.CONFIG.get(coreParam), coreValue, "Returned property value is not valid!");
     }
-    
+
+    /*
+     * Test that getCapabilities() returns independent copies of the parsed file
+     */
+    @Test()
+    public void getCapabilitiesCopyTest() {
+        DesiredCapabilities caps = new CapabilitiesLoader().getCapabilities(customCapabilities);
+        caps.setCapability(stringParam, "changedValue");
+        caps.setCapability(coreParam, coreValue);
+
+        DesiredCapabilities other = new CapabilitiesLoader().getCapabilities(customCapabilities);
+        Assert.assertEquals(other.getCapability(stringParam), stringValue, "Cached capabilities were changed by caller!");
+        Assert.assertNull(other.getCapability(coreParam), "Cached capabilities were changed by caller!");
+    }
+
+    /*
+     * Test that missing file is reported for every call as it isn't cached
+     */
+    @Test(expectedExceptions = {
+            AssertionError.class }, expectedExceptionsMessageRegExp = "Unable to find custom capabilities file 'unexisting_file'!")
+    public void getCapabilitiesFromNonExistingFileTest() {
+        try {
+            new CapabilitiesLoader().getCapabilities("unexisting_file");
+        } catch (AssertionError e) {
+            // ignore the first failure
+        }
+        new CapabilitiesLoader().getCapabilities("unexisting_file");
+    }
 
 }
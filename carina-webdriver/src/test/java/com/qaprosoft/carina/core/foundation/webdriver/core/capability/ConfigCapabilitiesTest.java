@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.core.capability;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+public class ConfigCapabilitiesTest {
+
+    private final static String globalKey = "capabilities.configCapGlobal";
+    private final static String testKey = "capabilities.configCapTest";
+
+    private final Map<Object, Object> globalProperties = new HashMap<>();
+
+    @BeforeClass
+    public void saveGlobalProperties() {
+        globalProperties.putAll(R.CONFIG.getGlobalProperties());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void clearTestProperties() {
+        R.CONFIG.clearTestProperties();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void restoreGlobalProperties() {
+        // global capabilities would be attached to every driver started later by the same JVM
+        for (String key : new String[] { globalKey, testKey }) {
+            if (globalProperties.containsKey(key)) {
+                R.CONFIG.put(key, (String) globalProperties.get(key));
+            } else {
+                R.CONFIG.remove(key);
+            }
+        }
+    }
+
+    /*
+     * Test that global capabilities are built once and rebuilt on configuration change only
+     */
+    @Test()
+    public void globalCapabilitiesCacheTest() {
+        R.CONFIG.put(globalKey, "globalValue");
+        Map<String, Object> caps = ConfigCapabilities.get();
+        Assert.assertEquals(caps.get("configCapGlobal"), "globalValue");
+        Assert.assertSame(ConfigCapabilities.get(), caps, "Capabilities weren't cached!");
+
+        R.CONFIG.put(globalKey, "true");
+        Map<String, Object> changed = ConfigCapabilities.get();
+        Assert.assertNotSame(changed, caps, "Capabilities weren't rebuilt after configuration change!");
+        Assert.assertEquals(changed.get("configCapGlobal"), true);
+    }
+
+    /*
+     * Test that global configuration changes are counted and current test properties are not
+     */
+    @Test()
+    public void modificationCountTest() {
+        long count = R.CONFIG.getModificationCount();
+        R.CONFIG.put(testKey, "testValue", true);
+        Assert.assertEquals(R.CONFIG.getModificationCount(), count, "Current test property changed global modification count!");
+
+        R.CONFIG.put(globalKey, "globalValue");
+        Assert.assertEquals(R.CONFIG.getModificationCount(), count + 1);
+        Map<String, Object> caps = ConfigCapabilities.get();
+
+        R.CONFIG.remove(globalKey);
+        Assert.assertEquals(R.CONFIG.getModificationCount(), count + 2);
+        Assert.assertNotSame(ConfigCapabilities.get(), caps, "Capabilities weren't rebuilt after configuration change!");
+        Assert.assertFalse(ConfigCapabilities.get().containsKey("configCapGlobal"));
+    }
+
+    /*
+     * Test that current test capabilities are applied as overlay and don't change global configuration
+     */
+    @Test(dependsOnMethods = { "globalCapabilitiesCacheTest" })
+    public void testCapabilitiesOverlayTest() {
+        R.CONFIG.put(globalKey, "globalValue");
+        Map<String, Object> global = ConfigCapabilities.get();
+
+        R.CONFIG.put(globalKey, "false", true);
+        R.CONFIG.put(testKey, "testValue", true);
+        Map<String, Object> caps = ConfigCapabilities.get();
+        Assert.assertEquals(caps.get("configCapGlobal"), false);
+        Assert.assertEquals(caps.get("configCapTest"), "testValue");
+        Assert.assertSame(ConfigCapabilities.get(), caps, "Merged capabilities weren't cached!");
+
+        Assert.assertEquals(R.CONFIG.getGlobal(globalKey), "globalValue", "Test property leaked into global configuration!");
+        Assert.assertFalse(R.CONFIG.getGlobalProperties().containsKey(testKey), "Test property leaked into global configuration!");
+
+        R.CONFIG.clearTestProperties();
+        Assert.assertSame(ConfigCapabilities.get(), global);
+        Assert.assertFalse(ConfigCapabilities.get().containsKey("configCapTest"));
+    }
+
+    /*
+     * Test that empty value for current test removes global capability
+     */
+    @Test(dependsOnMethods = { "globalCapabilitiesCacheTest" })
+    public void emptyTestCapabilityTest() {
+        R.CONFIG.put(globalKey, "globalValue");
+        R.CONFIG.put(globalKey, "", true);
+        Assert.assertFalse(ConfigCapabilities.get().containsKey("configCapGlobal"));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void immutableCapabilitiesTest() {
+        ConfigCapabilities.get().put("configCapOther", "value");
+    }
+
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.decorator;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.appium.java_client.android.AndroidDriver;
+
+public class BulkElementReaderTest {
+
+    private static final By ITEM = By.xpath("//android.widget.TextView");
+
+    @Test()
+    public void testReadByScript() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeScript(anyString(), any(), any())).thenReturn(Arrays.asList(
+                Arrays.asList(" First ", "a"),
+                Arrays.asList("Second", null),
+                Arrays.asList("Third", "c")));
+        List<ExtendedWebElement> elements = elements(driver, "First", "Second", "Third");
+
+        ElementDataTable table = BulkElementReader.read(elements, "class");
+
+        Assert.assertEquals(table.getTexts(), Arrays.asList("First", "Second", "Third"));
+        Assert.assertEquals(table.getColumn("class"), Arrays.asList("a", null, "c"));
+        for (ExtendedWebElement element : elements) {
+            verify(element, never()).getText();
+        }
+    }
+
+    @Test()
+    public void testFallbackWhenScriptFails() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeScript(anyString(), any(), any()))
+                .thenThrow(new WebDriverException("stale element reference"));
+        List<ExtendedWebElement> elements = elements(driver, "First", "Second", "Third");
+
+        ElementDataTable table = BulkElementReader.read(elements, "class");
+
+        Assert.assertEquals(table.getTexts(), Arrays.asList("First", "Second", "Third"));
+        Assert.assertEquals(table.getColumn("class"), Arrays.asList("class-First", "class-Second", "class-Third"));
+    }
+
+    @Test()
+    public void testFallbackWhenScriptReturnsWrongSize() {
+        WebDriver driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+        when(((JavascriptExecutor) driver).executeScript(anyString(), any(), any()))
+                .thenReturn(Arrays.asList(Arrays.asList("First")));
+        List<ExtendedWebElement> elements = elements(driver, "First", "Second");
+
+        Assert.assertEquals(BulkElementReader.getTexts(elements), Arrays.asList("First", "Second"));
+    }
+
+    @Test()
+    public void testNativeContextSkipsScript() {
+        AndroidDriver<?> driver = mock(AndroidDriver.class);
+        when(driver.getContext()).thenReturn("NATIVE_APP");
+        when(driver.getPageSource()).thenReturn(page("First", "Second", "Third"));
+        List<ExtendedWebElement> elements = elements(driver, "First", "Second", "Third");
+
+        ElementDataTable table = BulkElementReader.read(elements);
+
+        Assert.assertEquals(table.getTexts(), Arrays.asList("First", "Second", "Third"));
+        verify(driver, never()).executeScript(anyString(), any(), any());
+        for (ExtendedWebElement element : elements) {
+            verify(element, never()).getText();
+        }
+    }
+
+    @Test()
+    public void testWebViewContextUsesScript() {
+        AndroidDriver<?> driver = mock(AndroidDriver.class);
+        when(driver.getContext()).thenReturn("WEBVIEW_com.app");
+        when(driver.executeScript(anyString(), any(), any())).thenReturn(Arrays.asList(
+                Arrays.asList("First"),
+                Arrays.asList("Second")));
+        List<ExtendedWebElement> elements = elements(driver, "First", "Second");
+
+        Assert.assertEquals(BulkElementReader.getTexts(elements), Arrays.asList("First", "Second"));
+        verify(driver, never()).getPageSource();
+    }
+
+    @Test()
+    public void testNativeContextFallbackWhenPageSourceChanged() {
+        AndroidDriver<?> driver = mock(AndroidDriver.class);
+        when(driver.getContext()).thenReturn("NATIVE_APP");
+        when(driver.getPageSource()).thenReturn(page("First"));
+        List<ExtendedWebElement> elements = elements(driver, "First", "Second");
+
+        Assert.assertEquals(BulkElementReader.getTexts(elements), Arrays.asList("First", "Second"));
+        verify(driver, never()).executeScript(anyString(), any(), any());
+    }
+
+    @Test()
+    public void testRawElementsNativeContext() {
+        AndroidDriver<?> driver = mock(AndroidDriver.class);
+        when(driver.getContext()).thenReturn("NATIVE_APP");
+        List<WebElement> elements = new ArrayList<>();
+        for (String text : Arrays.asList("First", "Second")) {
+            WebElement element = mock(WebElement.class);
+            when(element.getText()).thenReturn(text);
+            elements.add(element);
+        }
+
+        Assert.assertEquals(BulkElementReader.getTexts(driver, elements), Arrays.asList("First", "Second"));
+        verify(driver, never()).executeScript(anyString(), any(), any());
+    }
+
+    @Test()
+    public void testEmptyList() {
+        ElementDataTable table = BulkElementReader.read(new ArrayList<>(), "class");
+
+        Assert.assertEquals(table.size(), 0);
+        Assert.assertEquals(table.getColumns(), Arrays.asList(ElementDataTable.TEXT, "class"));
+    }
+
+    private static List<ExtendedWebElement> elements(WebDriver driver, String... texts) {
+        List<ExtendedWebElement> elements = new ArrayList<>();
+        for (String text : texts) {
+            ExtendedWebElement element = mock(ExtendedWebElement.class);
+            when(element.getDriver()).thenReturn(driver);
+            when(element.getBy()).thenReturn(ITEM);
+            when(element.getCachedElement()).thenReturn(mock(WebElement.class));
+            when(element.getText()).thenReturn(text);
+            when(element.getAttribute("class")).thenReturn("class-" + text);
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    private static String page(String... texts) {
+        StringBuilder page = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><hierarchy rotation=\"0\">");
+        for (String text : texts) {
+            page.append("<android.widget.TextView text=\"").append(text).append("\"/>");
+        }
+        return page.append("</hierarchy>").toString();
+    }
+
+}
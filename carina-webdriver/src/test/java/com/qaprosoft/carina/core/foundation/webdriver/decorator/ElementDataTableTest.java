@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.decorator;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ElementDataTableTest {
+
+    private final ElementDataTable table = new ElementDataTable(new String[] { "href", "class" }, Arrays.asList(
+            Arrays.asList("Home", "/home", "active"),
+            Arrays.asList("About", "/about", null),
+            Arrays.asList("Contacts", "/contacts", "last")));
+
+    @Test()
+    public void testColumnsOrder() {
+        Assert.assertEquals(table.getColumns(), Arrays.asList(ElementDataTable.TEXT, "href", "class"));
+    }
+
+    @Test()
+    public void testRowsOrder() {
+        Assert.assertEquals(table.size(), 3);
+        Assert.assertEquals(table.getTexts(), Arrays.asList("Home", "About", "Contacts"));
+        Assert.assertEquals(table.getColumn("href"), Arrays.asList("/home", "/about", "/contacts"));
+        Assert.assertEquals(table.getText(2), "Contacts");
+        Assert.assertEquals(table.getAttribute(0, "class"), "active");
+        Assert.assertNull(table.getAttribute(1, "class"));
+    }
+
+    @Test()
+    public void testGetRow() {
+        Map<String, String> row = table.getRow(1);
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(ElementDataTable.TEXT, "About");
+        expected.put("href", "/about");
+        expected.put("class", null);
+        Assert.assertEquals(row, expected);
+        Assert.assertEquals(Arrays.asList(row.keySet().toArray()), table.getColumns());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownColumn() {
+        table.getColumn("id");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testImmutableColumns() {
+        List<String> columns = table.getColumns();
+        columns.add("id");
+    }
+
+}
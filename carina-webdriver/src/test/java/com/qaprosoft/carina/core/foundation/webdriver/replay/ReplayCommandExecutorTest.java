@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+public class ReplayCommandExecutorTest {
+
+    private static final SessionId SESSION = new SessionId("1234");
+
+    @BeforeClass
+    public void setUp() {
+        R.CONFIG.put("appium_http_client_read_timeout_min", "1");
+        R.CONFIG.put("driver_http_max_idle_connections", "5");
+        R.CONFIG.put("driver_http_keep_alive_sec", "60");
+    }
+
+    @Test()
+    public void testRecordAndReplay() throws IOException {
+        File log = record(true);
+
+        List<CommandRecord> records = ReplayCommandExecutor.read(log);
+        Assert.assertEquals(records.size(), 5);
+        Assert.assertEquals(records.get(1).getCommand(), DriverCommand.GET);
+        Assert.assertEquals(records.get(1).getSessionId(), SESSION.toString());
+        Assert.assertEquals(records.get(1).getParameters().get("url"), "https://www.google.com");
+
+        ReplayCommandExecutor executor = new ReplayCommandExecutor(log, 0);
+        Assert.assertEquals(executor.execute(command(DriverCommand.NEW_SESSION)).getSessionId(), SESSION.toString());
+        executor.execute(command(DriverCommand.GET));
+        // responses of every command are served in recorded order
+        Assert.assertEquals(executor.execute(command(DriverCommand.GET_TITLE)).getValue(), "Google");
+        Assert.assertEquals(executor.execute(command(DriverCommand.GET_TITLE)).getValue(), "Results");
+        executor.execute(command(DriverCommand.QUIT));
+        Assert.assertEquals(executor.getRemaining(), 0);
+    }
+
+    @Test(expectedExceptions = WebDriverException.class)
+    public void testNotRecordedCommand() throws IOException {
+        new ReplayCommandExecutor(record(true), 0).execute(command(DriverCommand.GET_PAGE_SOURCE));
+    }
+
+    @Test()
+    public void testUnfinishedSession() throws IOException {
+        File log = record(false);
+        Assert.assertEquals(ReplayCommandExecutor.read(log).size(), 4);
+
+        // quit wasn't recorded but teardown is still possible
+        ReplayCommandExecutor executor = new ReplayCommandExecutor(log, 0);
+        Assert.assertEquals(executor.execute(command(DriverCommand.QUIT)).getSessionId(), SESSION.toString());
+    }
+
+    @Test()
+    public void testTimeScale() throws IOException {
+        CommandRecord record = new CommandRecord(DriverCommand.GET_TITLE, SESSION.toString(), "{}", 0, "success",
+                SESSION.toString(), "\"Google\"", 200000);
+
+        long start = System.currentTimeMillis();
+        new ReplayCommandExecutor(Collections.singletonList(record), 1).execute(command(DriverCommand.GET_TITLE));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200, "Recorded duration wasn't reproduced");
+
+        start = System.currentTimeMillis();
+        new ReplayCommandExecutor(Collections.singletonList(record), 0).execute(command(DriverCommand.GET_TITLE));
+        Assert.assertTrue(System.currentTimeMillis() - start < 200, "Replay without delays took too long");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testWrongFormat() throws IOException {
+        File log = File.createTempFile("replay", CommandRecorder.EXTENSION);
+        log.deleteOnExit();
+        Files.write(log.toPath(), new byte[] { 1, 2, 3, 4 });
+        ReplayCommandExecutor.read(log);
+    }
+
+    private static File record(boolean quit) throws IOException {
+        File log = File.createTempFile("replay", CommandRecorder.EXTENSION);
+        log.deleteOnExit();
+        CommandRecorder recorder = new CommandRecorder(log);
+
+        Map<String, Object> capabilities = Collections.singletonMap("platformName", "ANDROID");
+        execute(recorder, new Command(null, DriverCommand.NEW_SESSION, Collections.emptyMap()), capabilities);
+        execute(recorder, new Command(SESSION, DriverCommand.GET, Collections.singletonMap("url", "https://www.google.com")), null);
+        execute(recorder, command(DriverCommand.GET_TITLE), "Google");
+        execute(recorder, command(DriverCommand.GET_TITLE), "Results");
+        if (quit) {
+            execute(recorder, command(DriverCommand.QUIT), null);
+        }
+        return log;
+    }
+
+    private static void execute(CommandRecorder recorder, Command command, Object value) {
+        Response response = new Response(SESSION);
+        response.setState("success");
+        response.setValue(value);
+        recorder.beforeEvent(command);
+        recorder.afterEvent(command, response);
+    }
+
+    private static Command command(String name) {
+        return new Command(SESSION, name, Collections.emptyMap());
+    }
+
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ImageComparatorTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @Test()
+    public void testIdenticalImages() {
+        ImageComparison comparison = new ImageComparator(0, 0).compare(createImage(), createImage());
+        Assert.assertFalse(comparison.hasDiff());
+        Assert.assertTrue(comparison.isPassed());
+        Assert.assertEquals(comparison.getDiffPixels(), 0);
+    }
+
+    @Test()
+    public void testDiffTiles() {
+        BufferedImage actual = createImage();
+        // 10x10 square crossing 4 tiles
+        fill(actual, new Rectangle(60, 60, 10, 10), Color.BLACK);
+
+        ImageComparison comparison = new ImageComparator(0, 0).compare(createImage(), actual);
+        Assert.assertTrue(comparison.hasDiff());
+        Assert.assertFalse(comparison.isPassed());
+        Assert.assertEquals(comparison.getDiffTiles().size(), 4);
+
+        // tolerance is big enough: 100 of 30000 pixels
+        comparison = new ImageComparator(0, 1).compare(createImage(), actual);
+        Assert.assertTrue(comparison.hasDiff());
+        Assert.assertTrue(comparison.isPassed());
+        Assert.assertEquals(comparison.getDiffPixels(), 100);
+    }
+
+    @Test()
+    public void testEarlyExit() {
+        BufferedImage actual = createImage();
+        fill(actual, new Rectangle(0, 0, WIDTH, HEIGHT), Color.BLACK);
+
+        // every tile is marked but pixels are not counted after tolerance is exceeded
+        ImageComparison comparison = new ImageComparator(0, 0).compare(createImage(), actual);
+        Assert.assertEquals(comparison.getDiffTiles().size(), 12);
+        Assert.assertTrue(comparison.getDiffPixels() < WIDTH * HEIGHT);
+    }
+
+    @Test()
+    public void testMasks() {
+        BufferedImage actual = createImage();
+        fill(actual, new Rectangle(60, 60, 10, 10), Color.BLACK);
+
+        ImageComparison comparison = new ImageComparator(0, 0).compare(createImage(), actual,
+                Collections.singletonList(new Rectangle(55, 55, 20, 20)));
+        Assert.assertFalse(comparison.hasDiff());
+
+        // partially masked change, pixels are counted exactly within tolerance
+        comparison = new ImageComparator(0, 1).compare(createImage(), actual, Arrays.asList(new Rectangle(60, 60, 5, 10)));
+        Assert.assertEquals(comparison.getDiffPixels(), 50);
+    }
+
+    @Test()
+    public void testPerceptualThreshold() {
+        BufferedImage actual = createImage();
+        // hardly visible shade change
+        fill(actual, new Rectangle(0, 0, WIDTH, HEIGHT), new Color(252, 252, 252));
+
+        Assert.assertFalse(new ImageComparator(0.1, 0).compare(createImage(), actual).hasDiff());
+        Assert.assertTrue(new ImageComparator(0, 0).compare(createImage(), actual).hasDiff());
+    }
+
+    @Test()
+    public void testSizeMismatch() {
+        ImageComparison comparison = new ImageComparator(0.1, 100).compare(createImage(),
+                new BufferedImage(WIDTH, HEIGHT + 1, BufferedImage.TYPE_INT_RGB));
+        Assert.assertTrue(comparison.isSizeMismatch());
+        Assert.assertFalse(comparison.isPassed());
+    }
+
+    @Test()
+    public void testDifferentImageTypes() {
+        BufferedImage expected = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        fill(expected, new Rectangle(0, 0, WIDTH, HEIGHT), Color.WHITE);
+        Assert.assertFalse(new ImageComparator(0, 0).compare(expected, createImage()).hasDiff());
+    }
+
+    @Test()
+    public void testBaselineRepository() throws IOException {
+        File root = Files.createTempDirectory("baseline").toFile();
+        try {
+            BaselineRepository repository = new BaselineRepository(root);
+            Assert.assertNull(repository.load("home", "Pixel 3", "en_US"));
+
+            repository.save("home", "Pixel 3", "en_US", createImage());
+            Assert.assertEquals(repository.getFile("home", "Pixel 3", "en_US"), new File(root, "Pixel_3/en_US/home.png"));
+            Assert.assertFalse(new ImageComparator(0, 0).compare(repository.load("home", "Pixel 3", "en_US"), createImage()).hasDiff());
+            Assert.assertFalse(repository.exists("home", "Pixel 3", "de_DE"));
+        } finally {
+            FileUtils.deleteQuietly(root);
+        }
+    }
+
+    private static BufferedImage createImage() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        fill(image, new Rectangle(0, 0, WIDTH, HEIGHT), Color.WHITE);
+        return image;
+    }
+
+    private static void fill(BufferedImage image, Rectangle rect, Color color) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fill(rect);
+        graphics.dispose();
+    }
+
+}
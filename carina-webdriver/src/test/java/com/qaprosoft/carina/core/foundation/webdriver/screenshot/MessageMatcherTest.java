@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MessageMatcherTest {
+
+    @Test()
+    public void testFind() {
+        MessageMatcher matcher = new MessageMatcher(Arrays.asList("he", "she", "his", "hers", "stale element reference"));
+        Assert.assertEquals(matcher.find("ushers"), "she");
+        Assert.assertEquals(matcher.find("this"), "his");
+        Assert.assertEquals(matcher.find("org.openqa.selenium.StaleElementReferenceException: stale element reference: element is not attached"),
+                "stale element reference");
+        Assert.assertNull(matcher.find("no match at all"));
+        Assert.assertNull(matcher.find(null));
+    }
+
+    @Test()
+    public void testFailureLinks() {
+        // "abcd" prefix is partially matched before "bce" so automaton has to fall back by failure link
+        MessageMatcher matcher = new MessageMatcher(Arrays.asList("abcd", "bce", "c"));
+        Assert.assertEquals(matcher.find("xabce"), "c");
+        Assert.assertTrue(new MessageMatcher(Arrays.asList("abcd", "bce")).matches("xabce"));
+        Assert.assertFalse(new MessageMatcher(Arrays.asList("abcd", "bce")).matches("xabcx"));
+    }
+
+    @Test()
+    public void testSameAsContains() {
+        String[] rules = { "Session does not exist", "invalid session id", "Unable to locate element", "no such element: Unable to locate element" };
+        MessageMatcher matcher = new MessageMatcher(Arrays.asList(rules));
+        String[] messages = { "invalid session id", "no such element: Unable to locate element: {\"method\":\"xpath\"}", "Session does not exis",
+                "", "timeout" };
+        for (String message : messages) {
+            boolean contains = false;
+            for (String rule : rules) {
+                contains |= message.contains(rule);
+            }
+            Assert.assertEquals(matcher.matches(message), contains, message);
+        }
+    }
+
+    @Test()
+    public void testHits() {
+        MessageMatcher matcher = new MessageMatcher(Arrays.asList("invalid session id", "chrome not reachable", "", "invalid session id"));
+        Assert.assertEquals(matcher.getRules().size(), 2);
+        matcher.matches("chrome not reachable");
+        matcher.matches("invalid session id");
+        matcher.matches("invalid session id");
+        matcher.matches("something else");
+
+        Map<String, Long> hits = matcher.getHits();
+        Assert.assertEquals(hits.size(), 2);
+        Assert.assertEquals(hits.keySet().iterator().next(), "invalid session id");
+        Assert.assertEquals(hits.get("invalid session id").longValue(), 2L);
+        Assert.assertEquals(hits.get("chrome not reachable").longValue(), 1L);
+    }
+
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.qaprosoft.carina.core.foundation.utils.R;
+
+public class ScreenshotPolicyTest {
+
+    @BeforeMethod
+    public void setUp() {
+        R.CONFIG.put("screenshot_policy", "always");
+        R.CONFIG.put("screenshot_min_interval", "0");
+        R.CONFIG.put("screenshot_max_per_test", "-1");
+        R.CONFIG.put("screenshot_dedup", "true");
+        R.CONFIG.put("screenshot_buffer_size", "3");
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        ScreenshotPolicy.clear();
+    }
+
+    @Test()
+    public void testSameImageHash() {
+        Assert.assertEquals(ScreenshotPolicy.getHash(createImage(Color.WHITE, 10)), ScreenshotPolicy.getHash(createImage(Color.WHITE, 10)));
+        Assert.assertNotEquals(ScreenshotPolicy.getHash(createImage(Color.WHITE, 10)), ScreenshotPolicy.getHash(createImage(Color.WHITE, 300)));
+    }
+
+    @Test()
+    public void testDuplicate() {
+        Assert.assertFalse(ScreenshotPolicy.isDuplicate(createImage(Color.WHITE, 10)));
+        Assert.assertTrue(ScreenshotPolicy.isDuplicate(createImage(Color.WHITE, 10)));
+        Assert.assertFalse(ScreenshotPolicy.isDuplicate(createImage(Color.WHITE, 300)));
+
+        R.CONFIG.put("screenshot_dedup", "false");
+        Assert.assertFalse(ScreenshotPolicy.isDuplicate(createImage(Color.WHITE, 300)));
+    }
+
+    @Test()
+    public void testMaxPerTest() {
+        R.CONFIG.put("screenshot_max_per_test", "2");
+        Assert.assertTrue(ScreenshotPolicy.tryAcquire());
+        Assert.assertTrue(ScreenshotPolicy.tryAcquire());
+        Assert.assertFalse(ScreenshotPolicy.tryAcquire());
+
+        ScreenshotPolicy.clear();
+        Assert.assertTrue(ScreenshotPolicy.tryAcquire(), "Limit should be reset for the next test");
+    }
+
+    @Test()
+    public void testMinInterval() {
+        R.CONFIG.put("screenshot_min_interval", "60000");
+        Assert.assertTrue(ScreenshotPolicy.tryAcquire());
+        Assert.assertFalse(ScreenshotPolicy.tryAcquire());
+    }
+
+    @Test()
+    public void testRingBuffer() {
+        for (int i = 0; i < 5; i++) {
+            ScreenshotPolicy.addFrame(new byte[] { (byte) i }, "frame " + i);
+        }
+        Assert.assertEquals(ScreenshotPolicy.getFramesCount(), 3);
+
+        // identical frame is not buffered twice
+        ScreenshotPolicy.addFrame(new byte[] { 4 }, "frame 4 again");
+        Assert.assertEquals(ScreenshotPolicy.getFramesCount(), 3);
+    }
+
+    private BufferedImage createImage(Color background, int boxPosition) {
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(background);
+        graphics.fillRect(0, 0, 400, 400);
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(boxPosition, boxPosition, 80, 80);
+        graphics.dispose();
+        return image;
+    }
+
+}
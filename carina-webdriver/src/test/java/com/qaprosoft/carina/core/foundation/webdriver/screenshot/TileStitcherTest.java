@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright 2013-2020 QaProSoft (http://www.qaprosoft.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.qaprosoft.carina.core.foundation.webdriver.screenshot;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TileStitcherTest {
+
+    private static final int WIDTH = 100;
+    private static final int VIEWPORT = 40;
+
+    @Test()
+    public void testStitchWithoutScale() {
+        // page 100 rows: tiles at 0, 40 and the last one is aligned to the page bottom
+        TileStitcher stitcher = new TileStitcher(WIDTH, 100, 1);
+        stitcher.draw(createTile(Color.RED), 0);
+        stitcher.draw(createTile(Color.GREEN), 40);
+        Assert.assertFalse(stitcher.isComplete());
+        stitcher.draw(createTile(Color.BLUE), 60);
+        Assert.assertTrue(stitcher.isComplete());
+
+        BufferedImage image = stitcher.getImage();
+        Assert.assertEquals(image.getWidth(), WIDTH);
+        Assert.assertEquals(image.getHeight(), 100);
+        Assert.assertEquals(image.getRGB(50, 10), Color.RED.getRGB());
+        Assert.assertEquals(image.getRGB(50, 70), Color.GREEN.getRGB());
+        // overlapped rows of the last tile are skipped
+        Assert.assertEquals(image.getRGB(50, 79), Color.GREEN.getRGB());
+        Assert.assertEquals(image.getRGB(50, 80), Color.BLUE.getRGB());
+        Assert.assertEquals(image.getRGB(50, 99), Color.BLUE.getRGB());
+    }
+
+    @Test()
+    public void testStitchWithScale() {
+        TileStitcher stitcher = new TileStitcher(WIDTH, 80, 0.5);
+        stitcher.draw(createTile(Color.RED), 0);
+        stitcher.draw(createTile(Color.BLUE), 40);
+
+        BufferedImage image = stitcher.getImage();
+        Assert.assertEquals(image.getWidth(), 50);
+        Assert.assertEquals(image.getHeight(), 40);
+        Assert.assertEquals(image.getRGB(25, 5), Color.RED.getRGB());
+        Assert.assertEquals(image.getRGB(25, 35), Color.BLUE.getRGB());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new TileStitcher(0, 100, 1);
+    }
+
+    private BufferedImage createTile(Color color) {
+        BufferedImage tile = new BufferedImage(WIDTH, VIEWPORT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = tile.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, WIDTH, VIEWPORT);
+        graphics.dispose();
+        return tile;
+    }
+
+}